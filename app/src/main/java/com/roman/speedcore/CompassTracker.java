@@ -0,0 +1,169 @@
+package com.roman.speedcore;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Receives compass sensor events on a dedicated {@link HandlerThread}, fuses and smooths them there
+ * with preallocated state, and hands a heading to the main thread only when
+ * {@link HeadingThrottle} says it moved enough to be visible.
+ *
+ * <p>Prefers the hardware-fused {@code TYPE_ROTATION_VECTOR}, then
+ * {@code TYPE_GEOMAGNETIC_ROTATION_VECTOR}, and falls back to combining the accelerometer and
+ * magnetometer itself. The math for each lives in a {@link HeadingFusion}.
+ *
+ * <p>The accelerometer is always listened to, at a low rate when it is not needed for the heading,
+ * so the {@link MotionVariance} it feeds can be reported to the motion state machine about once a
+ * second.
+ */
+public class CompassTracker implements SensorEventListener {
+
+    public interface Listener {
+        /** Called on the main thread with a heading in degrees, [0, 360). */
+        void onHeadingChanged(float heading);
+
+        /** Called on the main thread about once a second with the accelerometer variance. */
+        void onMotionVariance(float variance);
+    }
+
+    private static final int MOTION_WINDOW = 25;
+    private static final long MOTION_REPORT_NANOS = 1_000_000_000L;
+
+    private final SensorManager sensorManager;
+    private final Sensor rotationVector;
+    private final Sensor accelerometer;
+    private final Sensor magnetometer;
+    private final Listener listener;
+
+    private final HandlerThread sensorThread;
+    private final Handler sensorHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the sensor thread.
+    private final HeadingFusion fusion;
+    private final MovingAverage.CircularMovingAverage headingAverage;
+    private final HeadingThrottle throttle;
+    private final MotionVariance motionVariance = new MotionVariance(MOTION_WINDOW);
+    private long lastMotionReportNanos;
+
+    // Hand-off to the main thread without allocating a Runnable per heading.
+    private volatile float pendingHeading;
+    private final AtomicBoolean publishPosted = new AtomicBoolean(false);
+    private final Runnable publishRunnable = new Runnable() {
+        @Override
+        public void run() {
+            publishPosted.set(false);
+            listener.onHeadingChanged(pendingHeading);
+        }
+    };
+    private volatile float pendingVariance;
+    private final Runnable motionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            listener.onMotionVariance(pendingVariance);
+        }
+    };
+
+    public CompassTracker(SensorManager sensorManager, Listener listener, float thresholdDegrees) {
+        this.sensorManager = sensorManager;
+        this.listener = listener;
+        Sensor fused = sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+        if (fused == null) {
+            fused = sensorManager.getDefaultSensor(Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR);
+        }
+        this.rotationVector = fused;
+        this.accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if (fused != null) {
+            this.magnetometer = null;
+            this.fusion = new RotationVectorFusion();
+        } else {
+            this.magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+            this.fusion = new AccelMagFusion();
+        }
+        this.headingAverage = new MovingAverage.CircularMovingAverage(fusion.getSmoothingWindow());
+        this.throttle = new HeadingThrottle(thresholdDegrees, HeadingThrottle.FRAME_INTERVAL_NANOS);
+
+        sensorThread = new HandlerThread("CompassTracker");
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+    }
+
+    public void start() {
+        if (rotationVector != null) {
+            sensorManager.registerListener(this, rotationVector, SensorManager.SENSOR_DELAY_UI, sensorHandler);
+        }
+        if (accelerometer != null) {
+            // Only motion detection needs it when the heading comes from the rotation vector.
+            int delay = rotationVector != null ? SensorManager.SENSOR_DELAY_NORMAL : SensorManager.SENSOR_DELAY_UI;
+            sensorManager.registerListener(this, accelerometer, delay, sensorHandler);
+        }
+        if (magnetometer != null) {
+            sensorManager.registerListener(this, magnetometer, SensorManager.SENSOR_DELAY_UI, sensorHandler);
+        }
+    }
+
+    public void stop() {
+        sensorManager.unregisterListener(this);
+        mainHandler.removeCallbacks(publishRunnable);
+        mainHandler.removeCallbacks(motionRunnable);
+        publishPosted.set(false);
+    }
+
+    /** Stops delivery and shuts down the sensor thread; the tracker cannot be restarted. */
+    public void release() {
+        stop();
+        sensorThread.quitSafely();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        int type = event.sensor.getType();
+        int input;
+        if (type == Sensor.TYPE_ROTATION_VECTOR || type == Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR) {
+            input = HeadingFusion.INPUT_ROTATION_VECTOR;
+        } else if (type == Sensor.TYPE_ACCELEROMETER) {
+            onAccelerometer(event);
+            if (rotationVector != null) {
+                return;
+            }
+            input = HeadingFusion.INPUT_ACCELEROMETER;
+        } else if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+            input = HeadingFusion.INPUT_MAGNETOMETER;
+        } else {
+            return;
+        }
+
+        if (fusion.onSensorValues(input, event.values)) {
+            headingAverage.add(fusion.getHeading());
+            float heading = HeadingThrottle.normalizeDegrees(headingAverage.getAverage());
+            if (throttle.offer(heading, event.timestamp)) {
+                pendingHeading = heading;
+                if (publishPosted.compareAndSet(false, true)) {
+                    mainHandler.post(publishRunnable);
+                }
+            }
+        }
+    }
+
+    private void onAccelerometer(SensorEvent event) {
+        float[] values = event.values;
+        motionVariance.add(values[0], values[1], values[2]);
+        if (event.timestamp - lastMotionReportNanos >= MOTION_REPORT_NANOS) {
+            lastMotionReportNanos = event.timestamp;
+            pendingVariance = motionVariance.getVariance();
+            mainHandler.post(motionRunnable);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Not used for this implementation
+    }
+}
@@ -0,0 +1,95 @@
+package com.roman.speedcore;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Debug-build front end for a {@link FixLatencyRecorder}. Marks the frame that draws the speed,
+ * shows the span percentiles in a hidden overlay refreshed once a second, and dumps them to a file
+ * in the app's external files directory on request, each headed by the {@link StartupTimer} line. Only created when {@code BuildConfig.DEBUG} is
+ * set, so release builds carry none of it.
+ */
+class LatencyOverlay {
+
+    private static final String TAG = "LatencyOverlay";
+    private static final long REFRESH_MILLIS = 1000L;
+
+    private final FixLatencyRecorder recorder;
+    private final StartupTimer startup;
+    private final TextView overlay;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            overlay.setText(report());
+            handler.postDelayed(this, REFRESH_MILLIS);
+        }
+    };
+
+    /** Times the draws of {@code speedView}'s window and reports into {@code overlay}. */
+    LatencyOverlay(FixLatencyRecorder recorder, StartupTimer startup, View speedView, TextView overlay) {
+        this.recorder = recorder;
+        this.startup = startup;
+        this.overlay = overlay;
+        speedView.getViewTreeObserver().addOnDrawListener(() -> {
+            if (recorder.isAwaitingDraw()) {
+                recorder.onDrawn(SystemClock.elapsedRealtimeNanos());
+            }
+        });
+    }
+
+    void toggle() {
+        boolean show = overlay.getVisibility() != View.VISIBLE;
+        overlay.setVisibility(show ? View.VISIBLE : View.GONE);
+        handler.removeCallbacks(refreshRunnable);
+        if (show) {
+            handler.post(refreshRunnable);
+        }
+    }
+
+    void onStart() {
+        if (overlay.getVisibility() == View.VISIBLE) {
+            handler.post(refreshRunnable);
+        }
+    }
+
+    void onStop() {
+        handler.removeCallbacks(refreshRunnable);
+    }
+
+    private String report() {
+        return startup.report() + recorder.report();
+    }
+
+    /** Writes the current percentiles to {@code latency-<time>.txt}, off the main thread. */
+    void dump(Context context) {
+        String report = report();
+        File directory = context.getExternalFilesDir(null);
+        File file = new File(directory != null ? directory : context.getFilesDir(),
+                "latency-" + System.currentTimeMillis() + ".txt");
+        Context appContext = context.getApplicationContext();
+        new Thread(() -> {
+            String message;
+            try (Writer out = new FileWriter(file)) {
+                out.write(report);
+                message = "Latency written to " + file;
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write latency dump", e);
+                message = "Latency dump failed";
+            }
+            String result = message;
+            handler.post(() -> Toast.makeText(appContext, result, Toast.LENGTH_SHORT).show());
+        }, "LatencyDump").start();
+    }
+}
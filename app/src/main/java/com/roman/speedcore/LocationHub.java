@@ -0,0 +1,143 @@
+package com.roman.speedcore;
+
+import android.location.GnssStatus;
+import android.location.Location;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The process-wide meeting point of the location pipeline: {@link LocationService} is the one
+ * producer and publishes every batch of fixes and satellite report here; any number of consumers
+ * (the view model, recorders, debug instrumentation) subscribe and unsubscribe freely without the
+ * location request being touched. The request itself is set separately, by whoever decides the
+ * fix rate, and the producer only re-requests when it actually changes.
+ *
+ * <p>Main thread only. Consumers are held in an array that is replaced on every subscription
+ * change, so publishing never allocates and a consumer may unsubscribe from inside a callback.
+ * Consumers are called in the order they subscribed.
+ */
+public final class LocationHub {
+
+    public interface Consumer {
+        /** A batch of fixes, oldest first; usually just one. */
+        void onLocations(List<Location> locations);
+
+        default void onGnssStatus(GnssStatus status) {
+        }
+    }
+
+    /** Told when the request changes; implemented by the producer. */
+    public interface RequestListener {
+        void onRequestChanged(LocationHub hub);
+    }
+
+    private static final Consumer[] NO_CONSUMERS = new Consumer[0];
+    private static LocationHub instance;
+
+    private Consumer[] consumers = NO_CONSUMERS;
+    private RequestListener requestListener;
+    private boolean hasRequest;
+    private long intervalMillis;
+    private int priority;
+    private long maxUpdateDelayMillis;
+
+    /** A hub of its own, for tests; the app shares {@link #getInstance()}. */
+    LocationHub() {
+    }
+
+    public static LocationHub getInstance() {
+        if (instance == null) {
+            instance = new LocationHub();
+        }
+        return instance;
+    }
+
+    /** Subscribes {@code consumer} to every later publication; subscribing twice has no effect. */
+    public void subscribe(Consumer consumer) {
+        if (indexOf(consumer) >= 0) {
+            return;
+        }
+        Consumer[] next = Arrays.copyOf(consumers, consumers.length + 1);
+        next[consumers.length] = consumer;
+        consumers = next;
+    }
+
+    public void unsubscribe(Consumer consumer) {
+        int index = indexOf(consumer);
+        if (index < 0) {
+            return;
+        }
+        Consumer[] next = new Consumer[consumers.length - 1];
+        System.arraycopy(consumers, 0, next, 0, index);
+        System.arraycopy(consumers, index + 1, next, index, next.length - index);
+        consumers = next;
+    }
+
+    private int indexOf(Consumer consumer) {
+        for (int i = 0; i < consumers.length; i++) {
+            if (consumers[i] == consumer) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getConsumerCount() {
+        return consumers.length;
+    }
+
+    public void publishLocations(List<Location> locations) {
+        Consumer[] current = consumers;
+        for (Consumer consumer : current) {
+            consumer.onLocations(locations);
+        }
+    }
+
+    public void publishGnssStatus(GnssStatus status) {
+        Consumer[] current = consumers;
+        for (Consumer consumer : current) {
+            consumer.onGnssStatus(status);
+        }
+    }
+
+    /**
+     * Sets the fix interval, {@code Priority} and batching delay the producer should request. The
+     * producer is only told if one of them changed.
+     */
+    public void setRequest(long intervalMillis, int priority, long maxUpdateDelayMillis) {
+        if (hasRequest && intervalMillis == this.intervalMillis && priority == this.priority
+                && maxUpdateDelayMillis == this.maxUpdateDelayMillis) {
+            return;
+        }
+        hasRequest = true;
+        this.intervalMillis = intervalMillis;
+        this.priority = priority;
+        this.maxUpdateDelayMillis = maxUpdateDelayMillis;
+        if (requestListener != null) {
+            requestListener.onRequestChanged(this);
+        }
+    }
+
+    /** Whether {@link #setRequest} has been called; until then the producer has nothing to request. */
+    public boolean hasRequest() {
+        return hasRequest;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getMaxUpdateDelayMillis() {
+        return maxUpdateDelayMillis;
+    }
+
+    /** Attaches the producer, or detaches it with {@code null}. */
+    void setRequestListener(RequestListener listener) {
+        requestListener = listener;
+    }
+}
@@ -0,0 +1,180 @@
+package com.roman.speedcore;
+
+import android.annotation.SuppressLint;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.location.GnssStatus;
+import android.location.LocationManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+/**
+ * Foreground service that owns location acquisition, so fixes keep flowing through rotations and
+ * app switches instead of the request being torn down and warmed up again with the activity. It is
+ * the single producer of the {@link LocationHub}: fixes and satellite reports are published there
+ * as they arrive, and the location request is rebuilt only when the hub's request changes.
+ *
+ * <p>Started by the UI once location permission is granted and stopped when the UI is finished
+ * for good, including when the user swipes the task away: the app only tracks while its screen
+ * is in use, never as a background logger. Everything runs on the main thread.
+ */
+public class LocationService extends Service implements LocationHub.RequestListener {
+
+    private static final String CHANNEL_ID = "location";
+    private static final int NOTIFICATION_ID = 1;
+
+    private final LocationHub hub = LocationHub.getInstance();
+    private FusedLocationProviderClient fusedLocationClient;
+    private LocationManager locationManager;
+    private boolean updatesRequested = false;
+    private boolean gnssStatusRegistered = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult locationResult) {
+            // A batched result carries many fixes; consumers fold them into one update each.
+            hub.publishLocations(locationResult.getLocations());
+        }
+    };
+
+    private final GnssStatus.Callback gnssStatusCallback = new GnssStatus.Callback() {
+        @Override
+        public void onSatelliteStatusChanged(@NonNull GnssStatus status) {
+            hub.publishGnssStatus(status);
+        }
+    };
+
+    /** Starts the service if it is not running; the caller must hold location permission. */
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, LocationService.class));
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, LocationService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+        hub.setRequestListener(this);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION : 0);
+        if (!hasLocationPermission()) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        // Every UI start lands here; only the first one has anything to request.
+        if (hub.hasRequest() && !updatesRequested) {
+            onRequestChanged(hub);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && !gnssStatusRegistered) {
+            // Queued behind the pending frame: a pending traversal holds back ordinary messages,
+            // so the satellite callback's binder call never delays the first drawn frame.
+            mainHandler.post(this::registerGnssStatusCallback);
+        }
+        // The trip is journalled; a restarted process restores it when the UI comes back.
+        return START_NOT_STICKY;
+    }
+
+    @SuppressLint("MissingPermission") // Checked just below.
+    @Override
+    public void onRequestChanged(LocationHub hub) {
+        if (!hasLocationPermission()) {
+            return;
+        }
+        long intervalMillis = hub.getIntervalMillis();
+        LocationRequest locationRequest = new LocationRequest.Builder(hub.getPriority(), intervalMillis)
+                .setMinUpdateIntervalMillis(intervalMillis / 2)
+                .setMaxUpdateDelayMillis(hub.getMaxUpdateDelayMillis())
+                .build();
+        // Re-requesting with the same callback replaces the previous request.
+        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+        updatesRequested = true;
+    }
+
+    @SuppressLint("MissingPermission") // Checked just below.
+    @RequiresApi(Build.VERSION_CODES.R)
+    private void registerGnssStatusCallback() {
+        if (!gnssStatusRegistered && hasLocationPermission()) {
+            gnssStatusRegistered = locationManager.registerGnssStatusCallback(
+                    ContextCompat.getMainExecutor(this), gnssStatusCallback);
+        }
+    }
+
+    private boolean hasLocationPermission() {
+        return checkSelfPermission(android.Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.location_channel_name), NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_compass_needle)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.location_notification_text))
+                .setContentIntent(openApp)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        super.onTaskRemoved(rootIntent);
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        hub.setRequestListener(null);
+        mainHandler.removeCallbacksAndMessages(null);
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        updatesRequested = false;
+        if (gnssStatusRegistered && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            locationManager.unregisterGnssStatusCallback(gnssStatusCallback);
+            gnssStatusRegistered = false;
+        }
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
@@ -1,89 +1,98 @@
 package com.roman.speedcore;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.WindowManager;
-import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.ViewModelProvider;
 import android.content.pm.PackageManager;
-import android.location.Location;
-import android.location.LocationManager;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
 import com.google.android.material.appbar.MaterialToolbar;
-import android.location.GnssStatus;
-import android.os.Build;
-import androidx.annotation.RequiresApi;
+import android.os.SystemClock;
 
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.annotation.SuppressLint;
+import android.os.Process;
+import android.util.Log;
+import android.view.ViewTreeObserver;
 
-public class MainActivity extends AppCompatActivity implements SettingsDialogFragment.SettingsDialogListener, SensorEventListener {
-
-    private static final int LOCATION_PERMISSION_REQUEST_CODE = 1001;
-
-    private MainViewModel viewModel;
+import com.google.android.gms.location.LocationServices;
 
-    private TextView speedText;
-    private TextView unitText;
-    private TextView maxSpeedText;
-    private TextView distanceText;
-    private TextView satelliteCountText;
-    private TextView avgSpeedText;
-    private TextView tripTimeText;
-    private ImageView compassNeedleImageView;
-    private TextView compassHeadingTextView;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
-    private SensorManager sensorManager;
-    private Sensor accelerometer;
-    private Sensor magnetometer;
+public class MainActivity extends AppCompatActivity {
 
-    private float[] lastAccelerometer = new float[3];
-    private float[] lastMagnetometer = new float[3];
-    private boolean lastAccelerometerSet = false;
-    private boolean lastMagnetometerSet = false;
+    private static final String TAG = "MainActivity";
+    private static final int PERMISSIONS_REQUEST_CODE = 1001;
+    private static final String TRIP_JOURNAL_FILE = "trip.journal";
+    private static final String TRIP_TRACK_FILE = "trip.track";
 
-    private float[] rotationMatrix = new float[9];
-    private float[] orientation = new float[3];
+    private MainViewModel viewModel;
 
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationManager locationManager;
-    private LocationCallback locationCallback;
-    private GnssStatus.Callback gnssStatusCallback;
+    private SpeedGaugeView gauge;
+    private TextView satelliteCountText;
+    private TripUiState renderedState;
+    // Debug builds only; null in release.
+    private FixLatencyRecorder latency;
+    private LatencyOverlay latencyOverlay;
+
+    // Created once the first frame is drawn; null until then.
+    private CompassTracker compassTracker;
+    private SettingsRepository settingsRepository;
+    private TripSnapshotStore snapshotStore;
+    // Whether this activity has started the location service; each instance does so once.
+    private boolean pipelineStarted = false;
+
+    // Whether this process has created the screen before, i.e. whether this is a warm start.
+    private static boolean screenCreatedBefore = false;
+    private StartupTimer startup;
+    private boolean startupReported = false;
+    private final ViewTreeObserver.OnDrawListener startupDrawListener = this::onGaugeDrawn;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        boolean cold = !screenCreatedBefore;
+        screenCreatedBefore = true;
+        startup = new StartupTimer(cold ? Process.getStartElapsedRealtime() * 1_000_000L
+                : SystemClock.elapsedRealtimeNanos(), cold);
         setContentView(R.layout.activity_main);
 
         viewModel = new ViewModelProvider(this).get(MainViewModel.class);
-
-        speedText = findViewById(R.id.speed_text_view);
-        unitText = findViewById(R.id.speed_unit_text_view);
-        maxSpeedText = findViewById(R.id.max_speed_text_view);
-        distanceText = findViewById(R.id.distance_text_view);
+        getLifecycle().addObserver(viewModel.getTickScheduler());
+        settingsRepository = SettingsRepository.getInstance(this);
+        // Units and the last trip's readouts are known now; don't wait for the observers or the journal.
+        viewModel.onSettingsChanged(settingsRepository.get());
+        viewModel.attachJournal(new File(getFilesDir(), TRIP_JOURNAL_FILE), new File(getFilesDir(), TRIP_TRACK_FILE));
+        viewModel.attachHistory(TripHistoryDatabase.getInstance(this));
+        snapshotStore = new TripSnapshotStore(this);
+        snapshotStore.restoreInto(viewModel);
+        viewModel.attachLocationHub(LocationHub.getInstance());
+
+        gauge = findViewById(R.id.speed_gauge_view);
         satelliteCountText = findViewById(R.id.satellite_count_text_view);
-        avgSpeedText = findViewById(R.id.avg_speed_text_view);
-        tripTimeText = findViewById(R.id.trip_time_text_view);
-        compassNeedleImageView = findViewById(R.id.compass_needle_image_view);
-        compassHeadingTextView = findViewById(R.id.compass_heading_text_view);
+        gauge.getViewTreeObserver().addOnDrawListener(startupDrawListener);
+
+        if (BuildConfig.DEBUG) {
+            latency = viewModel.getLatencyRecorder();
+            latencyOverlay = new LatencyOverlay(latency, startup, gauge, findViewById(R.id.latency_overlay_text_view));
+            gauge.setOnLongClickListener(v -> {
+                latencyOverlay.toggle();
+                return true;
+            });
+        }
 
         findViewById(R.id.reset_button).setOnClickListener(v -> viewModel.resetTrip());
         findViewById(R.id.switch_units_button).setVisibility(View.GONE);
@@ -93,120 +102,188 @@ public class MainActivity extends AppCompatActivity implements SettingsDialogFra
 
         setupObservers();
 
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+        if (hasLocationPermission()) {
+            startLocationPipeline();
+        }
+        if (savedInstanceState == null) {
+            // A recreated activity leaves any answer to the prompt its predecessor showed.
+            requestMissingPermissions();
+        }
+        settingsRepository.getSettings().observe(this, this::applySettings);
+        startup.mark(StartupTimer.Milestone.CREATED, SystemClock.elapsedRealtimeNanos());
+    }
 
-        createLocationCallback();
-        createGnssStatusCallback();
+    private void onGaugeDrawn() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (startup.mark(StartupTimer.Milestone.FIRST_FRAME, now)) {
+            // Runs after this frame's traversal, so the compass never delays the first frame.
+            gauge.post(this::onFirstFrame);
+        }
+        TripUiState shown = renderedState;
+        if (shown != null && shown.getSpeed() != null) {
+            startup.mark(StartupTimer.Milestone.MEANINGFUL_DISPLAY, now);
+            if (!shown.isSpeedProvisional()) {
+                startup.mark(StartupTimer.Milestone.FIRST_FIX, now);
+            }
+        }
+        if (!startupReported && startup.isComplete()) {
+            startupReported = true;
+            Log.i(TAG, startup.report());
+            // Draw listeners cannot be removed while the frame is being drawn.
+            gauge.post(() -> gauge.getViewTreeObserver().removeOnDrawListener(startupDrawListener));
+        }
+    }
 
-        checkLocationPermission();
-        loadAndApplySettings();
+    /** Setup that nothing on the first frame depends on. */
+    private void onFirstFrame() {
+        if (isDestroyed()) {
+            return;
+        }
+        SensorManager sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+        compassTracker = new CompassTracker(sensorManager, new CompassTracker.Listener() {
+            @Override
+            public void onHeadingChanged(float heading) {
+                viewModel.onCompassChanged(heading);
+            }
 
-        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+            @Override
+            public void onMotionVariance(float variance) {
+                viewModel.onMotionVariance(variance);
+            }
+        }, HeadingThrottle.DEFAULT_THRESHOLD_DEGREES);
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            compassTracker.start();
+        }
     }
 
     private void setupObservers() {
-        viewModel.getSpeed().observe(this, speedText::setText);
-        viewModel.getUnit().observe(this, unitText::setText);
-        viewModel.getMaxSpeed().observe(this, maxSpeedText::setText);
-        viewModel.getDistance().observe(this, distanceText::setText);
-        viewModel.getSatelliteCount().observe(this, satelliteCountText::setText);
-        viewModel.getAverageSpeed().observe(this, avgSpeedText::setText);
-        viewModel.getTripTime().observe(this, tripTimeText::setText);
-        viewModel.getCompassHeading().observe(this, heading -> {
-            compassNeedleImageView.setRotation(-heading);
-            compassHeadingTextView.setText(getDirection(heading));
-        });
+        viewModel.getUiState().observe(this, this::render);
     }
 
-    private void createLocationCallback() {
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(@NonNull LocationResult locationResult) {
-                for (Location location : locationResult.getLocations()) {
-                    if (location.hasSpeed()) {
-                        SharedPreferences sharedPreferences = getSharedPreferences(SettingsDialogFragment.PREFS_NAME, Context.MODE_PRIVATE);
-                        boolean isMetric = sharedPreferences.getBoolean(SettingsDialogFragment.KEY_IS_METRIC, false);
-                        viewModel.onLocationUpdate(location, isMetric);
-                    }
-                }
+    private void render(TripUiState state) {
+        int changed = state.changedSince(renderedState);
+        renderedState = state;
+        if ((changed & TripUiState.SPEED_PROVISIONAL) != 0) {
+            gauge.setSpeedProvisional(state.isSpeedProvisional());
+        }
+        if ((changed & TripUiState.SPEED) != 0) {
+            gauge.setSpeed(state.getSpeed());
+            if (BuildConfig.DEBUG) {
+                latency.onDispatched(SystemClock.elapsedRealtimeNanos());
             }
-        };
+        }
+        if ((changed & TripUiState.UNIT) != 0) {
+            gauge.setUnit(state.getUnit());
+        }
+        if ((changed & TripUiState.MAX_SPEED) != 0) {
+            gauge.setMaxSpeed(state.getMaxSpeed());
+        }
+        if ((changed & TripUiState.DISTANCE) != 0) {
+            gauge.setDistance(state.getDistance());
+        }
+        if ((changed & TripUiState.SATELLITE_COUNT) != 0) {
+            satelliteCountText.setText(state.getSatelliteCount());
+        }
+        if ((changed & TripUiState.AVERAGE_SPEED) != 0) {
+            gauge.setAverageSpeed(state.getAverageSpeed());
+        }
+        if ((changed & TripUiState.TRIP_TIME) != 0) {
+            gauge.setTripTime(state.getTripTime());
+        }
+        if ((changed & TripUiState.COMPASS_HEADING) != 0) {
+            float heading = state.getCompassHeading();
+            gauge.setHeading(heading, getDirection(heading));
+        }
     }
 
-    private void createGnssStatusCallback() {
-        gnssStatusCallback = new GnssStatus.Callback() {
-            @Override
-            public void onSatelliteStatusChanged(@NonNull GnssStatus status) {
-                int satelliteCount = status.getSatelliteCount();
-                int usedInFixCount = 0;
-                for (int i = 0; i < satelliteCount; i++) {
-                    if (status.usedInFix(i)) {
-                        usedInFixCount++;
-                    }
-                }
-                viewModel.onSatelliteStatusChanged(satelliteCount, usedInFixCount);
-            }
-        };
+    @Override
+    protected void onStart() {
+        super.onStart();
+        viewModel.setUiVisible(true);
+        if (BuildConfig.DEBUG) {
+            latencyOverlay.onStart();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Nobody is watching the speed any more; let the receiver batch fixes until we are back.
+        // A rotation is back within a frame, so it keeps the request as it is.
+        if (!isChangingConfigurations()) {
+            viewModel.setUiVisible(false);
+            snapshotStore.save(viewModel.getUiState().getValue());
+        }
+        if (BuildConfig.DEBUG) {
+            latencyOverlay.onStop();
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        stopLocationUpdates();
-        sensorManager.unregisterListener(this);
+        if (compassTracker != null) {
+            compassTracker.stop();
+        }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        checkLocationPermission();
-        loadAndApplySettings();
+        // Permission granted from system settings while we were away; never prompt again here.
+        if (!pipelineStarted && hasLocationPermission()) {
+            startLocationPipeline();
+        }
+        if (compassTracker != null) {
+            compassTracker.start();
+        }
+    }
 
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_UI);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (compassTracker != null) {
+            compassTracker.release();
         }
-        if (magnetometer != null) {
-            sensorManager.registerListener(this, magnetometer, SensorManager.SENSOR_DELAY_UI);
+        // Rotations and other recreations keep the service, and with it the fix stream, running.
+        if (isFinishing()) {
+            LocationService.stop(this);
         }
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_dump_latency).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_history) {
+            startActivity(new Intent(this, TripHistoryActivity.class));
+            return true;
+        }
         if (item.getItemId() == R.id.action_settings) {
             new SettingsDialogFragment().show(getSupportFragmentManager(), SettingsDialogFragment.TAG);
             return true;
         }
+        if (BuildConfig.DEBUG && item.getItemId() == R.id.action_dump_latency) {
+            latencyOverlay.dump(this);
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
-    @Override
-    public void onSettingsChanged() {
-        loadAndApplySettings();
-    }
-
-    private void loadAndApplySettings() {
-        SharedPreferences sharedPreferences = getSharedPreferences(SettingsDialogFragment.PREFS_NAME, Context.MODE_PRIVATE);
-        boolean isMetric = sharedPreferences.getBoolean(SettingsDialogFragment.KEY_IS_METRIC, false);
-        boolean keepScreenOn = sharedPreferences.getBoolean(SettingsDialogFragment.KEY_KEEP_SCREEN_ON, false);
-        boolean showSatellites = sharedPreferences.getBoolean(SettingsDialogFragment.KEY_SHOW_SATELLITES, true);
-
-        if (keepScreenOn) {
+    private void applySettings(SpeedCoreSettings settings) {
+        if (settings.isKeepScreenOn()) {
             getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         } else {
             getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         }
 
-        satelliteCountText.setVisibility(showSatellites ? View.VISIBLE : View.GONE);
-        viewModel.onSettingsChanged(isMetric);
+        satelliteCountText.setVisibility(settings.isShowSatellites() ? View.VISIBLE : View.GONE);
+        viewModel.onSettingsChanged(settings);
     }
 
     private String getDirection(float heading) {
@@ -230,78 +307,49 @@ public class MainActivity extends AppCompatActivity implements SettingsDialogFra
         return "";
     }
 
-    private void checkLocationPermission() {
-        if (checkSelfPermission(android.Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            startLocationUpdates();
-        } else {
-            requestPermissions(new String[]{android.Manifest.permission.ACCESS_FINE_LOCATION}, LOCATION_PERMISSION_REQUEST_CODE);
+    private boolean hasLocationPermission() {
+        return checkSelfPermission(android.Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Asks for location, and on API 33+ for notifications, without which the tracking service's
+     * notification is hidden and the user cannot see that location is in use.
+     */
+    private void requestMissingPermissions() {
+        List<String> missing = new ArrayList<>(2);
+        if (!hasLocationPermission()) {
+            missing.add(android.Manifest.permission.ACCESS_FINE_LOCATION);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && checkSelfPermission(android.Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            missing.add(android.Manifest.permission.POST_NOTIFICATIONS);
+        }
+        if (!missing.isEmpty()) {
+            requestPermissions(missing.toArray(new String[0]), PERMISSIONS_REQUEST_CODE);
         }
     }
 
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-        if (requestCode == LOCATION_PERMISSION_REQUEST_CODE) {
-            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                startLocationUpdates();
+        if (requestCode == PERMISSIONS_REQUEST_CODE && grantResults.length > 0) {
+            // The request may have been for notifications alone.
+            if (hasLocationPermission()) {
+                if (!pipelineStarted) {
+                    startLocationPipeline();
+                }
             } else {
                 Toast.makeText(this, "Location permission denied. Speedometer cannot function.", Toast.LENGTH_LONG).show();
             }
         }
     }
 
-    private void startLocationUpdates() {
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 1000)
-                .setMinUpdateIntervalMillis(500)
-                .build();
-
-        if (checkSelfPermission(android.Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, getMainLooper());
-                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                                registerGnssStatusCallback();
-                            }        }
-    }
-
-    private void stopLocationUpdates() {
-        fusedLocationClient.removeLocationUpdates(locationCallback);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            unregisterGnssStatusCallback();
-        }
-    }
-
-    @RequiresApi(Build.VERSION_CODES.R)
-    private void registerGnssStatusCallback() {
-        if (checkSelfPermission(android.Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            locationManager.registerGnssStatusCallback(ContextCompat.getMainExecutor(this), gnssStatusCallback);
-        }
-    }
-
-    @RequiresApi(Build.VERSION_CODES.R)
-    private void unregisterGnssStatusCallback() {
-        locationManager.unregisterGnssStatusCallback(gnssStatusCallback);
-    }
-
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            System.arraycopy(event.values, 0, lastAccelerometer, 0, event.values.length);
-            lastAccelerometerSet = true;
-        } else if (event.sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
-            System.arraycopy(event.values, 0, lastMagnetometer, 0, event.values.length);
-            lastMagnetometerSet = true;
-        }
-
-        if (lastAccelerometerSet && lastMagnetometerSet) {
-            SensorManager.getRotationMatrix(rotationMatrix, null, lastAccelerometer, lastMagnetometer);
-            SensorManager.getOrientation(rotationMatrix, orientation);
-            float azimuthInRadians = orientation[0];
-            float azimuthInDegrees = (float) (Math.toDegrees(azimuthInRadians) + 360) % 360;
-            viewModel.onCompassChanged(azimuthInDegrees);
-        }
-    }
-
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not used for this implementation
+    @SuppressLint("MissingPermission") // Only called with the permission granted.
+    private void startLocationPipeline() {
+        pipelineStarted = true;
+        LocationService.start(this);
+        // A cached fix costs nothing and shows a provisional speed while the receiver warms up.
+        LocationServices.getFusedLocationProviderClient(this).getLastLocation()
+                .addOnSuccessListener(this, viewModel::onLastKnownLocation);
     }
 }
@@ -1,178 +1,526 @@
 package com.roman.speedcore;
 
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
-import android.os.Handler;
-import android.os.Looper;
+import android.location.GnssStatus;
+import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.google.android.gms.location.Priority;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MainViewModel extends ViewModel {
 
-    private final MutableLiveData<String> speed = new MutableLiveData<>();
-    private final MutableLiveData<String> unit = new MutableLiveData<>();
-    private final MutableLiveData<String> maxSpeed = new MutableLiveData<>();
-    private final MutableLiveData<String> distance = new MutableLiveData<>();
-    private final MutableLiveData<String> satelliteCount = new MutableLiveData<>();
-    private final MutableLiveData<String> averageSpeed = new MutableLiveData<>();
-    private final MutableLiveData<String> tripTime = new MutableLiveData<>();
-    private final MutableLiveData<Float> compassHeading = new MutableLiveData<>();
-
-    private float maxSpeedValue = 0f;
-    private float distanceValue = 0f;
-    private android.location.Location lastLocation;
-    private long startTime = 0L;
-
-    private final MovingAverage speedMovingAverage = new MovingAverage(5);
-    private final MovingAverage.CircularMovingAverage compassMovingAverage = new MovingAverage.CircularMovingAverage(10);
-
-    private Handler handler = new Handler(Looper.getMainLooper());
-    private Runnable timerRunnable = new Runnable() {
+    /** A cached last location older than this says nothing useful about the current speed. */
+    static final long PROVISIONAL_MAX_AGE_NANOS = 30_000_000_000L;
+
+    private final MutableLiveData<TripUiState> uiState = new MutableLiveData<>();
+    private final MotionStateMachine motionStateMachine = new MotionStateMachine();
+    private final MutableLiveData<MotionState> motionState = new MutableLiveData<>(motionStateMachine.getState());
+    private final TripUiState.Builder pendingState = new TripUiState.Builder();
+    private final MutableLiveData<TripStatistics.Snapshot> statistics = new MutableLiveData<>();
+
+    private TripTracker tripTracker = new TripTracker();
+    private final TripFormatter formatter = new TripFormatter();
+    private SpeedCoreSettings settings = SpeedCoreSettings.DEFAULTS;
+    private final GnssQuality gnssQuality = new GnssQuality();
+    private final StringBuilder satelliteText = new StringBuilder();
+
+    private TripJournalRecorder journalRecorder;
+    private TripHistoryRecorder historyRecorder;
+    // Fixes that arrive while the journal is being read are applied once the trip is restored.
+    private List<Location> fixesDuringRestore;
+    private boolean resetDuringRestore = false;
+    private boolean seededFromSnapshot = false;
+    // Until the first live fix within the accuracy gate, the speed shown is marked provisional.
+    private boolean hasLiveFix = false;
+
+    private LocationHub locationHub;
+    private boolean uiVisible = true;
+    private final LocationHub.Consumer fixConsumer = new LocationHub.Consumer() {
         @Override
-        public void run() {
-            if (startTime > 0) {
-                long elapsedTime = System.currentTimeMillis() - startTime;
-                tripTime.setValue(formatTime(elapsedTime));
-                handler.postDelayed(this, 1000);
-            }
+        public void onLocations(List<Location> locations) {
+            onLocationBatch(locations);
+        }
+
+        @Override
+        public void onGnssStatus(GnssStatus status) {
+            MainViewModel.this.onGnssStatus(status);
+        }
+    };
+
+    private final MonotonicClock clock;
+    private final TickScheduler ticks;
+    // Debug builds only; null in release, where every use is behind BuildConfig.DEBUG.
+    private final FixLatencyRecorder latency = BuildConfig.DEBUG ? new FixLatencyRecorder() : null;
+    // Subscribed ahead of the trip, so a fix is marked received before it is processed.
+    private final LocationHub.Consumer latencyConsumer = locations -> {
+        if (!locations.isEmpty()) {
+            // The newest fix is the one whose speed gets drawn.
+            long fixNanos = locations.get(locations.size() - 1).getElapsedRealtimeNanos();
+            latency.onReceived(fixNanos, clock.elapsedRealtimeNanos());
         }
     };
 
-    public LiveData<String> getSpeed() {
-        return speed;
+    public MainViewModel() {
+        this(SystemClock::elapsedRealtimeNanos);
+    }
+
+    /** Runs every timed readout, trip time and fix ages off {@code clock}. */
+    MainViewModel(MonotonicClock clock) {
+        this.clock = clock;
+        ticks = new TickScheduler(clock);
+        ticks.addListener(this::onTick);
+    }
+
+    private void onTick(long nowNanos) {
+        if (!tripTracker.isStarted()) {
+            return;
+        }
+        pendingState.setTripTime(formatTime(tripTracker.getElapsedMillis(nowNanos, System.currentTimeMillis())));
+        publishState();
+        publishStatistics();
+    }
+
+    public LiveData<TripUiState> getUiState() {
+        return uiState;
+    }
+
+    /**
+     * Drives trip time and the statistics once a second, while a trip is running and the UI
+     * observing it is started; register it with that UI's lifecycle.
+     */
+    public TickScheduler getTickScheduler() {
+        return ticks;
+    }
+
+    /**
+     * Fix-to-pixel latency spans, which outlive the activity with the view model; {@code null} in
+     * release builds.
+     */
+    @Nullable
+    public FixLatencyRecorder getLatencyRecorder() {
+        return latency;
     }
 
-    public LiveData<String> getUnit() {
-        return unit;
+    /**
+     * Speed percentiles, speed-band times, moving time and rolling averages of the current trip,
+     * refreshed once a second while a trip is running rather than on every fix.
+     */
+    public LiveData<TripStatistics.Snapshot> getStatistics() {
+        return statistics;
     }
 
-    public LiveData<String> getMaxSpeed() {
-        return maxSpeed;
+    /**
+     * Starts journalling the trip to {@code journalFile} and its path to {@code trackFile}, first
+     * restoring whatever trip a previous process left there. Only the first call has any effect.
+     */
+    public void attachJournal(File journalFile, File trackFile) {
+        if (journalRecorder != null) {
+            return;
+        }
+        journalRecorder = new TripJournalRecorder(journalFile, trackFile);
+        fixesDuringRestore = new ArrayList<>();
+        journalRecorder.restore(settings, this::onTripRestored);
+    }
+
+    /**
+     * Records every trip into {@code database}, continuing the restored trip if a previous process
+     * was recording it. Only the first call has any effect.
+     */
+    public void attachHistory(TripHistoryDatabase database) {
+        if (historyRecorder != null) {
+            return;
+        }
+        historyRecorder = new TripHistoryRecorder(database);
+        if (fixesDuringRestore == null) {
+            historyRecorder.open(tripTracker.getStartTime());
+        }
+    }
+
+    private void onTripRestored(TripTracker restored) {
+        if (restored != null && !resetDuringRestore) {
+            tripTracker = restored;
+            tripTracker.configure(settings.getSpeedSmoothingWindow(), settings.getMaxAccuracyMeters());
+            stageTrip(TripTracker.CHANGED_SPEED | TripTracker.CHANGED_MAX_SPEED
+                    | TripTracker.CHANGED_DISTANCE | TripTracker.CHANGED_AVERAGE_SPEED);
+            publishState();
+            publishStatistics();
+            ticks.start(tripTracker.getStartTimeNanos());
+        } else if (seededFromSnapshot && !resetDuringRestore && !tripTracker.isStarted()) {
+            // The snapshot outlived the trip it showed; the journal knows better.
+            boolean isMetric = settings.isMetric();
+            pendingState.setMaxSpeed(formatMaxSpeed(0, isMetric))
+                    .setDistance(formatDistance(0, isMetric))
+                    .setAverageSpeed(formatAverageSpeed(0, isMetric))
+                    .setTripTime(formatTime(0L));
+            publishState();
+        }
+        if (historyRecorder != null) {
+            historyRecorder.open(tripTracker.getStartTime());
+        }
+        List<Location> pending = fixesDuringRestore;
+        fixesDuringRestore = null;
+        boolean wasStarted = tripTracker.isStarted();
+        MotionState motionBefore = motionStateMachine.getState();
+        int changed = 0;
+        for (Location location : pending) {
+            changed |= applyFix(location);
+        }
+        if (changed != 0) {
+            publishTrip(changed, wasStarted, motionBefore);
+        }
     }
 
-    public LiveData<String> getDistance() {
-        return distance;
+    /**
+     * Feeds the trip from {@code hub}'s fixes and satellite reports, and drives its location
+     * request from the motion state, the settings and {@link #setUiVisible}. Only the first call
+     * has any effect; the subscription ends with the view model.
+     */
+    public void attachLocationHub(LocationHub hub) {
+        if (locationHub != null) {
+            return;
+        }
+        locationHub = hub;
+        if (BuildConfig.DEBUG) {
+            hub.subscribe(latencyConsumer);
+        }
+        hub.subscribe(fixConsumer);
+        updateLocationRequest();
+    }
+
+    /**
+     * Whether anyone is looking at the trip. While nobody is, fixes may be batched up to
+     * {@link MotionStateMachine#getMaxUpdateDelayMillis}.
+     */
+    public void setUiVisible(boolean visible) {
+        uiVisible = visible;
+        updateLocationRequest();
+    }
+
+    private void updateLocationRequest() {
+        if (locationHub == null) {
+            return;
+        }
+        long gpsIntervalMillis = settings.getGpsIntervalMillis();
+        locationHub.setRequest(motionStateMachine.getIntervalMillis(gpsIntervalMillis),
+                motionStateMachine.isHighAccuracy() ? Priority.PRIORITY_HIGH_ACCURACY : Priority.PRIORITY_BALANCED_POWER_ACCURACY,
+                motionStateMachine.getMaxUpdateDelayMillis(gpsIntervalMillis, uiVisible, settings.isLowPowerMode()));
+    }
+
+    /**
+     * Shows the readouts a previous process left in its snapshot, with a provisional zero speed,
+     * until the journal has restored the trip itself. Ignored unless the journal is still being
+     * read and nothing live has been shown yet.
+     */
+    public void seedFromSnapshot(String maxSpeed, String distance, @Nullable String averageSpeed,
+                                 @Nullable String tripTime) {
+        if (fixesDuringRestore == null || hasLiveFix || tripTracker.isStarted()) {
+            return;
+        }
+        seededFromSnapshot = true;
+        pendingState.setSpeed(formatter.formatSpeed(0f))
+                .setSpeedProvisional(true)
+                .setMaxSpeed(maxSpeed)
+                .setDistance(distance);
+        if (averageSpeed != null) {
+            pendingState.setAverageSpeed(averageSpeed);
+        }
+        if (tripTime != null) {
+            pendingState.setTripTime(tripTime);
+        }
+        publishState();
     }
 
-    public LiveData<String> getSatelliteCount() {
-        return satelliteCount;
+    /**
+     * Shows the speed of a cached last-known location, marked provisional, until the first live
+     * fix arrives. Nothing reaches the trip; stale or speedless locations are ignored.
+     */
+    public void onLastKnownLocation(@Nullable Location location) {
+        if (location == null || hasLiveFix || !location.hasSpeed()
+                || clock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos() > PROVISIONAL_MAX_AGE_NANOS) {
+            return;
+        }
+        float speed = TripTracker.toDisplaySpeed(location.getSpeed(), settings.isMetric());
+        pendingState.setSpeed(formatter.formatSpeed(speed)).setSpeedProvisional(true);
+        publishState();
     }
 
-    public LiveData<String> getAverageSpeed() {
-        return averageSpeed;
+    /** Changes only on motion state transitions. */
+    public LiveData<MotionState> getMotionState() {
+        return motionState;
     }
 
-    public LiveData<String> getTripTime() {
-        return tripTime;
+    /** Fix interval and priority inputs for the current motion state. */
+    public MotionStateMachine getMotionStateMachine() {
+        return motionStateMachine;
     }
 
-    public LiveData<Float> getCompassHeading() {
-        return compassHeading;
+    public void onMotionVariance(float variance) {
+        if (motionStateMachine.onAccelerometerVariance(variance, clock.elapsedRealtimeNanos() / 1_000_000L)) {
+            motionState.setValue(motionStateMachine.getState());
+            updateLocationRequest();
+        }
     }
 
+    /** Receives an already smoothed and throttled heading from {@link CompassTracker}. */
     public void onCompassChanged(float heading) {
-        compassMovingAverage.add(heading);
-        float smoothedHeading = compassMovingAverage.getAverage();
-        compassHeading.setValue(smoothedHeading);
+        pendingState.setCompassHeading(heading);
+        publishState();
     }
 
-    public void onLocationUpdate(android.location.Location location, boolean isMetric) {
-        if (location.getAccuracy() > 20) {
+    /**
+     * Folds one fix into the trip and publishes the result. A fix without a speed only reaches the
+     * motion state: its {@code getSpeed()} of 0 is no measurement, and would drag the filter down.
+     */
+    public void onLocationUpdate(Location location) {
+        MotionState motionBefore = motionStateMachine.getState();
+        onMotionPosition(location);
+        if (!location.hasSpeed()) {
+            publishMotion(motionBefore);
             return;
         }
+        if (fixesDuringRestore != null) {
+            fixesDuringRestore.add(location);
+            publishMotion(motionBefore);
+            return;
+        }
+        boolean wasStarted = tripTracker.isStarted();
+        int changed = applyFix(location);
+        if (changed != 0) {
+            publishTrip(changed, wasStarted, motionBefore);
+        } else {
+            publishMotion(motionBefore);
+        }
+    }
+
+    /**
+     * Folds a batch of fixes, oldest first, into the trip in one pass and publishes the result
+     * once, as {@link #onLocationUpdate} would after the last of them. Fixes without a speed only
+     * reach the motion state, which balanced-power fixes at rest often are.
+     */
+    public void onLocationBatch(List<Location> locations) {
+        boolean restoring = fixesDuringRestore != null;
+        boolean wasStarted = tripTracker.isStarted();
+        MotionState motionBefore = motionStateMachine.getState();
+        int changed = 0;
+        for (int i = 0, n = locations.size(); i < n; i++) {
+            Location location = locations.get(i);
+            onMotionPosition(location);
+            if (!location.hasSpeed()) {
+                continue;
+            }
+            if (restoring) {
+                fixesDuringRestore.add(location);
+            } else {
+                changed |= applyFix(location);
+            }
+        }
+        if (changed != 0) {
+            publishTrip(changed, wasStarted, motionBefore);
+        } else {
+            publishMotion(motionBefore);
+        }
+    }
+
+    /** Lets any fix wake the motion state from STILL, speed or not; see {@link MotionStateMachine#onPosition}. */
+    private void onMotionPosition(Location location) {
+        motionStateMachine.onPosition(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : Float.NaN,
+                location.getElapsedRealtimeNanos() / 1_000_000L);
+    }
+
+    /** Feeds one fix to the trip, journal and motion state; returns the trip's change flags. */
+    private int applyFix(Location location) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        float speed = location.getSpeed();
+        float bearing = location.hasBearing() ? location.getBearing() : Float.NaN;
+        float accuracy = location.getAccuracy();
+        float speedAccuracy = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && location.hasSpeedAccuracy()
+                ? location.getSpeedAccuracyMetersPerSecond() : Float.NaN;
+        long fixTimeNanos = location.getElapsedRealtimeNanos();
+        // A batched fix can be up to a minute old; date it by its own age rather than by delivery.
+        long nowNanos = clock.elapsedRealtimeNanos();
+        long ageMillis = Math.max(0L, (nowNanos - fixTimeNanos) / 1_000_000L);
+        long fixMillis = System.currentTimeMillis() - ageMillis;
+        float accuracyGate = gnssQuality.getAccuracyGateMeters(settings.getMaxAccuracyMeters(), fixTimeNanos);
+        tripTracker.setMaxAccuracyMeters(accuracyGate);
+        int changed = tripTracker.onFix(latitude, longitude, speed, bearing, accuracy, speedAccuracy, fixTimeNanos, fixMillis);
+        if (changed == 0) {
+            return 0;
+        }
+        // The tracker takes fixes of any accuracy; only one the gate would trust ends the
+        // provisional readout, not e.g. a coarse network fix while the receiver warms up.
+        if (!(accuracy > accuracyGate)) {
+            hasLiveFix = true;
+        }
+        if (journalRecorder != null) {
+            journalRecorder.onFix(tripTracker, latitude, longitude, speed, bearing, accuracy, speedAccuracy,
+                    fixTimeNanos, fixMillis);
+        }
+        if (historyRecorder != null) {
+            historyRecorder.onFix(tripTracker, speed, accuracy, fixMillis);
+        }
+        motionStateMachine.onSpeed(tripTracker.getSmoothedSpeed(), nowNanos / 1_000_000L - ageMillis);
+        return changed;
+    }
+
+    private void publishMotion(MotionState motionBefore) {
+        if (motionStateMachine.getState() != motionBefore) {
+            motionState.setValue(motionStateMachine.getState());
+            updateLocationRequest();
+        }
+    }
 
-        if (startTime == 0L) {
-            startTime = System.currentTimeMillis();
-            handler.post(timerRunnable);
+    private void publishTrip(int changed, boolean wasStarted, MotionState motionBefore) {
+        publishMotion(motionBefore);
+
+        if (!wasStarted) {
+            ticks.start(tripTracker.getStartTimeNanos());
         }
 
-        float speedInMetersPerSecond = location.getSpeed();
-        float currentSpeed = speedInMetersPerSecond * (isMetric ? 3.6f : 2.23694f);
+        stageTrip(changed);
+        if (BuildConfig.DEBUG) {
+            latency.onProcessed(clock.elapsedRealtimeNanos());
+        }
+        publishState();
+    }
 
-        speedMovingAverage.add(currentSpeed);
-        float smoothedSpeed = speedMovingAverage.getAverage();
-        speed.setValue(String.valueOf(Math.round(smoothedSpeed)));
+    private void stageTrip(int changed) {
+        boolean isMetric = settings.isMetric();
+        pendingState.setSpeed(formatter.formatSpeed(TripTracker.toDisplaySpeed(tripTracker.getSmoothedSpeed(), isMetric)))
+                .setSpeedProvisional(!hasLiveFix);
 
-        if (currentSpeed > maxSpeedValue) {
-            maxSpeedValue = currentSpeed;
-            maxSpeed.setValue(formatMaxSpeed(maxSpeedValue, isMetric));
+        if ((changed & TripTracker.CHANGED_MAX_SPEED) != 0) {
+            pendingState.setMaxSpeed(formatMaxSpeed(TripTracker.toDisplaySpeed(tripTracker.getMaxSpeed(), isMetric), isMetric));
         }
 
-        if (lastLocation != null) {
-            distanceValue += location.distanceTo(lastLocation);
-            distance.setValue(formatDistance(distanceValue / (isMetric ? 1000 : 1609.34), isMetric));
+        if ((changed & TripTracker.CHANGED_DISTANCE) != 0) {
+            pendingState.setDistance(formatDistance(TripTracker.toDisplayDistance(tripTracker.getDistance(), isMetric), isMetric));
         }
-        lastLocation = location;
 
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        if (elapsedTime > 0) {
-            float avgSpeedValue = (distanceValue / (elapsedTime / 1000f)) * (isMetric ? 3.6f : 2.23694f);
-            averageSpeed.setValue(formatAverageSpeed(avgSpeedValue, isMetric));
+        if ((changed & TripTracker.CHANGED_AVERAGE_SPEED) != 0) {
+            pendingState.setAverageSpeed(formatAverageSpeed(TripTracker.toDisplaySpeed(tripTracker.getAverageSpeed(), isMetric), isMetric));
         }
     }
 
-    public void onSatelliteStatusChanged(int satelliteCountValue, int usedInFixCount) {
-        satelliteCount.setValue(String.format(java.util.Locale.getDefault(), "Satellites: %d (%d used)", satelliteCountValue, usedInFixCount));
+    /**
+     * Reads a satellite status report into the sky quality that gates distance. The satellites
+     * readout is only rebuilt and published when it would read differently.
+     */
+    public void onGnssStatus(GnssStatus status) {
+        int count = status.getSatelliteCount();
+        gnssQuality.setSatelliteCount(count);
+        for (int i = 0; i < count; i++) {
+            gnssQuality.setSatellite(i, status.getConstellationType(i), status.getCn0DbHz(i), status.usedInFix(i));
+        }
+        if (gnssQuality.update(clock.elapsedRealtimeNanos())) {
+            satelliteText.setLength(0);
+            gnssQuality.appendSummary(satelliteText);
+            pendingState.setSatelliteCount(satelliteText.toString());
+            publishState();
+        }
     }
 
-    public void onSettingsChanged(boolean isMetric) {
-        unit.setValue(isMetric ? "km/h" : "mph");
-        maxSpeed.setValue(formatMaxSpeed(maxSpeedValue, isMetric));
-        distance.setValue(formatDistance(distanceValue / (isMetric ? 1000 : 1609.34), isMetric));
+    /** The sky as of the last satellite status report. */
+    public GnssQuality getGnssQuality() {
+        return gnssQuality;
+    }
+
+    public void onSettingsChanged(SpeedCoreSettings settings) {
+        this.settings = settings;
+        tripTracker.configure(settings.getSpeedSmoothingWindow(), settings.getMaxAccuracyMeters());
+        updateLocationRequest();
+        boolean isMetric = settings.isMetric();
+        pendingState.setUnit(isMetric ? "km/h" : "mph")
+                .setMaxSpeed(formatMaxSpeed(TripTracker.toDisplaySpeed(tripTracker.getMaxSpeed(), isMetric), isMetric))
+                .setDistance(formatDistance(TripTracker.toDisplayDistance(tripTracker.getDistance(), isMetric), isMetric));
+        publishState();
     }
     
     public void resetTrip() {
-        speed.setValue("0");
-        maxSpeedValue = 0f;
-        distanceValue = 0f;
-        lastLocation = null;
-        startTime = 0L;
-        maxSpeed.setValue(formatMaxSpeed(0, false));
-        distance.setValue(formatDistance(0, false));
-        averageSpeed.setValue(formatAverageSpeed(0, false));
-        tripTime.setValue(formatTime(0L));
-        handler.removeCallbacks(timerRunnable);
+        if (historyRecorder != null && tripTracker.isStarted()) {
+            historyRecorder.endTrip(tripTracker.getStartTime());
+        }
+        tripTracker.reset();
+        if (journalRecorder != null) {
+            journalRecorder.reset();
+        }
+        if (fixesDuringRestore != null) {
+            fixesDuringRestore.clear();
+            resetDuringRestore = true;
+        }
+        boolean isMetric = settings.isMetric();
+        pendingState.setSpeed("0")
+                .setSpeedProvisional(!hasLiveFix)
+                .setMaxSpeed(formatMaxSpeed(0, isMetric))
+                .setDistance(formatDistance(0, isMetric))
+                .setAverageSpeed(formatAverageSpeed(0, isMetric))
+                .setTripTime(formatTime(0L));
+        publishState();
+        publishStatistics();
+        ticks.stop();
     }
 
-    public String formatNumber(double value) {
-        if (Math.abs(value - Math.round(value)) < 1e-9) {
-            return String.valueOf((long) Math.round(value));
+    private void publishState() {
+        TripUiState next = pendingState.build(uiState.getValue());
+        if (next != null) {
+            uiState.setValue(next);
         }
-        return String.format(java.util.Locale.getDefault(), "%.1f", value);
+    }
+
+    private void publishStatistics() {
+        statistics.setValue(tripTracker.getStatistics().snapshot());
+    }
+
+    public String formatNumber(double value) {
+        return formatter.formatNumber(value);
     }
 
     public double parseLabeledNumber(String labeled) {
-        java.util.regex.Matcher m = java.util.regex.Pattern.compile("(-?\\d+(?:[.,]\\d+)?+)").matcher(labeled);
-        if (m.find()) {
-            try {
-                return Double.parseDouble(m.group(1).replace(',', '.'));
-            } catch (NumberFormatException ignored) { }
-        }
-        return 0.0;
+        return formatter.parseLabeledNumber(labeled);
     }
-    
+
     public String formatMaxSpeed(double value, boolean isMetric) {
-        return "Max: " + formatNumber(value) + (isMetric ? " km/h" : " mph");
+        return formatter.formatMaxSpeed(value, isMetric);
     }
 
     public String formatDistance(double value, boolean isMetric) {
-        return "Dist: " + formatNumber(value) + (isMetric ? " km" : " mi");
+        return formatter.formatDistance(value, isMetric);
     }
 
     public String formatAverageSpeed(double value, boolean isMetric) {
-        return "Avg: " + formatNumber(value) + (isMetric ? " km/h" : " mph");
+        return formatter.formatAverageSpeed(value, isMetric);
     }
 
     public String formatTime(long milliseconds) {
-        long seconds = (milliseconds / 1000) % 60;
-        long minutes = (milliseconds / (1000 * 60)) % 60;
-        long hours = (milliseconds / (1000 * 60 * 60));
-        return String.format(java.util.Locale.getDefault(), "%02d:%02d:%02d", hours, minutes, seconds);
+        return formatter.formatTime(milliseconds);
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
-        handler.removeCallbacks(timerRunnable);
+        ticks.stop();
+        if (locationHub != null) {
+            locationHub.unsubscribe(fixConsumer);
+            if (BuildConfig.DEBUG) {
+                locationHub.unsubscribe(latencyConsumer);
+            }
+        }
+        if (journalRecorder != null) {
+            journalRecorder.checkpoint(tripTracker);
+            journalRecorder.release();
+        }
+        if (historyRecorder != null) {
+            historyRecorder.release();
+        }
     }
 }
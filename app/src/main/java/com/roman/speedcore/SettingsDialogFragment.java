@@ -1,33 +1,31 @@
 package com.roman.speedcore;
 
 import android.app.Dialog;
-import android.content.Context;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.Switch;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 
+import com.google.android.material.slider.Slider;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
 public class SettingsDialogFragment extends DialogFragment {
 
     public static final String TAG = "SettingsDialogFragment";
-    public static final String PREFS_NAME = "SpeedCorePrefs";
-    public static final String KEY_IS_METRIC = "isMetric";
-    public static final String KEY_KEEP_SCREEN_ON = "keepScreenOn";
-    public static final String KEY_SHOW_SATELLITES = "showSatellites";
 
     private SwitchMaterial switchUnits;
     private SwitchMaterial switchKeepScreenOn;
     private SwitchMaterial switchShowSatellites;
+    private SwitchMaterial switchLowPower;
+    private Slider sliderGpsInterval;
+    private Slider sliderMaxAccuracy;
+    private Slider sliderSmoothingWindow;
 
-    private SharedPreferences sharedPreferences;
+    private SettingsRepository settingsRepository;
 
     @NonNull
     @Override
@@ -36,11 +34,15 @@ public class SettingsDialogFragment extends DialogFragment {
         LayoutInflater inflater = requireActivity().getLayoutInflater();
         View view = inflater.inflate(R.layout.dialog_settings, null);
 
-        sharedPreferences = getActivity().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        settingsRepository = SettingsRepository.getInstance(requireContext());
 
         switchUnits = view.findViewById(R.id.switch_units);
         switchKeepScreenOn = view.findViewById(R.id.switch_keep_screen_on);
         switchShowSatellites = view.findViewById(R.id.switch_show_satellites);
+        switchLowPower = view.findViewById(R.id.switch_low_power);
+        sliderGpsInterval = view.findViewById(R.id.slider_gps_interval);
+        sliderMaxAccuracy = view.findViewById(R.id.slider_max_accuracy);
+        sliderSmoothingWindow = view.findViewById(R.id.slider_smoothing_window);
 
         loadSettings();
 
@@ -52,28 +54,33 @@ public class SettingsDialogFragment extends DialogFragment {
     }
 
     private void loadSettings() {
-        boolean isMetric = sharedPreferences.getBoolean(KEY_IS_METRIC, false);
-        boolean keepScreenOn = sharedPreferences.getBoolean(KEY_KEEP_SCREEN_ON, false);
-        boolean showSatellites = sharedPreferences.getBoolean(KEY_SHOW_SATELLITES, true);
-
-        switchUnits.setChecked(isMetric);
-        switchKeepScreenOn.setChecked(keepScreenOn);
-        switchShowSatellites.setChecked(showSatellites);
+        SpeedCoreSettings settings = settingsRepository.get();
+
+        switchUnits.setChecked(settings.isMetric());
+        switchKeepScreenOn.setChecked(settings.isKeepScreenOn());
+        switchShowSatellites.setChecked(settings.isShowSatellites());
+        switchLowPower.setChecked(settings.isLowPowerMode());
+        setSnapped(sliderGpsInterval, settings.getGpsIntervalMillis());
+        setSnapped(sliderMaxAccuracy, settings.getMaxAccuracyMeters());
+        setSnapped(sliderSmoothingWindow, settings.getSpeedSmoothingWindow());
     }
 
     private void saveSettings() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(KEY_IS_METRIC, switchUnits.isChecked());
-        editor.putBoolean(KEY_KEEP_SCREEN_ON, switchKeepScreenOn.isChecked());
-        editor.putBoolean(KEY_SHOW_SATELLITES, switchShowSatellites.isChecked());
-        editor.apply();
-
-        if (getActivity() instanceof SettingsDialogListener) {
-            ((SettingsDialogListener) getActivity()).onSettingsChanged();
-        }
+        settingsRepository.save(new SpeedCoreSettings(
+                switchUnits.isChecked(),
+                switchKeepScreenOn.isChecked(),
+                switchShowSatellites.isChecked(),
+                (long) sliderGpsInterval.getValue(),
+                sliderMaxAccuracy.getValue(),
+                (int) sliderSmoothingWindow.getValue(),
+                switchLowPower.isChecked()));
     }
 
-    public interface SettingsDialogListener {
-        void onSettingsChanged();
+    /** Slider throws if the value is off its step grid, so round stored values onto it. */
+    private static void setSnapped(Slider slider, float value) {
+        float from = slider.getValueFrom();
+        float step = slider.getStepSize();
+        float snapped = from + Math.round((value - from) / step) * step;
+        slider.setValue(Math.max(from, Math.min(slider.getValueTo(), snapped)));
     }
-}
\ No newline at end of file
+}
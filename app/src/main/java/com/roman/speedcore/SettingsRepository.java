@@ -0,0 +1,89 @@
+package com.roman.speedcore;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Single source of truth for {@code SpeedCorePrefs}. Preferences are read once into an immutable
+ * {@link SpeedCoreSettings} snapshot, which is replaced whenever the underlying preferences change
+ * and pushed to observers. Hot paths read {@link #get()} instead of touching SharedPreferences.
+ */
+public class SettingsRepository implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    public static final String PREFS_NAME = "SpeedCorePrefs";
+    public static final String KEY_IS_METRIC = "isMetric";
+    public static final String KEY_KEEP_SCREEN_ON = "keepScreenOn";
+    public static final String KEY_SHOW_SATELLITES = "showSatellites";
+    public static final String KEY_GPS_INTERVAL_MILLIS = "gpsIntervalMillis";
+    public static final String KEY_MAX_ACCURACY_METERS = "maxAccuracyMeters";
+    public static final String KEY_SPEED_SMOOTHING_WINDOW = "speedSmoothingWindow";
+    public static final String KEY_LOW_POWER_MODE = "lowPowerMode";
+
+    private static SettingsRepository instance;
+
+    private final SharedPreferences preferences;
+    private final MutableLiveData<SpeedCoreSettings> settings;
+    private volatile SpeedCoreSettings current;
+
+    public static synchronized SettingsRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new SettingsRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SettingsRepository(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        current = read(preferences);
+        settings = new MutableLiveData<>(current);
+        // SharedPreferences only keeps a weak reference; this singleton keeps the listener alive.
+        preferences.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    /** The current snapshot; safe to call from any thread. */
+    public SpeedCoreSettings get() {
+        return current;
+    }
+
+    public LiveData<SpeedCoreSettings> getSettings() {
+        return settings;
+    }
+
+    public void save(SpeedCoreSettings updated) {
+        preferences.edit()
+                .putBoolean(KEY_IS_METRIC, updated.isMetric())
+                .putBoolean(KEY_KEEP_SCREEN_ON, updated.isKeepScreenOn())
+                .putBoolean(KEY_SHOW_SATELLITES, updated.isShowSatellites())
+                .putLong(KEY_GPS_INTERVAL_MILLIS, updated.getGpsIntervalMillis())
+                .putFloat(KEY_MAX_ACCURACY_METERS, updated.getMaxAccuracyMeters())
+                .putInt(KEY_SPEED_SMOOTHING_WINDOW, updated.getSpeedSmoothingWindow())
+                .putBoolean(KEY_LOW_POWER_MODE, updated.isLowPowerMode())
+                .apply();
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        // apply() publishes all keys to memory before notifying, so the first callback of a save
+        // already sees the full update and the rest compare equal.
+        SpeedCoreSettings updated = read(sharedPreferences);
+        if (!updated.equals(current)) {
+            current = updated;
+            settings.setValue(updated);
+        }
+    }
+
+    private static SpeedCoreSettings read(SharedPreferences preferences) {
+        SpeedCoreSettings defaults = SpeedCoreSettings.DEFAULTS;
+        return new SpeedCoreSettings(
+                preferences.getBoolean(KEY_IS_METRIC, defaults.isMetric()),
+                preferences.getBoolean(KEY_KEEP_SCREEN_ON, defaults.isKeepScreenOn()),
+                preferences.getBoolean(KEY_SHOW_SATELLITES, defaults.isShowSatellites()),
+                preferences.getLong(KEY_GPS_INTERVAL_MILLIS, defaults.getGpsIntervalMillis()),
+                preferences.getFloat(KEY_MAX_ACCURACY_METERS, defaults.getMaxAccuracyMeters()),
+                preferences.getInt(KEY_SPEED_SMOOTHING_WINDOW, defaults.getSpeedSmoothingWindow()),
+                preferences.getBoolean(KEY_LOW_POWER_MODE, defaults.isLowPowerMode()));
+    }
+}
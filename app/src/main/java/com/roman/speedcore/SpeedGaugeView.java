@@ -0,0 +1,322 @@
+package com.roman.speedcore;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * The speedometer face: speed digits, unit, trip time, the max, distance and average readouts and
+ * the compass needle, all drawn on one canvas. Every readout sits in a slot fixed when the view is
+ * sized, and its text width comes from glyph widths measured once per paint, so an update only
+ * copies characters and calls {@link #invalidate()}; nothing here ever asks for a layout pass,
+ * however the text changes. The compass needle is rotated at draw time rather than as a view.
+ *
+ * <p>Text is copied into preallocated {@code char} buffers and drawn from them, so neither an
+ * update nor a frame allocates. Setters must be called on the main thread.
+ */
+public class SpeedGaugeView extends View {
+
+    private static final float SPEED_TEXT_SP = 120f;
+    private static final float PRIMARY_TEXT_SP = 20f;
+    private static final float SECONDARY_TEXT_SP = 14f;
+    private static final float COMPASS_DP = 48f;
+    private static final float HEADING_TEXT_SP = 24f;
+    private static final float SECTION_GAP_DP = 24f;
+    /** Opacity of a provisional speed, shown until the first live fix. */
+    private static final int PROVISIONAL_ALPHA = 0x66;
+    /** Room reserved for the widest speed the gauge shows without shrinking: three digits. */
+    private static final int SPEED_SLOT_DIGITS = 3;
+
+    private final Slot speed;
+    private final Slot tripTime;
+    private final Slot unit;
+    private final Slot maxSpeed;
+    private final Slot distance;
+    private final Slot averageSpeed;
+    private final Slot heading;
+    private final Drawable needle;
+    private final float density;
+    private final float scaledDensity;
+    private final int speedAlpha;
+    private boolean speedProvisional;
+    private float headingDegrees;
+    private float compassX;
+    private float compassY;
+    private float compassSize;
+
+    public SpeedGaugeView(Context context) {
+        this(context, null);
+    }
+
+    public SpeedGaugeView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        scaledDensity = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 1f, getResources().getDisplayMetrics());
+        int color = resolveColor(context, com.google.android.material.R.attr.colorOnPrimary, 0xFFFFFFFF);
+
+        speed = new Slot(newPaint(color, SPEED_TEXT_SP, true), "0");
+        speedAlpha = speed.paint.getAlpha();
+        tripTime = new Slot(newPaint(color, PRIMARY_TEXT_SP, false), "00:00:00");
+        unit = new Slot(newPaint(color, PRIMARY_TEXT_SP, false), "mph");
+        maxSpeed = new Slot(newPaint(color, SECONDARY_TEXT_SP, false), "Max: 0 mph");
+        distance = new Slot(newPaint(color, SECONDARY_TEXT_SP, false), "Dist: 0 mi");
+        averageSpeed = new Slot(newPaint(color, SECONDARY_TEXT_SP, false), "Avg: 0 mph");
+        heading = new Slot(newPaint(color, HEADING_TEXT_SP, false), "N");
+
+        needle = ContextCompat.getDrawable(context, R.drawable.ic_compass_needle).mutate();
+        needle.setTint(color);
+    }
+
+    private Paint newPaint(int color, float textSizeSp, boolean bold) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setTextSize(textSizeSp * scaledDensity);
+        paint.setTextAlign(Paint.Align.LEFT);
+        if (bold) {
+            paint.setTypeface(Typeface.DEFAULT_BOLD);
+        }
+        return paint;
+    }
+
+    private static int resolveColor(Context context, int attr, int fallback) {
+        TypedValue value = new TypedValue();
+        if (context.getTheme().resolveAttribute(attr, value, true)) {
+            return value.resourceId != 0 ? ContextCompat.getColor(context, value.resourceId) : value.data;
+        }
+        return fallback;
+    }
+
+    public void setSpeed(String text) {
+        if (speed.set(text)) {
+            // Read out by accessibility services in place of the drawn digits.
+            setContentDescription(text);
+            invalidate();
+        }
+    }
+
+    /** Dims the speed while it is a stand-in for a live one, e.g. from a cached location. */
+    public void setSpeedProvisional(boolean provisional) {
+        if (provisional != speedProvisional) {
+            speedProvisional = provisional;
+            speed.paint.setAlpha(provisional ? PROVISIONAL_ALPHA : speedAlpha);
+            invalidate();
+        }
+    }
+
+    public void setTripTime(String text) {
+        update(tripTime, text);
+    }
+
+    public void setUnit(String text) {
+        update(unit, text);
+    }
+
+    public void setMaxSpeed(String text) {
+        update(maxSpeed, text);
+    }
+
+    public void setDistance(String text) {
+        update(distance, text);
+    }
+
+    public void setAverageSpeed(String text) {
+        update(averageSpeed, text);
+    }
+
+    /** Points the needle at {@code degrees} and labels it {@code direction}, e.g. "NE". */
+    public void setHeading(float degrees, String direction) {
+        boolean changed = heading.set(direction);
+        if (changed || degrees != headingDegrees) {
+            headingDegrees = degrees;
+            invalidate();
+        }
+    }
+
+    private void update(Slot slot, String text) {
+        if (slot.set(text)) {
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        fitSpeedText(width - getPaddingLeft() - getPaddingRight());
+        float contentHeight = lineHeight(speed.paint) + lineHeight(tripTime.paint) + lineHeight(unit.paint)
+                + SECTION_GAP_DP * density + lineHeight(maxSpeed.paint);
+        int desiredHeight = (int) Math.ceil(contentHeight) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(desiredHeight, heightMeasureSpec));
+    }
+
+    /** Sizes the digits once per measure, shrinking them if three would run into the compass. */
+    private void fitSpeedText(float contentWidth) {
+        Paint speedPaint = speed.paint;
+        speedPaint.setTextSize(SPEED_TEXT_SP * scaledDensity);
+        speed.measureGlyphs();
+        float speedSlot = contentWidth - 2f * COMPASS_DP * density;
+        float widestSpeed = SPEED_SLOT_DIGITS * speed.widestDigit();
+        if (widestSpeed > speedSlot && speedSlot > 0) {
+            speedPaint.setTextSize(speedPaint.getTextSize() * speedSlot / widestSpeed);
+            speed.measureGlyphs();
+        }
+    }
+
+    private static float lineHeight(Paint paint) {
+        return paint.descent() - paint.ascent();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float width = w - getPaddingLeft() - getPaddingRight();
+        float centreX = left + width / 2f;
+
+        compassSize = COMPASS_DP * density;
+        compassX = left;
+        compassY = top;
+        needle.setBounds((int) compassX, (int) compassY, (int) (compassX + compassSize), (int) (compassY + compassSize));
+        heading.place(left, left + compassSize, top + compassSize - heading.paint.ascent());
+
+        Paint speedPaint = speed.paint;
+        float speedSlot = width - 2f * compassSize;
+        float baseline = top - speedPaint.ascent();
+        speed.place(centreX - speedSlot / 2f, centreX + speedSlot / 2f, baseline);
+        baseline += speedPaint.descent() - tripTime.paint.ascent();
+        tripTime.place(left, left + width, baseline);
+        baseline += tripTime.paint.descent() - unit.paint.ascent();
+        unit.place(left, left + width, baseline);
+        baseline += unit.paint.descent() + SECTION_GAP_DP * density - maxSpeed.paint.ascent();
+        float third = width / 3f;
+        maxSpeed.place(left, left + third, baseline);
+        distance.place(left + third, left + 2f * third, baseline);
+        averageSpeed.place(left + 2f * third, left + width, baseline);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        speed.draw(canvas);
+        tripTime.draw(canvas);
+        unit.draw(canvas);
+        maxSpeed.draw(canvas);
+        distance.draw(canvas);
+        averageSpeed.draw(canvas);
+
+        int save = canvas.save();
+        canvas.rotate(-headingDegrees, compassX + compassSize / 2f, compassY + compassSize / 2f);
+        needle.draw(canvas);
+        canvas.restoreToCount(save);
+        heading.draw(canvas);
+    }
+
+    /**
+     * One readout: its paint, the characters it shows and the box it is centred in. Widths of the
+     * printable ASCII glyphs are measured once per text size; anything else, such as non-Latin
+     * digits, is measured directly when it is set.
+     */
+    private static final class Slot {
+        private static final int FIRST_GLYPH = 0x20;
+        private static final int LAST_GLYPH = 0x7E;
+        private static final String GLYPHS;
+
+        static {
+            StringBuilder glyphs = new StringBuilder();
+            for (char c = FIRST_GLYPH; c <= LAST_GLYPH; c++) {
+                glyphs.append(c);
+            }
+            GLYPHS = glyphs.toString();
+        }
+
+        final Paint paint;
+        private final float[] glyphWidths = new float[LAST_GLYPH - FIRST_GLYPH + 1];
+        private char[] chars = new char[32];
+        private int length;
+        private float textWidth;
+        private float slotLeft;
+        private float slotRight;
+        private float x;
+        private float baseline;
+
+        Slot(Paint paint, String initial) {
+            this.paint = paint;
+            measureGlyphs();
+            set(initial);
+        }
+
+        void measureGlyphs() {
+            paint.getTextWidths(GLYPHS, glyphWidths);
+            measure();
+        }
+
+        float widestDigit() {
+            float widest = 0f;
+            for (char c = '0'; c <= '9'; c++) {
+                widest = Math.max(widest, glyphWidths[c - FIRST_GLYPH]);
+            }
+            return widest;
+        }
+
+        /** Shows {@code text}; returns whether it differs from what was shown. */
+        boolean set(String text) {
+            int n = text.length();
+            if (n == length && sameAs(text)) {
+                return false;
+            }
+            if (n > chars.length) {
+                chars = new char[Math.max(n, chars.length * 2)];
+            }
+            text.getChars(0, n, chars, 0);
+            length = n;
+            measure();
+            return true;
+        }
+
+        private boolean sameAs(String text) {
+            for (int i = 0; i < length; i++) {
+                if (chars[i] != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void measure() {
+            float width = 0f;
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                if (c < FIRST_GLYPH || c > LAST_GLYPH) {
+                    width = paint.measureText(chars, 0, length);
+                    break;
+                }
+                width += glyphWidths[c - FIRST_GLYPH];
+            }
+            textWidth = width;
+            centre();
+        }
+
+        void place(float left, float right, float baseline) {
+            slotLeft = left;
+            slotRight = right;
+            this.baseline = baseline;
+            centre();
+        }
+
+        private void centre() {
+            x = (slotLeft + slotRight - textWidth) / 2f;
+        }
+
+        void draw(Canvas canvas) {
+            canvas.drawText(chars, 0, length, x, baseline, paint);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.roman.speedcore;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The one clock tick behind every time-based readout. Ticks fall on whole seconds after an origin,
+ * normally the trip's first fix, measured on a {@link MonotonicClock}; each delay is worked out
+ * afresh from the clock, so ticks neither drift nor follow wall-clock changes. Ticking only runs
+ * while the origin is set and the UI is started, so the main looper is left alone while nothing
+ * is shown; on becoming visible again listeners get an immediate catch-up tick.
+ */
+public class TickScheduler implements DefaultLifecycleObserver {
+
+    public interface Listener {
+        /** Called on the main thread with the monotonic time of the tick. */
+        void onTick(long nowNanos);
+    }
+
+    static final long TICK_NANOS = 1_000_000_000L;
+
+    private final MonotonicClock clock;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private boolean running = false;
+    private boolean visible = false;
+    private long originNanos;
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long nowNanos = clock.elapsedRealtimeNanos();
+            for (int i = 0, n = listeners.size(); i < n; i++) {
+                listeners.get(i).onTick(nowNanos);
+            }
+            handler.postDelayed(this, delayUntilNextTickMillis(originNanos, clock.elapsedRealtimeNanos()));
+        }
+    };
+
+    public TickScheduler(MonotonicClock clock) {
+        this.clock = clock;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Starts ticking on whole seconds after {@code originNanos}, replacing any earlier origin. */
+    public void start(long originNanos) {
+        this.originNanos = originNanos;
+        running = true;
+        reschedule();
+    }
+
+    public void stop() {
+        running = false;
+        handler.removeCallbacks(tickRunnable);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        setVisible(true);
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        setVisible(false);
+    }
+
+    /** Whether anything is showing the ticks; lifecycle callbacks set this for an observed UI. */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        reschedule();
+    }
+
+    private void reschedule() {
+        handler.removeCallbacks(tickRunnable);
+        if (running && visible) {
+            handler.post(tickRunnable);
+        }
+    }
+
+    /**
+     * Milliseconds from {@code nowNanos} until the next whole second after {@code originNanos},
+     * rounded up so the tick never lands just short of the boundary.
+     */
+    static long delayUntilNextTickMillis(long originNanos, long nowNanos) {
+        long intoTick = Math.floorMod(nowNanos - originNanos, TICK_NANOS);
+        return (TICK_NANOS - intoTick + 999_999L) / 1_000_000L;
+    }
+}
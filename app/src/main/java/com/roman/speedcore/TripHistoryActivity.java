@@ -0,0 +1,293 @@
+package com.roman.speedcore;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.appbar.MaterialToolbar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Lists past trips, newest first, from their summary rows. Trips are read a page at a time on a
+ * background thread as the list nears its end, each page keyed on the last start time shown. A
+ * page the database fails to return is logged and reported, and asked for again on the next scroll.
+ *
+ * <p>Tapping a trip exports its track as GPX or CSV on the same thread, streamed from the
+ * database straight into a file in the cache, and offers the file to other apps through
+ * {@link FileProvider}, so the track is never copied into memory or onto shared storage.
+ */
+public class TripHistoryActivity extends AppCompatActivity {
+
+    private static final String TAG = "TripHistoryActivity";
+
+    static final int PAGE_SIZE = 30;
+    /** Rows left below the last visible one when the next page is requested. */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /** Cache subdirectory shared through the provider declared in the manifest. */
+    static final String EXPORT_DIRECTORY = "exports";
+    static final String EXPORT_AUTHORITY_SUFFIX = ".exports";
+
+    private TripHistoryDatabase database;
+    private HandlerThread pageThread;
+    private Handler pageHandler;
+    /** One per format, used only on the page thread. */
+    private final TrackExporter[] exporters = new TrackExporter[TrackExporter.Format.values().length];
+
+    private final TripAdapter adapter = new TripAdapter(this::chooseExportFormat);
+    private TextView emptyText;
+    private boolean loading = false;
+    private boolean endReached = false;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_trip_history);
+
+        MaterialToolbar toolbar = findViewById(R.id.history_app_bar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        SpeedCoreSettings settings = SettingsRepository.getInstance(this).get();
+        adapter.setMetric(settings.isMetric());
+        emptyText = findViewById(R.id.history_empty_text_view);
+
+        RecyclerView list = findViewById(R.id.history_list);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        list.setLayoutManager(layoutManager);
+        list.setAdapter(adapter);
+        list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        database = TripHistoryDatabase.getInstance(this);
+        pageThread = new HandlerThread("TripHistoryPages");
+        pageThread.start();
+        pageHandler = new Handler(pageThread.getLooper());
+        loadNextPage();
+    }
+
+    @Override
+    public boolean onSupportNavigateUp() {
+        finish();
+        return true;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        pageThread.quitSafely();
+    }
+
+    private void loadNextPage() {
+        if (loading || endReached) {
+            return;
+        }
+        loading = true;
+        long before = adapter.getLastStartMillis();
+        pageHandler.post(() -> {
+            List<TripSummary> page = new ArrayList<>(PAGE_SIZE);
+            try {
+                database.queryTrips(before, PAGE_SIZE, page);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "trip page query failed", e);
+                runOnUiThread(this::onPageFailed);
+                return;
+            }
+            runOnUiThread(() -> onPageLoaded(page));
+        });
+    }
+
+    private void onPageLoaded(List<TripSummary> page) {
+        if (isDestroyed()) {
+            return;
+        }
+        loading = false;
+        endReached = page.size() < PAGE_SIZE;
+        adapter.append(page);
+        emptyText.setText(R.string.history_empty);
+        emptyText.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /** Leaves the list as it was, so scrolling asks for the page again. */
+    private void onPageFailed() {
+        if (isDestroyed()) {
+            return;
+        }
+        loading = false;
+        if (adapter.getItemCount() == 0) {
+            emptyText.setText(R.string.history_load_failed);
+            emptyText.setVisibility(View.VISIBLE);
+        } else {
+            Toast.makeText(this, R.string.history_load_failed, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void chooseExportFormat(TripSummary trip) {
+        String name = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT)
+                .format(new Date(trip.getStartMillis()));
+        TrackExporter.Format[] formats = TrackExporter.Format.values();
+        CharSequence[] labels = new CharSequence[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            labels[i] = getString(R.string.export_format, formats[i].name());
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_title)
+                .setItems(labels, (dialog, which) -> exportTrip(trip, name, formats[which]))
+                .show();
+    }
+
+    private void exportTrip(TripSummary trip, String name, TrackExporter.Format format) {
+        pageHandler.post(() -> {
+            File file = writeExport(trip, name, format);
+            runOnUiThread(() -> onExportWritten(file, format));
+        });
+    }
+
+    /** Writes the trip's track into the export directory; null if that fails. Page thread only. */
+    private File writeExport(TripSummary trip, String name, TrackExporter.Format format) {
+        File directory = new File(getCacheDir(), EXPORT_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "cannot create " + directory);
+            return null;
+        }
+        TrackExporter exporter = exporters[format.ordinal()];
+        if (exporter == null) {
+            exporter = new TrackExporter(format);
+            exporters[format.ordinal()] = exporter;
+        }
+        File file = new File(directory, "trip-" + trip.getStartMillis() + "." + format.getExtension());
+        try (FileOutputStream out = new FileOutputStream(file); FileChannel channel = out.getChannel()) {
+            database.exportTrip(trip.getId(), name, exporter, channel);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "trip export failed", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void onExportWritten(File file, TrackExporter.Format format) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (file == null) {
+            Toast.makeText(this, R.string.export_failed, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Uri uri = FileProvider.getUriForFile(this, getPackageName() + EXPORT_AUTHORITY_SUFFIX, file);
+        Intent send = new Intent(Intent.ACTION_SEND)
+                .setType(format.getMimeType())
+                .putExtra(Intent.EXTRA_STREAM, uri)
+                .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(send, getString(R.string.export_share_title)));
+    }
+
+    interface OnTripClickListener {
+        void onTripClick(TripSummary trip);
+    }
+
+    private static final class TripAdapter extends RecyclerView.Adapter<TripViewHolder> {
+
+        private final OnTripClickListener clickListener;
+        private final List<TripSummary> trips = new ArrayList<>();
+        private final TripFormatter formatter = new TripFormatter();
+        private final DateFormat startFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+        private final Date date = new Date();
+        private final StringBuilder details = new StringBuilder();
+        private boolean metric;
+
+        TripAdapter(OnTripClickListener clickListener) {
+            this.clickListener = clickListener;
+        }
+
+        void setMetric(boolean metric) {
+            this.metric = metric;
+        }
+
+        /** Start time to page below; the newest trip for an empty list. */
+        long getLastStartMillis() {
+            return trips.isEmpty() ? Long.MAX_VALUE : trips.get(trips.size() - 1).getStartMillis();
+        }
+
+        void append(List<TripSummary> page) {
+            int start = trips.size();
+            trips.addAll(page);
+            notifyItemRangeInserted(start, page.size());
+        }
+
+        @Override
+        public int getItemCount() {
+            return trips.size();
+        }
+
+        @NonNull
+        @Override
+        public TripViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            TripViewHolder holder = new TripViewHolder(LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_trip_history, parent, false));
+            holder.itemView.setOnClickListener(view -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    clickListener.onTripClick(trips.get(position));
+                }
+            });
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull TripViewHolder holder, int position) {
+            TripSummary trip = trips.get(position);
+            date.setTime(trip.getStartMillis());
+            holder.start.setText(startFormat.format(date));
+            details.setLength(0);
+            details.append(formatter.formatTime(trip.getDurationMillis()))
+                    .append("  ")
+                    .append(formatter.formatDistance(TripTracker.toDisplayDistance(trip.getDistanceMeters(), metric), metric))
+                    .append("  ")
+                    .append(formatter.formatMaxSpeed(TripTracker.toDisplaySpeed(trip.getMaxSpeed(), metric), metric));
+            holder.details.setText(details);
+        }
+    }
+
+    private static final class TripViewHolder extends RecyclerView.ViewHolder {
+        final TextView start;
+        final TextView details;
+
+        TripViewHolder(View itemView) {
+            super(itemView);
+            start = itemView.findViewById(R.id.trip_start_text_view);
+            details = itemView.findViewById(R.id.trip_details_text_view);
+        }
+    }
+}
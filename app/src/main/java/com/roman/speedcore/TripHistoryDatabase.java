@@ -0,0 +1,128 @@
+package com.roman.speedcore;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * The trip history database of {@link TripHistorySchema}, shared by the writer and the history
+ * screen. It runs in WAL mode, so the screen's reads never wait for a batch being written, and
+ * with {@code synchronous = NORMAL}: a power cut can lose the last batch, which the trip journal
+ * still holds, but no batch waits on an fsync.
+ */
+public class TripHistoryDatabase extends SQLiteOpenHelper {
+
+    private static TripHistoryDatabase instance;
+
+    public static synchronized TripHistoryDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new TripHistoryDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TripHistoryDatabase(Context context) {
+        super(context, TripHistorySchema.DATABASE_NAME, null, TripHistorySchema.VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.execSQL("PRAGMA synchronous = NORMAL");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        for (String statement : TripHistorySchema.CREATE) {
+            db.execSQL(statement);
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // No older versions yet.
+    }
+
+    /**
+     * Appends up to {@code limit} trips that started before {@code beforeStartMillis} to
+     * {@code out}, newest first; pass {@link Long#MAX_VALUE} for the first page and the last
+     * trip's start time for the next. Call off the main thread.
+     */
+    public void queryTrips(long beforeStartMillis, int limit, List<TripSummary> out) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(TripHistorySchema.QUERY_TRIPS_PAGE,
+                new String[]{Long.toString(beforeStartMillis), Integer.toString(limit)})) {
+            while (cursor.moveToNext()) {
+                out.add(readTrip(cursor));
+            }
+        }
+    }
+
+    /**
+     * Streams the stored track of trip {@code tripId} through {@code exporter} into {@code out},
+     * a cursor window at a time, and returns the number of points. Call off the main thread.
+     */
+    public long exportTrip(long tripId, String name, TrackExporter exporter, WritableByteChannel out)
+            throws IOException {
+        try (Cursor cursor = getReadableDatabase().rawQuery(TripHistorySchema.QUERY_FIXES,
+                new String[]{Long.toString(tripId)})) {
+            return exporter.export(name, new FixCursor(cursor), out);
+        }
+    }
+
+    /** A trip from a cursor over the columns of {@link TripHistorySchema#QUERY_TRIPS_PAGE}. */
+    static TripSummary readTrip(Cursor cursor) {
+        return new TripSummary(cursor.getLong(TripHistorySchema.TRIP_ID),
+                cursor.getLong(TripHistorySchema.TRIP_START_TIME),
+                cursor.getLong(TripHistorySchema.TRIP_END_TIME),
+                cursor.getDouble(TripHistorySchema.TRIP_DISTANCE),
+                cursor.getFloat(TripHistorySchema.TRIP_MAX_SPEED),
+                cursor.getFloat(TripHistorySchema.TRIP_AVERAGE_SPEED),
+                cursor.getInt(TripHistorySchema.TRIP_FIX_COUNT));
+    }
+
+    /** The rows of {@link TripHistorySchema#QUERY_FIXES} as a track; missing values read as NaN. */
+    private static final class FixCursor implements TrackCursor {
+        private final Cursor cursor;
+
+        FixCursor(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean next() {
+            return cursor.moveToNext();
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return cursor.getLong(TripHistorySchema.FIX_TIME);
+        }
+
+        @Override
+        public double getLatitude() {
+            return cursor.getDouble(TripHistorySchema.FIX_LATITUDE);
+        }
+
+        @Override
+        public double getLongitude() {
+            return cursor.getDouble(TripHistorySchema.FIX_LONGITUDE);
+        }
+
+        @Override
+        public float getSpeed() {
+            return cursor.isNull(TripHistorySchema.FIX_SPEED)
+                    ? Float.NaN : cursor.getFloat(TripHistorySchema.FIX_SPEED);
+        }
+
+        @Override
+        public float getAccuracy() {
+            return cursor.isNull(TripHistorySchema.FIX_ACCURACY)
+                    ? Float.NaN : cursor.getFloat(TripHistorySchema.FIX_ACCURACY);
+        }
+    }
+}
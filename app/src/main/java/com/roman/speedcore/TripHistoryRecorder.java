@@ -0,0 +1,344 @@
+package com.roman.speedcore;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Records every accepted fix into the {@link TripHistoryDatabase} on its own
+ * {@link HandlerThread}. The main thread only copies fixes into a staging batch; the history
+ * thread writes a batch in one transaction once it holds {@link #BATCH_SIZE} fixes or has waited
+ * {@link #FLUSH_DELAY_MILLIS}, and updates the trip's summary and minute rollups in the same
+ * transaction through a {@link TripRollup}. The rollups see every fix, but the {@code fixes} table
+ * only gets the filtered path as simplified by a {@link TrackSimplifier}, which on a typical drive
+ * keeps one point in ten or more; the few points it holds back are written when they are final,
+ * when the trip ends or when the recorder is released.
+ *
+ * <p>Every staged fix carries the start time of its trip, so a new trip is begun, and the previous
+ * one closed, in the order the fixes were staged whatever order the history thread runs in. A trip
+ * still open when the process dies is continued by {@link #open} if the journal restores it.
+ * If the database cannot be used, history simply is not recorded.
+ */
+public class TripHistoryRecorder {
+
+    private static final String TAG = "TripHistoryRecorder";
+
+    /** A minute of fixes at the fastest interval. */
+    static final int BATCH_SIZE = 60;
+    static final long FLUSH_DELAY_MILLIS = 15_000L;
+
+    private final TripHistoryDatabase database;
+    private final HandlerThread historyThread;
+    private final Handler historyHandler;
+
+    private final Object lock = new Object();
+    // Guarded by lock; the main thread appends, the history thread swaps it for the spare.
+    private FixBatch staging = new FixBatch();
+
+    // History thread only.
+    private FixBatch writing = new FixBatch();
+    private SQLiteDatabase db;
+    private SQLiteStatement insertTrip;
+    private SQLiteStatement updateTrip;
+    private SQLiteStatement insertFix;
+    private SQLiteStatement replaceMinute;
+    private final TripRollup rollup = new TripRollup();
+    private long tripId = -1L;
+    private final TrackSimplifier simplifier = new TrackSimplifier(TrackSimplifier.DEFAULT_TOLERANCE_METERS,
+            TrackSimplifier.DEFAULT_WINDOW, this::insertPoint);
+
+    private final Runnable writeRunnable = this::writeStaged;
+
+    public TripHistoryRecorder(TripHistoryDatabase database) {
+        this.database = database;
+        historyThread = new HandlerThread("TripHistory");
+        historyThread.start();
+        historyHandler = new Handler(historyThread.getLooper());
+    }
+
+    /**
+     * Opens the database and closes any trip a previous process left open, except the one that
+     * started at {@code continuedStartMillis}, which recording continues; pass 0 if the journal
+     * restored no trip.
+     */
+    public void open(long continuedStartMillis) {
+        historyHandler.post(() -> {
+            try {
+                db = database.getWritableDatabase();
+                insertTrip = db.compileStatement(TripHistorySchema.INSERT_TRIP);
+                updateTrip = db.compileStatement(TripHistorySchema.UPDATE_TRIP);
+                insertFix = db.compileStatement(TripHistorySchema.INSERT_FIX);
+                replaceMinute = db.compileStatement(TripHistorySchema.REPLACE_MINUTE);
+                closeStaleTrips(continuedStartMillis);
+            } catch (SQLException e) {
+                Log.w(TAG, "Trip history unavailable", e);
+                db = null;
+            }
+        });
+    }
+
+    /**
+     * Stages a fix that {@code tracker} has just accepted, at the tracker's filtered position. Main
+     * thread only.
+     */
+    public void onFix(TripTracker tracker, float speedMetersPerSecond, float accuracyMeters, long fixMillis) {
+        int size;
+        synchronized (lock) {
+            size = staging.add(tracker.getStartTime(), fixMillis, tracker.getLatitude(), tracker.getLongitude(),
+                    speedMetersPerSecond,
+                    accuracyMeters, tracker.getDistance(), tracker.getMaxSpeed(), tracker.getAverageSpeed());
+        }
+        if (size == BATCH_SIZE) {
+            historyHandler.removeCallbacks(writeRunnable);
+            historyHandler.post(writeRunnable);
+        } else if (size == 1) {
+            historyHandler.postDelayed(writeRunnable, FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /** Writes out the trip that started at {@code startMillis} and closes it. */
+    public void endTrip(long startMillis) {
+        historyHandler.removeCallbacks(writeRunnable);
+        historyHandler.post(() -> {
+            writeStaged();
+            if (db != null && rollup.isActive() && rollup.getStartMillis() == startMillis) {
+                inTransaction(this::finishTrip);
+            }
+        });
+    }
+
+    /** Writes out anything staged and stops the thread; an unfinished trip stays open. */
+    public void release() {
+        historyHandler.removeCallbacks(writeRunnable);
+        historyHandler.post(() -> {
+            writeStaged();
+            if (db != null && rollup.isActive()) {
+                inTransaction(simplifier::flush);
+            }
+            if (db != null) {
+                insertTrip.close();
+                updateTrip.close();
+                insertFix.close();
+                replaceMinute.close();
+                db = null;
+            }
+        });
+        historyThread.quitSafely();
+    }
+
+    private void writeStaged() {
+        synchronized (lock) {
+            FixBatch next = writing;
+            writing = staging;
+            staging = next;
+        }
+        if (writing.size == 0) {
+            return;
+        }
+        if (db != null) {
+            inTransaction(() -> write(writing));
+        }
+        writing.size = 0;
+    }
+
+    private void write(FixBatch batch) {
+        for (int i = 0; i < batch.size; i++) {
+            long timeMillis = batch.timeMillis[i];
+            if (!rollup.isActive() || rollup.getStartMillis() != batch.tripStartMillis[i]) {
+                if (rollup.isActive()) {
+                    finishTrip();
+                }
+                beginTrip(batch.tripStartMillis[i]);
+            } else if (rollup.startsNewMinute(timeMillis)) {
+                writeMinute();
+            }
+            float speed = batch.speed[i];
+            rollup.onFix(timeMillis, speed, batch.tripDistance[i], batch.tripMaxSpeed[i], batch.tripAverageSpeed[i]);
+            simplifier.add(batch.latitude[i], batch.longitude[i], speed, batch.accuracy[i], timeMillis);
+        }
+        writeMinute();
+        writeSummary(true);
+    }
+
+    private void beginTrip(long startMillis) {
+        insertTrip.bindLong(1, startMillis);
+        insertTrip.bindLong(2, startMillis);
+        tripId = insertTrip.executeInsert();
+        rollup.start(startMillis);
+        simplifier.reset();
+    }
+
+    private void insertPoint(double latitude, double longitude, float speedMetersPerSecond, float accuracyMeters,
+                             long timeMillis) {
+        insertFix.bindLong(1, tripId);
+        insertFix.bindLong(2, timeMillis);
+        insertFix.bindDouble(3, latitude);
+        insertFix.bindDouble(4, longitude);
+        insertFix.bindDouble(5, speedMetersPerSecond);
+        insertFix.bindDouble(6, accuracyMeters);
+        insertFix.executeInsert();
+    }
+
+    /** Closes the current trip, dropping it if it never moved. */
+    private void finishTrip() {
+        if (rollup.getDistanceMeters() > 0.0) {
+            simplifier.flush();
+            writeMinute();
+            writeSummary(false);
+        } else {
+            deleteTrip(tripId);
+        }
+        rollup.clear();
+        simplifier.reset();
+        tripId = -1L;
+    }
+
+    private void writeMinute() {
+        if (rollup.getMinuteFixCount() == 0) {
+            return;
+        }
+        replaceMinute.bindLong(1, tripId);
+        replaceMinute.bindLong(2, rollup.getMinuteMillis());
+        replaceMinute.bindDouble(3, rollup.getMinuteDistanceMeters());
+        replaceMinute.bindDouble(4, rollup.getMinuteMaxSpeed());
+        replaceMinute.bindDouble(5, rollup.getMinuteAverageSpeed());
+        replaceMinute.bindLong(6, rollup.getMinuteFixCount());
+        replaceMinute.executeInsert();
+    }
+
+    private void writeSummary(boolean open) {
+        updateTrip.bindLong(1, rollup.getEndMillis());
+        updateTrip.bindDouble(2, rollup.getDistanceMeters());
+        updateTrip.bindDouble(3, rollup.getMaxSpeed());
+        updateTrip.bindDouble(4, rollup.getAverageSpeed());
+        updateTrip.bindLong(5, rollup.getFixCount());
+        updateTrip.bindLong(6, open ? 1L : 0L);
+        updateTrip.bindLong(7, tripId);
+        updateTrip.executeUpdateDelete();
+    }
+
+    private void deleteTrip(long id) {
+        String[] args = {Long.toString(id)};
+        for (String statement : TripHistorySchema.DELETE_TRIP) {
+            db.execSQL(statement, args);
+        }
+    }
+
+    private void closeStaleTrips(long continuedStartMillis) {
+        db.beginTransaction();
+        try (Cursor open = db.rawQuery(TripHistorySchema.QUERY_OPEN_TRIPS, null)) {
+            while (open.moveToNext()) {
+                TripSummary trip = TripHistoryDatabase.readTrip(open);
+                if (continuedStartMillis != 0L && trip.getStartMillis() == continuedStartMillis && !rollup.isActive()) {
+                    resumeTrip(trip);
+                } else if (trip.getDistanceMeters() > 0.0) {
+                    db.execSQL(TripHistorySchema.CLOSE_TRIP, new Object[]{trip.getId()});
+                } else {
+                    deleteTrip(trip.getId());
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void resumeTrip(TripSummary trip) {
+        try (Cursor minute = db.rawQuery(TripHistorySchema.QUERY_LAST_MINUTE,
+                new String[]{Long.toString(trip.getId())})) {
+            if (minute.moveToFirst()) {
+                rollup.resume(trip, minute.getLong(TripHistorySchema.MINUTE_TIME),
+                        minute.getDouble(TripHistorySchema.MINUTE_DISTANCE),
+                        minute.getFloat(TripHistorySchema.MINUTE_MAX_SPEED),
+                        minute.getFloat(TripHistorySchema.MINUTE_AVERAGE_SPEED),
+                        minute.getInt(TripHistorySchema.MINUTE_FIX_COUNT));
+            } else {
+                rollup.resume(trip, 0L, 0.0, 0f, 0f, 0);
+            }
+        }
+        tripId = trip.getId();
+        // Points held back when the previous process died are lost; the path resumes from here.
+        simplifier.reset();
+    }
+
+    /** Runs {@code work} in a transaction; a failure loses that work, not the recorder. */
+    private void inTransaction(Runnable work) {
+        try {
+            db.beginTransaction();
+            try {
+                work.run();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to write trip history", e);
+            recover();
+        }
+    }
+
+    /** Brings the rollup back in line with the rows that survived a rolled-back transaction. */
+    private void recover() {
+        long id = tripId;
+        rollup.clear();
+        simplifier.reset();
+        tripId = -1L;
+        try (Cursor open = db.rawQuery(TripHistorySchema.QUERY_OPEN_TRIPS, null)) {
+            while (open.moveToNext()) {
+                if (open.getLong(TripHistorySchema.TRIP_ID) == id) {
+                    resumeTrip(TripHistoryDatabase.readTrip(open));
+                }
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Trip history unavailable", e);
+            db = null;
+        }
+    }
+
+    /** Fixes staged for one transaction, in parallel arrays grown only when a batch outgrows them. */
+    private static final class FixBatch {
+        int size;
+        long[] tripStartMillis = new long[BATCH_SIZE];
+        long[] timeMillis = new long[BATCH_SIZE];
+        double[] latitude = new double[BATCH_SIZE];
+        double[] longitude = new double[BATCH_SIZE];
+        float[] speed = new float[BATCH_SIZE];
+        float[] accuracy = new float[BATCH_SIZE];
+        double[] tripDistance = new double[BATCH_SIZE];
+        float[] tripMaxSpeed = new float[BATCH_SIZE];
+        float[] tripAverageSpeed = new float[BATCH_SIZE];
+
+        /** Returns the new size. */
+        int add(long tripStart, long time, double lat, double lon, float fixSpeed, float fixAccuracy,
+                double distance, float maxSpeed, float averageSpeed) {
+            if (size == timeMillis.length) {
+                int capacity = size * 2;
+                tripStartMillis = Arrays.copyOf(tripStartMillis, capacity);
+                timeMillis = Arrays.copyOf(timeMillis, capacity);
+                latitude = Arrays.copyOf(latitude, capacity);
+                longitude = Arrays.copyOf(longitude, capacity);
+                speed = Arrays.copyOf(speed, capacity);
+                accuracy = Arrays.copyOf(accuracy, capacity);
+                tripDistance = Arrays.copyOf(tripDistance, capacity);
+                tripMaxSpeed = Arrays.copyOf(tripMaxSpeed, capacity);
+                tripAverageSpeed = Arrays.copyOf(tripAverageSpeed, capacity);
+            }
+            tripStartMillis[size] = tripStart;
+            timeMillis[size] = time;
+            latitude[size] = lat;
+            longitude[size] = lon;
+            speed[size] = fixSpeed;
+            accuracy[size] = fixAccuracy;
+            tripDistance[size] = distance;
+            tripMaxSpeed[size] = maxSpeed;
+            tripAverageSpeed[size] = averageSpeed;
+            return ++size;
+        }
+    }
+}
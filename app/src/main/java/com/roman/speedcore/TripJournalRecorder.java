@@ -0,0 +1,252 @@
+package com.roman.speedcore;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a {@link TripJournal} on its own {@link HandlerThread}. The main thread only stages records
+ * into memory; opening, restoring, writing and syncing the file all happen on the journal thread.
+ * If the file cannot be used the trip simply is not journalled.
+ *
+ * <p>Journalled fixes are also mirrored into a compact {@link TrackWriter} file holding the whole
+ * trip's path, whose blocks are flushed at each checkpoint.
+ */
+public class TripJournalRecorder {
+
+    public interface RestoreCallback {
+        /** Called on the main thread with the rebuilt trip, or {@code null} if there was none. */
+        void onRestored(@Nullable TripTracker tracker);
+    }
+
+    private static final String TAG = "TripJournalRecorder";
+
+    private final File file;
+    private final File trackFile;
+    private final HandlerThread journalThread;
+    private final Handler journalHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Written once on the journal thread; null until opened or if opening failed.
+    private volatile TripJournal journal;
+
+    // Journal thread only; null if the track file could not be opened.
+    private TrackWriter track;
+    /** Time of the last fix already in the track, so fixes replayed on restore are not added twice. */
+    private long trackEndMillis = Long.MIN_VALUE;
+    // A failing track file is dropped rather than allowed to break journalling.
+    private final TripJournal.Listener trackMirror = new TripJournal.Listener() {
+        @Override
+        public void onFix(double latitude, double longitude, float speedMetersPerSecond, float bearingDegrees,
+                          float accuracyMeters, long timeMillis) {
+            if (track == null || timeMillis <= trackEndMillis) {
+                return;
+            }
+            try {
+                track.append(latitude, longitude, speedMetersPerSecond, bearingDegrees, accuracyMeters, timeMillis);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write track file", e);
+                closeTrack();
+            }
+        }
+
+        @Override
+        public void onCheckpoint() {
+            if (track == null) {
+                return;
+            }
+            try {
+                track.flush();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write track file", e);
+                closeTrack();
+            }
+        }
+
+        @Override
+        public void onReset() {
+            closeTrack();
+            trackEndMillis = Long.MIN_VALUE;
+            try {
+                track = new TrackWriter(new FileOutputStream(trackFile, false));
+            } catch (IOException e) {
+                Log.w(TAG, "Track file unavailable", e);
+            }
+        }
+    };
+
+    private final AtomicBoolean flushPosted = new AtomicBoolean(false);
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushPosted.set(false);
+            flush(false);
+        }
+    };
+    private final Runnable syncRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush(true);
+        }
+    };
+
+    public TripJournalRecorder(File file, File trackFile) {
+        this.file = file;
+        this.trackFile = trackFile;
+        journalThread = new HandlerThread("TripJournal");
+        journalThread.start();
+        journalHandler = new Handler(journalThread.getLooper());
+    }
+
+    /** Opens the journal and rebuilds the last trip with the given tunables, off the main thread. */
+    public void restore(SpeedCoreSettings settings, RestoreCallback callback) {
+        journalHandler.post(() -> {
+            TripTracker restored = new TripTracker();
+            restored.configure(settings.getSpeedSmoothingWindow(), settings.getMaxAccuracyMeters());
+            boolean hasTrip = false;
+            try {
+                openTrack();
+            } catch (IOException e) {
+                Log.w(TAG, "Track file unavailable", e);
+                closeTrack();
+            }
+            try {
+                TripJournal opened = new TripJournal(file.toPath());
+                opened.setListener(trackMirror);
+                hasTrip = opened.restore(restored);
+                journal = opened;
+            } catch (IOException e) {
+                Log.w(TAG, "Trip journal unavailable", e);
+            }
+            TripTracker result = hasTrip ? restored : null;
+            mainHandler.post(() -> callback.onRestored(result));
+        });
+    }
+
+    /** Journals a fix that {@code tracker} has just accepted; checkpoints it when one is due. */
+    public void onFix(TripTracker tracker, double latitude, double longitude, float speedMetersPerSecond,
+                      float bearingDegrees, float accuracyMeters, float speedAccuracyMps,
+                      long fixTimeNanos, long nowMillis) {
+        TripJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        if (current.stageFix(latitude, longitude, speedMetersPerSecond, bearingDegrees,
+                accuracyMeters, speedAccuracyMps, fixTimeNanos, nowMillis)) {
+            current.stageCheckpoint(tracker);
+            journalHandler.post(syncRunnable);
+        } else if (flushPosted.compareAndSet(false, true)) {
+            journalHandler.post(flushRunnable);
+        }
+    }
+
+    /** Checkpoints {@code tracker} immediately, e.g. before the app may be killed. */
+    public void checkpoint(TripTracker tracker) {
+        TripJournal current = journal;
+        if (current != null && tracker.isStarted()) {
+            current.stageCheckpoint(tracker);
+            journalHandler.post(syncRunnable);
+        }
+    }
+
+    /** Forgets the journalled trip; safe to call while a restore is still running. */
+    public void reset() {
+        TripJournal current = journal;
+        if (current != null) {
+            current.stageReset();
+            journalHandler.post(syncRunnable);
+            return;
+        }
+        // Still opening: queue behind the restore so the reset applies to the opened file.
+        journalHandler.post(() -> {
+            TripJournal opened = journal;
+            if (opened != null) {
+                opened.stageReset();
+                flush(true);
+            }
+        });
+    }
+
+    /** Writes out anything staged, closes the file and stops the thread. */
+    public void release() {
+        journalHandler.post(() -> {
+            TripJournal current = journal;
+            journal = null;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to close trip journal", e);
+                }
+            }
+            closeTrack();
+        });
+        journalThread.quitSafely();
+    }
+
+    /** Reopens the track for appending, first cutting off any block torn by a crash. */
+    private void openTrack() throws IOException {
+        long intact = 0;
+        if (trackFile.exists()) {
+            try (InputStream in = new FileInputStream(trackFile)) {
+                TrackReader reader;
+                try {
+                    reader = new TrackReader(in);
+                } catch (IOException notATrack) {
+                    reader = null;
+                }
+                if (reader != null) {
+                    intact = reader.skipToEnd();
+                    trackEndMillis = reader.getTimeMillis();
+                }
+            }
+        }
+        if (intact == 0) {
+            track = new TrackWriter(new FileOutputStream(trackFile, false));
+            trackEndMillis = Long.MIN_VALUE;
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(trackFile, "rw")) {
+            raf.setLength(intact);
+        }
+        track = TrackWriter.append(new FileOutputStream(trackFile, true));
+    }
+
+    private void closeTrack() {
+        TrackWriter current = track;
+        track = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close track file", e);
+            }
+        }
+    }
+
+    private void flush(boolean sync) {
+        TripJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.flush();
+            if (sync) {
+                current.sync();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write trip journal", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.roman.speedcore;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * The trip readouts as the main screen last showed them, kept in {@code TripSnapshot} so a cold
+ * start can show the trip at once instead of blank readouts while the journal is still being
+ * read. The journal stays the source of truth and replaces these as soon as it is restored.
+ */
+class TripSnapshotStore {
+
+    static final String PREFS_NAME = "TripSnapshot";
+    static final String KEY_MAX_SPEED = "maxSpeed";
+    static final String KEY_DISTANCE = "distance";
+    static final String KEY_AVERAGE_SPEED = "averageSpeed";
+    static final String KEY_TRIP_TIME = "tripTime";
+
+    private final SharedPreferences preferences;
+
+    TripSnapshotStore(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Keeps the readouts of {@code state}, if any; written in the background. */
+    void save(TripUiState state) {
+        if (state == null || state.getMaxSpeed() == null || state.getDistance() == null) {
+            return;
+        }
+        preferences.edit()
+                .putString(KEY_MAX_SPEED, state.getMaxSpeed())
+                .putString(KEY_DISTANCE, state.getDistance())
+                .putString(KEY_AVERAGE_SPEED, state.getAverageSpeed())
+                .putString(KEY_TRIP_TIME, state.getTripTime())
+                .apply();
+    }
+
+    /** Seeds {@code viewModel} with the saved readouts; returns false if none were saved. */
+    boolean restoreInto(MainViewModel viewModel) {
+        String maxSpeed = preferences.getString(KEY_MAX_SPEED, null);
+        String distance = preferences.getString(KEY_DISTANCE, null);
+        if (maxSpeed == null || distance == null) {
+            return false;
+        }
+        viewModel.seedFromSnapshot(maxSpeed, distance, preferences.getString(KEY_AVERAGE_SPEED, null),
+                preferences.getString(KEY_TRIP_TIME, null));
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.roman.speedcore;
+
+import android.location.Location;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocationHubTest {
+
+    private final List<Location> batch = Collections.emptyList();
+
+    @Test
+    public void publish_reachesConsumersInSubscriptionOrderOnce() {
+        LocationHub hub = new LocationHub();
+        List<String> calls = new ArrayList<>();
+        LocationHub.Consumer first = locations -> calls.add("first");
+        LocationHub.Consumer second = locations -> calls.add("second");
+        hub.subscribe(first);
+        hub.subscribe(second);
+        hub.subscribe(first);
+        hub.publishLocations(batch);
+        assertEquals(List.of("first", "second"), calls);
+
+        hub.unsubscribe(first);
+        hub.unsubscribe(first);
+        calls.clear();
+        hub.publishLocations(batch);
+        assertEquals(List.of("second"), calls);
+    }
+
+    @Test
+    public void unsubscribingDuringPublish_stillReachesTheRestOfThatPublish() {
+        LocationHub hub = new LocationHub();
+        List<String> calls = new ArrayList<>();
+        LocationHub.Consumer[] leaving = new LocationHub.Consumer[1];
+        leaving[0] = locations -> {
+            calls.add("leaving");
+            hub.unsubscribe(leaving[0]);
+        };
+        hub.subscribe(leaving[0]);
+        hub.subscribe(locations -> calls.add("staying"));
+
+        hub.publishLocations(batch);
+        hub.publishLocations(batch);
+        assertEquals(List.of("leaving", "staying", "staying"), calls);
+        assertEquals(1, hub.getConsumerCount());
+    }
+
+    @Test
+    public void setRequest_tellsTheProducerOnlyOnChange() {
+        LocationHub hub = new LocationHub();
+        int[] requests = {0};
+        hub.setRequestListener(changed -> requests[0]++);
+        assertFalse(hub.hasRequest());
+
+        hub.setRequest(1000L, 100, 0L);
+        hub.setRequest(1000L, 100, 0L);
+        assertTrue(hub.hasRequest());
+        assertEquals(1, requests[0]);
+
+        hub.setRequest(1000L, 100, 30_000L);
+        hub.setRequest(5000L, 102, 30_000L);
+        assertEquals(3, requests[0]);
+        assertEquals(5000L, hub.getIntervalMillis());
+        assertEquals(102, hub.getPriority());
+        assertEquals(30_000L, hub.getMaxUpdateDelayMillis());
+    }
+}
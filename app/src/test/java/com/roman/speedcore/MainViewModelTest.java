@@ -1,6 +1,8 @@
 package com.roman.speedcore;
 
+import android.location.GnssStatus;
 import android.location.Location;
+import android.os.Looper;
 
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 
@@ -13,9 +15,14 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.time.Duration;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(manifest = Config.NONE) // no AndroidManifest needed
@@ -47,16 +54,262 @@ public class MainViewModelTest {
     @Test
     public void resetTrip_resetsValues() {
         Location location = createLocation(10, 0, 0);
-        viewModel.onLocationUpdate(location, false);
+        viewModel.onLocationUpdate(location);
         viewModel.resetTrip();
-        assertEquals("0", viewModel.getSpeed().getValue());
-        assertEquals("Max: 0 mph", viewModel.getMaxSpeed().getValue());
-        assertEquals("Dist: 0 mi", viewModel.getDistance().getValue());
+        TripUiState state = viewModel.getUiState().getValue();
+        assertEquals("0", state.getSpeed());
+        assertEquals("Max: 0 mph", state.getMaxSpeed());
+        assertEquals("Dist: 0 mi", state.getDistance());
+    }
+
+    @Test
+    public void resetTrip_keepsMetricUnits() {
+        viewModel.onSettingsChanged(new SpeedCoreSettings(true, false, true, 1000L, 20f, 5, false));
+        viewModel.onLocationUpdate(createLocation(10, 0, 0));
+        viewModel.resetTrip();
+        TripUiState state = viewModel.getUiState().getValue();
+        assertEquals("Max: 0 km/h", state.getMaxSpeed());
+        assertEquals("Dist: 0 km", state.getDistance());
+        assertEquals("Avg: 0 km/h", state.getAverageSpeed());
+    }
+
+    @Test
+    public void onLocationUpdate_publishesOneSnapshotPerFix() {
+        java.util.List<TripUiState> published = new java.util.ArrayList<>();
+        viewModel.getUiState().observeForever(published::add);
+
+        viewModel.onLocationUpdate(createLocation(10, 0, 5));
+        viewModel.onLocationUpdate(createLocation(10, 0.001, 10));
+
+        assertEquals(2, published.size());
+        TripUiState last = published.get(1);
+        assertTrue(last.hasChanged(TripUiState.SPEED));
+        assertTrue(last.hasChanged(TripUiState.MAX_SPEED));
+        assertFalse(last.hasChanged(TripUiState.UNIT));
+    }
+
+    @Test
+    public void onLocationBatch_publishesOnceAndMatchesFixByFix() {
+        java.util.List<TripUiState> published = new java.util.ArrayList<>();
+        viewModel.getUiState().observeForever(published::add);
+        Location first = createLocation(10, 0, 5);
+        Location second = createLocation(10, 0.001, 10);
+        Location noSpeed = createLocation(10, 0.002, 40);
+        when(first.hasSpeed()).thenReturn(true);
+        when(second.hasSpeed()).thenReturn(true);
+        when(noSpeed.hasSpeed()).thenReturn(false);
+
+        viewModel.onLocationBatch(java.util.Arrays.asList(first, second, noSpeed));
+
+        MainViewModel fixByFix = new MainViewModel();
+        fixByFix.onLocationUpdate(first);
+        fixByFix.onLocationUpdate(second);
+        TripUiState expected = fixByFix.getUiState().getValue();
+        assertEquals(1, published.size());
+        assertEquals(expected.getSpeed(), published.get(0).getSpeed());
+        assertEquals(expected.getMaxSpeed(), published.get(0).getMaxSpeed());
+        assertEquals(expected.getDistance(), published.get(0).getDistance());
+    }
+
+    @Test
+    public void onLocationUpdate_speedlessFix_wakesTheMotionStateButLeavesTheTrip() {
+        long[] now = {0L};
+        MainViewModel parked = new MainViewModel(() -> now[0]);
+        for (int i = 0; i <= 5; i++) {
+            now[0] = i * 10_000_000_000L;
+            Location atRest = createLocation(10, 0, 0);
+            when(atRest.getElapsedRealtimeNanos()).thenReturn(now[0]);
+            parked.onLocationUpdate(atRest);
+        }
+        assertEquals(MotionState.STILL, parked.getMotionStateMachine().getState());
+        TripUiState still = parked.getUiState().getValue();
+
+        for (int i = 1; i <= 2; i++) {
+            now[0] += 10_000_000_000L;
+            Location noSpeed = createLocation(10, 0.001 * i, 0);
+            when(noSpeed.hasSpeed()).thenReturn(false);
+            when(noSpeed.getElapsedRealtimeNanos()).thenReturn(now[0]);
+            parked.onLocationUpdate(noSpeed);
+        }
+        assertEquals(MotionState.SLOW, parked.getMotionStateMachine().getState());
+        TripUiState state = parked.getUiState().getValue();
+        assertEquals(still.getSpeed(), state.getSpeed());
+        assertEquals(still.getDistance(), state.getDistance());
+    }
+
+    @Test
+    public void locationHub_feedsTheTripAndBatchesOnlyWhileHidden() {
+        LocationHub hub = new LocationHub();
+        viewModel.attachLocationHub(hub);
+        assertTrue(hub.hasRequest());
+        assertEquals(0L, hub.getMaxUpdateDelayMillis());
+        viewModel.setUiVisible(false);
+        assertTrue(hub.getMaxUpdateDelayMillis() > 0);
+        viewModel.setUiVisible(true);
+        assertEquals(0L, hub.getMaxUpdateDelayMillis());
+
+        Location fix = createLocation(10, 0, 12);
+        when(fix.hasSpeed()).thenReturn(true);
+        hub.publishLocations(java.util.Collections.singletonList(fix));
+        MainViewModel direct = new MainViewModel();
+        direct.onLocationUpdate(fix);
+        assertEquals(direct.getUiState().getValue().getSpeed(), viewModel.getUiState().getValue().getSpeed());
+
+        viewModel.onCleared();
+        assertEquals(0, hub.getConsumerCount());
+    }
+
+    @Test
+    public void lastKnownLocation_showsAProvisionalSpeedUntilTheFirstLiveFix() {
+        Location cached = createLocation(10, 0, 8);
+        when(cached.hasSpeed()).thenReturn(true);
+        when(cached.getElapsedRealtimeNanos()).thenReturn(android.os.SystemClock.elapsedRealtimeNanos());
+        viewModel.onLastKnownLocation(cached);
+        TripUiState state = viewModel.getUiState().getValue();
+        assertTrue(state.isSpeedProvisional());
+        assertEquals("18", state.getSpeed());
+
+        Location coarse = createLocation(10, 0, 5);
+        when(coarse.hasSpeed()).thenReturn(true);
+        when(coarse.hasAccuracy()).thenReturn(true);
+        when(coarse.getAccuracy()).thenReturn(500f);
+        viewModel.onLocationUpdate(coarse);
+        assertTrue(viewModel.getUiState().getValue().isSpeedProvisional());
+
+        Location live = createLocation(10, 0, 5);
+        when(live.hasSpeed()).thenReturn(true);
+        viewModel.onLocationUpdate(live);
+        state = viewModel.getUiState().getValue();
+        assertFalse(state.isSpeedProvisional());
+        assertTrue(state.hasChanged(TripUiState.SPEED_PROVISIONAL));
+
+        viewModel.onLastKnownLocation(cached);
+        assertFalse(viewModel.getUiState().getValue().isSpeedProvisional());
+    }
+
+    @Test
+    public void tripTime_ticksOnInjectedClockOnlyWhileVisible() {
+        long[] now = {5_000_000_000L};
+        MainViewModel timed = new MainViewModel(() -> now[0]);
+        Location location = createLocation(10, 0, 5);
+        when(location.getElapsedRealtimeNanos()).thenReturn(5_000_000_000L);
+        timed.getTickScheduler().setVisible(true);
+        timed.onLocationUpdate(location);
+
+        now[0] = 8_400_000_000L;
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+        assertEquals(timed.formatTime(3000), timed.getUiState().getValue().getTripTime());
+
+        timed.getTickScheduler().setVisible(false);
+        now[0] = 20_000_000_000L;
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(5));
+        assertEquals(timed.formatTime(3000), timed.getUiState().getValue().getTripTime());
+    }
+
+    @Test
+    public void replayedCityDrive_matchesCorePipelineAndTicksOnTraceTime() throws java.io.IOException {
+        GpsTrace trace = GpsTrace.load("city.csv");
+        VirtualClock clock = new VirtualClock(0L);
+        MainViewModel replayed = new MainViewModel(clock);
+        replayed.getTickScheduler().setVisible(true);
+        TraceReplay.Result result = new TraceReplay(trace, clock).run(new ViewModelTarget(replayed), TraceReplay.UNPACED);
+
+        TripReplayTarget core = new TripReplayTarget();
+        new TraceReplay(trace, new VirtualClock(0L)).run(core, TraceReplay.UNPACED);
+        TripTracker expected = core.getTracker();
+        TripUiState state = replayed.getUiState().getValue();
+        assertEquals(trace.getFixCount(), result.getFixes());
+        assertEquals(replayed.formatDistance(TripTracker.toDisplayDistance(expected.getDistance(), false), false),
+                state.getDistance());
+        assertEquals(replayed.formatMaxSpeed(TripTracker.toDisplaySpeed(expected.getMaxSpeed(), false), false),
+                state.getMaxSpeed());
+        assertEquals(core.getMotion().getState(), replayed.getMotionStateMachine().getState());
+        long wholeSeconds = (trace.getTimeNanos(trace.size() - 1) - trace.getTimeNanos(0)) / 1_000_000_000L;
+        assertEquals(replayed.formatTime(wholeSeconds * 1000), state.getTripTime());
+        StringBuilder sky = new StringBuilder();
+        core.getGnss().appendSummary(sky);
+        assertEquals(sky.toString(), state.getSatelliteCount());
+    }
+
+    @Test
+    public void onGnssStatus_republishesOnlyWhenTheReadoutChanges() {
+        GnssStatus.Builder sky = new GnssStatus.Builder();
+        for (int i = 0; i < 6; i++) {
+            sky.addSatellite(GnssStatus.CONSTELLATION_GPS, i + 1, 35f + i, 45f, 0f, true, true, i < 5, false, 0f, false, 0f);
+        }
+        viewModel.onGnssStatus(sky.build());
+        TripUiState first = viewModel.getUiState().getValue();
+        assertEquals("Satellites: 5/6 used (GPS 5) 38 dB-Hz", first.getSatelliteCount());
+
+        viewModel.onGnssStatus(sky.build());
+        assertTrue(first == viewModel.getUiState().getValue());
+
+        sky.addSatellite(GnssStatus.CONSTELLATION_GALILEO, 7, 40f, 45f, 0f, true, true, true, false, 0f, false, 0f);
+        viewModel.onGnssStatus(sky.build());
+        assertEquals("Satellites: 6/7 used (GPS 5, GAL 1) 39 dB-Hz", viewModel.getUiState().getValue().getSatelliteCount());
+    }
+
+    /** Feeds a replayed trace to a view model, running its main looper along the trace's timeline. */
+    private static final class ViewModelTarget implements TraceReplay.Target {
+        private final MainViewModel viewModel;
+        private long lastNanos = -1L;
+
+        ViewModelTarget(MainViewModel viewModel) {
+            this.viewModel = viewModel;
+        }
+
+        @Override
+        public void advanceTo(long nowNanos) {
+            if (lastNanos >= 0 && nowNanos > lastNanos) {
+                shadowOf(Looper.getMainLooper()).idleFor(Duration.ofNanos(nowNanos - lastNanos));
+            }
+            lastNanos = nowNanos;
+        }
+
+        @Override
+        public void onFix(double latitude, double longitude, float speed, float bearing, float accuracy,
+                          float speedAccuracy, long elapsedNanos, long timeMillis) {
+            Location location = new Location("gps");
+            location.setLatitude(latitude);
+            location.setLongitude(longitude);
+            location.setSpeed(speed);
+            if (!Float.isNaN(bearing)) {
+                location.setBearing(bearing);
+            }
+            location.setAccuracy(accuracy);
+            if (!Float.isNaN(speedAccuracy)) {
+                location.setSpeedAccuracyMetersPerSecond(speedAccuracy);
+            }
+            location.setElapsedRealtimeNanos(elapsedNanos);
+            location.setTime(timeMillis);
+            viewModel.onLocationUpdate(location);
+        }
+
+        @Override
+        public void onGnssStatus(int satellites, int usedInFix) {
+            GnssStatus.Builder status = new GnssStatus.Builder();
+            for (int i = 0; i < satellites; i++) {
+                status.addSatellite(TripReplayTarget.skyConstellation(i), i + 1,
+                        TripReplayTarget.skyCn0DbHz(i, usedInFix), 45f, 0f, true, true, i < usedInFix,
+                        false, 0f, false, 0f);
+            }
+            viewModel.onGnssStatus(status.build());
+        }
+
+        @Override
+        public void onMotionVariance(float variance) {
+            viewModel.onMotionVariance(variance);
+        }
+
+        @Override
+        public void onHeading(float degrees) {
+            viewModel.onCompassChanged(degrees);
+        }
     }
 
     @Test
     public void onCompassChanged_updatesCompassHeading() {
         viewModel.onCompassChanged(90f);
-        assertEquals(90f, viewModel.getCompassHeading().getValue(), 0.001f);
+        assertEquals(90f, viewModel.getUiState().getValue().getCompassHeading(), 0.001f);
     }
 }
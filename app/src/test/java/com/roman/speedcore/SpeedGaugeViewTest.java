@@ -0,0 +1,51 @@
+package com.roman.speedcore;
+
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SpeedGaugeViewTest {
+
+    private SpeedGaugeView gauge;
+
+    @Before
+    public void setUp() {
+        gauge = new SpeedGaugeView(new ContextThemeWrapper(RuntimeEnvironment.getApplication(), R.style.Theme_SpeedCore));
+        gauge.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        gauge.layout(0, 0, gauge.getMeasuredWidth(), gauge.getMeasuredHeight());
+    }
+
+    @Test
+    public void updates_neverRequestLayout() {
+        int height = gauge.getMeasuredHeight();
+        assertTrue(height > 0);
+        assertFalse(gauge.isLayoutRequested());
+
+        gauge.setSpeed("8");
+        gauge.setSpeed("188");
+        gauge.setUnit("km/h");
+        gauge.setTripTime("01:02:03");
+        gauge.setMaxSpeed("Max: 188 km/h");
+        gauge.setDistance("Dist: 1234.5 km");
+        gauge.setAverageSpeed("Avg: 97 km/h");
+        gauge.setHeading(123f, "SE");
+        // Longer than any buffer the gauge starts with.
+        gauge.setDistance("Dist: 12345678901234567890123456789012345 km");
+
+        assertFalse(gauge.isLayoutRequested());
+        assertEquals("188", gauge.getContentDescription());
+    }
+}
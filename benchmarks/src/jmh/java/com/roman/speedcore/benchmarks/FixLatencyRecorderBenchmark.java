@@ -0,0 +1,25 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.FixLatencyRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** What debug builds add to each fix: all four marks, i.e. six histogram records. */
+@State(Scope.Thread)
+public class FixLatencyRecorderBenchmark {
+
+    private final FixLatencyRecorder recorder = new FixLatencyRecorder();
+    private long now = 1_000_000_000L;
+
+    @Benchmark
+    public boolean fixToPixel() {
+        long t = now += 1_000_000_000L;
+        recorder.onReceived(t - 150_000_000L, t);
+        recorder.onProcessed(t + 400_000L);
+        recorder.onDispatched(t + 1_100_000L);
+        recorder.onDrawn(t + 9_000_000L + (t & 0xFFFFF));
+        return recorder.isAwaitingDraw();
+    }
+}
@@ -0,0 +1,65 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.CompensatedSum;
+import com.roman.speedcore.Geodesy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of measuring one hop between consecutive fixes: the flat ellipsoidal kernel the trip uses
+ * against Vincenty and haversine, and the compensated total against a plain float.
+ */
+@State(Scope.Thread)
+public class GeodesyBenchmark {
+
+    private SyntheticTrace trace;
+    private final CompensatedSum compensated = new CompensatedSum();
+    private float floatTotal;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        trace = SyntheticTrace.drive(3600, 4L);
+    }
+
+    @Benchmark
+    public double distance() {
+        int i = next();
+        return Geodesy.distanceMeters(trace.latitude[i - 1], trace.longitude[i - 1], trace.latitude[i], trace.longitude[i]);
+    }
+
+    @Benchmark
+    public double vincenty() {
+        int i = next();
+        return Geodesy.vincentyMeters(trace.latitude[i - 1], trace.longitude[i - 1], trace.latitude[i], trace.longitude[i]);
+    }
+
+    @Benchmark
+    public double haversine() {
+        int i = next();
+        return Geodesy.haversineMeters(trace.latitude[i - 1], trace.longitude[i - 1], trace.latitude[i], trace.longitude[i]);
+    }
+
+    @Benchmark
+    public double accumulateCompensated() {
+        int i = next();
+        compensated.add(Geodesy.distanceMeters(trace.latitude[i - 1], trace.longitude[i - 1], trace.latitude[i], trace.longitude[i]));
+        return compensated.get();
+    }
+
+    @Benchmark
+    public float accumulateFloat() {
+        int i = next();
+        floatTotal += (float) Geodesy.distanceMeters(trace.latitude[i - 1], trace.longitude[i - 1], trace.latitude[i], trace.longitude[i]);
+        return floatTotal;
+    }
+
+    private int next() {
+        int i = index + 1;
+        index = i + 1 == trace.size ? 0 : i;
+        return i;
+    }
+}
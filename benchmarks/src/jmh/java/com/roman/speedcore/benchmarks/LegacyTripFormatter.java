@@ -0,0 +1,44 @@
+package com.roman.speedcore.benchmarks;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The original {@code String.format}-based readout formatting and regex label parsing from
+ * {@code MainViewModel}, kept as the baseline that {@link com.roman.speedcore.TripFormatter} is measured against.
+ */
+final class LegacyTripFormatter {
+
+    String formatNumber(double value) {
+        if (Math.abs(value - Math.round(value)) < 1e-9) {
+            return String.valueOf((long) Math.round(value));
+        }
+        return String.format(Locale.getDefault(), "%.1f", value);
+    }
+
+    double parseLabeledNumber(String labeled) {
+        Matcher m = Pattern.compile("(-?\\d+(?:[.,]\\d+)?+)").matcher(labeled);
+        if (m.find()) {
+            try {
+                return Double.parseDouble(m.group(1).replace(',', '.'));
+            } catch (NumberFormatException ignored) { }
+        }
+        return 0.0;
+    }
+
+    String formatSpeed(float value) {
+        return String.valueOf(Math.round(value));
+    }
+
+    String formatMaxSpeed(double value, boolean isMetric) {
+        return "Max: " + formatNumber(value) + (isMetric ? " km/h" : " mph");
+    }
+
+    String formatTime(long milliseconds) {
+        long seconds = (milliseconds / 1000) % 60;
+        long minutes = (milliseconds / (1000 * 60)) % 60;
+        long hours = (milliseconds / (1000 * 60 * 60));
+        return String.format(Locale.getDefault(), "%02d:%02d:%02d", hours, minutes, seconds);
+    }
+}
@@ -0,0 +1,41 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.MovingAverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class MovingAverageBenchmark {
+
+    private SyntheticTrace trace;
+    private MovingAverage speedAverage;
+    private MovingAverage.CircularMovingAverage compassAverage;
+    private int speedIndex;
+    private int compassIndex;
+
+    @Setup
+    public void setUp() {
+        trace = SyntheticTrace.drive(3600, 2L);
+        speedAverage = new MovingAverage(5);
+        compassAverage = new MovingAverage.CircularMovingAverage(10);
+    }
+
+    @Benchmark
+    public float speedAdd() {
+        int i = speedIndex;
+        speedIndex = i + 1 == trace.size ? 0 : i + 1;
+        speedAverage.add(trace.speed[i]);
+        return speedAverage.getAverage();
+    }
+
+    @Benchmark
+    public float compassAdd() {
+        int i = compassIndex;
+        compassIndex = i + 1 == trace.compassHeading.length ? 0 : i + 1;
+        compassAverage.add(trace.compassHeading[i]);
+        return compassAverage.getAverage();
+    }
+}
@@ -0,0 +1,86 @@
+package com.roman.speedcore.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Deterministic stand-in for a recorded drive: a 1 Hz GPS fix stream that cycles through
+ * stop, accelerate, cruise and brake phases, plus a compass stream at SENSOR_DELAY_UI rate.
+ * Everything is generated up front into primitive arrays so the benchmarks measure only the
+ * code under test.
+ */
+final class SyntheticTrace {
+
+    static final long FIX_INTERVAL_MILLIS = 1000L;
+
+    final int size;
+    final double[] latitude;
+    final double[] longitude;
+    final float[] speed;
+    final float[] bearing;
+    final float[] accuracy;
+    final long[] timeMillis;
+    final long[] elapsedNanos;
+
+    final float[] compassHeading;
+
+    private SyntheticTrace(int size, int compassSamples) {
+        this.size = size;
+        this.latitude = new double[size];
+        this.longitude = new double[size];
+        this.speed = new float[size];
+        this.bearing = new float[size];
+        this.accuracy = new float[size];
+        this.timeMillis = new long[size];
+        this.elapsedNanos = new long[size];
+        this.compassHeading = new float[compassSamples];
+    }
+
+    static SyntheticTrace drive(int fixes, long seed) {
+        // SENSOR_DELAY_UI delivers roughly every 60 ms, i.e. ~16 compass samples per fix.
+        SyntheticTrace trace = new SyntheticTrace(fixes, fixes * 16);
+        Random random = new Random(seed);
+
+        double lat = 40.7128;
+        double lon = -74.0060;
+        double bearing = random.nextDouble() * 360;
+        float v = 0f;
+        long t = 1_700_000_000_000L;
+        for (int i = 0; i < fixes; i++) {
+            int phase = (i / 60) % 4;
+            if (phase == 0) {
+                v = Math.max(0f, v - 3f);
+            } else if (phase == 1) {
+                v = Math.min(30f, v + 2.5f);
+            } else if (phase == 2) {
+                v = 27f + (float) random.nextGaussian();
+            } else {
+                v = Math.max(0f, v - 1.5f);
+            }
+            bearing += random.nextGaussian() * 2;
+
+            double step = v * (FIX_INTERVAL_MILLIS / 1000.0);
+            lat += step * Math.cos(Math.toRadians(bearing)) / 111_320.0;
+            lon += step * Math.sin(Math.toRadians(bearing)) / (111_320.0 * Math.cos(Math.toRadians(lat)));
+
+            // Receivers scatter positions by roughly their reported accuracy.
+            float accuracy = random.nextFloat() < 0.05f ? 25f + random.nextFloat() * 30f : 3f + random.nextFloat() * 12f;
+            double scatter = random.nextGaussian() * accuracy / 1.41;
+            trace.latitude[i] = lat + scatter / 111_320.0;
+            trace.longitude[i] = lon;
+            trace.speed[i] = Math.max(0f, v + (float) random.nextGaussian() * 0.3f);
+            trace.bearing[i] = v > 1f ? (float) (((bearing % 360) + 360) % 360) : Float.NaN;
+            // About 5% of fixes fall outside the 20 m accuracy gate.
+            trace.accuracy[i] = accuracy;
+            trace.timeMillis[i] = t;
+            trace.elapsedNanos[i] = i * FIX_INTERVAL_MILLIS * 1_000_000L;
+            t += FIX_INTERVAL_MILLIS;
+        }
+
+        float heading = (float) bearing;
+        for (int i = 0; i < trace.compassHeading.length; i++) {
+            heading += (float) random.nextGaussian() * 3f;
+            trace.compassHeading[i] = ((heading % 360f) + 360f) % 360f;
+        }
+        return trace;
+    }
+}
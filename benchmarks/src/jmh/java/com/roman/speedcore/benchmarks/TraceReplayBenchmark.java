@@ -0,0 +1,39 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.GpsTrace;
+import com.roman.speedcore.TraceReplay;
+import com.roman.speedcore.TripReplayTarget;
+import com.roman.speedcore.VirtualClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Replays each corpus trace through the Android-free fix path, start to finish. Divide a trace's
+ * fix count by the time per operation for fixes per second.
+ */
+@State(Scope.Thread)
+public class TraceReplayBenchmark {
+
+    @Param({"highway.csv", "city.csv", "tunnel.csv", "parked.csv"})
+    public String traceName;
+
+    private GpsTrace trace;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = GpsTrace.load(traceName);
+    }
+
+    @Benchmark
+    public TripReplayTarget replay() {
+        TripReplayTarget target = new TripReplayTarget();
+        new TraceReplay(trace, new VirtualClock(0L)).run(target, TraceReplay.UNPACED);
+        return target;
+    }
+}
@@ -0,0 +1,175 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.TrackCursor;
+import com.roman.speedcore.TrackExporter;
+import com.roman.speedcore.TrackReader;
+import com.roman.speedcore.TrackWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export throughput in points per second over a three-hour drive: GPX and CSV into a channel
+ * that discards, GPX into a file, GPX streamed from the binary track format, and GPX built the
+ * obvious way, as one {@code String.format}ted string encoded at the end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TrackExportBenchmark {
+
+    private static final int POINTS = 3 * 3600;
+
+    private SyntheticTrace trace;
+    private byte[] track;
+    private final TrackExporter gpx = new TrackExporter(TrackExporter.Format.GPX);
+    private final TrackExporter csv = new TrackExporter(TrackExporter.Format.CSV);
+    private final DiscardingChannel discard = new DiscardingChannel();
+    private File file;
+    private RandomAccessFile fileOut;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = SyntheticTrace.drive(POINTS, 1L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TrackWriter writer = new TrackWriter(out)) {
+            for (int i = 0; i < trace.size; i++) {
+                writer.append(trace.latitude[i], trace.longitude[i], trace.speed[i], trace.bearing[i],
+                        trace.accuracy[i], trace.timeMillis[i]);
+            }
+        }
+        track = out.toByteArray();
+        file = File.createTempFile("trip", ".gpx");
+        fileOut = new RandomAccessFile(file, "rw");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileOut.close();
+        file.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long gpx() throws IOException {
+        return gpx.export("Drive", new TraceCursor(trace), discard);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long csv() throws IOException {
+        return csv.export("Drive", new TraceCursor(trace), discard);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long gpxToFile() throws IOException {
+        FileChannel channel = fileOut.getChannel();
+        channel.position(0L);
+        long points = gpx.export("Drive", new TraceCursor(trace), channel);
+        channel.truncate(channel.position());
+        return points;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long gpxFromTrack() throws IOException {
+        try (TrackReader reader = new TrackReader(new ByteArrayInputStream(track))) {
+            return gpx.export("Drive", reader, discard);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void gpxFormatted(Blackhole bh) {
+        StringBuilder out = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<gpx version=\"1.1\" creator=\"SpeedCore\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n")
+                .append("<trk>\n<name>Drive</name>\n<trkseg>\n");
+        for (int i = 0; i < trace.size; i++) {
+            out.append(String.format(Locale.ROOT, "<trkpt lat=\"%.7f\" lon=\"%.7f\"><time>%s</time>"
+                            + "<extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>%.2f</gpxtpx:speed>"
+                            + "</gpxtpx:TrackPointExtension></extensions></trkpt>\n",
+                    trace.latitude[i], trace.longitude[i], Instant.ofEpochMilli(trace.timeMillis[i]), trace.speed[i]));
+        }
+        out.append("</trkseg>\n</trk>\n</gpx>\n");
+        bh.consume(out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class TraceCursor implements TrackCursor {
+        private final SyntheticTrace trace;
+        private int index = -1;
+
+        TraceCursor(SyntheticTrace trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < trace.size;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return trace.timeMillis[index];
+        }
+
+        @Override
+        public double getLatitude() {
+            return trace.latitude[index];
+        }
+
+        @Override
+        public double getLongitude() {
+            return trace.longitude[index];
+        }
+
+        @Override
+        public float getSpeed() {
+            return trace.speed[index];
+        }
+
+        @Override
+        public float getAccuracy() {
+            return trace.accuracy[index];
+        }
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
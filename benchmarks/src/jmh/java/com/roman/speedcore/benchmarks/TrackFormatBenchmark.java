@@ -0,0 +1,119 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.TrackReader;
+import com.roman.speedcore.TrackWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-fix cost of the delta/varint track format against fixed-width records holding the same
+ * fields as raw doubles, floats and longs, over a three-hour drive.
+ */
+@State(Scope.Thread)
+public class TrackFormatBenchmark {
+
+    private static final int FIXED_WIDTH_BYTES = 8 + 8 + 4 + 4 + 4 + 8;
+
+    private SyntheticTrace trace;
+    private TrackWriter writer;
+    private ByteBuffer fixedWidth;
+    private byte[] encoded;
+    private TrackReader reader;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        trace = SyntheticTrace.drive(3 * 3600, 1L);
+        writer = new TrackWriter(NullOutputStream.INSTANCE);
+        fixedWidth = ByteBuffer.allocate(trace.size * FIXED_WIDTH_BYTES);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TrackWriter full = new TrackWriter(out)) {
+            for (int i = 0; i < trace.size; i++) {
+                full.append(trace.latitude[i], trace.longitude[i], trace.speed[i], trace.bearing[i],
+                        trace.accuracy[i], trace.timeMillis[i]);
+            }
+        }
+        encoded = out.toByteArray();
+        for (int i = 0; i < trace.size; i++) {
+            putFixedWidth(i);
+        }
+        reader = new TrackReader(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        int i = next();
+        writer.append(trace.latitude[i], trace.longitude[i], trace.speed[i], trace.bearing[i],
+                trace.accuracy[i], trace.timeMillis[i]);
+    }
+
+    @Benchmark
+    public void encodeFixedWidth() {
+        int i = next();
+        if (i == 0) {
+            fixedWidth.clear();
+        }
+        putFixedWidth(i);
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) throws IOException {
+        if (!reader.next()) {
+            reader = new TrackReader(new ByteArrayInputStream(encoded));
+            reader.next();
+        }
+        bh.consume(reader.getLatitude());
+        bh.consume(reader.getLongitude());
+        bh.consume(reader.getSpeed());
+        bh.consume(reader.getBearing());
+        bh.consume(reader.getAccuracy());
+        bh.consume(reader.getTimeMillis());
+    }
+
+    @Benchmark
+    public void decodeFixedWidth(Blackhole bh) {
+        int i = next();
+        int at = i * FIXED_WIDTH_BYTES;
+        bh.consume(fixedWidth.getDouble(at));
+        bh.consume(fixedWidth.getDouble(at + 8));
+        bh.consume(fixedWidth.getFloat(at + 16));
+        bh.consume(fixedWidth.getFloat(at + 20));
+        bh.consume(fixedWidth.getFloat(at + 24));
+        bh.consume(fixedWidth.getLong(at + 28));
+    }
+
+    private int next() {
+        int i = index;
+        index = i + 1 == trace.size ? 0 : i + 1;
+        return i;
+    }
+
+    private void putFixedWidth(int i) {
+        fixedWidth.putDouble(trace.latitude[i]).putDouble(trace.longitude[i])
+                .putFloat(trace.speed[i]).putFloat(trace.bearing[i]).putFloat(trace.accuracy[i])
+                .putLong(trace.timeMillis[i]);
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
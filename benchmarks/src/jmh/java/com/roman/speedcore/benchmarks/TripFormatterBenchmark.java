@@ -0,0 +1,90 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.TripFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class TripFormatterBenchmark {
+
+    // Wrap the simulated trip clock well below the 100 h point where formatting widens.
+    private static final long TRIP_WRAP_MILLIS = 12L * 3600 * 1000;
+
+    private static final String[] LABELS = {
+            "Max: 12.5 mph", "Dist: 0 mi", "Avg: 48,3 km/h", "Dist: 1204.7 km", "Max: -3 mph", "Satellites: 0"
+    };
+
+    private TripFormatter formatter;
+    private LegacyTripFormatter legacyFormatter;
+    private SyntheticTrace trace;
+    private int index;
+    private long tripMillis;
+
+    @Setup
+    public void setUp() {
+        formatter = new TripFormatter();
+        legacyFormatter = new LegacyTripFormatter();
+        trace = SyntheticTrace.drive(3600, 3L);
+    }
+
+    private int next() {
+        int i = index;
+        index = i + 1 == trace.size ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public String formatNumber() {
+        return formatter.formatNumber(trace.speed[next()] * 2.23694f);
+    }
+
+    @Benchmark
+    public String formatNumberLegacy() {
+        return legacyFormatter.formatNumber(trace.speed[next()] * 2.23694f);
+    }
+
+    @Benchmark
+    public String formatSpeed() {
+        return formatter.formatSpeed(trace.speed[next()] * 2.23694f);
+    }
+
+    @Benchmark
+    public String formatSpeedLegacy() {
+        return legacyFormatter.formatSpeed(trace.speed[next()] * 2.23694f);
+    }
+
+    @Benchmark
+    public String formatMaxSpeed() {
+        return formatter.formatMaxSpeed(trace.speed[next()] * 2.23694f, false);
+    }
+
+    @Benchmark
+    public String formatMaxSpeedLegacy() {
+        return legacyFormatter.formatMaxSpeed(trace.speed[next()] * 2.23694f, false);
+    }
+
+    @Benchmark
+    public String formatTime() {
+        tripMillis = (tripMillis + 1000L) % TRIP_WRAP_MILLIS;
+        return formatter.formatTime(tripMillis);
+    }
+
+    @Benchmark
+    public String formatTimeLegacy() {
+        tripMillis = (tripMillis + 1000L) % TRIP_WRAP_MILLIS;
+        return legacyFormatter.formatTime(tripMillis);
+    }
+
+    @Benchmark
+    public double parseLabeledNumber() {
+        return formatter.parseLabeledNumber(LABELS[next() % LABELS.length]);
+    }
+
+    @Benchmark
+    public double parseLabeledNumberLegacy() {
+        return legacyFormatter.parseLabeledNumber(LABELS[next() % LABELS.length]);
+    }
+}
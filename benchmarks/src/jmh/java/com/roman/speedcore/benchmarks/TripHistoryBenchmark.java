@@ -0,0 +1,298 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.TrackSimplifier;
+import com.roman.speedcore.TripHistorySchema;
+import com.roman.speedcore.TripRollup;
+import com.roman.speedcore.TripTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The trip history schema over a year of simulated daily commutes: two half-hour drives a day at
+ * 1 Hz, about 1.3 million fixes before {@link TrackSimplifier} stores a fraction of them. Writes
+ * run the same statements, batching, rollup maintenance and simplification as the app's history
+ * writer, on the desktop SQLite driver in WAL mode; the queries are the history screen's pages
+ * and a trip's minute rollups, next to the same page aggregated from the stored fixes, which is
+ * what the summary rows avoid.
+ */
+@State(Scope.Benchmark)
+public class TripHistoryBenchmark {
+
+    private static final int COMMUTE_FIXES = 30 * 60;
+    private static final int DAYS = 365;
+    private static final int BATCH_SIZE = 60;
+    private static final int PAGE_SIZE = 30;
+    private static final long DAY_MILLIS = 24 * 3600_000L;
+    private static final long[] COMMUTE_OFFSETS_MILLIS = {8 * 3600_000L, 17 * 3600_000L + 30 * 60_000L};
+
+    /** Raw-fix aggregation of one history page, for comparison. */
+    private static final String QUERY_PAGE_FROM_FIXES =
+            "SELECT trip_id, MIN(time) AS start_time, MAX(time), MAX(speed), COUNT(*) FROM fixes "
+                    + "GROUP BY trip_id ORDER BY start_time DESC LIMIT ?";
+
+    private File file;
+    private Connection connection;
+    private HistoryWriter writer;
+
+    // One commute's fixes as the tracker accepted them, replayed at each commute's start time.
+    private int accepted;
+    private long[] offsetMillis;
+    private double[] latitude;
+    private double[] longitude;
+    private float[] speed;
+    private float[] accuracy;
+    private double[] tripDistance;
+    private float[] tripMaxSpeed;
+    private float[] tripAverageSpeed;
+
+    private long yearStartMillis;
+    private long midYearMillis;
+    private long midYearTripId;
+    private long nextTripStartMillis;
+    private int nextFix;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        recordCommute(SyntheticTrace.drive(COMMUTE_FIXES, 1L));
+
+        file = File.createTempFile("trip_history", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            for (String create : TripHistorySchema.CREATE) {
+                statement.execute(create);
+            }
+        }
+        connection.setAutoCommit(false);
+        writer = new HistoryWriter(connection);
+
+        yearStartMillis = 1_704_067_200_000L; // 2024-01-01T00:00Z
+        midYearMillis = yearStartMillis + DAYS / 2 * DAY_MILLIS;
+        for (int day = 0; day < DAYS; day++) {
+            for (long offset : COMMUTE_OFFSETS_MILLIS) {
+                long start = yearStartMillis + day * DAY_MILLIS + offset;
+                for (int from = 0; from < accepted; from += BATCH_SIZE) {
+                    writer.write(start, from, Math.min(accepted, from + BATCH_SIZE));
+                }
+                if (start == midYearMillis + COMMUTE_OFFSETS_MILLIS[0]) {
+                    midYearTripId = writer.tripId;
+                }
+            }
+        }
+        writer.finishTrip();
+        connection.commit();
+        nextTripStartMillis = yearStartMillis + DAYS * DAY_MILLIS + COMMUTE_OFFSETS_MILLIS[0];
+    }
+
+    private void recordCommute(SyntheticTrace trace) {
+        offsetMillis = new long[trace.size];
+        latitude = new double[trace.size];
+        longitude = new double[trace.size];
+        speed = new float[trace.size];
+        accuracy = new float[trace.size];
+        tripDistance = new double[trace.size];
+        tripMaxSpeed = new float[trace.size];
+        tripAverageSpeed = new float[trace.size];
+        TripTracker tracker = new TripTracker();
+        for (int i = 0; i < trace.size; i++) {
+            if (tracker.onFix(trace.latitude[i], trace.longitude[i], trace.speed[i], trace.bearing[i],
+                    trace.accuracy[i], Float.NaN, trace.elapsedNanos[i], trace.timeMillis[i]) == 0) {
+                continue;
+            }
+            offsetMillis[accepted] = trace.timeMillis[i] - trace.timeMillis[0];
+            latitude[accepted] = tracker.getLatitude();
+            longitude[accepted] = tracker.getLongitude();
+            speed[accepted] = trace.speed[i];
+            accuracy[accepted] = trace.accuracy[i];
+            tripDistance[accepted] = tracker.getDistance();
+            tripMaxSpeed[accepted] = tracker.getMaxSpeed();
+            tripAverageSpeed[accepted] = tracker.getAverageSpeed();
+            accepted++;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+
+    /** One writer transaction: a batch of fixes with its summary and rollup updates. */
+    @Benchmark
+    public void writeBatch() throws SQLException {
+        if (nextFix >= accepted) {
+            nextFix = 0;
+            nextTripStartMillis += DAY_MILLIS;
+        }
+        int to = Math.min(accepted, nextFix + BATCH_SIZE);
+        writer.write(nextTripStartMillis, nextFix, to);
+        connection.commit();
+        nextFix = to;
+    }
+
+    @Benchmark
+    public void firstPage(Blackhole bh) throws SQLException {
+        queryPage(Long.MAX_VALUE, bh);
+    }
+
+    /** The same page half a year back, which keyset paging makes cost the same. */
+    @Benchmark
+    public void pageSixMonthsBack(Blackhole bh) throws SQLException {
+        queryPage(midYearMillis, bh);
+    }
+
+    @Benchmark
+    public void tripMinutes(Blackhole bh) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(TripHistorySchema.QUERY_MINUTES)) {
+            query.setLong(1, midYearTripId);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    bh.consume(rows.getLong(TripHistorySchema.MINUTE_TIME + 1));
+                    bh.consume(rows.getDouble(TripHistorySchema.MINUTE_DISTANCE + 1));
+                    bh.consume(rows.getFloat(TripHistorySchema.MINUTE_AVERAGE_SPEED + 1));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void firstPageFromFixes(Blackhole bh) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(QUERY_PAGE_FROM_FIXES)) {
+            query.setInt(1, PAGE_SIZE);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    bh.consume(rows.getLong(2));
+                    bh.consume(rows.getLong(3));
+                    bh.consume(rows.getFloat(4));
+                }
+            }
+        }
+    }
+
+    private void queryPage(long beforeStartMillis, Blackhole bh) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(TripHistorySchema.QUERY_TRIPS_PAGE)) {
+            query.setLong(1, beforeStartMillis);
+            query.setInt(2, PAGE_SIZE);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    bh.consume(rows.getLong(TripHistorySchema.TRIP_START_TIME + 1));
+                    bh.consume(rows.getDouble(TripHistorySchema.TRIP_DISTANCE + 1));
+                    bh.consume(rows.getFloat(TripHistorySchema.TRIP_MAX_SPEED + 1));
+                }
+            }
+        }
+    }
+
+    /** The app's history writer on JDBC; the caller commits. */
+    private final class HistoryWriter {
+        private final PreparedStatement insertTrip;
+        private final PreparedStatement updateTrip;
+        private final PreparedStatement insertFix;
+        private final PreparedStatement replaceMinute;
+        private final TripRollup rollup = new TripRollup();
+        private final TrackSimplifier simplifier = new TrackSimplifier(TrackSimplifier.DEFAULT_TOLERANCE_METERS,
+                TrackSimplifier.DEFAULT_WINDOW, this::insertPoint);
+        long tripId = -1L;
+
+        HistoryWriter(Connection connection) throws SQLException {
+            insertTrip = connection.prepareStatement(TripHistorySchema.INSERT_TRIP, Statement.RETURN_GENERATED_KEYS);
+            updateTrip = connection.prepareStatement(TripHistorySchema.UPDATE_TRIP);
+            insertFix = connection.prepareStatement(TripHistorySchema.INSERT_FIX);
+            replaceMinute = connection.prepareStatement(TripHistorySchema.REPLACE_MINUTE);
+        }
+
+        /** Writes fixes {@code from} to {@code to} of the commute starting at {@code startMillis}. */
+        void write(long startMillis, int from, int to) throws SQLException {
+            for (int i = from; i < to; i++) {
+                long timeMillis = startMillis + offsetMillis[i];
+                if (!rollup.isActive() || rollup.getStartMillis() != startMillis) {
+                    if (rollup.isActive()) {
+                        finishTrip();
+                    }
+                    beginTrip(startMillis);
+                } else if (rollup.startsNewMinute(timeMillis)) {
+                    writeMinute();
+                }
+                rollup.onFix(timeMillis, speed[i], tripDistance[i], tripMaxSpeed[i], tripAverageSpeed[i]);
+                simplifier.add(latitude[i], longitude[i], speed[i], accuracy[i], timeMillis);
+            }
+            writeMinute();
+            writeSummary(true);
+        }
+
+        private void beginTrip(long startMillis) throws SQLException {
+            insertTrip.setLong(1, startMillis);
+            insertTrip.setLong(2, startMillis);
+            insertTrip.executeUpdate();
+            try (ResultSet keys = insertTrip.getGeneratedKeys()) {
+                keys.next();
+                tripId = keys.getLong(1);
+            }
+            rollup.start(startMillis);
+            simplifier.reset();
+        }
+
+        private void insertPoint(double lat, double lon, float pointSpeed, float pointAccuracy, long timeMillis) {
+            try {
+                insertFix.setLong(1, tripId);
+                insertFix.setLong(2, timeMillis);
+                insertFix.setDouble(3, lat);
+                insertFix.setDouble(4, lon);
+                insertFix.setDouble(5, pointSpeed);
+                insertFix.setDouble(6, pointAccuracy);
+                insertFix.executeUpdate();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void finishTrip() throws SQLException {
+            simplifier.flush();
+            writeMinute();
+            writeSummary(false);
+            rollup.clear();
+            tripId = -1L;
+        }
+
+        private void writeMinute() throws SQLException {
+            if (rollup.getMinuteFixCount() == 0) {
+                return;
+            }
+            replaceMinute.setLong(1, tripId);
+            replaceMinute.setLong(2, rollup.getMinuteMillis());
+            replaceMinute.setDouble(3, rollup.getMinuteDistanceMeters());
+            replaceMinute.setDouble(4, rollup.getMinuteMaxSpeed());
+            replaceMinute.setDouble(5, rollup.getMinuteAverageSpeed());
+            replaceMinute.setInt(6, rollup.getMinuteFixCount());
+            replaceMinute.executeUpdate();
+        }
+
+        private void writeSummary(boolean open) throws SQLException {
+            updateTrip.setLong(1, rollup.getEndMillis());
+            updateTrip.setDouble(2, rollup.getDistanceMeters());
+            updateTrip.setDouble(3, rollup.getMaxSpeed());
+            updateTrip.setDouble(4, rollup.getAverageSpeed());
+            updateTrip.setInt(5, rollup.getFixCount());
+            updateTrip.setInt(6, open ? 1 : 0);
+            updateTrip.setLong(7, tripId);
+            updateTrip.executeUpdate();
+        }
+    }
+}
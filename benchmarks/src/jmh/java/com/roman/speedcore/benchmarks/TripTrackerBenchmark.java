@@ -0,0 +1,57 @@
+package com.roman.speedcore.benchmarks;
+
+import com.roman.speedcore.TripFormatter;
+import com.roman.speedcore.TripTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The Android-free part of {@code MainViewModel.onLocationUpdate}: fold one fix into the trip
+ * and format every readout the ViewModel would publish for it.
+ */
+@State(Scope.Thread)
+public class TripTrackerBenchmark {
+
+    private SyntheticTrace trace;
+    private TripTracker tracker;
+    private TripFormatter formatter;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        trace = SyntheticTrace.drive(3600, 1L);
+        tracker = new TripTracker();
+        formatter = new TripFormatter();
+    }
+
+    @Benchmark
+    public void onLocationUpdate(Blackhole bh) {
+        int i = index;
+        if (i == trace.size) {
+            i = 0;
+            tracker.reset();
+        }
+        index = i + 1;
+
+        boolean isMetric = false;
+        int changed = tracker.onFix(trace.latitude[i], trace.longitude[i], trace.speed[i], trace.bearing[i],
+                trace.accuracy[i], Float.NaN, trace.elapsedNanos[i], trace.timeMillis[i]);
+        if (changed == 0) {
+            return;
+        }
+        bh.consume(formatter.formatSpeed(TripTracker.toDisplaySpeed(tracker.getSmoothedSpeed(), isMetric)));
+        if ((changed & TripTracker.CHANGED_MAX_SPEED) != 0) {
+            bh.consume(formatter.formatMaxSpeed(TripTracker.toDisplaySpeed(tracker.getMaxSpeed(), isMetric), isMetric));
+        }
+        if ((changed & TripTracker.CHANGED_DISTANCE) != 0) {
+            bh.consume(formatter.formatDistance(TripTracker.toDisplayDistance(tracker.getDistance(), isMetric), isMetric));
+        }
+        if ((changed & TripTracker.CHANGED_AVERAGE_SPEED) != 0) {
+            bh.consume(formatter.formatAverageSpeed(TripTracker.toDisplaySpeed(tracker.getAverageSpeed(), isMetric), isMetric));
+        }
+    }
+}
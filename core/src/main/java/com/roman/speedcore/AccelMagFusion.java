@@ -0,0 +1,80 @@
+package com.roman.speedcore;
+
+/**
+ * Heading from separate accelerometer and magnetometer samples, the fallback for devices without
+ * a rotation-vector sensor. Mirrors {@code SensorManager.getRotationMatrix} followed by
+ * {@code getOrientation}, computing only the terms the azimuth needs.
+ */
+public class AccelMagFusion implements HeadingFusion {
+
+    public static final int SMOOTHING_WINDOW = 10;
+
+    // Same free-fall cut-off as SensorManager.getRotationMatrix.
+    private static final float GRAVITY = 9.81f;
+    private static final float FREE_FALL_GRAVITY_SQUARED = 0.01f * GRAVITY * GRAVITY;
+
+    private final float[] gravity = new float[3];
+    private final float[] geomagnetic = new float[3];
+    private boolean hasGravity = false;
+    private boolean hasGeomagnetic = false;
+    private float heading;
+
+    @Override
+    public boolean onSensorValues(int input, float[] values) {
+        if (input == INPUT_ACCELEROMETER) {
+            System.arraycopy(values, 0, gravity, 0, 3);
+            hasGravity = true;
+        } else if (input == INPUT_MAGNETOMETER) {
+            System.arraycopy(values, 0, geomagnetic, 0, 3);
+            hasGeomagnetic = true;
+        } else {
+            return false;
+        }
+        if (!hasGravity || !hasGeomagnetic) {
+            return false;
+        }
+
+        float ax = gravity[0];
+        float ay = gravity[1];
+        float az = gravity[2];
+        float normSqA = ax * ax + ay * ay + az * az;
+        if (normSqA < FREE_FALL_GRAVITY_SQUARED) {
+            // Device is in free fall (or close to it); no usable "down".
+            return false;
+        }
+
+        float ex = geomagnetic[0];
+        float ey = geomagnetic[1];
+        float ez = geomagnetic[2];
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (normH < 0.1f) {
+            // Device is close to free fall, in space, or close to the magnetic north pole.
+            return false;
+        }
+        float invH = 1.0f / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        float invA = 1.0f / (float) Math.sqrt(normSqA);
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+        float my = az * hx - ax * hz;
+
+        heading = HeadingThrottle.normalizeDegrees((float) Math.toDegrees(Math.atan2(hy, my)));
+        return true;
+    }
+
+    @Override
+    public float getHeading() {
+        return heading;
+    }
+
+    @Override
+    public int getSmoothingWindow() {
+        return SMOOTHING_WINDOW;
+    }
+}
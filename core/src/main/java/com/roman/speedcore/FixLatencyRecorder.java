@@ -0,0 +1,140 @@
+package com.roman.speedcore;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Times each fix from the receiver to the screen, on the elapsed-realtime clock the fix is stamped
+ * with. The pipeline reports four marks for the fix it is carrying: the location callback
+ * receiving it, the view model finishing with it, the UI state reaching the observer and the speed
+ * view being drawn. Each gap between marks, and the whole fix-to-pixel time, goes into its own
+ * {@link LatencyHistogram}.
+ *
+ * <p>The marks come from the main thread; the histograms may be read from any thread. A fix that is
+ * dropped on the way, or overtaken by the next one before it is drawn, leaves its later spans
+ * unrecorded rather than charging them to the next fix.
+ */
+public class FixLatencyRecorder {
+
+    public enum Span {
+        /** From the fix's timestamp to the location callback: receiver, provider and batching delay. */
+        FIX_TO_CALLBACK("fix>callback"),
+        /** Folding the fix into the trip and staging the UI state. */
+        CALLBACK_TO_PROCESSED("callback>processed"),
+        /** Publishing the state until the observer renders it. */
+        PROCESSED_TO_DISPATCHED("processed>dispatched"),
+        /** From the observer setting the speed text to the frame that draws it. */
+        DISPATCHED_TO_DRAWN("dispatched>drawn"),
+        /** The whole fix-to-pixel latency. */
+        FIX_TO_DRAWN("fix>drawn");
+
+        private final String label;
+
+        Span(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Span[] SPANS = Span.values();
+    private static final double[] REPORT_PERCENTILES = {50, 90, 99};
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[SPANS.length];
+
+    // Main thread only. The last mark reached by the fix in flight, or NONE.
+    private static final int NONE = -1;
+    private static final int RECEIVED = 0;
+    private static final int PROCESSED = 1;
+    private static final int DISPATCHED = 2;
+    private int stage = NONE;
+    private long fixNanos;
+    private long markNanos;
+
+    public FixLatencyRecorder() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /** The location callback received the fix stamped {@code fixNanos}; starts a new fix. */
+    public void onReceived(long fixNanos, long nowNanos) {
+        this.fixNanos = fixNanos;
+        histograms[Span.FIX_TO_CALLBACK.ordinal()].record(nowNanos - fixNanos);
+        mark(RECEIVED, nowNanos);
+    }
+
+    /** The view model has folded the fix in and is about to publish. */
+    public void onProcessed(long nowNanos) {
+        advance(RECEIVED, PROCESSED, Span.CALLBACK_TO_PROCESSED, nowNanos);
+    }
+
+    /** The observer is rendering the published state. */
+    public void onDispatched(long nowNanos) {
+        advance(PROCESSED, DISPATCHED, Span.PROCESSED_TO_DISPATCHED, nowNanos);
+    }
+
+    /** The speed view has been drawn; completes the fix. */
+    public void onDrawn(long nowNanos) {
+        if (stage != DISPATCHED) {
+            return;
+        }
+        histograms[Span.DISPATCHED_TO_DRAWN.ordinal()].record(nowNanos - markNanos);
+        histograms[Span.FIX_TO_DRAWN.ordinal()].record(nowNanos - fixNanos);
+        stage = NONE;
+    }
+
+    /** Whether a fix has been dispatched and is waiting for its frame. */
+    public boolean isAwaitingDraw() {
+        return stage == DISPATCHED;
+    }
+
+    private void advance(int from, int to, Span span, long nowNanos) {
+        if (stage != from) {
+            return;
+        }
+        histograms[span.ordinal()].record(nowNanos - markNanos);
+        mark(to, nowNanos);
+    }
+
+    private void mark(int reached, long nowNanos) {
+        stage = reached;
+        markNanos = nowNanos;
+    }
+
+    public LatencyHistogram getHistogram(Span span) {
+        return histograms[span.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /** One line per span: sample count, then p50, p90, p99 and max in milliseconds. */
+    public void writeReport(Appendable out) throws IOException {
+        for (Span span : SPANS) {
+            LatencyHistogram histogram = histograms[span.ordinal()];
+            out.append(String.format(Locale.ROOT, "%-20s n=%-6d", span.getLabel(), histogram.getCount()));
+            for (double percentile : REPORT_PERCENTILES) {
+                out.append(String.format(Locale.ROOT, " p%.0f=%.1f", percentile,
+                        histogram.getValueAtPercentile(percentile) / 1e6));
+            }
+            out.append(String.format(Locale.ROOT, " max=%.1f ms\n", histogram.getMax() / 1e6));
+        }
+    }
+
+    /** {@link #writeReport} as a string, for the debug overlay. */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        try {
+            writeReport(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+}
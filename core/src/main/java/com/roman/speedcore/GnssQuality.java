@@ -0,0 +1,239 @@
+package com.roman.speedcore;
+
+import java.util.Locale;
+
+/**
+ * Aggregates each satellite status report into per-constellation counts and carrier-to-noise
+ * density (C/N0) of the satellites used in the fix: their mean and the mean of the strongest four,
+ * the usual single-number measure of how good the sky view is. Reports are copied into primitive
+ * arrays grown once and reused, so a status callback costs no allocation; {@link #update(long)}
+ * says whether the readout changed, so the UI string is only rebuilt when it would read
+ * differently.
+ *
+ * <p>The same aggregate scores the sky from 0 (barely a fix) to 1 (strong signals from many
+ * satellites) and loosens the distance accuracy gate with it: {@link #getAccuracyGateMeters} is
+ * the configured gate under a clear sky and looser under a weak one, where every estimate is
+ * poor and the configured gate would drop the whole stretch. It is never tighter than the
+ * configured gate, which is the user's floor: a good sky is no reason to discard driving the
+ * user's setting would count, such as the settling fixes after reacquisition. Without a fresh
+ * report, or with fewer than four satellites in the fix, the configured gate applies unchanged.
+ */
+public class GnssQuality {
+
+    // Constellation types as numbered by android.location.GnssStatus.
+    public static final int CONSTELLATION_UNKNOWN = 0;
+    public static final int CONSTELLATION_GPS = 1;
+    public static final int CONSTELLATION_SBAS = 2;
+    public static final int CONSTELLATION_GLONASS = 3;
+    public static final int CONSTELLATION_QZSS = 4;
+    public static final int CONSTELLATION_BEIDOU = 5;
+    public static final int CONSTELLATION_GALILEO = 6;
+    public static final int CONSTELLATION_IRNSS = 7;
+    public static final int CONSTELLATIONS = 8;
+
+    private static final String[] CONSTELLATION_LABELS = {"?", "GPS", "SBAS", "GLO", "QZSS", "BDS", "GAL", "NavIC"};
+    /** Readout order: the global systems first, then the regional ones. */
+    private static final int[] DISPLAY_ORDER = {
+            CONSTELLATION_GPS, CONSTELLATION_GALILEO, CONSTELLATION_GLONASS, CONSTELLATION_BEIDOU,
+            CONSTELLATION_QZSS, CONSTELLATION_IRNSS, CONSTELLATION_SBAS, CONSTELLATION_UNKNOWN};
+
+    static final int TOP_SIGNALS = 4;
+    /** A position solution needs at least this many satellites. */
+    static final int MIN_FIX_SATELLITES = 4;
+    /** Top-4 C/N0 scoring 0 and 1: weak indoor or canyon signal, and an open-sky signal. */
+    static final float WEAK_CN0_DBHZ = 20f;
+    static final float STRONG_CN0_DBHZ = 40f;
+    /** Satellites in the fix scoring 1; a multi-constellation receiver under open sky uses more. */
+    static final int STRONG_FIX_SATELLITES = 12;
+    /** The gate is this many times the configured gate at score 0, falling to 1x at score 1. */
+    static final float LOOSEST_GATE_FACTOR = 1.5f;
+    /** A report older or newer than this says nothing about a fix. */
+    static final long MAX_REPORT_AGE_NANOS = 5_000_000_000L;
+
+    // The report being filled in, one entry per satellite.
+    private int satelliteCount;
+    private int[] constellations = new int[64];
+    private float[] cn0DbHz = new float[64];
+    private boolean[] usedInFix = new boolean[64];
+
+    // The aggregate of the last update.
+    private final int[] visibleByConstellation = new int[CONSTELLATIONS];
+    private final int[] usedByConstellation = new int[CONSTELLATIONS];
+    private int visible;
+    private int used;
+    private float meanCn0DbHz;
+    private float topCn0DbHz;
+    private float score;
+    private long updateNanos;
+    private boolean hasReport;
+
+    // What the readout last showed, to tell whether it changed.
+    private final int[] shownUsedByConstellation = new int[CONSTELLATIONS];
+    private int shownVisible = -1;
+    private int shownTopCn0 = -1;
+
+    /** Starts a report of {@code count} satellites; fill every index with {@link #setSatellite}. */
+    public void setSatelliteCount(int count) {
+        if (count > constellations.length) {
+            int capacity = Math.max(count, constellations.length * 2);
+            constellations = new int[capacity];
+            cn0DbHz = new float[capacity];
+            usedInFix = new boolean[capacity];
+        }
+        satelliteCount = count;
+    }
+
+    public void setSatellite(int index, int constellation, float cn0, boolean used) {
+        constellations[index] = constellation >= 0 && constellation < CONSTELLATIONS ? constellation : CONSTELLATION_UNKNOWN;
+        cn0DbHz[index] = cn0;
+        usedInFix[index] = used;
+    }
+
+    /**
+     * Aggregates the report filled in since {@link #setSatelliteCount}, received at {@code nowNanos}
+     * on the fixes' elapsed-realtime clock.
+     *
+     * @return whether the readout ({@link #appendSummary}) changed
+     */
+    public boolean update(long nowNanos) {
+        for (int c = 0; c < CONSTELLATIONS; c++) {
+            visibleByConstellation[c] = 0;
+            usedByConstellation[c] = 0;
+        }
+        used = 0;
+        double sum = 0;
+        // The strongest used signals so far, in descending order.
+        float top0 = 0f, top1 = 0f, top2 = 0f, top3 = 0f;
+        for (int i = 0; i < satelliteCount; i++) {
+            int constellation = constellations[i];
+            visibleByConstellation[constellation]++;
+            if (!usedInFix[i]) {
+                continue;
+            }
+            usedByConstellation[constellation]++;
+            used++;
+            float cn0 = cn0DbHz[i];
+            sum += cn0;
+            if (cn0 > top3) {
+                if (cn0 > top0) {
+                    top3 = top2; top2 = top1; top1 = top0; top0 = cn0;
+                } else if (cn0 > top1) {
+                    top3 = top2; top2 = top1; top1 = cn0;
+                } else if (cn0 > top2) {
+                    top3 = top2; top2 = cn0;
+                } else {
+                    top3 = cn0;
+                }
+            }
+        }
+        visible = satelliteCount;
+        int topCount = Math.min(used, TOP_SIGNALS);
+        meanCn0DbHz = used == 0 ? 0f : (float) (sum / used);
+        topCn0DbHz = topCount == 0 ? 0f : (top0 + top1 + top2 + top3) / topCount;
+        score = used < MIN_FIX_SATELLITES ? 0f : Math.min(
+                clamp01((topCn0DbHz - WEAK_CN0_DBHZ) / (STRONG_CN0_DBHZ - WEAK_CN0_DBHZ)),
+                clamp01((float) (used - MIN_FIX_SATELLITES) / (STRONG_FIX_SATELLITES - MIN_FIX_SATELLITES)));
+        updateNanos = nowNanos;
+        hasReport = true;
+
+        boolean changed = visible != shownVisible || Math.round(topCn0DbHz) != shownTopCn0;
+        for (int c = 0; c < CONSTELLATIONS; c++) {
+            if (usedByConstellation[c] != shownUsedByConstellation[c]) {
+                changed = true;
+                shownUsedByConstellation[c] = usedByConstellation[c];
+            }
+        }
+        shownVisible = visible;
+        shownTopCn0 = Math.round(topCn0DbHz);
+        return changed;
+    }
+
+    private static float clamp01(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+
+    /**
+     * The distance accuracy gate for a fix at {@code fixTimeNanos}: {@code configuredMeters},
+     * loosened the weaker the sky up to the most the settings allow, but never tightened.
+     */
+    public float getAccuracyGateMeters(float configuredMeters, long fixTimeNanos) {
+        if (!hasReport || used < MIN_FIX_SATELLITES || Math.abs(fixTimeNanos - updateNanos) > MAX_REPORT_AGE_NANOS) {
+            return configuredMeters;
+        }
+        float factor = LOOSEST_GATE_FACTOR - (LOOSEST_GATE_FACTOR - 1f) * score;
+        return Math.max(configuredMeters, Math.min(SpeedCoreSettings.MAX_ACCURACY_METERS, configuredMeters * factor));
+    }
+
+    /** Forgets the last report, e.g. when the receiver stops reporting. */
+    public void reset() {
+        satelliteCount = 0;
+        update(0L);
+        hasReport = false;
+    }
+
+    public boolean hasReport() {
+        return hasReport;
+    }
+
+    public int getSatelliteCount() {
+        return visible;
+    }
+
+    public int getUsedInFixCount() {
+        return used;
+    }
+
+    public int getSatelliteCount(int constellation) {
+        return visibleByConstellation[constellation];
+    }
+
+    public int getUsedInFixCount(int constellation) {
+        return usedByConstellation[constellation];
+    }
+
+    /** Mean C/N0 of the satellites used in the fix, or 0 if none are. */
+    public float getMeanCn0DbHz() {
+        return meanCn0DbHz;
+    }
+
+    /** Mean C/N0 of the four strongest satellites used in the fix, or of all of them if fewer. */
+    public float getTopCn0DbHz() {
+        return topCn0DbHz;
+    }
+
+    /** Sky quality from 0 to 1; 0 with fewer than four satellites in the fix. */
+    public float getScore() {
+        return score;
+    }
+
+    public static String getConstellationLabel(int constellation) {
+        return CONSTELLATION_LABELS[constellation];
+    }
+
+    /** The readout, e.g. {@code Satellites: 14/22 used (GPS 6, GAL 5, GLO 3) 38 dB-Hz}. */
+    public void appendSummary(StringBuilder out) {
+        out.append("Satellites: ").append(used).append('/').append(visible).append(" used");
+        boolean first = true;
+        for (int constellation : DISPLAY_ORDER) {
+            int count = usedByConstellation[constellation];
+            if (count == 0) {
+                continue;
+            }
+            out.append(first ? " (" : ", ").append(CONSTELLATION_LABELS[constellation]).append(' ').append(count);
+            first = false;
+        }
+        if (!first) {
+            out.append(')');
+        }
+        if (used > 0) {
+            out.append(' ').append(Math.round(topCn0DbHz)).append(" dB-Hz");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        appendSummary(out);
+        return String.format(Locale.ROOT, "%s, mean %.1f dB-Hz, score %.2f", out, meanCn0DbHz, score);
+    }
+}
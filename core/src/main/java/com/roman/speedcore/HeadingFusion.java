@@ -0,0 +1,28 @@
+package com.roman.speedcore;
+
+/**
+ * Turns raw sensor samples into a compass heading. Implementations hold their own scratch state
+ * and are fed from a single thread; they contain only the math, so they can be tested on the JVM
+ * with synthetic samples.
+ */
+public interface HeadingFusion {
+
+    int INPUT_ACCELEROMETER = 1;
+    int INPUT_MAGNETOMETER = 2;
+    int INPUT_ROTATION_VECTOR = 3;
+
+    /**
+     * Feeds one sample.
+     *
+     * @param input  one of the {@code INPUT_*} constants
+     * @param values the sensor event values; not retained
+     * @return true if a new heading is available from {@link #getHeading()}
+     */
+    boolean onSensorValues(int input, float[] values);
+
+    /** Latest heading in degrees clockwise from magnetic north, in [0, 360). */
+    float getHeading();
+
+    /** Number of samples the caller should average over to hide this source's jitter. */
+    int getSmoothingWindow();
+}
@@ -0,0 +1,68 @@
+package com.roman.speedcore;
+
+/**
+ * Decides which compass headings are worth sending to the UI. A heading is emitted only once it
+ * has moved at least {@code thresholdDegrees} away from the last emitted one, and never more than
+ * once per {@code minIntervalNanos}, so sensor-rate jitter does not turn into needle redraws.
+ */
+public class HeadingThrottle {
+
+    public static final float DEFAULT_THRESHOLD_DEGREES = 1f;
+    public static final long FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    private final float thresholdDegrees;
+    private final long minIntervalNanos;
+
+    private float lastHeading = Float.NaN;
+    private long lastEmitNanos;
+
+    public HeadingThrottle(float thresholdDegrees, long minIntervalNanos) {
+        this.thresholdDegrees = thresholdDegrees;
+        this.minIntervalNanos = minIntervalNanos;
+    }
+
+    /**
+     * @param heading        heading in degrees
+     * @param timestampNanos monotonic timestamp of the sample
+     * @return true if the heading should be published
+     */
+    public boolean offer(float heading, long timestampNanos) {
+        if (!Float.isNaN(lastHeading)) {
+            if (timestampNanos - lastEmitNanos < minIntervalNanos) {
+                return false;
+            }
+            if (Math.abs(angleDifference(heading, lastHeading)) < thresholdDegrees) {
+                return false;
+            }
+        }
+        lastHeading = heading;
+        lastEmitNanos = timestampNanos;
+        return true;
+    }
+
+    public void reset() {
+        lastHeading = Float.NaN;
+        lastEmitNanos = 0L;
+    }
+
+    /** Signed smallest difference {@code a - b} in degrees, in [-180, 180). */
+    public static float angleDifference(float a, float b) {
+        float d = (a - b) % 360f;
+        if (d >= 180f) {
+            d -= 360f;
+        } else if (d < -180f) {
+            d += 360f;
+        }
+        return d;
+    }
+
+    /** Maps any angle in degrees onto [0, 360). */
+    public static float normalizeDegrees(float degrees) {
+        float d = degrees % 360f;
+        if (d < 0f) {
+            d += 360f;
+        }
+        // A tiny negative angle rounds up to exactly 360 when shifted.
+        return d >= 360f ? 0f : d;
+    }
+}
@@ -0,0 +1,11 @@
+package com.roman.speedcore;
+
+/**
+ * Source of monotonic time. Injected wherever time drives behaviour, so that code can be tested
+ * against a clock the test advances by hand.
+ */
+public interface MonotonicClock {
+
+    /** Nanoseconds since boot, on the same clock as a location fix's elapsed-realtime timestamp. */
+    long elapsedRealtimeNanos();
+}
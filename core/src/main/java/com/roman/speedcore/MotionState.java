@@ -0,0 +1,11 @@
+package com.roman.speedcore;
+
+/** Coarse motion classification used to pick how often, and how precisely, to ask for fixes. */
+public enum MotionState {
+    /** Parked or sitting on a desk: occasional low-power fixes are enough. */
+    STILL,
+    /** Walking pace, creeping in traffic, or vibrating without measurable speed. */
+    SLOW,
+    /** Driving or cycling: full-rate, high-accuracy fixes. */
+    MOVING
+}
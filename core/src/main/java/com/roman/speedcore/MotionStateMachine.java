@@ -0,0 +1,167 @@
+package com.roman.speedcore;
+
+/**
+ * Classifies motion from GPS speed and accelerometer variance, with hysteresis so the location
+ * request is only rebuilt on real transitions. Stepping up to a more active state is immediate,
+ * so the start of a drive is never sampled slowly; stepping down needs the quieter reading to
+ * hold for a dwell period, so a red light does not drop the fix rate.
+ *
+ * <p>The accelerometer is only read while the screen is on and balanced-power fixes often carry
+ * no speed, so in STILL the positions of all fixes are watched too: once one lies clearly away
+ * from where the device came to rest, it is moving again whatever the other inputs say.
+ */
+public class MotionStateMachine {
+
+    static final float MOVING_ENTER_SPEED = 2.5f;
+    static final float MOVING_EXIT_SPEED = 1.5f;
+    static final float SLOW_ENTER_SPEED = 0.5f;
+    static final float SLOW_EXIT_SPEED = 0.3f;
+    static final float ACTIVE_VARIANCE = 0.05f;
+    static final long VARIANCE_STALE_MILLIS = 5_000L;
+    static final long MOVING_EXIT_DWELL_MILLIS = 30_000L;
+    static final long STILL_ENTER_DWELL_MILLIS = 60_000L;
+    /** Least displacement from the resting position that wakes STILL, however good the fixes. */
+    static final float STILL_EXIT_DISPLACEMENT_METERS = 50f;
+
+    public static final long STILL_INTERVAL_MILLIS = 10_000L;
+    /** Fixes per batch while the screen is off. */
+    static final int BACKGROUND_BATCH_FIXES = 30;
+    /** Fixes per batch in low-power mode with the screen on, so the display still moves. */
+    static final int INTERACTIVE_BATCH_FIXES = 5;
+    public static final long MAX_BATCH_DELAY_MILLIS = 60_000L;
+
+    private MotionState state = MotionState.MOVING;
+    private float speed;
+    private float variance;
+    private long varianceMillis;
+    private boolean hasVariance = false;
+    private long quieterSince = -1L;
+
+    // Where the device came to rest, from the first fix seen in STILL.
+    private boolean hasRestPosition = false;
+    private double restLatitude;
+    private double restLongitude;
+    private float restAccuracy;
+
+    /** Feeds the speed of an accepted fix; returns true if the state changed. */
+    public boolean onSpeed(float metersPerSecond, long nowMillis) {
+        speed = metersPerSecond;
+        return evaluate(nowMillis);
+    }
+
+    /** Feeds a fresh accelerometer variance; returns true if the state changed. */
+    public boolean onAccelerometerVariance(float variance, long nowMillis) {
+        this.variance = variance;
+        this.varianceMillis = nowMillis;
+        this.hasVariance = true;
+        return evaluate(nowMillis);
+    }
+
+    /**
+     * Feeds the position of any fix, with or without a speed; returns true if the state changed.
+     * In STILL, a fix whose accuracy circle no longer overlaps the resting fix's, and which is at
+     * least {@link #STILL_EXIT_DISPLACEMENT_METERS} away, steps up to SLOW at once.
+     */
+    public boolean onPosition(double latitude, double longitude, float accuracyMeters, long nowMillis) {
+        if (state != MotionState.STILL) {
+            hasRestPosition = false;
+            return false;
+        }
+        float accuracy = Float.isNaN(accuracyMeters) ? 0f : accuracyMeters;
+        if (!hasRestPosition) {
+            hasRestPosition = true;
+            restLatitude = latitude;
+            restLongitude = longitude;
+            restAccuracy = accuracy;
+            return false;
+        }
+        double displacement = Geodesy.distanceMeters(restLatitude, restLongitude, latitude, longitude);
+        if (displacement <= Math.max(STILL_EXIT_DISPLACEMENT_METERS, restAccuracy + accuracy)) {
+            return false;
+        }
+        state = MotionState.SLOW;
+        quieterSince = -1L;
+        hasRestPosition = false;
+        return true;
+    }
+
+    public MotionState getState() {
+        return state;
+    }
+
+    /** Fix interval for the current state, given the interval the user chose for driving. */
+    public long getIntervalMillis(long movingIntervalMillis) {
+        switch (state) {
+            case STILL:
+                return Math.max(STILL_INTERVAL_MILLIS, movingIntervalMillis);
+            case SLOW:
+                return movingIntervalMillis * 2;
+            default:
+                return movingIntervalMillis;
+        }
+    }
+
+    /**
+     * How long the provider may hold fixes and deliver them as one batch, or 0 to deliver each fix
+     * as it comes. Batching lets the application processor sleep between deliveries, so it is used
+     * whenever nobody is watching the speed, and on screen too if the user chose low-power mode.
+     */
+    public long getMaxUpdateDelayMillis(long movingIntervalMillis, boolean interactive, boolean lowPowerMode) {
+        if (interactive && !lowPowerMode) {
+            return 0L;
+        }
+        int fixes = interactive ? INTERACTIVE_BATCH_FIXES : BACKGROUND_BATCH_FIXES;
+        return Math.min(MAX_BATCH_DELAY_MILLIS, getIntervalMillis(movingIntervalMillis) * fixes);
+    }
+
+    /** Whether the current state warrants GPS-grade accuracy rather than a balanced-power fix. */
+    public boolean isHighAccuracy() {
+        return state != MotionState.STILL;
+    }
+
+    public void reset() {
+        state = MotionState.MOVING;
+        speed = 0f;
+        variance = 0f;
+        hasVariance = false;
+        quieterSince = -1L;
+        hasRestPosition = false;
+    }
+
+    private boolean evaluate(long nowMillis) {
+        MotionState target = target(nowMillis);
+        if (target.compareTo(state) > 0) {
+            state = target;
+            quieterSince = -1L;
+            return true;
+        }
+        if (target.compareTo(state) == 0) {
+            quieterSince = -1L;
+            return false;
+        }
+        if (quieterSince < 0) {
+            quieterSince = nowMillis;
+        }
+        long dwell = state == MotionState.MOVING ? MOVING_EXIT_DWELL_MILLIS : STILL_ENTER_DWELL_MILLIS;
+        if (nowMillis - quieterSince >= dwell) {
+            state = target;
+            quieterSince = -1L;
+            return true;
+        }
+        return false;
+    }
+
+    private MotionState target(long nowMillis) {
+        float movingThreshold = state == MotionState.MOVING ? MOVING_EXIT_SPEED : MOVING_ENTER_SPEED;
+        float slowThreshold = state == MotionState.STILL ? SLOW_ENTER_SPEED : SLOW_EXIT_SPEED;
+        boolean vibrating = hasVariance && nowMillis - varianceMillis <= VARIANCE_STALE_MILLIS
+                && variance >= ACTIVE_VARIANCE;
+        if (speed >= movingThreshold) {
+            return MotionState.MOVING;
+        }
+        if (speed >= slowThreshold || vibrating) {
+            return MotionState.SLOW;
+        }
+        return MotionState.STILL;
+    }
+}
@@ -0,0 +1,51 @@
+package com.roman.speedcore;
+
+/**
+ * Variance of the accelerometer magnitude over a short sliding window. Gravity cancels out of the
+ * variance, so a phone resting in a parked car reads close to zero while engine and road
+ * vibration push it up well before GPS speed does.
+ */
+public class MotionVariance {
+
+    private final float[] window;
+    private int head;
+    private int count;
+
+    public MotionVariance(int size) {
+        if (size <= 1) {
+            throw new IllegalArgumentException("size must be at least 2: " + size);
+        }
+        this.window = new float[size];
+    }
+
+    public void add(float x, float y, float z) {
+        window[head] = (float) Math.sqrt(x * x + y * y + z * z);
+        head = head + 1 == window.length ? 0 : head + 1;
+        if (count < window.length) {
+            count++;
+        }
+    }
+
+    /** Population variance in (m/s^2)^2, or {@code 0} until two samples have been seen. */
+    public float getVariance() {
+        if (count < 2) {
+            return 0f;
+        }
+        double mean = 0;
+        for (int i = 0; i < count; i++) {
+            mean += window[i];
+        }
+        mean /= count;
+        double sumSquares = 0;
+        for (int i = 0; i < count; i++) {
+            double d = window[i] - mean;
+            sumSquares += d * d;
+        }
+        return (float) (sumSquares / count);
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.roman.speedcore;
+
+/**
+ * Fixed-size moving average backed by a primitive ring buffer, so {@link #add(float)} never
+ * allocates. The running sum is rebuilt from the window every time the ring wraps, which keeps
+ * float rounding error bounded to a single window no matter how long the trip runs.
+ */
+public class MovingAverage {
+
+    private final float[] window;
+    private final int size;
+    private int head;
+    private int count;
+    private float sum;
+
+    public MovingAverage(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        this.size = size;
+        this.window = new float[size];
+        this.sum = 0f;
+    }
+
+    public void add(float value) {
+        if (count == size) {
+            sum -= window[head];
+        } else {
+            count++;
+        }
+        window[head] = value;
+        sum += value;
+
+        head++;
+        if (head == size) {
+            head = 0;
+            resum();
+        }
+    }
+
+    public float getAverage() {
+        if (count == 0) {
+            return 0f;
+        }
+        return sum / count;
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+        sum = 0f;
+    }
+
+    private void resum() {
+        float s = 0f;
+        for (int i = 0; i < count; i++) {
+            s += window[i];
+        }
+        sum = s;
+    }
+
+    /**
+     * Moving average for angles in degrees. Each sample's sine and cosine are cached alongside it
+     * so dropping the oldest sample is a subtraction rather than another round of trig calls.
+     */
+    public static class CircularMovingAverage {
+        private final int size;
+        private final float[] sinWindow;
+        private final float[] cosWindow;
+        private int head;
+        private int count;
+        private float sumSin;
+        private float sumCos;
+
+        public CircularMovingAverage(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive: " + size);
+            }
+            this.size = size;
+            this.sinWindow = new float[size];
+            this.cosWindow = new float[size];
+        }
+
+        public void add(float angle) {
+            float angleRad = (float) Math.toRadians(angle);
+            float sin = (float) Math.sin(angleRad);
+            float cos = (float) Math.cos(angleRad);
+
+            if (count == size) {
+                sumSin -= sinWindow[head];
+                sumCos -= cosWindow[head];
+            } else {
+                count++;
+            }
+            sinWindow[head] = sin;
+            cosWindow[head] = cos;
+            sumSin += sin;
+            sumCos += cos;
+
+            head++;
+            if (head == size) {
+                head = 0;
+                resum();
+            }
+        }
+
+        public float getAverage() {
+            if (count == 0) {
+                return 0f;
+            }
+            float avgSin = sumSin / count;
+            float avgCos = sumCos / count;
+            float avgAngleRad = (float) Math.atan2(avgSin, avgCos);
+            return (float) Math.toDegrees(avgAngleRad);
+        }
+
+        private void resum() {
+            float s = 0f;
+            float c = 0f;
+            for (int i = 0; i < count; i++) {
+                s += sinWindow[i];
+                c += cosWindow[i];
+            }
+            sumSin = s;
+            sumCos = c;
+        }
+    }
+}
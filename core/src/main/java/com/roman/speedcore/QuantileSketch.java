@@ -0,0 +1,106 @@
+package com.roman.speedcore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Constant-memory quantile sketch with a relative-error guarantee, after DDSketch (Masson, Rim and
+ * Lee, 2019). Samples are counted in buckets whose bounds grow geometrically by
+ * {@code gamma = (1 + a) / (1 - a)}, so any quantile comes back within a relative error {@code a}
+ * of the exact one, whatever the order or distribution of the stream. Values below the minimum
+ * share one bucket reported as 0; values above the maximum are clamped to it.
+ *
+ * <p>Memory is fixed by the range and accuracy, not the sample count, and {@link #add(double)}
+ * never allocates. One sketch answers every quantile.
+ */
+public class QuantileSketch {
+
+    private final double minValue;
+    private final double gamma;
+    private final double logGamma;
+    /** Bucket 0 counts values below {@link #minValue}; bucket {@code k + 1} covers (min*g^(k-1), min*g^k]. */
+    private final int[] counts;
+    private long count;
+
+    /**
+     * @param relativeAccuracy guaranteed relative error of every quantile, e.g. 0.01
+     * @param minValue         smallest value told apart from zero
+     * @param maxValue         largest value tracked; anything above counts as this
+     */
+    public QuantileSketch(double relativeAccuracy, double minValue, double maxValue) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1) || !(minValue > 0) || !(maxValue > minValue)) {
+            throw new IllegalArgumentException("invalid sketch: accuracy " + relativeAccuracy
+                    + ", range " + minValue + ".." + maxValue);
+        }
+        this.minValue = minValue;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.counts = new int[2 + (int) Math.ceil(Math.log(maxValue / minValue) / logGamma)];
+    }
+
+    public void add(double value) {
+        counts[bucket(value)]++;
+        count++;
+    }
+
+    /**
+     * The value at rank {@code quantile * (count - 1)}, to within the relative accuracy, or
+     * {@code NaN} if nothing has been added.
+     */
+    public double getQuantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < counts.length - 1) {
+            seen += counts[bucket];
+            if (seen > rank) {
+                break;
+            }
+            bucket++;
+        }
+        if (bucket == 0) {
+            return 0.0;
+        }
+        // The point equidistant in relative terms from both bounds of the bucket.
+        return minValue * Math.pow(gamma, bucket - 1) * 2 / (gamma + 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+    }
+
+    /** Bytes written by {@link #writeState(ByteBuffer)}. */
+    int stateBytes() {
+        return 8 + counts.length * 4;
+    }
+
+    void writeState(ByteBuffer out) {
+        out.putLong(count);
+        for (int c : counts) {
+            out.putInt(c);
+        }
+    }
+
+    void readState(ByteBuffer in) {
+        count = in.getLong();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.getInt();
+        }
+    }
+
+    private int bucket(double value) {
+        if (!(value >= minValue)) {
+            return 0;
+        }
+        int bucket = 1 + (int) Math.ceil(Math.log(value / minValue) / logGamma);
+        return Math.min(bucket, counts.length - 1);
+    }
+}
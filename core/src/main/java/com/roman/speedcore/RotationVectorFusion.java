@@ -0,0 +1,54 @@
+package com.roman.speedcore;
+
+/**
+ * Heading from the platform's fused {@code TYPE_ROTATION_VECTOR} or
+ * {@code TYPE_GEOMAGNETIC_ROTATION_VECTOR} quaternion. Only the two rotation-matrix entries the
+ * azimuth depends on are computed, and the platform has already filtered the signal, so a short
+ * smoothing window is enough.
+ */
+public class RotationVectorFusion implements HeadingFusion {
+
+    public static final int SMOOTHING_WINDOW = 3;
+
+    private float heading;
+
+    @Override
+    public boolean onSensorValues(int input, float[] values) {
+        if (input != INPUT_ROTATION_VECTOR || values.length < 3) {
+            return false;
+        }
+        heading = azimuthDegrees(values);
+        return true;
+    }
+
+    @Override
+    public float getHeading() {
+        return heading;
+    }
+
+    @Override
+    public int getSmoothingWindow() {
+        return SMOOTHING_WINDOW;
+    }
+
+    /**
+     * Azimuth of a rotation vector, matching
+     * {@code SensorManager.getOrientation(getRotationMatrixFromVector(rv))[0]} in degrees.
+     */
+    static float azimuthDegrees(float[] rotationVector) {
+        float q1 = rotationVector[0];
+        float q2 = rotationVector[1];
+        float q3 = rotationVector[2];
+        float q0;
+        if (rotationVector.length >= 4) {
+            q0 = rotationVector[3];
+        } else {
+            q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+            q0 = q0 > 0 ? (float) Math.sqrt(q0) : 0;
+        }
+        // R[1] and R[4] of the rotation matrix.
+        float r1 = 2 * q1 * q2 - 2 * q3 * q0;
+        float r4 = 1 - 2 * q1 * q1 - 2 * q3 * q3;
+        return HeadingThrottle.normalizeDegrees((float) Math.toDegrees(Math.atan2(r1, r4)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.roman.speedcore;
+
+/**
+ * Immutable snapshot of the user's settings. One instance is shared by the UI and the fix path
+ * and replaced wholesale when anything changes, so readers never see a half-applied update.
+ * Out-of-range tunables are clamped on construction.
+ */
+public final class SpeedCoreSettings {
+
+    public static final long MIN_GPS_INTERVAL_MILLIS = 500L;
+    public static final long MAX_GPS_INTERVAL_MILLIS = 5000L;
+    public static final float MIN_ACCURACY_METERS = 5f;
+    public static final float MAX_ACCURACY_METERS = 50f;
+    public static final int MIN_SMOOTHING_WINDOW = 1;
+    public static final int MAX_SMOOTHING_WINDOW = 10;
+
+    public static final SpeedCoreSettings DEFAULTS = new SpeedCoreSettings(false, false, true, 1000L, 20f, 5, false);
+
+    private final boolean metric;
+    private final boolean keepScreenOn;
+    private final boolean showSatellites;
+    private final long gpsIntervalMillis;
+    private final float maxAccuracyMeters;
+    private final int speedSmoothingWindow;
+    private final boolean lowPowerMode;
+
+    public SpeedCoreSettings(boolean metric, boolean keepScreenOn, boolean showSatellites,
+                             long gpsIntervalMillis, float maxAccuracyMeters, int speedSmoothingWindow,
+                             boolean lowPowerMode) {
+        this.metric = metric;
+        this.keepScreenOn = keepScreenOn;
+        this.showSatellites = showSatellites;
+        this.gpsIntervalMillis = Math.max(MIN_GPS_INTERVAL_MILLIS, Math.min(MAX_GPS_INTERVAL_MILLIS, gpsIntervalMillis));
+        this.maxAccuracyMeters = Float.isNaN(maxAccuracyMeters)
+                ? DEFAULTS.maxAccuracyMeters
+                : Math.max(MIN_ACCURACY_METERS, Math.min(MAX_ACCURACY_METERS, maxAccuracyMeters));
+        this.speedSmoothingWindow = Math.max(MIN_SMOOTHING_WINDOW, Math.min(MAX_SMOOTHING_WINDOW, speedSmoothingWindow));
+        this.lowPowerMode = lowPowerMode;
+    }
+
+    public boolean isMetric() {
+        return metric;
+    }
+
+    public boolean isKeepScreenOn() {
+        return keepScreenOn;
+    }
+
+    public boolean isShowSatellites() {
+        return showSatellites;
+    }
+
+    /** Interval requested from the location provider while moving. */
+    public long getGpsIntervalMillis() {
+        return gpsIntervalMillis;
+    }
+
+    /**
+     * Distance only accumulates while the filtered position is known to within this many metres;
+     * every fix still feeds the speed. {@link GnssQuality} may loosen it under a poor sky.
+     */
+    public float getMaxAccuracyMeters() {
+        return maxAccuracyMeters;
+    }
+
+    /**
+     * How strongly the track filter smooths the displayed speed, as the number of fixes it
+     * roughly averages over; a smaller window follows changes in speed faster.
+     */
+    public int getSpeedSmoothingWindow() {
+        return speedSmoothingWindow;
+    }
+
+    /** Whether fixes may be batched even while the screen is on, trading display latency for battery. */
+    public boolean isLowPowerMode() {
+        return lowPowerMode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SpeedCoreSettings)) {
+            return false;
+        }
+        SpeedCoreSettings that = (SpeedCoreSettings) o;
+        return metric == that.metric
+                && keepScreenOn == that.keepScreenOn
+                && showSatellites == that.showSatellites
+                && gpsIntervalMillis == that.gpsIntervalMillis
+                && Float.compare(maxAccuracyMeters, that.maxAccuracyMeters) == 0
+                && speedSmoothingWindow == that.speedSmoothingWindow
+                && lowPowerMode == that.lowPowerMode;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Boolean.hashCode(metric);
+        result = 31 * result + Boolean.hashCode(keepScreenOn);
+        result = 31 * result + Boolean.hashCode(showSatellites);
+        result = 31 * result + Long.hashCode(gpsIntervalMillis);
+        result = 31 * result + Float.hashCode(maxAccuracyMeters);
+        result = 31 * result + speedSmoothingWindow;
+        result = 31 * result + Boolean.hashCode(lowPowerMode);
+        return result;
+    }
+}
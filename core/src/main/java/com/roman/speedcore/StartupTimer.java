@@ -0,0 +1,107 @@
+package com.roman.speedcore;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Times a start of the main screen, from the process start (cold) or the screen's creation (warm)
+ * to the milestones a user notices: the first frame, the first frame that shows something useful
+ * (a restored trip or a provisional speed) and the first frame that shows a live fix. Each
+ * milestone counts the first time it is reached only, on the elapsed-realtime clock.
+ */
+public class StartupTimer {
+
+    public enum Milestone {
+        /** The screen's views exist. */
+        CREATED("created"),
+        /** The speedometer has been drawn once, whatever it showed. */
+        FIRST_FRAME("first-frame"),
+        /** The speedometer has been drawn showing a speed, provisional or live. */
+        MEANINGFUL_DISPLAY("meaningful-display"),
+        /** The speedometer has been drawn showing the speed of a live fix. */
+        FIRST_FIX("first-fix");
+
+        private final String label;
+
+        Milestone(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Milestone[] MILESTONES = Milestone.values();
+
+    private final long originNanos;
+    private final boolean cold;
+    private final long[] reachedNanos = new long[MILESTONES.length];
+    private final boolean[] reached = new boolean[MILESTONES.length];
+
+    /**
+     * @param originNanos the process start for a cold start, else the moment the screen was created
+     * @param cold        whether the process was started for this screen
+     */
+    public StartupTimer(long originNanos, boolean cold) {
+        this.originNanos = originNanos;
+        this.cold = cold;
+    }
+
+    /** Records {@code milestone} at {@code nowNanos}; returns false if it was already reached. */
+    public boolean mark(Milestone milestone, long nowNanos) {
+        int index = milestone.ordinal();
+        if (reached[index]) {
+            return false;
+        }
+        reached[index] = true;
+        reachedNanos[index] = nowNanos;
+        return true;
+    }
+
+    public boolean isReached(Milestone milestone) {
+        return reached[milestone.ordinal()];
+    }
+
+    /** Milliseconds from the origin to {@code milestone}, or -1 if it has not been reached. */
+    public long getMillis(Milestone milestone) {
+        int index = milestone.ordinal();
+        return reached[index] ? (reachedNanos[index] - originNanos) / 1_000_000L : -1L;
+    }
+
+    /** Whether every milestone has been reached. */
+    public boolean isComplete() {
+        for (boolean milestone : reached) {
+            if (!milestone) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isCold() {
+        return cold;
+    }
+
+    /** One line: the kind of start, then each milestone reached so far in milliseconds. */
+    public void writeReport(Appendable out) throws IOException {
+        out.append(cold ? "cold start" : "warm start");
+        for (Milestone milestone : MILESTONES) {
+            if (reached[milestone.ordinal()]) {
+                out.append(String.format(Locale.ROOT, " %s=%d", milestone.getLabel(), getMillis(milestone)));
+            }
+        }
+        out.append(" ms\n");
+    }
+
+    /** {@link #writeReport} as a string, for logs and the debug overlay. */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        try {
+            writeReport(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package com.roman.speedcore;
+
+import java.util.Arrays;
+
+/**
+ * Time-weighted average of a value over a trailing window, e.g. speed over the last minute.
+ * Samples are binned into one-second buckets in a primitive ring covering the window, so memory is
+ * fixed by the window length however often samples arrive and {@link #add} never allocates. As in
+ * {@link MovingAverage}, the running sums are rebuilt from the ring each time it wraps, keeping
+ * rounding error bounded to one window.
+ *
+ * <p>The window ends at the second of the latest sample and spans the {@code windowSeconds} whole
+ * seconds up to and including it.
+ */
+public class TimeWindowAverage {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int windowSeconds;
+    private final double[] weightedSums;
+    private final long[] durations;
+    private long headSecond;
+    private boolean empty = true;
+    private double weightedSum;
+    private long duration;
+
+    public TimeWindowAverage(int windowSeconds) {
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("windowSeconds must be positive: " + windowSeconds);
+        }
+        this.windowSeconds = windowSeconds;
+        this.weightedSums = new double[windowSeconds];
+        this.durations = new long[windowSeconds];
+    }
+
+    /**
+     * Adds {@code value} held for {@code durationNanos}, credited to the second containing
+     * {@code timeNanos}. A sample older than the window's end restarts the window, as after a
+     * monotonic clock restart.
+     */
+    public void add(float value, long durationNanos, long timeNanos) {
+        long second = Math.floorDiv(timeNanos, NANOS_PER_SECOND);
+        if (empty || second < headSecond || second - headSecond >= windowSeconds) {
+            clear();
+            empty = false;
+        } else {
+            for (long s = headSecond + 1; s <= second; s++) {
+                int slot = slot(s);
+                weightedSum -= weightedSums[slot];
+                duration -= durations[slot];
+                weightedSums[slot] = 0.0;
+                durations[slot] = 0L;
+                if (slot == 0) {
+                    resum();
+                }
+            }
+        }
+        headSecond = second;
+        int slot = slot(second);
+        double weighted = (double) value * durationNanos;
+        weightedSums[slot] += weighted;
+        durations[slot] += durationNanos;
+        weightedSum += weighted;
+        duration += durationNanos;
+    }
+
+    /** Time-weighted average over the window, or 0 if nothing has been credited to it. */
+    public float getAverage() {
+        return duration > 0 ? (float) (weightedSum / duration) : 0f;
+    }
+
+    /** Time credited to the window, in nanoseconds. */
+    public long getDurationNanos() {
+        return duration;
+    }
+
+    public void clear() {
+        Arrays.fill(weightedSums, 0.0);
+        Arrays.fill(durations, 0L);
+        weightedSum = 0.0;
+        duration = 0L;
+        empty = true;
+    }
+
+    private int slot(long second) {
+        return (int) Math.floorMod(second, (long) windowSeconds);
+    }
+
+    private void resum() {
+        double s = 0.0;
+        for (double w : weightedSums) {
+            s += w;
+        }
+        weightedSum = s;
+    }
+}
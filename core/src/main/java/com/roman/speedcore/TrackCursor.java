@@ -0,0 +1,27 @@
+package com.roman.speedcore;
+
+import java.io.IOException;
+
+/**
+ * A forward-only stream of track points: each {@link #next()} moves to the next point, oldest
+ * first, whose fields the getters then return. Implementations reuse their state, so a track of
+ * any length can be read without holding it in memory.
+ */
+public interface TrackCursor {
+
+    /** Moves to the next point; returns false once the track is exhausted. */
+    boolean next() throws IOException;
+
+    /** Wall-clock time of the point. */
+    long getTimeMillis();
+
+    double getLatitude();
+
+    double getLongitude();
+
+    /** Speed in m/s, or {@code NaN} if unknown. */
+    float getSpeed();
+
+    /** Horizontal accuracy in metres, or {@code NaN} if unknown. */
+    float getAccuracy();
+}
@@ -0,0 +1,304 @@
+package com.roman.speedcore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams a track out as GPX 1.1 or CSV. Points are read from a {@link TrackCursor} one at a time
+ * and encoded straight into a reused direct buffer that is drained into the channel whenever it
+ * fills, so an export of a million points runs in the memory of one buffer and allocates nothing
+ * per point: coordinates and speeds are written digit by digit, timestamps as ISO 8601 UTC with
+ * the date cached per day, and every fixed piece of markup is encoded once up front.
+ *
+ * <p>GPX has no standard speed element, so speeds go into the widely read Garmin
+ * {@code TrackPointExtension}; accuracies only appear in CSV. An exporter can be reused for any
+ * number of exports but is not thread-safe.
+ */
+public class TrackExporter {
+
+    public enum Format {
+        GPX("gpx", "application/gpx+xml"),
+        CSV("csv", "text/csv");
+
+        private final String extension;
+        private final String mimeType;
+
+        Format(String extension, String mimeType) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    static final int BUFFER_BYTES = 64 * 1024;
+    /** Room left for one point before it is encoded; a GPX point is under 250 bytes. */
+    private static final int MAX_POINT_BYTES = 512;
+
+    /** About a centimetre. */
+    static final int COORDINATE_DECIMALS = 7;
+    static final int SPEED_DECIMALS = 2;
+    static final int ACCURACY_DECIMALS = 1;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L};
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private static final byte[] GPX_HEADER = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx version=\"1.1\" creator=\"SpeedCore\" xmlns=\"http://www.topografix.com/GPX/1/1\" "
+            + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+            + "xmlns:gpxtpx=\"http://www.garmin.com/xmlschemas/TrackPointExtension/v2\" "
+            + "xsi:schemaLocation=\"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd\">\n"
+            + "<trk>\n<name>");
+    private static final byte[] GPX_SEGMENT = ascii("</name>\n<trkseg>\n");
+    private static final byte[] GPX_POINT_LATITUDE = ascii("<trkpt lat=\"");
+    private static final byte[] GPX_POINT_LONGITUDE = ascii("\" lon=\"");
+    private static final byte[] GPX_POINT_TIME = ascii("\"><time>");
+    private static final byte[] GPX_POINT_SPEED = ascii("</time><extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>");
+    private static final byte[] GPX_POINT_END_WITH_SPEED =
+            ascii("</gpxtpx:speed></gpxtpx:TrackPointExtension></extensions></trkpt>\n");
+    private static final byte[] GPX_POINT_END = ascii("</time></trkpt>\n");
+    private static final byte[] GPX_FOOTER = ascii("</trkseg>\n</trk>\n</gpx>\n");
+    private static final byte[] CSV_HEADER = ascii("time,latitude,longitude,speed_mps,accuracy_m\n");
+
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final byte[] digits = new byte[20];
+    private WritableByteChannel out;
+
+    private long cachedDay = Long.MIN_VALUE;
+    private final byte[] cachedDate = new byte[11]; // "yyyy-MM-ddT"
+
+    public TrackExporter(Format format) {
+        this.format = format;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes every remaining point of {@code points} to {@code channel} as a track called
+     * {@code name}, which only GPX records. The channel is left open. Returns the number of points.
+     */
+    public long export(String name, TrackCursor points, WritableByteChannel channel) throws IOException {
+        out = channel;
+        buffer.clear();
+        long count = 0;
+        try {
+            if (format == Format.GPX) {
+                put(GPX_HEADER);
+                putEscaped(name);
+                put(GPX_SEGMENT);
+            } else {
+                put(CSV_HEADER);
+            }
+            while (points.next()) {
+                if (buffer.remaining() < MAX_POINT_BYTES) {
+                    drain();
+                }
+                if (format == Format.GPX) {
+                    putGpxPoint(points);
+                } else {
+                    putCsvPoint(points);
+                }
+                count++;
+            }
+            if (format == Format.GPX) {
+                put(GPX_FOOTER);
+            }
+            drain();
+        } finally {
+            out = null;
+        }
+        return count;
+    }
+
+    private void putGpxPoint(TrackCursor point) {
+        buffer.put(GPX_POINT_LATITUDE);
+        putFixed(point.getLatitude(), COORDINATE_DECIMALS);
+        buffer.put(GPX_POINT_LONGITUDE);
+        putFixed(point.getLongitude(), COORDINATE_DECIMALS);
+        buffer.put(GPX_POINT_TIME);
+        putTime(point.getTimeMillis());
+        float speed = point.getSpeed();
+        if (Float.isFinite(speed)) {
+            buffer.put(GPX_POINT_SPEED);
+            putFixed(speed, SPEED_DECIMALS);
+            buffer.put(GPX_POINT_END_WITH_SPEED);
+        } else {
+            buffer.put(GPX_POINT_END);
+        }
+    }
+
+    private void putCsvPoint(TrackCursor point) {
+        putTime(point.getTimeMillis());
+        buffer.put((byte) ',');
+        putFixed(point.getLatitude(), COORDINATE_DECIMALS);
+        buffer.put((byte) ',');
+        putFixed(point.getLongitude(), COORDINATE_DECIMALS);
+        buffer.put((byte) ',');
+        float speed = point.getSpeed();
+        if (Float.isFinite(speed)) {
+            putFixed(speed, SPEED_DECIMALS);
+        }
+        buffer.put((byte) ',');
+        float accuracy = point.getAccuracy();
+        if (Float.isFinite(accuracy)) {
+            putFixed(accuracy, ACCURACY_DECIMALS);
+        }
+        buffer.put((byte) '\n');
+    }
+
+    /** {@code value} rounded half away from zero to exactly {@code decimals} places. */
+    private void putFixed(double value, int decimals) {
+        long scaled = Math.round(Math.abs(value) * POWERS_OF_TEN[decimals]);
+        if (value < 0 && scaled != 0) {
+            buffer.put((byte) '-');
+        }
+        long power = POWERS_OF_TEN[decimals];
+        putDigits(scaled / power, 1);
+        if (decimals > 0) {
+            buffer.put((byte) '.');
+            putDigits(scaled % power, decimals);
+        }
+    }
+
+    /** {@code value}, which is not negative, zero-padded to at least {@code width} digits. */
+    private void putDigits(long value, int width) {
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = length; i < width; i++) {
+            buffer.put((byte) '0');
+        }
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+
+    /** ISO 8601 in UTC with milliseconds, e.g. {@code 2024-03-01T08:15:30.250Z}. */
+    private void putTime(long timeMillis) {
+        long day = Math.floorDiv(timeMillis, DAY_MILLIS);
+        if (day != cachedDay) {
+            cacheDate(day);
+        }
+        buffer.put(cachedDate);
+        int millisOfDay = (int) (timeMillis - day * DAY_MILLIS);
+        putDigits(millisOfDay / 3_600_000, 2);
+        buffer.put((byte) ':');
+        putDigits(millisOfDay / 60_000 % 60, 2);
+        buffer.put((byte) ':');
+        putDigits(millisOfDay / 1000 % 60, 2);
+        buffer.put((byte) '.');
+        putDigits(millisOfDay % 1000, 3);
+        buffer.put((byte) 'Z');
+    }
+
+    /** Proleptic Gregorian date of {@code day} days after 1970-01-01, for years 0 to 9999. */
+    private void cacheDate(long day) {
+        // Days to civil date, counting in 400-year eras from 0000-03-01.
+        long shifted = day + 719_468;
+        long era = Math.floorDiv(shifted, 146_097);
+        long dayOfEra = shifted - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        writeDecimal(cachedDate, 0, year, 4);
+        cachedDate[4] = '-';
+        writeDecimal(cachedDate, 5, month, 2);
+        cachedDate[7] = '-';
+        writeDecimal(cachedDate, 8, dayOfMonth, 2);
+        cachedDate[10] = 'T';
+        cachedDay = day;
+    }
+
+    private static void writeDecimal(byte[] target, int offset, long value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /** {@code text} as UTF-8 with the XML special characters escaped. */
+    private void putEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (buffer.remaining() < 8) {
+                drain();
+            }
+            switch (codePoint) {
+                case '&':
+                    putAscii("&amp;");
+                    break;
+                case '<':
+                    putAscii("&lt;");
+                    break;
+                case '>':
+                    putAscii("&gt;");
+                    break;
+                case '"':
+                    putAscii("&quot;");
+                    break;
+                default:
+                    putUtf8(codePoint);
+            }
+        }
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putUtf8(int codePoint) {
+        if (codePoint < 0x80) {
+            buffer.put((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            buffer.put((byte) (0xC0 | codePoint >> 6));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            buffer.put((byte) (0xE0 | codePoint >> 12));
+            buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        } else {
+            buffer.put((byte) (0xF0 | codePoint >> 18));
+            buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | codePoint & 0x3F));
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            drain();
+        }
+        buffer.put(bytes);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,382 @@
+package com.roman.speedcore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constant-acceleration Kalman filter over GPS fixes. Every fix is weighted by the uncertainty it
+ * reports instead of being kept or dropped against a fixed accuracy cut-off, and fixes whose
+ * innovation is implausibly large for their claimed accuracy are down-weighted rather than trusted.
+ *
+ * <p>Two engines share one clock:
+ * <ul>
+ *     <li>a scalar {@code [speed, acceleration]} filter on the Doppler speed, which is the most
+ *     accurate thing a receiver reports and drives the displayed speed;</li>
+ *     <li>independent east and north {@code [position, velocity, acceleration]} filters in a local
+ *     metric plane, fed with position and, when a bearing is known, the velocity vector. Their
+ *     position is the cleaned track used for distance.</li>
+ * </ul>
+ *
+ * <p>All state is primitive fields, so {@link #update} never allocates.
+ */
+public class TrackKalmanFilter {
+
+    static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final double METERS_PER_DEGREE_LATITUDE = Math.toRadians(EARTH_RADIUS_METERS);
+    /** Receivers report 0 when they do not know; treat nothing as better than this. */
+    static final float MIN_ACCURACY_METERS = 1f;
+    static final float DEFAULT_SPEED_ACCURACY_MPS = 0.5f;
+    /** Below this reported speed without a bearing, the fix is taken as a zero-velocity observation. */
+    static final float STATIONARY_SPEED_MPS = 0.3f;
+    /** Longer gaps restart the filter from the next fix instead of extrapolating across them. */
+    static final long MAX_PREDICT_NANOS = 10_000_000_000L;
+    /** Squared-innovation threshold (in variances) beyond which a measurement is down-weighted. */
+    static final double OUTLIER_GATE = 9.0;
+    /** Re-centre the local plane once the track is this far from its origin. */
+    static final double REANCHOR_METERS = 5_000.0;
+
+    public static final float DEFAULT_JERK_DENSITY = 0.1f;
+
+    private double jerkDensity = DEFAULT_JERK_DENSITY;
+
+    private final Axis speedAxis = new Axis();
+    private final Axis east = new Axis();
+    private final Axis north = new Axis();
+
+    private boolean initialized = false;
+    private long lastTimeNanos;
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerDegreeLongitude;
+    private double stepMeters;
+    private boolean restarted;
+
+    /**
+     * Folds one fix into the filter.
+     *
+     * @param bearingDegrees      course over ground, or {@code NaN} if the fix has none
+     * @param accuracyMeters      reported horizontal accuracy (68%)
+     * @param speedAccuracyMps    reported speed accuracy, or {@code NaN} to use a default
+     * @param timeNanos           monotonic fix time, e.g. {@code Location.getElapsedRealtimeNanos()}
+     * @return false if the fix is slightly older than the last one and was ignored
+     */
+    public boolean update(double latitude, double longitude, float speedMps, float bearingDegrees,
+                          float accuracyMeters, float speedAccuracyMps, long timeNanos) {
+        double positionVariance = square(Math.max(MIN_ACCURACY_METERS, nanToMax(accuracyMeters)));
+        double speedVariance = square(Float.isNaN(speedAccuracyMps) || speedAccuracyMps <= 0f
+                ? DEFAULT_SPEED_ACCURACY_MPS : speedAccuracyMps);
+        stepMeters = 0.0;
+        restarted = false;
+
+        if (!initialized) {
+            originLatitude = latitude;
+            originLongitude = longitude;
+            metersPerDegreeLongitude = metersPerDegreeLongitude(latitude);
+            initialize(0.0, 0.0, speedMps, bearingDegrees, positionVariance, speedVariance, timeNanos);
+            return true;
+        }
+
+        long dtNanos = timeNanos - lastTimeNanos;
+        if (dtNanos < -MAX_PREDICT_NANOS) {
+            // The monotonic clock restarted (a reboot since a restored checkpoint): start over.
+            dtNanos = Long.MAX_VALUE;
+        } else if (dtNanos < 0) {
+            return false;
+        }
+
+        double previousEast = east.position;
+        double previousNorth = north.position;
+        double measuredEast = (longitude - originLongitude) * metersPerDegreeLongitude;
+        double measuredNorth = (latitude - originLatitude) * METERS_PER_DEGREE_LATITUDE;
+
+        if (dtNanos > MAX_PREDICT_NANOS) {
+            restarted = true;
+            initialize(measuredEast, measuredNorth, speedMps, bearingDegrees, positionVariance, speedVariance, timeNanos);
+        } else {
+            double dt = dtNanos / 1e9;
+            speedAxis.predictVelocity(dt, jerkDensity);
+            east.predict(dt, jerkDensity);
+            north.predict(dt, jerkDensity);
+            lastTimeNanos = timeNanos;
+
+            speedAxis.updateVelocity(speedMps, speedVariance);
+            if (speedAxis.velocity < 0.0) {
+                speedAxis.velocity = 0.0;
+            }
+
+            east.updatePosition(measuredEast, positionVariance);
+            north.updatePosition(measuredNorth, positionVariance);
+            if (!Float.isNaN(bearingDegrees)) {
+                double bearing = Math.toRadians(bearingDegrees);
+                east.updateVelocity(speedMps * Math.sin(bearing), speedVariance);
+                north.updateVelocity(speedMps * Math.cos(bearing), speedVariance);
+            } else if (speedMps < STATIONARY_SPEED_MPS) {
+                east.updateVelocity(0.0, speedVariance);
+                north.updateVelocity(0.0, speedVariance);
+            }
+        }
+
+        stepMeters = Math.hypot(east.position - previousEast, north.position - previousNorth);
+        if (Math.abs(east.position) > REANCHOR_METERS || Math.abs(north.position) > REANCHOR_METERS) {
+            reanchor();
+        }
+        return true;
+    }
+
+    /**
+     * Maps the user's smoothing preference onto process noise: a window of {@code n} fixes behaves
+     * roughly like averaging over {@code n} fixes, without the lag of a moving average.
+     */
+    public void setSmoothing(int smoothingWindow) {
+        float window = Math.max(1, smoothingWindow);
+        float reference = TripTracker.DEFAULT_SMOOTHING_WINDOW;
+        jerkDensity = DEFAULT_JERK_DENSITY * (reference / window) * (reference / window);
+    }
+
+    public void reset() {
+        initialized = false;
+        stepMeters = 0.0;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Whether the last update restarted the filter after a gap longer than
+     * {@link #MAX_PREDICT_NANOS}, so the track does not join up with the fixes before it.
+     */
+    public boolean hasRestarted() {
+        return restarted;
+    }
+
+    /** Filtered ground speed in m/s, never negative. */
+    public float getSpeed() {
+        return (float) speedAxis.velocity;
+    }
+
+    /** Filtered longitudinal acceleration in m/s^2. */
+    public float getAcceleration() {
+        return (float) speedAxis.acceleration;
+    }
+
+    public double getLatitude() {
+        return originLatitude + north.position / METERS_PER_DEGREE_LATITUDE;
+    }
+
+    public double getLongitude() {
+        return originLongitude + east.position / metersPerDegreeLongitude;
+    }
+
+    /** One-sigma horizontal uncertainty of the cleaned position, in metres. */
+    public float getPositionAccuracy() {
+        return (float) Math.sqrt((east.pp + north.pp) / 2.0);
+    }
+
+    /** Distance the cleaned position moved in the last {@link #update}, in metres. */
+    public double getStepMeters() {
+        return stepMeters;
+    }
+
+    /** Bytes written by {@link #writeState(ByteBuffer)}. */
+    static final int STATE_BYTES = 1 + 8 * 4 + 3 * Axis.STATE_BYTES;
+
+    /** Writes everything needed to continue filtering after a restart; the tunables are not included. */
+    void writeState(ByteBuffer out) {
+        out.put((byte) (initialized ? 1 : 0));
+        out.putLong(lastTimeNanos);
+        out.putDouble(originLatitude);
+        out.putDouble(originLongitude);
+        out.putDouble(stepMeters);
+        speedAxis.write(out);
+        east.write(out);
+        north.write(out);
+    }
+
+    void readState(ByteBuffer in) {
+        initialized = in.get() != 0;
+        lastTimeNanos = in.getLong();
+        originLatitude = in.getDouble();
+        originLongitude = in.getDouble();
+        stepMeters = in.getDouble();
+        metersPerDegreeLongitude = metersPerDegreeLongitude(originLatitude);
+        speedAxis.read(in);
+        east.read(in);
+        north.read(in);
+    }
+
+    private void initialize(double positionEast, double positionNorth, float speedMps, float bearingDegrees,
+                            double positionVariance, double speedVariance, long timeNanos) {
+        speedAxis.initialize(0.0, 0.0, Math.max(0f, speedMps), speedVariance);
+        double velocityEast = 0.0;
+        double velocityNorth = 0.0;
+        // An unknown direction means the velocity could be anything up to the reported speed.
+        double velocityVariance = speedVariance + square(speedMps);
+        if (!Float.isNaN(bearingDegrees)) {
+            double bearing = Math.toRadians(bearingDegrees);
+            velocityEast = speedMps * Math.sin(bearing);
+            velocityNorth = speedMps * Math.cos(bearing);
+            velocityVariance = speedVariance;
+        }
+        east.initialize(positionEast, positionVariance, velocityEast, velocityVariance);
+        north.initialize(positionNorth, positionVariance, velocityNorth, velocityVariance);
+        lastTimeNanos = timeNanos;
+        initialized = true;
+    }
+
+    private void reanchor() {
+        double latitude = getLatitude();
+        double longitude = getLongitude();
+        originLatitude = latitude;
+        originLongitude = longitude;
+        metersPerDegreeLongitude = metersPerDegreeLongitude(latitude);
+        east.position = 0.0;
+        north.position = 0.0;
+    }
+
+    private static double metersPerDegreeLongitude(double latitude) {
+        // Clamp so the poles do not divide by zero; nobody drives there.
+        return METERS_PER_DEGREE_LATITUDE * Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+    }
+
+    private static float nanToMax(float value) {
+        return Float.isNaN(value) ? Float.MAX_VALUE : value;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * One {@code [position, velocity, acceleration]} chain driven by white jerk, with its symmetric
+     * covariance unrolled into fields. The speed engine uses only the velocity and acceleration
+     * states.
+     */
+    private static final class Axis {
+        double position;
+        double velocity;
+        double acceleration;
+        double pp, pv, pa, vv, va, aa;
+
+        /** Initial acceleration uncertainty: anything a car can do. */
+        private static final double INITIAL_ACCELERATION_VARIANCE = 9.0;
+
+        static final int STATE_BYTES = 9 * 8;
+
+        void write(ByteBuffer out) {
+            out.putDouble(position).putDouble(velocity).putDouble(acceleration);
+            out.putDouble(pp).putDouble(pv).putDouble(pa).putDouble(vv).putDouble(va).putDouble(aa);
+        }
+
+        void read(ByteBuffer in) {
+            position = in.getDouble();
+            velocity = in.getDouble();
+            acceleration = in.getDouble();
+            pp = in.getDouble();
+            pv = in.getDouble();
+            pa = in.getDouble();
+            vv = in.getDouble();
+            va = in.getDouble();
+            aa = in.getDouble();
+        }
+
+        void initialize(double position, double positionVariance, double velocity, double velocityVariance) {
+            this.position = position;
+            this.velocity = velocity;
+            this.acceleration = 0.0;
+            pp = positionVariance;
+            vv = velocityVariance;
+            aa = INITIAL_ACCELERATION_VARIANCE;
+            pv = 0.0;
+            pa = 0.0;
+            va = 0.0;
+        }
+
+        void predict(double dt, double q) {
+            if (dt == 0.0) {
+                return;
+            }
+            double dt2 = dt * dt;
+            double halfDt2 = 0.5 * dt2;
+            position += velocity * dt + acceleration * halfDt2;
+            velocity += acceleration * dt;
+
+            // P = F P F^T with F = [[1, dt, dt^2/2], [0, 1, dt], [0, 0, 1]].
+            double newPp = pp + 2 * dt * pv + dt2 * (vv + pa) + dt2 * dt * va + halfDt2 * halfDt2 * aa;
+            double newPv = pv + dt * (vv + pa) + 1.5 * dt2 * va + halfDt2 * dt * aa;
+            double newPa = pa + dt * va + halfDt2 * aa;
+            double newVv = vv + 2 * dt * va + dt2 * aa;
+            double newVa = va + dt * aa;
+
+            // Q for white jerk of spectral density q.
+            double dt3 = dt2 * dt;
+            pp = newPp + q * dt3 * dt2 / 20.0;
+            pv = newPv + q * dt2 * dt2 / 8.0;
+            pa = newPa + q * dt3 / 6.0;
+            vv = newVv + q * dt3 / 3.0;
+            va = newVa + q * dt2 / 2.0;
+            aa += q * dt;
+        }
+
+        /** Prediction for the scalar speed engine, which has no position state. */
+        void predictVelocity(double dt, double q) {
+            if (dt == 0.0) {
+                return;
+            }
+            velocity += acceleration * dt;
+            vv += 2 * dt * va + dt * dt * aa + q * dt * dt * dt / 3.0;
+            va += dt * aa + q * dt * dt / 2.0;
+            aa += q * dt;
+        }
+
+        void updatePosition(double measured, double variance) {
+            double innovation = measured - position;
+            double s = pp + robust(innovation, pp + variance, variance);
+            double kp = pp / s;
+            double kv = pv / s;
+            double ka = pa / s;
+            position += kp * innovation;
+            velocity += kv * innovation;
+            acceleration += ka * innovation;
+            // P = (I - K H) P with H = [1, 0, 0].
+            double rowP = pp;
+            double rowV = pv;
+            double rowA = pa;
+            pp -= kp * rowP;
+            pv -= kp * rowV;
+            pa -= kp * rowA;
+            vv -= kv * rowV;
+            va -= kv * rowA;
+            aa -= ka * rowA;
+        }
+
+        void updateVelocity(double measured, double variance) {
+            double innovation = measured - velocity;
+            double s = vv + robust(innovation, vv + variance, variance);
+            double kp = pv / s;
+            double kv = vv / s;
+            double ka = va / s;
+            position += kp * innovation;
+            velocity += kv * innovation;
+            acceleration += ka * innovation;
+            // P = (I - K H) P with H = [0, 1, 0].
+            double rowP = pv;
+            double rowV = vv;
+            double rowA = va;
+            pp -= kp * rowP;
+            pv -= kp * rowV;
+            pa -= kp * rowA;
+            vv -= kv * rowV;
+            va -= kv * rowA;
+            aa -= ka * rowA;
+        }
+
+        /**
+         * Inflates the measurement variance in proportion to how far the innovation exceeds the
+         * outlier gate, so a multipath jump pulls the estimate a little instead of dragging it.
+         */
+        private static double robust(double innovation, double innovationVariance, double variance) {
+            double normalized = innovation * innovation / innovationVariance;
+            return normalized > OUTLIER_GATE ? variance * (normalized / OUTLIER_GATE) : variance;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.roman.speedcore;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Streams fixes back out of a track written by {@link TrackWriter}. The reader is a cursor: each
+ * {@link #next()} decodes one fix into the getters, reusing one block buffer, so reading a track
+ * of any length allocates nothing per fix.
+ *
+ * <p>A block that is cut short or fails its CRC ends the track, which is what a crash during a
+ * write leaves behind.
+ */
+public class TrackReader implements Closeable, TrackCursor {
+
+    private final InputStream in;
+    private final byte[] header = new byte[TrackWriter.BLOCK_HEADER_BYTES];
+    private final ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private final byte[] block = new byte[TrackWriter.BLOCK_FIXES * TrackWriter.MAX_FIX_BYTES];
+
+    /** Bytes consumed from {@link #in}, counting the file header. */
+    private long offset;
+    /** End of the last block that loaded and verified. */
+    private long intactOffset;
+    private int position;
+    private int remaining;
+    private boolean ended;
+    /** Set by {@link #seek(long)} when the cursor already holds the fix {@link #next()} should return. */
+    private boolean holding;
+
+    private long time;
+    private long latitude;
+    private long longitude;
+    private long speed;
+    private long bearing;
+    private long accuracy;
+
+    /** Reads the file header; throws if {@code in} is not a track. */
+    public TrackReader(InputStream in) throws IOException {
+        this.in = in;
+        if (!readFully(header, TrackWriter.FILE_HEADER_BYTES)) {
+            throw new EOFException("missing track header");
+        }
+        headerBuffer.clear();
+        if (headerBuffer.getInt() != TrackWriter.FILE_MAGIC || headerBuffer.get() != TrackWriter.VERSION) {
+            throw new IOException("not a version " + TrackWriter.VERSION + " track");
+        }
+        intactOffset = offset;
+    }
+
+    /** Advances to the next fix; returns false at the end of the track. */
+    public boolean next() throws IOException {
+        if (holding) {
+            holding = false;
+            return true;
+        }
+        while (remaining == 0) {
+            if (ended || !readBlock()) {
+                ended = true;
+                return false;
+            }
+        }
+        decode();
+        return true;
+    }
+
+    /**
+     * Moves forward to the first fix at or after {@code timeMillis}, skipping whole blocks by their
+     * headers. The next {@link #next()} returns that fix. Returns false if there is none.
+     */
+    public boolean seek(long timeMillis) throws IOException {
+        holding = false;
+        while (true) {
+            if (remaining == 0) {
+                if (ended || !readHeader()) {
+                    ended = true;
+                    return false;
+                }
+                long lastTime = headerBuffer.getLong(20);
+                if (lastTime < timeMillis) {
+                    if (!skipFully(headerBuffer.getInt(4))) {
+                        ended = true;
+                        return false;
+                    }
+                    continue;
+                }
+                if (!readBody()) {
+                    ended = true;
+                    return false;
+                }
+            }
+            decode();
+            if (time >= timeMillis) {
+                holding = true;
+                return true;
+            }
+        }
+    }
+
+    public long getTimeMillis() {
+        return time;
+    }
+
+    public double getLatitude() {
+        return latitude / TrackWriter.DEGREES_SCALE;
+    }
+
+    public double getLongitude() {
+        return longitude / TrackWriter.DEGREES_SCALE;
+    }
+
+    public float getSpeed() {
+        return speed / TrackWriter.SPEED_SCALE;
+    }
+
+    /** Course in degrees, or {@code NaN} if the fix had none. */
+    public float getBearing() {
+        return bearing == TrackWriter.MISSING ? Float.NaN : bearing / TrackWriter.BEARING_SCALE;
+    }
+
+    /** Horizontal accuracy in metres, or {@code NaN} if the fix had none. */
+    public float getAccuracy() {
+        return accuracy == TrackWriter.MISSING ? Float.NaN : accuracy / TrackWriter.ACCURACY_SCALE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Verifies the remaining blocks without decoding their fixes and returns the length in bytes
+     * of the intact prefix of the track: the header and every complete block whose CRC verifies.
+     * Afterwards {@link #getTimeMillis()} is the time of the last intact fix, if there was one.
+     */
+    public long skipToEnd() throws IOException {
+        if (remaining > 0 || holding) {
+            time = headerBuffer.getLong(20);
+        }
+        holding = false;
+        while (!ended && readBlock()) {
+            time = headerBuffer.getLong(20);
+        }
+        remaining = 0;
+        ended = true;
+        return intactOffset;
+    }
+
+    /**
+     * Length in bytes of the intact prefix of a track; a writer resuming after a crash truncates
+     * the file to this length first. Returns 0 if there is not even a valid header.
+     */
+    public static long intactLength(InputStream in) throws IOException {
+        TrackReader reader;
+        try {
+            reader = new TrackReader(in);
+        } catch (IOException e) {
+            return 0;
+        }
+        return reader.skipToEnd();
+    }
+
+    private void decode() {
+        time += readZigZag();
+        latitude += readZigZag();
+        longitude += readZigZag();
+        speed += readZigZag();
+        bearing += readZigZag();
+        accuracy += readZigZag();
+        remaining--;
+    }
+
+    private long readZigZag() {
+        byte[] b = block;
+        int at = position;
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = b[at++];
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                break;
+            }
+        }
+        position = at;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Loads the next block and resets the delta state; false at the end or at a damaged block. */
+    private boolean readBlock() throws IOException {
+        return readHeader() && readBody();
+    }
+
+    private boolean readHeader() throws IOException {
+        if (!readFully(header, TrackWriter.BLOCK_HEADER_BYTES)) {
+            return false;
+        }
+        int length = headerBuffer.getInt(4);
+        int count = headerBuffer.getInt(8);
+        return headerBuffer.getInt(0) == TrackWriter.BLOCK_MAGIC
+                && count > 0 && count <= TrackWriter.BLOCK_FIXES
+                && length >= count && length <= count * TrackWriter.MAX_FIX_BYTES;
+    }
+
+    private boolean readBody() throws IOException {
+        int length = headerBuffer.getInt(4);
+        if (!readFully(block, length)) {
+            return false;
+        }
+        crc.reset();
+        crc.update(block, 0, length);
+        if ((int) crc.getValue() != headerBuffer.getInt(28)) {
+            return false;
+        }
+        intactOffset = offset;
+        position = 0;
+        remaining = headerBuffer.getInt(8);
+        time = 0;
+        latitude = 0;
+        longitude = 0;
+        speed = 0;
+        bearing = 0;
+        accuracy = 0;
+        return true;
+    }
+
+    private boolean readFully(byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) {
+                return false;
+            }
+            read += n;
+            offset += n;
+        }
+        return true;
+    }
+
+    private boolean skipFully(long length) throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                // skip() may legitimately return 0; read one byte to tell EOF from a pause.
+                if (in.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+            offset += skipped;
+        }
+        return true;
+    }
+}
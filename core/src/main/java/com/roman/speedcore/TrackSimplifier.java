@@ -0,0 +1,169 @@
+package com.roman.speedcore;
+
+/**
+ * Online line simplification of a track, for storage and drawing: a straight stretch of road
+ * sampled every second collapses to its two ends, while every point dropped stays within
+ * {@code toleranceMeters} of the retained polyline.
+ *
+ * <p>This is an opening-window simplifier, the streaming form of Douglas-Peucker. From the last
+ * retained point, the anchor, points are held while the segment from the anchor to the newest
+ * point passes within the tolerance of every held point. Once a new point breaks that, or
+ * {@code window} points are held, the newest held point is final: it is retained and becomes the
+ * anchor. Memory is {@code window} points and each point costs at most {@code window} distance
+ * checks. Distances are measured on a local flat projection around the anchor, which over a
+ * window of road is accurate to far better than any useful tolerance.
+ *
+ * <p>Only the geometry is simplified; trip totals belong on the unsimplified stream. Not
+ * thread-safe.
+ */
+public class TrackSimplifier {
+
+    /** Receives each retained point once it is final, in track order. */
+    public interface Sink {
+        void onPoint(double latitude, double longitude, float speedMetersPerSecond, float accuracyMeters,
+                     long timeMillis);
+    }
+
+    public static final double DEFAULT_TOLERANCE_METERS = 5.0;
+    /** Two minutes of fixes at 1 Hz, bounding how long a retained point can be held back. */
+    public static final int DEFAULT_WINDOW = 120;
+
+    private static final double METERS_PER_DEGREE = Geodesy.MEAN_RADIUS_METERS * Math.PI / 180.0;
+
+    private final double toleranceMeters;
+    private final int window;
+    private final Sink sink;
+
+    private boolean hasAnchor;
+    private double anchorLatitude;
+    private double anchorLongitude;
+    private double metersPerDegreeLongitude;
+
+    // Points held since the anchor, oldest first, with their offsets from the anchor in metres.
+    private int count;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final float[] speed;
+    private final float[] accuracy;
+    private final long[] timeMillis;
+    private final double[] x;
+    private final double[] y;
+
+    private long inputCount;
+    private long retainedCount;
+
+    public TrackSimplifier(double toleranceMeters, int window, Sink sink) {
+        if (!(toleranceMeters >= 0.0) || window < 1) {
+            throw new IllegalArgumentException("invalid simplifier: tolerance " + toleranceMeters + " m, window " + window);
+        }
+        this.toleranceMeters = toleranceMeters;
+        this.window = window;
+        this.sink = sink;
+        latitude = new double[window];
+        longitude = new double[window];
+        speed = new float[window];
+        accuracy = new float[window];
+        timeMillis = new long[window];
+        x = new double[window];
+        y = new double[window];
+    }
+
+    /** Adds the next point of the track; any point this finalises reaches the sink first. */
+    public void add(double latitude, double longitude, float speedMetersPerSecond, float accuracyMeters,
+                    long timeMillis) {
+        inputCount++;
+        if (!hasAnchor) {
+            emit(latitude, longitude, speedMetersPerSecond, accuracyMeters, timeMillis);
+            return;
+        }
+        double px = (longitude - anchorLongitude) * metersPerDegreeLongitude;
+        double py = (latitude - anchorLatitude) * METERS_PER_DEGREE;
+        if (count == window || (count > 0 && !coversHeldPoints(px, py))) {
+            finaliseNewest();
+            px = (longitude - anchorLongitude) * metersPerDegreeLongitude;
+            py = (latitude - anchorLatitude) * METERS_PER_DEGREE;
+        }
+        hold(latitude, longitude, speedMetersPerSecond, accuracyMeters, timeMillis, px, py);
+    }
+
+    /** Retains the newest held point, e.g. at the end of a trip or before the track is stored. */
+    public void flush() {
+        if (count > 0) {
+            finaliseNewest();
+        }
+    }
+
+    /** Drops held points and starts a new track; nothing reaches the sink. */
+    public void reset() {
+        hasAnchor = false;
+        count = 0;
+        inputCount = 0L;
+        retainedCount = 0L;
+    }
+
+    public double getToleranceMeters() {
+        return toleranceMeters;
+    }
+
+    /** Points added since the last reset. */
+    public long getInputCount() {
+        return inputCount;
+    }
+
+    /** Points sent to the sink since the last reset. */
+    public long getRetainedCount() {
+        return retainedCount;
+    }
+
+    /** Points added but not yet retained or dropped. */
+    public int getHeldCount() {
+        return count;
+    }
+
+    /** Whether the segment from the anchor to {@code (px, py)} passes close enough to every held point. */
+    private boolean coversHeldPoints(double px, double py) {
+        double lengthSquared = px * px + py * py;
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+        for (int i = 0; i < count; i++) {
+            if (segmentDistanceSquared(x[i], y[i], px, py, lengthSquared) > toleranceSquared) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Squared distance from {@code (qx, qy)} to the segment from the origin to {@code (px, py)}. */
+    static double segmentDistanceSquared(double qx, double qy, double px, double py, double lengthSquared) {
+        double t = lengthSquared > 0.0 ? (qx * px + qy * py) / lengthSquared : 0.0;
+        t = Math.max(0.0, Math.min(1.0, t));
+        double dx = qx - t * px;
+        double dy = qy - t * py;
+        return dx * dx + dy * dy;
+    }
+
+    private void hold(double lat, double lon, float fixSpeed, float fixAccuracy, long time, double px, double py) {
+        latitude[count] = lat;
+        longitude[count] = lon;
+        speed[count] = fixSpeed;
+        accuracy[count] = fixAccuracy;
+        timeMillis[count] = time;
+        x[count] = px;
+        y[count] = py;
+        count++;
+    }
+
+    private void finaliseNewest() {
+        int newest = count - 1;
+        count = 0;
+        emit(latitude[newest], longitude[newest], speed[newest], accuracy[newest], timeMillis[newest]);
+    }
+
+    private void emit(double lat, double lon, float fixSpeed, float fixAccuracy, long time) {
+        hasAnchor = true;
+        anchorLatitude = lat;
+        anchorLongitude = lon;
+        metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        retainedCount++;
+        sink.onPoint(lat, lon, fixSpeed, fixAccuracy, time);
+    }
+}
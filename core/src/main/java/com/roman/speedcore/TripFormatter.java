@@ -0,0 +1,254 @@
+package com.roman.speedcore;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Text formatting for the trip readouts. Kept free of Android types so it can be unit tested
+ * and benchmarked on a plain JVM.
+ *
+ * <p>Output is identical to the {@code String.format(Locale.getDefault(), ...)} calls this class
+ * replaces, but digits are written into a reused buffer instead of going through
+ * {@link java.util.Formatter}. Integer speeds up to {@value #CACHED_INTEGERS} come from a shared
+ * table, and each readout hands back its previous {@code String} when the text is unchanged, so
+ * the common case allocates nothing. Instances keep scratch state and are not thread-safe.
+ */
+public class TripFormatter {
+
+    static final int CACHED_INTEGERS = 400;
+    private static final String[] INTEGER_STRINGS = new String[CACHED_INTEGERS + 1];
+
+    static {
+        for (int i = 0; i <= CACHED_INTEGERS; i++) {
+            INTEGER_STRINGS[i] = String.valueOf(i);
+        }
+    }
+
+    // Largest mantissa that converts to double exactly, and the largest exact power of ten;
+    // together they make mantissa / 10^k a single correctly rounded division.
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    // Beyond this magnitude, or this close to a rounding tie, defer to String.format so the
+    // half-up rounding of the shortest decimal representation is reproduced exactly.
+    private static final double FAST_PATH_LIMIT = 1e7;
+    private static final double TIE_TOLERANCE = 1e-6;
+
+    private final StringBuilder builder = new StringBuilder(32);
+    private final char[] timeChars = {'0', '0', ':', '0', '0', ':', '0', '0'};
+    private long cachedHourMinute = -1;
+
+    private Locale locale;
+    private char zeroDigit = '0';
+    private char decimalSeparator = '.';
+
+    private String lastNumber;
+    private String lastMaxSpeed;
+    private String lastDistance;
+    private String lastAverageSpeed;
+    private String lastTime;
+
+    public String formatNumber(double value) {
+        if (isIntegral(value)) {
+            return integerString(Math.round(value));
+        }
+        builder.setLength(0);
+        appendNumber(value);
+        return lastNumber = reuseOrCreate(lastNumber);
+    }
+
+    /**
+     * Returns the first number embedded in a label such as {@code "Max: 12.5 mph"}, or {@code 0}
+     * if there is none. A number is an optional {@code '-'} directly before a run of ASCII digits,
+     * optionally followed by {@code '.'} or {@code ','} and more digits. The text is scanned once
+     * and converted without substrings; only mantissas too long to convert exactly fall back to
+     * {@link Double#parseDouble(String)}.
+     */
+    public double parseLabeledNumber(CharSequence labeled) {
+        int length = labeled.length();
+        for (int i = 0; i < length; i++) {
+            char c = labeled.charAt(i);
+            if (isDigit(c)) {
+                return parseNumberAt(labeled, i, i, false);
+            }
+            if (c == '-' && i + 1 < length && isDigit(labeled.charAt(i + 1))) {
+                return parseNumberAt(labeled, i, i + 1, true);
+            }
+        }
+        return 0.0;
+    }
+
+    public String formatSpeed(float value) {
+        return integerString(Math.round(value));
+    }
+
+    public String formatMaxSpeed(double value, boolean isMetric) {
+        builder.setLength(0);
+        builder.append("Max: ");
+        appendNumber(value);
+        builder.append(isMetric ? " km/h" : " mph");
+        return lastMaxSpeed = reuseOrCreate(lastMaxSpeed);
+    }
+
+    public String formatDistance(double value, boolean isMetric) {
+        builder.setLength(0);
+        builder.append("Dist: ");
+        appendNumber(value);
+        builder.append(isMetric ? " km" : " mi");
+        return lastDistance = reuseOrCreate(lastDistance);
+    }
+
+    public String formatAverageSpeed(double value, boolean isMetric) {
+        builder.setLength(0);
+        builder.append("Avg: ");
+        appendNumber(value);
+        builder.append(isMetric ? " km/h" : " mph");
+        return lastAverageSpeed = reuseOrCreate(lastAverageSpeed);
+    }
+
+    public String formatTime(long milliseconds) {
+        long seconds = (milliseconds / 1000) % 60;
+        long minutes = (milliseconds / (1000 * 60)) % 60;
+        long hours = (milliseconds / (1000 * 60 * 60));
+        if (milliseconds < 0 || hours > 99) {
+            return String.format(Locale.getDefault(), "%02d:%02d:%02d", hours, minutes, seconds);
+        }
+
+        if (refreshLocale()) {
+            cachedHourMinute = -1;
+        }
+        long hourMinute = hours * 60 + minutes;
+        if (hourMinute != cachedHourMinute) {
+            putTwoDigits(timeChars, 0, (int) hours);
+            putTwoDigits(timeChars, 3, (int) minutes);
+            cachedHourMinute = hourMinute;
+        }
+        putTwoDigits(timeChars, 6, (int) seconds);
+
+        if (lastTime != null && lastTime.length() == timeChars.length
+                && lastTime.charAt(6) == timeChars[6] && lastTime.charAt(7) == timeChars[7]
+                && lastTime.charAt(0) == timeChars[0] && lastTime.charAt(1) == timeChars[1]
+                && lastTime.charAt(3) == timeChars[3] && lastTime.charAt(4) == timeChars[4]) {
+            return lastTime;
+        }
+        return lastTime = new String(timeChars);
+    }
+
+    private static double parseNumberAt(CharSequence text, int start, int digitsStart, boolean negative) {
+        int length = text.length();
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean exact = true;
+
+        int i = digitsStart;
+        for (; i < length && isDigit(text.charAt(i)); i++) {
+            if (mantissa > (MAX_EXACT_MANTISSA - 9) / 10) {
+                exact = false;
+            } else {
+                mantissa = mantissa * 10 + (text.charAt(i) - '0');
+            }
+        }
+        if (i + 1 < length && (text.charAt(i) == '.' || text.charAt(i) == ',') && isDigit(text.charAt(i + 1))) {
+            for (i++; i < length && isDigit(text.charAt(i)); i++) {
+                if (mantissa > (MAX_EXACT_MANTISSA - 9) / 10) {
+                    exact = false;
+                } else {
+                    mantissa = mantissa * 10 + (text.charAt(i) - '0');
+                    fractionDigits++;
+                }
+            }
+        }
+
+        if (!exact || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(text.subSequence(start, i).toString().replace(',', '.'));
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIntegral(double value) {
+        return Math.abs(value - Math.round(value)) < 1e-9;
+    }
+
+    private static String integerString(long value) {
+        if (value >= 0 && value <= CACHED_INTEGERS) {
+            return INTEGER_STRINGS[(int) value];
+        }
+        return String.valueOf(value);
+    }
+
+    /** Appends {@code value} as {@link #formatNumber(double)} would render it. */
+    private void appendNumber(double value) {
+        if (isIntegral(value)) {
+            long rounded = Math.round(value);
+            if (rounded >= 0 && rounded <= CACHED_INTEGERS) {
+                builder.append(INTEGER_STRINGS[(int) rounded]);
+            } else {
+                builder.append(rounded);
+            }
+            return;
+        }
+
+        double scaled = Math.abs(value) * 10;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (!(scaled < FAST_PATH_LIMIT) || Math.abs(fraction - 0.5) < TIE_TOLERANCE) {
+            builder.append(String.format(Locale.getDefault(), "%.1f", value));
+            return;
+        }
+
+        refreshLocale();
+        long tenths = fraction > 0.5 ? (long) floor + 1 : (long) floor;
+        if (value < 0) {
+            builder.append('-');
+        }
+        int start = builder.length();
+        builder.append(tenths / 10);
+        localizeDigits(start);
+        builder.append(decimalSeparator);
+        builder.append((char) (zeroDigit + (int) (tenths % 10)));
+    }
+
+    private void localizeDigits(int start) {
+        if (zeroDigit == '0') {
+            return;
+        }
+        int offset = zeroDigit - '0';
+        for (int i = start; i < builder.length(); i++) {
+            builder.setCharAt(i, (char) (builder.charAt(i) + offset));
+        }
+    }
+
+    private void putTwoDigits(char[] target, int offset, int value) {
+        target[offset] = (char) (zeroDigit + value / 10);
+        target[offset + 1] = (char) (zeroDigit + value % 10);
+    }
+
+    /** Re-reads the locale symbols if the default locale changed; returns true if it did. */
+    private boolean refreshLocale() {
+        Locale current = Locale.getDefault();
+        if (current == locale) {
+            return false;
+        }
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(current);
+        locale = current;
+        zeroDigit = symbols.getZeroDigit();
+        decimalSeparator = symbols.getDecimalSeparator();
+        return true;
+    }
+
+    /** Returns {@code previous} if it already holds the builder's text, else a new string. */
+    private String reuseOrCreate(String previous) {
+        if (previous != null && previous.contentEquals(builder)) {
+            return previous;
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package com.roman.speedcore;
+
+/**
+ * SQL for the trip history database, kept free of Android types so the app's store and the
+ * benchmarks run exactly the same statements.
+ *
+ * <p>{@code trips} holds one summary row per trip and {@code minute_rollups} one row per minute of
+ * each trip; both are kept up to date by the writer as fixes arrive (see {@link TripRollup}), so
+ * the history list and per-trip charts never read {@code fixes}. The list pages by start time
+ * with a keyset query on {@code trips_start_time}: each page starts below the last start time of
+ * the previous one, so a page costs the same however far back it is.
+ */
+public final class TripHistorySchema {
+
+    public static final String DATABASE_NAME = "trip_history.db";
+    public static final int VERSION = 1;
+
+    public static final String[] CREATE = {
+            "CREATE TABLE trips ("
+                    + "_id INTEGER PRIMARY KEY, "
+                    + "start_time INTEGER NOT NULL, "
+                    + "end_time INTEGER NOT NULL, "
+                    + "distance REAL NOT NULL, "
+                    + "max_speed REAL NOT NULL, "
+                    + "average_speed REAL NOT NULL, "
+                    + "fix_count INTEGER NOT NULL, "
+                    // 1 while the trip is still being recorded.
+                    + "open INTEGER NOT NULL)",
+            "CREATE INDEX trips_start_time ON trips (start_time)",
+            "CREATE INDEX trips_open ON trips (open) WHERE open = 1",
+            "CREATE TABLE fixes ("
+                    + "trip_id INTEGER NOT NULL, "
+                    + "time INTEGER NOT NULL, "
+                    + "latitude REAL NOT NULL, "
+                    + "longitude REAL NOT NULL, "
+                    + "speed REAL NOT NULL, "
+                    + "accuracy REAL NOT NULL, "
+                    + "PRIMARY KEY (trip_id, time)) WITHOUT ROWID",
+            "CREATE TABLE minute_rollups ("
+                    + "trip_id INTEGER NOT NULL, "
+                    // Wall-clock start of the minute.
+                    + "minute INTEGER NOT NULL, "
+                    + "distance REAL NOT NULL, "
+                    + "max_speed REAL NOT NULL, "
+                    + "average_speed REAL NOT NULL, "
+                    + "fix_count INTEGER NOT NULL, "
+                    + "PRIMARY KEY (trip_id, minute)) WITHOUT ROWID",
+    };
+
+    /** Binds start time twice, as start and end; the summary starts empty and open. */
+    public static final String INSERT_TRIP =
+            "INSERT INTO trips (start_time, end_time, distance, max_speed, average_speed, fix_count, open) "
+                    + "VALUES (?, ?, 0, 0, 0, 0, 1)";
+
+    /** Binds end time, distance, max speed, average speed, fix count, open and trip id. */
+    public static final String UPDATE_TRIP =
+            "UPDATE trips SET end_time = ?, distance = ?, max_speed = ?, average_speed = ?, fix_count = ?, "
+                    + "open = ? WHERE _id = ?";
+
+    /** Binds trip id; keeps a trip left open by a previous process as it was last written. */
+    public static final String CLOSE_TRIP = "UPDATE trips SET open = 0 WHERE _id = ?";
+
+    /** Binds trip id, time, latitude, longitude, speed and accuracy. A repeated time is dropped. */
+    public static final String INSERT_FIX =
+            "INSERT OR IGNORE INTO fixes (trip_id, time, latitude, longitude, speed, accuracy) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** Binds trip id, minute, distance, max speed, average speed and fix count. */
+    public static final String REPLACE_MINUTE =
+            "INSERT OR REPLACE INTO minute_rollups (trip_id, minute, distance, max_speed, average_speed, fix_count) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String TRIP_COLUMNS =
+            "SELECT _id, start_time, end_time, distance, max_speed, average_speed, fix_count FROM trips ";
+
+    /** Binds the start time to page below and the page size; newest first. */
+    public static final String QUERY_TRIPS_PAGE =
+            TRIP_COLUMNS + "WHERE start_time < ? ORDER BY start_time DESC LIMIT ?";
+
+    public static final String QUERY_OPEN_TRIPS = TRIP_COLUMNS + "WHERE open = 1";
+
+    public static final int TRIP_ID = 0;
+    public static final int TRIP_START_TIME = 1;
+    public static final int TRIP_END_TIME = 2;
+    public static final int TRIP_DISTANCE = 3;
+    public static final int TRIP_MAX_SPEED = 4;
+    public static final int TRIP_AVERAGE_SPEED = 5;
+    public static final int TRIP_FIX_COUNT = 6;
+
+    private static final String MINUTE_COLUMNS =
+            "SELECT minute, distance, max_speed, average_speed, fix_count FROM minute_rollups WHERE trip_id = ? ";
+
+    /** Binds trip id; oldest first. */
+    public static final String QUERY_MINUTES = MINUTE_COLUMNS + "ORDER BY minute";
+
+    /** Binds trip id. */
+    public static final String QUERY_LAST_MINUTE = MINUTE_COLUMNS + "ORDER BY minute DESC LIMIT 1";
+
+    public static final int MINUTE_TIME = 0;
+    public static final int MINUTE_DISTANCE = 1;
+    public static final int MINUTE_MAX_SPEED = 2;
+    public static final int MINUTE_AVERAGE_SPEED = 3;
+    public static final int MINUTE_FIX_COUNT = 4;
+
+    /** Binds trip id; a trip's stored track, oldest first. */
+    public static final String QUERY_FIXES =
+            "SELECT time, latitude, longitude, speed, accuracy FROM fixes WHERE trip_id = ? ORDER BY time";
+
+    public static final int FIX_TIME = 0;
+    public static final int FIX_LATITUDE = 1;
+    public static final int FIX_LONGITUDE = 2;
+    public static final int FIX_SPEED = 3;
+    public static final int FIX_ACCURACY = 4;
+
+    /** Each binds trip id; run together, in a transaction, to drop a trip. */
+    public static final String[] DELETE_TRIP = {
+            "DELETE FROM fixes WHERE trip_id = ?",
+            "DELETE FROM minute_rollups WHERE trip_id = ?",
+            "DELETE FROM trips WHERE _id = ?",
+    };
+
+    private TripHistorySchema() {
+    }
+}
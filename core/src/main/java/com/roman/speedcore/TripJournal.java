@@ -0,0 +1,344 @@
+package com.roman.speedcore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the current trip, so a trip survives the process being killed.
+ *
+ * <p>The file is a header followed by records aligned to {@link #SLOT_BYTES}: one slot per fix and
+ * a few per checkpoint. Every record starts with a tag and a CRC32 of its body, so a record torn by
+ * a kill mid-write is detected and truncated away on open. A checkpoint holds the full
+ * {@link TripTracker} state; {@link #restore(TripTracker)} scans back from the end for the latest
+ * one and replays only the fixes after it, which keeps a cold start to a few hundred records at
+ * most however long the trip is.
+ *
+ * <p>Producers call the {@code stage*} methods from any thread; they only copy into an in-memory
+ * buffer. {@link #flush()} does the I/O and belongs on a background thread. Plain writes survive
+ * the process dying because the data is already in the page cache; {@link #sync()} additionally
+ * survives power loss and is worth calling after checkpoints.
+ */
+public class TripJournal implements Closeable {
+
+    /**
+     * Mirrors the journal into longer-lived storage such as a {@link TrackWriter}. Called on the
+     * thread running {@link #flush()} or {@link #restore(TripTracker)}, after the journal itself
+     * has been written.
+     */
+    public interface Listener {
+        void onFix(double latitude, double longitude, float speedMetersPerSecond, float bearingDegrees,
+                   float accuracyMeters, long timeMillis) throws IOException;
+
+        /** A checkpoint was written; a good moment to make mirrored data durable too. */
+        void onCheckpoint() throws IOException;
+
+        /** The trip was reset. */
+        void onReset() throws IOException;
+    }
+
+    static final int SLOT_BYTES = 64;
+    static final int HEADER_BYTES = SLOT_BYTES;
+    /** Bumped whenever the checkpoint layout changes, so an older journal is discarded. */
+    static final int MAGIC = 0x53434A34; // "SCJ4"
+
+    static final int TAG_FIX = 0x46495831; // "FIX1"
+    static final int TAG_CHECKPOINT = 0x434B5031; // "CKP1"
+    /** Tag and CRC. */
+    static final int RECORD_HEADER_BYTES = 8;
+    static final int FIX_BYTES = SLOT_BYTES;
+    static final int CHECKPOINT_BYTES = roundUpToSlot(RECORD_HEADER_BYTES + TripTracker.STATE_BYTES);
+
+    /** Fixes between automatic checkpoints, bounding how much a restore replays. */
+    public static final int CHECKPOINT_INTERVAL = 60;
+
+    private static final int STAGING_BYTES = 256 * SLOT_BYTES;
+    private static final int SCAN_SLOTS = 256;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer record = newBuffer(CHECKPOINT_BYTES);
+    private final ByteBuffer scan = newBuffer(SCAN_SLOTS * SLOT_BYTES);
+    private long size;
+    private Listener listener;
+
+    // Guarded by stagingLock; swapped with flushing so producers never wait on I/O.
+    private final Object stagingLock = new Object();
+    private ByteBuffer staging = newBuffer(STAGING_BYTES);
+    private ByteBuffer flushing = newBuffer(STAGING_BYTES);
+    private boolean truncatePending = false;
+    private int fixesSinceCheckpoint = 0;
+
+    /** Opens or creates the journal. Call {@link #restore(TripTracker)} before staging anything. */
+    public TripJournal(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        if (!readHeader()) {
+            channel.truncate(0);
+            writeHeader();
+            size = HEADER_BYTES;
+        }
+    }
+
+    /** Sets the listener for flushed and replayed fixes; call before {@link #restore(TripTracker)}. */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Rebuilds the journalled trip into {@code tracker}, which should be freshly constructed and
+     * configured. Also discards a torn tail, so appends continue from the last good record.
+     *
+     * @return whether there was a trip to restore
+     */
+    public boolean restore(TripTracker tracker) throws IOException {
+        long position = findLastCheckpoint();
+        if (position >= 0) {
+            readRecord(position, CHECKPOINT_BYTES);
+            record.position(RECORD_HEADER_BYTES);
+            tracker.readState(record);
+            position += CHECKPOINT_BYTES;
+        } else {
+            position = HEADER_BYTES;
+        }
+
+        int replayed = 0;
+        while (position + SLOT_BYTES <= size) {
+            int tag = readTag(position);
+            int length = tag == TAG_FIX ? FIX_BYTES : tag == TAG_CHECKPOINT ? CHECKPOINT_BYTES : -1;
+            if (length < 0 || position + length > size || !readRecord(position, length)) {
+                break;
+            }
+            if (tag == TAG_FIX) {
+                replay(record, RECORD_HEADER_BYTES, tracker);
+                replayed++;
+            }
+            position += length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            size = position;
+        }
+        synchronized (stagingLock) {
+            fixesSinceCheckpoint = replayed;
+        }
+        return tracker.isStarted();
+    }
+
+    /**
+     * Queues one fix with the same arguments as {@link TripTracker#onFix}. Returns true when a
+     * checkpoint is due; the caller should then {@link #stageCheckpoint(TripTracker)}.
+     */
+    public boolean stageFix(double latitude, double longitude, float speedMetersPerSecond, float bearingDegrees,
+                            float accuracyMeters, float speedAccuracyMps, long fixTimeNanos, long nowMillis) {
+        synchronized (stagingLock) {
+            ByteBuffer out = reserve(FIX_BYTES);
+            int start = out.position();
+            out.putInt(TAG_FIX).putInt(0);
+            out.putDouble(latitude).putDouble(longitude);
+            out.putFloat(speedMetersPerSecond).putFloat(bearingDegrees);
+            out.putFloat(accuracyMeters).putFloat(speedAccuracyMps);
+            out.putLong(fixTimeNanos).putLong(nowMillis);
+            seal(out, start, FIX_BYTES);
+            return ++fixesSinceCheckpoint >= CHECKPOINT_INTERVAL;
+        }
+    }
+
+    /** Queues a checkpoint of {@code tracker}; call on the thread that owns the tracker. */
+    public void stageCheckpoint(TripTracker tracker) {
+        synchronized (stagingLock) {
+            ByteBuffer out = reserve(CHECKPOINT_BYTES);
+            int start = out.position();
+            out.putInt(TAG_CHECKPOINT).putInt(0);
+            tracker.writeState(out);
+            seal(out, start, CHECKPOINT_BYTES);
+            fixesSinceCheckpoint = 0;
+        }
+    }
+
+    /** Forgets the journalled trip, including anything staged but not yet flushed. */
+    public void stageReset() {
+        synchronized (stagingLock) {
+            staging.clear();
+            truncatePending = true;
+            fixesSinceCheckpoint = 0;
+        }
+    }
+
+    /** Writes everything staged so far. Call from a single background thread. */
+    public void flush() throws IOException {
+        boolean truncate;
+        synchronized (stagingLock) {
+            ByteBuffer swap = flushing;
+            flushing = staging;
+            staging = swap;
+            truncate = truncatePending;
+            truncatePending = false;
+        }
+        if (truncate) {
+            channel.truncate(HEADER_BYTES);
+            size = HEADER_BYTES;
+        }
+        flushing.flip();
+        try {
+            int written = flushing.limit();
+            while (flushing.hasRemaining()) {
+                size += channel.write(flushing, size);
+            }
+            if (listener != null) {
+                if (truncate) {
+                    listener.onReset();
+                }
+                int at = 0;
+                while (at < written) {
+                    if (flushing.getInt(at) == TAG_FIX) {
+                        replay(flushing, at + RECORD_HEADER_BYTES, null);
+                        at += FIX_BYTES;
+                    } else {
+                        listener.onCheckpoint();
+                        at += CHECKPOINT_BYTES;
+                    }
+                }
+            }
+        } finally {
+            flushing.clear();
+        }
+    }
+
+    /** Forces written records to storage. */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /** Journal file size in bytes, including the header. */
+    public long size() {
+        return size;
+    }
+
+    /** Decodes the fix record body at {@code at} into the tracker, if any, and the listener. */
+    private void replay(ByteBuffer buffer, int at, TripTracker tracker) throws IOException {
+        double latitude = buffer.getDouble(at);
+        double longitude = buffer.getDouble(at + 8);
+        float speed = buffer.getFloat(at + 16);
+        float bearing = buffer.getFloat(at + 20);
+        float accuracy = buffer.getFloat(at + 24);
+        float speedAccuracy = buffer.getFloat(at + 28);
+        long fixTimeNanos = buffer.getLong(at + 32);
+        long nowMillis = buffer.getLong(at + 40);
+        if (tracker != null) {
+            tracker.onFix(latitude, longitude, speed, bearing, accuracy, speedAccuracy, fixTimeNanos, nowMillis);
+        }
+        if (listener != null) {
+            listener.onFix(latitude, longitude, speed, bearing, accuracy, nowMillis);
+        }
+    }
+
+    private ByteBuffer reserve(int length) {
+        if (staging.remaining() < length) {
+            // The flusher has fallen far behind; grow rather than drop fixes.
+            ByteBuffer larger = newBuffer(staging.capacity() * 2);
+            staging.flip();
+            larger.put(staging);
+            staging = larger;
+        }
+        return staging;
+    }
+
+    private void seal(ByteBuffer out, int start, int length) {
+        while (out.position() < start + length) {
+            out.put((byte) 0);
+        }
+        int limit = out.limit();
+        out.position(start + RECORD_HEADER_BYTES).limit(start + length);
+        crc.reset();
+        crc.update(out);
+        out.limit(limit);
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Walks slots backwards from the end looking for a checkpoint whose CRC verifies. A torn
+     * checkpoint at the tail simply fails the check and the previous one is used.
+     */
+    private long findLastCheckpoint() throws IOException {
+        long end = HEADER_BYTES + (size - HEADER_BYTES) / SLOT_BYTES * SLOT_BYTES;
+        while (end > HEADER_BYTES) {
+            long start = Math.max(HEADER_BYTES, end - (long) SCAN_SLOTS * SLOT_BYTES);
+            scan.clear().limit((int) (end - start));
+            readFully(scan, start);
+            for (int offset = scan.limit() - SLOT_BYTES; offset >= 0; offset -= SLOT_BYTES) {
+                long position = start + offset;
+                if (scan.getInt(offset) == TAG_CHECKPOINT && position + CHECKPOINT_BYTES <= size
+                        && readRecord(position, CHECKPOINT_BYTES)) {
+                    return position;
+                }
+            }
+            end = start;
+        }
+        return -1;
+    }
+
+    private int readTag(long position) throws IOException {
+        record.clear().limit(4);
+        readFully(record, position);
+        return record.getInt(0);
+    }
+
+    /** Reads a record into {@link #record} and returns whether its CRC matches. */
+    private boolean readRecord(long position, int length) throws IOException {
+        record.clear().limit(length);
+        readFully(record, position);
+        record.position(RECORD_HEADER_BYTES);
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue() == record.getInt(4);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("journal truncated while reading at " + position);
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private boolean readHeader() throws IOException {
+        if (size < HEADER_BYTES) {
+            return false;
+        }
+        record.clear().limit(HEADER_BYTES);
+        readFully(record, 0);
+        return record.getInt(0) == MAGIC;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = newBuffer(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.position(0).limit(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int roundUpToSlot(int bytes) {
+        return (bytes + SLOT_BYTES - 1) / SLOT_BYTES * SLOT_BYTES;
+    }
+}
@@ -0,0 +1,161 @@
+package com.roman.speedcore;
+
+/**
+ * Running summary of the trip being recorded and of its current minute, from which the history
+ * writer updates the {@code trips} and {@code minute_rollups} rows of {@link TripHistorySchema}
+ * after each batch instead of aggregating fixes when the history is read.
+ *
+ * <p>Trip totals are taken from the {@link TripTracker} as of each fix, so the history agrees with
+ * what the speedometer showed. A minute is the wall-clock minute a fix falls in; the distance of a
+ * minute is how far the trip grew during it. A fix dated before the current minute, as a clock
+ * step can produce, is counted in the current minute rather than reopening a written one.
+ */
+public class TripRollup {
+
+    public static final long MINUTE_MILLIS = 60_000L;
+
+    private boolean active;
+    private long startMillis;
+    private long endMillis;
+    private double distanceMeters;
+    private float maxSpeed;
+    private float averageSpeed;
+    private int fixCount;
+
+    private long minuteMillis = Long.MIN_VALUE;
+    private double minuteStartDistance;
+    private float minuteMaxSpeed;
+    private double minuteSpeedSum;
+    private int minuteFixCount;
+
+    /** Starts an empty trip whose first fix is at {@code startMillis}. */
+    public void start(long startMillis) {
+        clear();
+        active = true;
+        this.startMillis = startMillis;
+        endMillis = startMillis;
+    }
+
+    /**
+     * Continues a trip from its stored summary and its last stored minute, which has
+     * {@code minuteFixCount} fixes; a count of 0 means no minute was stored yet.
+     */
+    public void resume(TripSummary summary, long minuteMillis, double minuteDistance, float minuteMaxSpeed,
+                       float minuteAverageSpeed, int minuteFixCount) {
+        start(summary.getStartMillis());
+        endMillis = summary.getEndMillis();
+        distanceMeters = summary.getDistanceMeters();
+        maxSpeed = summary.getMaxSpeed();
+        averageSpeed = summary.getAverageSpeed();
+        fixCount = summary.getFixCount();
+        if (minuteFixCount > 0) {
+            this.minuteMillis = minuteMillis;
+            minuteStartDistance = distanceMeters - minuteDistance;
+            this.minuteMaxSpeed = minuteMaxSpeed;
+            minuteSpeedSum = (double) minuteAverageSpeed * minuteFixCount;
+            this.minuteFixCount = minuteFixCount;
+        }
+    }
+
+    public void clear() {
+        active = false;
+        startMillis = 0L;
+        endMillis = 0L;
+        distanceMeters = 0.0;
+        maxSpeed = 0f;
+        averageSpeed = 0f;
+        fixCount = 0;
+        minuteMillis = Long.MIN_VALUE;
+        minuteStartDistance = 0.0;
+        minuteMaxSpeed = 0f;
+        minuteSpeedSum = 0.0;
+        minuteFixCount = 0;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Whether a fix at {@code timeMillis} would start a new minute, leaving the current one
+     * complete; write the current minute out before passing that fix to {@link #onFix}.
+     */
+    public boolean startsNewMinute(long timeMillis) {
+        return minuteFixCount > 0 && floorMinute(timeMillis) > minuteMillis;
+    }
+
+    /**
+     * Adds a fix of speed {@code speedMetersPerSecond} at {@code timeMillis}, after which the
+     * trip's distance, max speed and average speed were the given totals.
+     */
+    public void onFix(long timeMillis, float speedMetersPerSecond, double tripDistanceMeters,
+                      float tripMaxSpeed, float tripAverageSpeed) {
+        long minute = floorMinute(timeMillis);
+        if (minute > minuteMillis) {
+            minuteMillis = minute;
+            minuteStartDistance = distanceMeters;
+            minuteMaxSpeed = 0f;
+            minuteSpeedSum = 0.0;
+            minuteFixCount = 0;
+        }
+        minuteMaxSpeed = Math.max(minuteMaxSpeed, speedMetersPerSecond);
+        minuteSpeedSum += speedMetersPerSecond;
+        minuteFixCount++;
+
+        endMillis = Math.max(endMillis, timeMillis);
+        distanceMeters = tripDistanceMeters;
+        maxSpeed = tripMaxSpeed;
+        averageSpeed = tripAverageSpeed;
+        fixCount++;
+    }
+
+    private static long floorMinute(long timeMillis) {
+        return Math.floorDiv(timeMillis, MINUTE_MILLIS) * MINUTE_MILLIS;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public float getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public float getAverageSpeed() {
+        return averageSpeed;
+    }
+
+    public int getFixCount() {
+        return fixCount;
+    }
+
+    /** Start of the current minute; meaningless while {@link #getMinuteFixCount()} is 0. */
+    public long getMinuteMillis() {
+        return minuteMillis;
+    }
+
+    public double getMinuteDistanceMeters() {
+        return distanceMeters - minuteStartDistance;
+    }
+
+    public float getMinuteMaxSpeed() {
+        return minuteMaxSpeed;
+    }
+
+    /** Mean speed of the current minute's fixes. */
+    public float getMinuteAverageSpeed() {
+        return minuteFixCount == 0 ? 0f : (float) (minuteSpeedSum / minuteFixCount);
+    }
+
+    public int getMinuteFixCount() {
+        return minuteFixCount;
+    }
+}
@@ -0,0 +1,270 @@
+package com.roman.speedcore;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Distribution statistics of a trip's speed, updated incrementally from each fix in constant
+ * memory: median and 95th percentile speed (a {@link QuantileSketch}), time spent in
+ * each speed band (a fixed-bucket histogram), moving and stopped time, and rolling one and five
+ * minute averages ({@link TimeWindowAverage}). {@link #onSpeed(float, long)} never allocates.
+ *
+ * <p>Time is credited per interval between consecutive fixes: the interval ending at a fix counts
+ * at that fix's speed. Intervals longer than {@link #MAX_GAP_NANOS}, such as a signal loss, are
+ * not credited to anything. The percentiles are over fixes rather than time.
+ */
+public class TripStatistics {
+
+    /** Below this speed the trip counts as stopped. */
+    public static final float STOPPED_SPEED_MPS = 0.5f;
+    public static final long MAX_GAP_NANOS = 60_000_000_000L;
+    public static final int MAX_SPEED_BANDS = 8;
+    /** 50, 90 and 120 km/h. */
+    public static final float[] DEFAULT_SPEED_BANDS = {50f / 3.6f, 90f / 3.6f, 120f / 3.6f};
+
+    /** Percentiles are exact to within this fraction of the true value. */
+    static final double QUANTILE_ACCURACY = 0.01;
+    /** Below this the percentiles read as 0. */
+    static final double QUANTILE_MIN_SPEED = 0.1;
+    static final double QUANTILE_MAX_SPEED = 150.0;
+    static final int SHORT_WINDOW_SECONDS = 60;
+    static final int LONG_WINDOW_SECONDS = 5 * 60;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final QuantileSketch speeds = newSpeedSketch();
+    private final TimeWindowAverage shortWindow = new TimeWindowAverage(SHORT_WINDOW_SECONDS);
+    private final TimeWindowAverage longWindow = new TimeWindowAverage(LONG_WINDOW_SECONDS);
+    private final float[] bandThresholds = new float[MAX_SPEED_BANDS];
+    /** Bucket {@code i} holds time at speeds reaching exactly {@code i} thresholds. */
+    private final long[] bandNanos = new long[MAX_SPEED_BANDS + 1];
+    private int bandCount;
+
+    private long movingNanos;
+    private long stoppedNanos;
+    private boolean hasLastFix = false;
+    private long lastTimeNanos;
+
+    public TripStatistics() {
+        this(DEFAULT_SPEED_BANDS);
+    }
+
+    /** @param speedBands ascending band thresholds in metres per second, at most {@link #MAX_SPEED_BANDS} */
+    public TripStatistics(float[] speedBands) {
+        if (speedBands.length > MAX_SPEED_BANDS) {
+            throw new IllegalArgumentException("at most " + MAX_SPEED_BANDS + " speed bands: " + speedBands.length);
+        }
+        for (int i = 1; i < speedBands.length; i++) {
+            if (!(speedBands[i] > speedBands[i - 1])) {
+                throw new IllegalArgumentException("speed bands must be ascending");
+            }
+        }
+        System.arraycopy(speedBands, 0, bandThresholds, 0, speedBands.length);
+        bandCount = speedBands.length;
+    }
+
+    /**
+     * Folds one fix's speed into the statistics.
+     *
+     * @param timeNanos monotonic fix time
+     */
+    public void onSpeed(float speedMetersPerSecond, long timeNanos) {
+        speeds.add(speedMetersPerSecond);
+
+        long dtNanos = timeNanos - lastTimeNanos;
+        if (!hasLastFix || dtNanos <= 0 || dtNanos > MAX_GAP_NANOS) {
+            dtNanos = 0;
+        }
+        hasLastFix = true;
+        lastTimeNanos = timeNanos;
+
+        shortWindow.add(speedMetersPerSecond, dtNanos, timeNanos);
+        longWindow.add(speedMetersPerSecond, dtNanos, timeNanos);
+        if (dtNanos == 0) {
+            return;
+        }
+        if (speedMetersPerSecond < STOPPED_SPEED_MPS) {
+            stoppedNanos += dtNanos;
+        } else {
+            movingNanos += dtNanos;
+        }
+        int bucket = 0;
+        while (bucket < bandCount && speedMetersPerSecond >= bandThresholds[bucket]) {
+            bucket++;
+        }
+        bandNanos[bucket] += dtNanos;
+    }
+
+    public void reset() {
+        speeds.clear();
+        shortWindow.clear();
+        longWindow.clear();
+        Arrays.fill(bandNanos, 0L);
+        movingNanos = 0L;
+        stoppedNanos = 0L;
+        hasLastFix = false;
+        lastTimeNanos = 0L;
+    }
+
+    /** Median speed over fixes, or {@code NaN} before the first fix. */
+    public float getMedianSpeed() {
+        return (float) speeds.getQuantile(0.5);
+    }
+
+    /** 95th percentile speed over fixes, or {@code NaN} before the first fix. */
+    public float getP95Speed() {
+        return (float) speeds.getQuantile(0.95);
+    }
+
+    public long getMovingMillis() {
+        return movingNanos / NANOS_PER_MILLI;
+    }
+
+    public long getStoppedMillis() {
+        return stoppedNanos / NANOS_PER_MILLI;
+    }
+
+    public int getSpeedBandCount() {
+        return bandCount;
+    }
+
+    public float getSpeedBand(int band) {
+        return bandThresholds[checkBand(band)];
+    }
+
+    /** Time spent at or above speed band {@code band}. */
+    public long getTimeAboveMillis(int band) {
+        long nanos = 0L;
+        for (int bucket = checkBand(band) + 1; bucket <= bandCount; bucket++) {
+            nanos += bandNanos[bucket];
+        }
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /** Average speed over the last minute of fixes. */
+    public float getOneMinuteAverage() {
+        return shortWindow.getAverage();
+    }
+
+    /** Average speed over the last five minutes of fixes. */
+    public float getFiveMinuteAverage() {
+        return longWindow.getAverage();
+    }
+
+    /** Copies the current values into an immutable snapshot for the UI. */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    private int checkBand(int band) {
+        if (band < 0 || band >= bandCount) {
+            throw new IndexOutOfBoundsException("band " + band + " of " + bandCount);
+        }
+        return band;
+    }
+
+    /**
+     * Bytes written by {@link #writeState(ByteBuffer)}. The rolling windows are not included: after
+     * a restore they refill from the fixes that follow.
+     */
+    static final int STATE_BYTES = 4 + MAX_SPEED_BANDS * 4 + (MAX_SPEED_BANDS + 1) * 8
+            + 8 + 8 + 1 + 8 + newSpeedSketch().stateBytes();
+
+    void writeState(ByteBuffer out) {
+        out.putInt(bandCount);
+        for (float threshold : bandThresholds) {
+            out.putFloat(threshold);
+        }
+        for (long nanos : bandNanos) {
+            out.putLong(nanos);
+        }
+        out.putLong(movingNanos);
+        out.putLong(stoppedNanos);
+        out.put((byte) (hasLastFix ? 1 : 0));
+        out.putLong(lastTimeNanos);
+        speeds.writeState(out);
+    }
+
+    void readState(ByteBuffer in) {
+        bandCount = in.getInt();
+        for (int i = 0; i < bandThresholds.length; i++) {
+            bandThresholds[i] = in.getFloat();
+        }
+        for (int i = 0; i < bandNanos.length; i++) {
+            bandNanos[i] = in.getLong();
+        }
+        movingNanos = in.getLong();
+        stoppedNanos = in.getLong();
+        hasLastFix = in.get() != 0;
+        lastTimeNanos = in.getLong();
+        speeds.readState(in);
+        shortWindow.clear();
+        longWindow.clear();
+    }
+
+    private static QuantileSketch newSpeedSketch() {
+        return new QuantileSketch(QUANTILE_ACCURACY, QUANTILE_MIN_SPEED, QUANTILE_MAX_SPEED);
+    }
+
+    /** Immutable copy of the statistics at one moment, in SI units. */
+    public static final class Snapshot {
+        private final float medianSpeed;
+        private final float p95Speed;
+        private final long movingMillis;
+        private final long stoppedMillis;
+        private final float[] speedBands;
+        private final long[] timeAboveMillis;
+        private final float oneMinuteAverage;
+        private final float fiveMinuteAverage;
+
+        private Snapshot(TripStatistics s) {
+            medianSpeed = s.getMedianSpeed();
+            p95Speed = s.getP95Speed();
+            movingMillis = s.getMovingMillis();
+            stoppedMillis = s.getStoppedMillis();
+            speedBands = new float[s.bandCount];
+            timeAboveMillis = new long[s.bandCount];
+            for (int i = 0; i < s.bandCount; i++) {
+                speedBands[i] = s.bandThresholds[i];
+                timeAboveMillis[i] = s.getTimeAboveMillis(i);
+            }
+            oneMinuteAverage = s.getOneMinuteAverage();
+            fiveMinuteAverage = s.getFiveMinuteAverage();
+        }
+
+        public float getMedianSpeed() {
+            return medianSpeed;
+        }
+
+        public float getP95Speed() {
+            return p95Speed;
+        }
+
+        public long getMovingMillis() {
+            return movingMillis;
+        }
+
+        public long getStoppedMillis() {
+            return stoppedMillis;
+        }
+
+        public int getSpeedBandCount() {
+            return speedBands.length;
+        }
+
+        public float getSpeedBand(int band) {
+            return speedBands[band];
+        }
+
+        public long getTimeAboveMillis(int band) {
+            return timeAboveMillis[band];
+        }
+
+        public float getOneMinuteAverage() {
+            return oneMinuteAverage;
+        }
+
+        public float getFiveMinuteAverage() {
+            return fiveMinuteAverage;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.roman.speedcore;
+
+/** One trip of the history as its summary row stores it; speeds in m/s, distance in metres. */
+public final class TripSummary {
+
+    private final long id;
+    private final long startMillis;
+    private final long endMillis;
+    private final double distanceMeters;
+    private final float maxSpeed;
+    private final float averageSpeed;
+    private final int fixCount;
+
+    public TripSummary(long id, long startMillis, long endMillis, double distanceMeters, float maxSpeed,
+                       float averageSpeed, int fixCount) {
+        this.id = id;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.distanceMeters = distanceMeters;
+        this.maxSpeed = maxSpeed;
+        this.averageSpeed = averageSpeed;
+        this.fixCount = fixCount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /** Wall-clock time of the first fix. */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /** Wall-clock time of the last fix recorded so far. */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public long getDurationMillis() {
+        return endMillis - startMillis;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public float getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public float getAverageSpeed() {
+        return averageSpeed;
+    }
+
+    public int getFixCount() {
+        return fixCount;
+    }
+}
@@ -0,0 +1,280 @@
+package com.roman.speedcore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Trip aggregates (smoothed speed, max speed, distance, average speed) updated once per GPS fix.
+ * Fixes go through a {@link TrackKalmanFilter}: speed readouts come from its filtered speed and
+ * distance from its cleaned track, so noisy fixes are weighted down rather than dropped. The
+ * filtered speed also feeds the trip's {@link TripStatistics}.
+ *
+ * <p>Distance is measured along the cleaned track with {@link Geodesy#distanceMeters} and summed in
+ * a {@link CompensatedSum}, so it stays exact to the millimetre over any trip length. Below
+ * {@link #STATIONARY_SPEED_MPS} a stationary-jitter gate takes over: it averages the track since
+ * distance was last counted and only counts again once the track leaves a radius around that
+ * centre, so the wander of a parked phone adds nothing while a slow walk is still counted in
+ * chords of at most twice the radius. All values are held in SI units (metres, metres per
+ * second); convert with {@link #toDisplaySpeed(float, boolean)} and
+ * {@link #toDisplayDistance(float, boolean)}.
+ */
+public class TripTracker {
+
+    public static final float DEFAULT_MAX_ACCURACY_METERS = 20f;
+    public static final int DEFAULT_SMOOTHING_WINDOW = 5;
+    /**
+     * Below this filtered speed, movement only counts once it leaves the jitter radius. Well above
+     * the filtered speed of a parked phone, which peaks around 1 m/s in heavy noise.
+     */
+    public static final float STATIONARY_SPEED_MPS = 2f;
+    /** The jitter radius is this many filtered position accuracies, but at least the minimum. */
+    static final float JITTER_RADIUS_ACCURACIES = 4f;
+    static final float MIN_JITTER_RADIUS_METERS = 5f;
+
+    public static final int CHANGED_SPEED = 1;
+    public static final int CHANGED_MAX_SPEED = 1 << 1;
+    public static final int CHANGED_DISTANCE = 1 << 2;
+    public static final int CHANGED_AVERAGE_SPEED = 1 << 3;
+
+    private static final float MPS_TO_KMH = 3.6f;
+    private static final float MPS_TO_MPH = 2.23694f;
+    private static final double METERS_PER_KM = 1000;
+    private static final double METERS_PER_MILE = 1609.34;
+
+    private final TrackKalmanFilter filter = new TrackKalmanFilter();
+    private final TripStatistics statistics;
+    private float maxAccuracyMeters = DEFAULT_MAX_ACCURACY_METERS;
+
+    private float smoothedSpeed = 0f;
+    private float maxSpeedValue = 0f;
+    private final CompensatedSum distanceValue = new CompensatedSum();
+    private float averageSpeedValue = 0f;
+    private boolean hasPreviousFix = false;
+    /** Where distance was last counted up to. */
+    private double anchorLatitude;
+    private double anchorLongitude;
+    /** Mean position of the fixes since the anchor, for the jitter gate. */
+    private double centreLatitude;
+    private double centreLongitude;
+    private int centreCount;
+    private long startTime = 0L;
+    private long startTimeNanos;
+
+    public TripTracker() {
+        this(new TripStatistics());
+    }
+
+    /** Tracks a trip into {@code statistics}, e.g. one built with custom speed bands. */
+    public TripTracker(TripStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Folds one fix into the trip.
+     *
+     * @param speedMetersPerSecond reported ground speed
+     * @param bearingDegrees       reported course, or {@code NaN} if the fix has none
+     * @param accuracyMeters       reported horizontal accuracy, used to weight the fix
+     * @param speedAccuracyMps     reported speed accuracy, or {@code NaN} if unknown
+     * @param fixTimeNanos         monotonic time of the fix, which also times the trip
+     * @param nowMillis            wall-clock time of the fix, recorded as the trip's start time
+     * @return a mask of {@code CHANGED_*} flags, or {@code 0} if the fix was rejected as out of order
+     */
+    public int onFix(double latitude, double longitude, float speedMetersPerSecond, float bearingDegrees,
+                     float accuracyMeters, float speedAccuracyMps, long fixTimeNanos, long nowMillis) {
+        if (!filter.update(latitude, longitude, speedMetersPerSecond, bearingDegrees,
+                accuracyMeters, speedAccuracyMps, fixTimeNanos)) {
+            return 0;
+        }
+
+        if (startTime == 0L) {
+            startTime = nowMillis;
+            startTimeNanos = fixTimeNanos;
+        }
+
+        int changed = CHANGED_SPEED;
+        smoothedSpeed = filter.getSpeed();
+        statistics.onSpeed(smoothedSpeed, fixTimeNanos);
+
+        if (smoothedSpeed > maxSpeedValue) {
+            maxSpeedValue = smoothedSpeed;
+            changed |= CHANGED_MAX_SPEED;
+        }
+
+        double filteredLatitude = filter.getLatitude();
+        double filteredLongitude = filter.getLongitude();
+        float positionAccuracy = filter.getPositionAccuracy();
+        if (!hasPreviousFix || filter.hasRestarted() || positionAccuracy > maxAccuracyMeters) {
+            // Only count movement of the cleaned track while it is known to within the accuracy
+            // gate; anything travelled outside it, or across a dropout the filter restarted after,
+            // is skipped rather than counted later as a straight chord.
+            moveAnchor(filteredLatitude, filteredLongitude);
+        } else if (smoothedSpeed >= STATIONARY_SPEED_MPS
+                || Geodesy.distanceMeters(centreLatitude, centreLongitude, filteredLatitude, filteredLongitude)
+                > Math.max(MIN_JITTER_RADIUS_METERS, JITTER_RADIUS_ACCURACIES * positionAccuracy)) {
+            distanceValue.add(Geodesy.distanceMeters(anchorLatitude, anchorLongitude, filteredLatitude, filteredLongitude));
+            moveAnchor(filteredLatitude, filteredLongitude);
+            changed |= CHANGED_DISTANCE;
+        } else {
+            centreCount++;
+            centreLatitude += (filteredLatitude - centreLatitude) / centreCount;
+            centreLongitude += (filteredLongitude - centreLongitude) / centreCount;
+        }
+        hasPreviousFix = true;
+
+        long elapsedNanos = fixTimeNanos - startTimeNanos;
+        if (elapsedNanos > 0) {
+            averageSpeedValue = (float) (distanceValue.get() / (elapsedNanos / 1e9));
+            changed |= CHANGED_AVERAGE_SPEED;
+        }
+        return changed;
+    }
+
+    private void moveAnchor(double latitude, double longitude) {
+        anchorLatitude = latitude;
+        anchorLongitude = longitude;
+        centreLatitude = latitude;
+        centreLongitude = longitude;
+        centreCount = 1;
+    }
+
+    /**
+     * Applies the user's tunables. The smoothing window sets how strongly the filter resists
+     * changes in acceleration; the accuracy gate caps how uncertain the filtered position may be
+     * while distance still accumulates. The trip totals are kept.
+     */
+    public void configure(int smoothingWindow, float maxAccuracyMeters) {
+        filter.setSmoothing(smoothingWindow);
+        this.maxAccuracyMeters = maxAccuracyMeters;
+    }
+
+    /**
+     * Moves the accuracy gate alone, for the next fixes; e.g. to the gate {@link GnssQuality}
+     * derives from the configured one. Not part of the saved state.
+     */
+    public void setMaxAccuracyMeters(float maxAccuracyMeters) {
+        this.maxAccuracyMeters = maxAccuracyMeters;
+    }
+
+    public float getMaxAccuracyMeters() {
+        return maxAccuracyMeters;
+    }
+
+    public void reset() {
+        filter.reset();
+        statistics.reset();
+        smoothedSpeed = 0f;
+        maxSpeedValue = 0f;
+        distanceValue.clear();
+        averageSpeedValue = 0f;
+        hasPreviousFix = false;
+        startTime = 0L;
+        startTimeNanos = 0L;
+    }
+
+    public boolean isStarted() {
+        return startTime != 0L;
+    }
+
+    /** Wall-clock time of the trip's first fix. */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** Monotonic time of the trip's first fix, on the same clock as the fix times. */
+    public long getStartTimeNanos() {
+        return startTimeNanos;
+    }
+
+    /**
+     * Trip duration at monotonic time {@code nowNanos}, so it neither drifts nor jumps with the
+     * wall clock. If the monotonic clock is behind the trip's start, as it can be for a trip
+     * restored after a reboot, this falls back to the wall clock.
+     */
+    public long getElapsedMillis(long nowNanos, long nowMillis) {
+        if (!isStarted()) {
+            return 0L;
+        }
+        if (nowNanos < startTimeNanos) {
+            return Math.max(0L, nowMillis - startTime);
+        }
+        return (nowNanos - startTimeNanos) / 1_000_000L;
+    }
+
+    public float getSmoothedSpeed() {
+        return smoothedSpeed;
+    }
+
+    public float getMaxSpeed() {
+        return maxSpeedValue;
+    }
+
+    public double getDistance() {
+        return distanceValue.get();
+    }
+
+    public float getAverageSpeed() {
+        return averageSpeedValue;
+    }
+
+    public TripStatistics getStatistics() {
+        return statistics;
+    }
+
+    /** Latitude of the filtered position at the last accepted fix. */
+    public double getLatitude() {
+        return filter.getLatitude();
+    }
+
+    /** Longitude of the filtered position at the last accepted fix. */
+    public double getLongitude() {
+        return filter.getLongitude();
+    }
+
+    /** Bytes written by {@link #writeState(ByteBuffer)}. */
+    static final int STATE_BYTES = 3 * 4 + CompensatedSum.STATE_BYTES + 1 + 2 * 8 + 4 * 8 + 4
+            + TrackKalmanFilter.STATE_BYTES + TripStatistics.STATE_BYTES;
+
+    /** Writes the trip aggregates and filter state for {@link TripJournal} checkpoints. */
+    void writeState(ByteBuffer out) {
+        out.putFloat(smoothedSpeed);
+        out.putFloat(maxSpeedValue);
+        distanceValue.writeState(out);
+        out.putFloat(averageSpeedValue);
+        out.put((byte) (hasPreviousFix ? 1 : 0));
+        out.putLong(startTime);
+        out.putLong(startTimeNanos);
+        out.putDouble(anchorLatitude);
+        out.putDouble(anchorLongitude);
+        out.putDouble(centreLatitude);
+        out.putDouble(centreLongitude);
+        out.putInt(centreCount);
+        filter.writeState(out);
+        statistics.writeState(out);
+    }
+
+    /** Restores a {@link #writeState(ByteBuffer)} snapshot; the configured tunables are kept. */
+    void readState(ByteBuffer in) {
+        smoothedSpeed = in.getFloat();
+        maxSpeedValue = in.getFloat();
+        distanceValue.readState(in);
+        averageSpeedValue = in.getFloat();
+        hasPreviousFix = in.get() != 0;
+        startTime = in.getLong();
+        startTimeNanos = in.getLong();
+        anchorLatitude = in.getDouble();
+        anchorLongitude = in.getDouble();
+        centreLatitude = in.getDouble();
+        centreLongitude = in.getDouble();
+        centreCount = in.getInt();
+        filter.readState(in);
+        statistics.readState(in);
+    }
+
+    public static float toDisplaySpeed(float metersPerSecond, boolean isMetric) {
+        return metersPerSecond * (isMetric ? MPS_TO_KMH : MPS_TO_MPH);
+    }
+
+    public static double toDisplayDistance(double meters, boolean isMetric) {
+        return meters / (isMetric ? METERS_PER_KM : METERS_PER_MILE);
+    }
+}
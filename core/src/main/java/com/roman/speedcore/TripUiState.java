@@ -0,0 +1,217 @@
+package com.roman.speedcore;
+
+/**
+ * Immutable snapshot of everything the main screen shows. The ViewModel publishes one snapshot per
+ * event (fix, timer tick, compass sample, settings change) instead of updating eight streams, and
+ * each snapshot records which fields differ from its predecessor so the UI only touches views
+ * whose text actually changed.
+ *
+ * <p>Text fields are {@code null} and the heading is {@code NaN} until first set. The speed is
+ * provisional until the first live fix of the process: it may come from a cached last location or
+ * a restored trip and is shown as such.
+ */
+public final class TripUiState {
+
+    public static final int SPEED = 1;
+    public static final int UNIT = 1 << 1;
+    public static final int MAX_SPEED = 1 << 2;
+    public static final int DISTANCE = 1 << 3;
+    public static final int SATELLITE_COUNT = 1 << 4;
+    public static final int AVERAGE_SPEED = 1 << 5;
+    public static final int TRIP_TIME = 1 << 6;
+    public static final int COMPASS_HEADING = 1 << 7;
+    public static final int SPEED_PROVISIONAL = 1 << 8;
+
+    private final long sequence;
+    private final int changedFields;
+    private final String speed;
+    private final String unit;
+    private final String maxSpeed;
+    private final String distance;
+    private final String satelliteCount;
+    private final String averageSpeed;
+    private final String tripTime;
+    private final float compassHeading;
+    private final boolean speedProvisional;
+
+    private TripUiState(long sequence, int changedFields, Builder b) {
+        this.sequence = sequence;
+        this.changedFields = changedFields;
+        this.speed = b.speed;
+        this.unit = b.unit;
+        this.maxSpeed = b.maxSpeed;
+        this.distance = b.distance;
+        this.satelliteCount = b.satelliteCount;
+        this.averageSpeed = b.averageSpeed;
+        this.tripTime = b.tripTime;
+        this.compassHeading = b.compassHeading;
+        this.speedProvisional = b.speedProvisional;
+    }
+
+    /** Fields that differ from the snapshot published just before this one. */
+    public int getChangedFields() {
+        return changedFields;
+    }
+
+    /**
+     * Fields that differ from {@code rendered}, the snapshot a view last drew (or {@code null} if
+     * it has drawn nothing yet). Observers can miss intermediate snapshots, e.g. while stopped or
+     * across a configuration change, so this falls back to a field-by-field comparison unless
+     * {@code rendered} is the direct predecessor.
+     */
+    public int changedSince(TripUiState rendered) {
+        if (rendered == this) {
+            return 0;
+        }
+        if (rendered != null && rendered.sequence == sequence - 1) {
+            return changedFields;
+        }
+        return diff(rendered, speed, unit, maxSpeed, distance, satelliteCount, averageSpeed, tripTime, compassHeading,
+                speedProvisional);
+    }
+
+    public boolean hasChanged(int field) {
+        return (changedFields & field) != 0;
+    }
+
+    public String getSpeed() {
+        return speed;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public String getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public String getDistance() {
+        return distance;
+    }
+
+    public String getSatelliteCount() {
+        return satelliteCount;
+    }
+
+    public String getAverageSpeed() {
+        return averageSpeed;
+    }
+
+    public String getTripTime() {
+        return tripTime;
+    }
+
+    public float getCompassHeading() {
+        return compassHeading;
+    }
+
+    /** Whether the speed is a stand-in shown until the first live fix arrives. */
+    public boolean isSpeedProvisional() {
+        return speedProvisional;
+    }
+
+    private static int diff(TripUiState previous, String speed, String unit, String maxSpeed, String distance,
+                            String satelliteCount, String averageSpeed, String tripTime, float compassHeading,
+                            boolean speedProvisional) {
+        int changed = 0;
+        if (previous == null) {
+            changed |= speed != null ? SPEED : 0;
+            changed |= unit != null ? UNIT : 0;
+            changed |= maxSpeed != null ? MAX_SPEED : 0;
+            changed |= distance != null ? DISTANCE : 0;
+            changed |= satelliteCount != null ? SATELLITE_COUNT : 0;
+            changed |= averageSpeed != null ? AVERAGE_SPEED : 0;
+            changed |= tripTime != null ? TRIP_TIME : 0;
+            changed |= !Float.isNaN(compassHeading) ? COMPASS_HEADING : 0;
+            changed |= speedProvisional ? SPEED_PROVISIONAL : 0;
+            return changed;
+        }
+        changed |= textChanged(previous.speed, speed) ? SPEED : 0;
+        changed |= textChanged(previous.unit, unit) ? UNIT : 0;
+        changed |= textChanged(previous.maxSpeed, maxSpeed) ? MAX_SPEED : 0;
+        changed |= textChanged(previous.distance, distance) ? DISTANCE : 0;
+        changed |= textChanged(previous.satelliteCount, satelliteCount) ? SATELLITE_COUNT : 0;
+        changed |= textChanged(previous.averageSpeed, averageSpeed) ? AVERAGE_SPEED : 0;
+        changed |= textChanged(previous.tripTime, tripTime) ? TRIP_TIME : 0;
+        changed |= Float.floatToIntBits(previous.compassHeading) != Float.floatToIntBits(compassHeading)
+                ? COMPASS_HEADING : 0;
+        changed |= previous.speedProvisional != speedProvisional ? SPEED_PROVISIONAL : 0;
+        return changed;
+    }
+
+    private static boolean textChanged(String previous, String current) {
+        return current != null && !current.equals(previous);
+    }
+
+    /**
+     * Mutable staging area for the next snapshot. The ViewModel keeps one, updates the fields an
+     * event touched and calls {@link #build(TripUiState)}; a {@code null} result means nothing
+     * visible changed and there is nothing to publish.
+     */
+    public static final class Builder {
+        private String speed;
+        private String unit;
+        private String maxSpeed;
+        private String distance;
+        private String satelliteCount;
+        private String averageSpeed;
+        private String tripTime;
+        private float compassHeading = Float.NaN;
+        private boolean speedProvisional;
+
+        public Builder setSpeed(String speed) {
+            this.speed = speed;
+            return this;
+        }
+
+        public Builder setUnit(String unit) {
+            this.unit = unit;
+            return this;
+        }
+
+        public Builder setMaxSpeed(String maxSpeed) {
+            this.maxSpeed = maxSpeed;
+            return this;
+        }
+
+        public Builder setDistance(String distance) {
+            this.distance = distance;
+            return this;
+        }
+
+        public Builder setSatelliteCount(String satelliteCount) {
+            this.satelliteCount = satelliteCount;
+            return this;
+        }
+
+        public Builder setAverageSpeed(String averageSpeed) {
+            this.averageSpeed = averageSpeed;
+            return this;
+        }
+
+        public Builder setTripTime(String tripTime) {
+            this.tripTime = tripTime;
+            return this;
+        }
+
+        public Builder setCompassHeading(float compassHeading) {
+            this.compassHeading = compassHeading;
+            return this;
+        }
+
+        public Builder setSpeedProvisional(boolean speedProvisional) {
+            this.speedProvisional = speedProvisional;
+            return this;
+        }
+
+        public TripUiState build(TripUiState previous) {
+            int changed = diff(previous, speed, unit, maxSpeed, distance, satelliteCount, averageSpeed, tripTime,
+                    compassHeading, speedProvisional);
+            if (changed == 0) {
+                return null;
+            }
+            return new TripUiState(previous != null ? previous.sequence + 1 : 0, changed, this);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompensatedSumTest {
+
+    @Test
+    public void subMetreHops_survivePastHundredsOfKilometres() {
+        CompensatedSum sum = new CompensatedSum();
+        float floatTotal = 500_000f;
+        sum.add(500_000.0);
+        for (int i = 0; i < 1_000_000; i++) {
+            sum.add(0.01);
+            floatTotal += 0.01f;
+        }
+        assertEquals(510_000.0, sum.get(), 1e-6);
+        // The float total never moves: each 1 cm hop is under half its 3 cm resolution.
+        assertEquals(500_000f, floatTotal, 0f);
+    }
+
+    @Test
+    public void compensation_beatsPlainDouble() {
+        CompensatedSum sum = new CompensatedSum();
+        double plain = 0;
+        for (int i = 0; i < 10_000_000; i++) {
+            sum.add(0.1);
+            plain += 0.1;
+        }
+        assertEquals(1_000_000.0, sum.get(), 1e-9);
+        assertEquals(1_000_000.0, plain, 1e-3);
+    }
+
+    @Test
+    public void state_roundTrips() {
+        CompensatedSum sum = new CompensatedSum();
+        sum.add(1e9);
+        sum.add(1e-3);
+        ByteBuffer buffer = ByteBuffer.allocate(CompensatedSum.STATE_BYTES);
+        sum.writeState(buffer);
+        buffer.flip();
+        CompensatedSum restored = new CompensatedSum();
+        restored.readState(buffer);
+        restored.add(1e-3);
+        sum.add(1e-3);
+        assertEquals(sum.get(), restored.get(), 0.0);
+        restored.clear();
+        assertEquals(0.0, restored.get(), 0.0);
+    }
+}
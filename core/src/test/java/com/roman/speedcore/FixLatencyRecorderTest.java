@@ -0,0 +1,65 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixLatencyRecorderTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void fullPath_recordsEverySpan() {
+        FixLatencyRecorder recorder = new FixLatencyRecorder();
+        recorder.onReceived(1000 * MS, 1100 * MS);
+        recorder.onProcessed(1101 * MS);
+        recorder.onDispatched(1103 * MS);
+        assertTrue(recorder.isAwaitingDraw());
+        recorder.onDrawn(1115 * MS);
+        assertFalse(recorder.isAwaitingDraw());
+
+        assertSpan(recorder, FixLatencyRecorder.Span.FIX_TO_CALLBACK, 100 * MS);
+        assertSpan(recorder, FixLatencyRecorder.Span.CALLBACK_TO_PROCESSED, MS);
+        assertSpan(recorder, FixLatencyRecorder.Span.PROCESSED_TO_DISPATCHED, 2 * MS);
+        assertSpan(recorder, FixLatencyRecorder.Span.DISPATCHED_TO_DRAWN, 12 * MS);
+        assertSpan(recorder, FixLatencyRecorder.Span.FIX_TO_DRAWN, 115 * MS);
+    }
+
+    @Test
+    public void droppedOrOvertakenFix_leavesLaterSpansUnrecorded() {
+        FixLatencyRecorder recorder = new FixLatencyRecorder();
+        // Rejected by the tracker: never processed.
+        recorder.onReceived(0, 50 * MS);
+        recorder.onReceived(1000 * MS, 1050 * MS);
+        recorder.onProcessed(1051 * MS);
+        // A second draw, or one with nothing dispatched, is not a fix's frame.
+        recorder.onDrawn(1060 * MS);
+        recorder.onDispatched(1052 * MS);
+        recorder.onDrawn(1060 * MS);
+        recorder.onDrawn(1080 * MS);
+
+        assertEquals(2, recorder.getHistogram(FixLatencyRecorder.Span.FIX_TO_CALLBACK).getCount());
+        assertEquals(1, recorder.getHistogram(FixLatencyRecorder.Span.CALLBACK_TO_PROCESSED).getCount());
+        assertEquals(1, recorder.getHistogram(FixLatencyRecorder.Span.FIX_TO_DRAWN).getCount());
+        assertSpan(recorder, FixLatencyRecorder.Span.FIX_TO_DRAWN, 60 * MS);
+    }
+
+    @Test
+    public void report_listsEverySpanInMilliseconds() {
+        FixLatencyRecorder recorder = new FixLatencyRecorder();
+        recorder.onReceived(0, 100 * MS);
+        String report = recorder.report();
+        assertEquals(FixLatencyRecorder.Span.values().length, report.split("\n").length);
+        assertTrue(report, report.startsWith("fix>callback         n=1      p50=100.0"));
+        recorder.reset();
+        assertEquals(0, recorder.getHistogram(FixLatencyRecorder.Span.FIX_TO_CALLBACK).getCount());
+    }
+
+    private static void assertSpan(FixLatencyRecorder recorder, FixLatencyRecorder.Span span, long nanos) {
+        LatencyHistogram histogram = recorder.getHistogram(span);
+        assertEquals(span.name(), 1, histogram.getCount());
+        assertEquals(span.name(), nanos, histogram.getMax());
+    }
+}
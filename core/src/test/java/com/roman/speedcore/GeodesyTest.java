@@ -0,0 +1,99 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeodesyTest {
+
+    @Test
+    public void vincenty_matchesPublishedReferences() {
+        // Flinders Peak to Buninyong, Vincenty's (1975) worked example.
+        assertEquals(54_972.271, Geodesy.vincentyMeters(-37.951033417, 144.424867889, -37.652821139, 143.926495528), 1e-3);
+        // One degree of longitude along the equator: a * pi / 180.
+        assertEquals(111_319.491, Geodesy.vincentyMeters(0, 0, 0, 1), 1e-3);
+        // Equator to pole: the WGS84 meridian quadrant.
+        assertEquals(10_001_965.729, Geodesy.vincentyMeters(0, 0, 90, 0), 1e-3);
+        assertEquals(0.0, Geodesy.vincentyMeters(51.5, -0.12, 51.5, -0.12), 0.0);
+    }
+
+    @Test
+    public void shortHops_areWithinDocumentedBoundOfVincenty() {
+        Random random = new Random(1);
+        assertWorstError(random, 300, 1e-5);
+        assertWorstError(random, 1_000, 4e-5);
+        assertWorstError(random, 6_000, 5e-4);
+    }
+
+    @Test
+    public void longRoute_sumOfHopsMatchesVincenty() {
+        // 1000 km of winding road at 25 m per fix.
+        Random random = new Random(2);
+        double latitude = 47.0;
+        double longitude = 8.0;
+        double heading = 0;
+        double fast = 0;
+        double reference = 0;
+        CompensatedSum compensated = new CompensatedSum();
+        for (int i = 0; i < 40_000; i++) {
+            heading += random.nextGaussian() * 0.05;
+            double nextLatitude = latitude + 25 * Math.cos(heading) / 111_000;
+            double nextLongitude = longitude + 25 * Math.sin(heading) / (111_000 * Math.cos(Math.toRadians(latitude)));
+            double hop = Geodesy.distanceMeters(latitude, longitude, nextLatitude, nextLongitude);
+            fast += hop;
+            compensated.add(hop);
+            reference += Geodesy.vincentyMeters(latitude, longitude, nextLatitude, nextLongitude);
+            latitude = nextLatitude;
+            longitude = nextLongitude;
+        }
+        assertTrue("route " + reference, reference > 990_000 && reference < 1_010_000);
+        assertEquals(reference, compensated.get(), 0.01);
+        assertEquals(reference, fast, 0.01);
+    }
+
+    @Test
+    public void haversine_isOffByTheFlattening() {
+        double vincenty = Geodesy.vincentyMeters(0, 0, 0, 1);
+        double haversine = Geodesy.haversineMeters(0, 0, 0, 1);
+        assertTrue(Math.abs(haversine - vincenty) / vincenty > 1e-3);
+        assertTrue(Math.abs(haversine - vincenty) / vincenty < 0.006);
+    }
+
+    @Test
+    public void distance_wrapsAcrossTheAntimeridian() {
+        assertEquals(Geodesy.distanceMeters(0, -0.0001, 0, 0.0001),
+                Geodesy.distanceMeters(0, 179.9999, 0, -179.9999), 1e-6);
+    }
+
+    @Test
+    public void longHops_useVincenty_andAntipodesDoNotFail() {
+        assertEquals(Geodesy.vincentyMeters(40, -74, 51.5, -0.12), Geodesy.distanceMeters(40, -74, 51.5, -0.12), 0.0);
+        double nearlyAntipodal = Geodesy.distanceMeters(0, 0, 0.5, 179.7);
+        assertFalse(Double.isNaN(nearlyAntipodal));
+        assertEquals(Math.PI * Geodesy.MEAN_RADIUS_METERS, nearlyAntipodal, 100_000);
+    }
+
+    /** Random hops up to {@code maxMeters} in any direction between 80 degrees south and north. */
+    private static void assertWorstError(Random random, double maxMeters, double boundMeters) {
+        double worst = 0;
+        for (int i = 0; i < 20_000; i++) {
+            double latitude = (random.nextDouble() * 2 - 1) * 80;
+            double longitude = random.nextDouble() * 360 - 180;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double meters = maxMeters * random.nextDouble();
+            double latitude2 = latitude + meters * Math.cos(bearing) / 111_000;
+            double longitude2 = longitude + meters * Math.sin(bearing) / (111_000 * Math.cos(Math.toRadians(latitude)));
+            if (Math.abs(latitude2 - latitude) > Geodesy.SHORT_HOP_DEGREES
+                    || Math.abs(longitude2 - longitude) > Geodesy.SHORT_HOP_DEGREES) {
+                continue;
+            }
+            worst = Math.max(worst, Math.abs(Geodesy.distanceMeters(latitude, longitude, latitude2, longitude2)
+                    - Geodesy.vincentyMeters(latitude, longitude, latitude2, longitude2)));
+        }
+        assertTrue("worst error " + worst + " m for hops up to " + maxMeters + " m", worst < boundMeters);
+    }
+}
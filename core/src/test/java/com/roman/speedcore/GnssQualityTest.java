@@ -0,0 +1,138 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class GnssQualityTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void update_aggregatesPerConstellationAndStrongestSignals() {
+        GnssQuality quality = new GnssQuality();
+        quality.setSatelliteCount(7);
+        quality.setSatellite(0, GnssQuality.CONSTELLATION_GPS, 42f, true);
+        quality.setSatellite(1, GnssQuality.CONSTELLATION_GPS, 30f, true);
+        quality.setSatellite(2, GnssQuality.CONSTELLATION_GALILEO, 38f, true);
+        quality.setSatellite(3, GnssQuality.CONSTELLATION_GALILEO, 20f, true);
+        quality.setSatellite(4, GnssQuality.CONSTELLATION_GLONASS, 36f, true);
+        quality.setSatellite(5, GnssQuality.CONSTELLATION_GLONASS, 45f, false);
+        quality.setSatellite(6, 42, 25f, false);
+        assertTrue(quality.update(0L));
+
+        assertEquals(7, quality.getSatelliteCount());
+        assertEquals(5, quality.getUsedInFixCount());
+        assertEquals(2, quality.getUsedInFixCount(GnssQuality.CONSTELLATION_GPS));
+        assertEquals(2, quality.getSatelliteCount(GnssQuality.CONSTELLATION_GLONASS));
+        assertEquals(1, quality.getUsedInFixCount(GnssQuality.CONSTELLATION_GLONASS));
+        assertEquals(1, quality.getSatelliteCount(GnssQuality.CONSTELLATION_UNKNOWN));
+        // The unused 45 dB-Hz satellite says nothing about the fix.
+        assertEquals((42f + 38f + 36f + 30f) / 4, quality.getTopCn0DbHz(), 1e-4);
+        assertEquals((42f + 30f + 38f + 20f + 36f) / 5, quality.getMeanCn0DbHz(), 1e-4);
+
+        StringBuilder summary = new StringBuilder();
+        quality.appendSummary(summary);
+        assertEquals("Satellites: 5/7 used (GPS 2, GAL 2, GLO 1) 37 dB-Hz", summary.toString());
+    }
+
+    @Test
+    public void update_reportsChangeOnlyWhenTheReadoutWouldChange() {
+        GnssQuality quality = new GnssQuality();
+        fill(quality, 12, 8, 35f);
+        assertTrue(quality.update(0L));
+        fill(quality, 12, 8, 35.2f);
+        assertFalse(quality.update(SECOND));
+        fill(quality, 12, 8, 36f);
+        assertTrue(quality.update(2 * SECOND));
+        fill(quality, 13, 8, 36f);
+        assertTrue(quality.update(3 * SECOND));
+        fill(quality, 13, 9, 36f);
+        assertTrue(quality.update(4 * SECOND));
+    }
+
+    @Test
+    public void accuracyGate_keepsTheConfiguredGateUnderClearSkyAndLoosensUnderWeakSky() {
+        GnssQuality quality = new GnssQuality();
+        assertEquals(20f, quality.getAccuracyGateMeters(20f, 0L), 0f);
+
+        fill(quality, 20, 16, 44f);
+        quality.update(10 * SECOND);
+        assertEquals(1f, quality.getScore(), 0f);
+        // Never tighter than configured, however clear the sky.
+        assertEquals(20f, quality.getAccuracyGateMeters(20f, 11 * SECOND), 0f);
+        assertEquals(6f, quality.getAccuracyGateMeters(6f, 11 * SECOND), 0f);
+
+        fill(quality, 10, 5, 21f);
+        quality.update(20 * SECOND);
+        assertTrue(quality.getScore() < 0.1f);
+        assertTrue(quality.getAccuracyGateMeters(20f, 20 * SECOND) > 28f);
+        assertEquals(SpeedCoreSettings.MAX_ACCURACY_METERS, quality.getAccuracyGateMeters(45f, 20 * SECOND), 0f);
+    }
+
+    @Test
+    public void accuracyGate_fallsBackToConfiguredWithoutAFixOrAFreshReport() {
+        GnssQuality quality = new GnssQuality();
+        fill(quality, 12, 3, 44f);
+        quality.update(0L);
+        assertEquals(0f, quality.getScore(), 0f);
+        assertEquals(20f, quality.getAccuracyGateMeters(20f, 0L), 0f);
+
+        fill(quality, 20, 16, 44f);
+        quality.update(0L);
+        assertEquals(20f, quality.getAccuracyGateMeters(20f, GnssQuality.MAX_REPORT_AGE_NANOS + 1), 0f);
+        // A batched fix from before the report is not judged by it either.
+        assertEquals(20f, quality.getAccuracyGateMeters(20f, -GnssQuality.MAX_REPORT_AGE_NANOS - 1), 0f);
+
+        quality.reset();
+        assertFalse(quality.hasReport());
+        assertEquals(20f, quality.getAccuracyGateMeters(20f, 0L), 0f);
+    }
+
+    @Test
+    public void setSatelliteCount_growsBeyondTheInitialCapacity() {
+        GnssQuality quality = new GnssQuality();
+        fill(quality, 200, 150, 30f);
+        quality.update(0L);
+        assertEquals(200, quality.getSatelliteCount());
+        assertEquals(150, quality.getUsedInFixCount());
+    }
+
+    @Test
+    public void update_doesNotAllocate() {
+        GnssQuality quality = new GnssQuality();
+        for (int i = 0; i < 10_000; i++) {
+            fill(quality, 40, 24 + (i & 7), 30f + (i & 15));
+            quality.update(i * SECOND);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            fill(quality, 40, 24 + (i & 7), 30f + (i & 15));
+            quality.update(i * SECOND);
+        }
+        long allocated = allocatedBytes() - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    /** {@code used} of {@code count} satellites in the fix, around {@code cn0} dB-Hz. */
+    private static void fill(GnssQuality quality, int count, int used, float cn0) {
+        quality.setSatelliteCount(count);
+        for (int i = 0; i < count; i++) {
+            quality.setSatellite(i, 1 + i % 7, cn0 - (i % 3), i < used);
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(hotspotBean.isThreadAllocatedMemorySupported());
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,104 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeadingFusionTest {
+
+    private static final float GRAVITY = 9.81f;
+
+    @Test
+    public void rotationVector_flatDevice_headingFollowsYaw() {
+        RotationVectorFusion fusion = new RotationVectorFusion();
+        for (int heading = 0; heading < 360; heading += 15) {
+            assertTrue(fusion.onSensorValues(HeadingFusion.INPUT_ROTATION_VECTOR, flatRotationVector(heading, true)));
+            assertHeading(heading, fusion.getHeading());
+        }
+    }
+
+    @Test
+    public void rotationVector_withoutScalarComponent_derivesIt() {
+        RotationVectorFusion fusion = new RotationVectorFusion();
+        fusion.onSensorValues(HeadingFusion.INPUT_ROTATION_VECTOR, flatRotationVector(135, false));
+        assertHeading(135, fusion.getHeading());
+    }
+
+    @Test
+    public void rotationVector_ignoresOtherInputs() {
+        assertFalse(new RotationVectorFusion().onSensorValues(HeadingFusion.INPUT_ACCELEROMETER, new float[]{0, 0, GRAVITY}));
+    }
+
+    @Test
+    public void accelMag_needsBothSensors() {
+        AccelMagFusion fusion = new AccelMagFusion();
+        assertFalse(fusion.onSensorValues(HeadingFusion.INPUT_ACCELEROMETER, new float[]{0, 0, GRAVITY}));
+        assertTrue(fusion.onSensorValues(HeadingFusion.INPUT_MAGNETOMETER, flatMagneticField(0)));
+    }
+
+    @Test
+    public void accelMag_flatDevice_headingFollowsYaw() {
+        AccelMagFusion fusion = new AccelMagFusion();
+        fusion.onSensorValues(HeadingFusion.INPUT_ACCELEROMETER, new float[]{0, 0, GRAVITY});
+        for (int heading = 0; heading < 360; heading += 15) {
+            assertTrue(fusion.onSensorValues(HeadingFusion.INPUT_MAGNETOMETER, flatMagneticField(heading)));
+            assertHeading(heading, fusion.getHeading());
+        }
+    }
+
+    @Test
+    public void accelMag_freeFall_isRejected() {
+        AccelMagFusion fusion = new AccelMagFusion();
+        fusion.onSensorValues(HeadingFusion.INPUT_MAGNETOMETER, flatMagneticField(0));
+        assertFalse(fusion.onSensorValues(HeadingFusion.INPUT_ACCELEROMETER, new float[]{0.1f, 0, 0.2f}));
+    }
+
+    @Test
+    public void bothFusions_agreeOnTiltedDevice() {
+        // Device pitched up 30 degrees about its x axis while its top points to `heading`.
+        double pitch = Math.toRadians(30);
+        for (int heading = 5; heading < 360; heading += 40) {
+            double yaw = Math.toRadians(heading);
+            // World-to-device for a yaw of `heading` (clockwise from north) followed by the pitch.
+            float[] gravity = {0, (float) (GRAVITY * Math.sin(pitch)), (float) (GRAVITY * Math.cos(pitch))};
+            double north = 20;
+            double down = -40;
+            double northAlongDevice = north * Math.cos(yaw);
+            double northAcrossDevice = -north * Math.sin(yaw);
+            float[] magnetic = {
+                    (float) northAcrossDevice,
+                    (float) (northAlongDevice * Math.cos(pitch) + down * Math.sin(pitch)),
+                    (float) (-northAlongDevice * Math.sin(pitch) + down * Math.cos(pitch)),
+            };
+            AccelMagFusion accelMag = new AccelMagFusion();
+            accelMag.onSensorValues(HeadingFusion.INPUT_ACCELEROMETER, gravity);
+            accelMag.onSensorValues(HeadingFusion.INPUT_MAGNETOMETER, magnetic);
+            assertHeading(heading, accelMag.getHeading());
+        }
+    }
+
+    @Test
+    public void smoothingWindow_isShorterForFusedSensor() {
+        assertTrue(new RotationVectorFusion().getSmoothingWindow() < new AccelMagFusion().getSmoothingWindow());
+    }
+
+    /** Quaternion (x, y, z[, w]) for a flat device whose top points `heading` degrees east of north. */
+    private static float[] flatRotationVector(float heading, boolean withScalar) {
+        double half = Math.toRadians(-heading) / 2;
+        float z = (float) Math.sin(half);
+        float w = (float) Math.cos(half);
+        return withScalar ? new float[]{0, 0, z, w, 0} : new float[]{0, 0, z};
+    }
+
+    /** Magnetometer reading (uT) for a flat device whose top points `heading` degrees east of north. */
+    private static float[] flatMagneticField(float heading) {
+        double yaw = Math.toRadians(heading);
+        return new float[]{(float) (-20 * Math.sin(yaw)), (float) (20 * Math.cos(yaw)), -40f};
+    }
+
+    private static void assertHeading(float expected, float actual) {
+        assertEquals(0f, HeadingThrottle.angleDifference(actual, expected), 0.01f);
+    }
+}
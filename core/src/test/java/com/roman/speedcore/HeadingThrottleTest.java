@@ -0,0 +1,63 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeadingThrottleTest {
+
+    private static final long FRAME = HeadingThrottle.FRAME_INTERVAL_NANOS;
+
+    @Test
+    public void offer_firstHeading_isEmitted() {
+        assertTrue(new HeadingThrottle(2f, FRAME).offer(123f, 0L));
+    }
+
+    @Test
+    public void offer_belowThreshold_isSuppressed() {
+        HeadingThrottle throttle = new HeadingThrottle(2f, FRAME);
+        throttle.offer(100f, 0L);
+        assertFalse(throttle.offer(101.5f, 10 * FRAME));
+        assertTrue(throttle.offer(102.5f, 11 * FRAME));
+    }
+
+    @Test
+    public void offer_smallStepsAccumulateAgainstLastEmitted() {
+        HeadingThrottle throttle = new HeadingThrottle(2f, FRAME);
+        throttle.offer(0f, 0L);
+        int emitted = 0;
+        for (int i = 1; i <= 100; i++) {
+            if (throttle.offer(i * 0.5f, i * FRAME)) {
+                emitted++;
+            }
+        }
+        assertEquals(25, emitted);
+    }
+
+    @Test
+    public void offer_withinSameFrame_isSuppressed() {
+        HeadingThrottle throttle = new HeadingThrottle(1f, FRAME);
+        throttle.offer(0f, 0L);
+        assertFalse(throttle.offer(90f, FRAME / 2));
+        assertTrue(throttle.offer(90f, FRAME));
+    }
+
+    @Test
+    public void offer_acrossNorth_usesShortestArc() {
+        HeadingThrottle throttle = new HeadingThrottle(2f, FRAME);
+        throttle.offer(359.5f, 0L);
+        assertFalse(throttle.offer(0.5f, FRAME));
+        assertTrue(throttle.offer(2f, 2 * FRAME));
+    }
+
+    @Test
+    public void angleHelpers_wrapCorrectly() {
+        assertEquals(-20f, HeadingThrottle.angleDifference(350f, 10f), 1e-4f);
+        assertEquals(20f, HeadingThrottle.angleDifference(10f, 350f), 1e-4f);
+        assertEquals(270f, HeadingThrottle.normalizeDegrees(-90f), 1e-4f);
+        assertEquals(0f, HeadingThrottle.normalizeDegrees(-1e-6f), 0f);
+        assertEquals(10f, HeadingThrottle.normalizeDegrees(730f), 1e-4f);
+    }
+}
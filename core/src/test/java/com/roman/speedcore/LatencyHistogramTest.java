@@ -0,0 +1,104 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverTheRangeContiguously() {
+        long previousUpper = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            long upper = LatencyHistogram.upperBound(i);
+            assertEquals(i, LatencyHistogram.bucket(previousUpper + 1));
+            assertEquals(i, LatencyHistogram.bucket(upper));
+            previousUpper = upper;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_areWithinOneSubBucketOfExact() {
+        Random random = new Random(1);
+        long[] samples = new long[50_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < samples.length; i++) {
+            // Log-normal around 8 ms with a long tail, like frame latencies.
+            samples[i] = (long) (8e6 * Math.exp(random.nextGaussian() * 0.8));
+            histogram.record(samples[i]);
+        }
+        Arrays.sort(samples);
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            long exact = samples[(int) Math.ceil(percentile / 100 * samples.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact + exact / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(samples[samples.length - 1], histogram.getMax());
+        assertEquals(samples[samples.length - 1], histogram.getValueAtPercentile(100));
+        assertEquals(samples.length, histogram.getCount());
+    }
+
+    @Test
+    public void emptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getValueAtPercentile(99));
+        histogram.record(-5);
+        assertEquals(0L, histogram.getValueAtPercentile(50));
+        histogram.record(1_000);
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long value = (t + 1) * 1_000_000L;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(value);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(4_000_000L, histogram.getMax());
+        assertTrue(histogram.getValueAtPercentile(25) <= 1_000_000L + 1_000_000L / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void record_doesNotAllocate() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 20_000; i++) {
+            histogram.record(i * 997L);
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 997L);
+        }
+        long allocated = allocatedBytes() - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(hotspotBean.isThreadAllocatedMemorySupported());
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
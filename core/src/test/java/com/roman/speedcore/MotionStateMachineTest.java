@@ -0,0 +1,233 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MotionStateMachineTest {
+
+    private static final long BASE_INTERVAL = 1000L;
+
+    @Test
+    public void startsMoving_soTheFirstFixesArriveQuickly() {
+        assertEquals(MotionState.MOVING, new MotionStateMachine().getState());
+    }
+
+    @Test
+    public void stepsDown_onlyAfterDwell() {
+        MotionStateMachine machine = new MotionStateMachine();
+        long t = 0;
+        for (; t < MotionStateMachine.MOVING_EXIT_DWELL_MILLIS; t += 1000) {
+            assertFalse(machine.onSpeed(0f, t));
+        }
+        assertTrue(machine.onSpeed(0f, t));
+        assertEquals(MotionState.STILL, machine.getState());
+        assertFalse(machine.isHighAccuracy());
+        assertEquals(MotionStateMachine.STILL_INTERVAL_MILLIS, machine.getIntervalMillis(BASE_INTERVAL));
+    }
+
+    @Test
+    public void maxUpdateDelay_batchesOnlyOffScreenOrInLowPowerMode() {
+        MotionStateMachine machine = new MotionStateMachine();
+        assertEquals(0L, machine.getMaxUpdateDelayMillis(BASE_INTERVAL, true, false));
+        assertEquals(BASE_INTERVAL * MotionStateMachine.INTERACTIVE_BATCH_FIXES,
+                machine.getMaxUpdateDelayMillis(BASE_INTERVAL, true, true));
+        assertEquals(BASE_INTERVAL * MotionStateMachine.BACKGROUND_BATCH_FIXES,
+                machine.getMaxUpdateDelayMillis(BASE_INTERVAL, false, false));
+        for (long t = 0; t <= MotionStateMachine.MOVING_EXIT_DWELL_MILLIS; t += 1000) {
+            machine.onSpeed(0f, t);
+        }
+        assertEquals(MotionState.STILL, machine.getState());
+        assertEquals(MotionStateMachine.MAX_BATCH_DELAY_MILLIS,
+                machine.getMaxUpdateDelayMillis(BASE_INTERVAL, false, true));
+    }
+
+    @Test
+    public void briefStop_keepsMoving() {
+        MotionStateMachine machine = new MotionStateMachine();
+        long t = 0;
+        for (int i = 0; i < 20; i++, t += 1000) {
+            machine.onSpeed(0f, t);
+        }
+        machine.onSpeed(10f, t);
+        for (int i = 0; i < 20; i++, t += 1000) {
+            machine.onSpeed(0f, t);
+        }
+        assertEquals(MotionState.MOVING, machine.getState());
+    }
+
+    @Test
+    public void vibration_wakesStillImmediately() {
+        MotionStateMachine machine = parked();
+        assertTrue(machine.onAccelerometerVariance(0.5f, 200_000L));
+        assertEquals(MotionState.SLOW, machine.getState());
+        assertTrue(machine.onSpeed(8f, 201_000L));
+        assertEquals(MotionState.MOVING, machine.getState());
+    }
+
+    @Test
+    public void staleVariance_isIgnored() {
+        MotionStateMachine machine = new MotionStateMachine();
+        machine.onAccelerometerVariance(0.5f, 0L);
+        for (long t = 0; t <= 100_000L; t += 1000) {
+            machine.onSpeed(0f, t);
+        }
+        assertEquals(MotionState.STILL, machine.getState());
+    }
+
+    @Test
+    public void hysteresis_preventsFlappingAroundThreshold() {
+        MotionStateMachine machine = new MotionStateMachine();
+        int transitions = 0;
+        Random random = new Random(3);
+        for (long t = 0; t < 600_000L; t += 1000) {
+            // Hovering around walking pace, straddling the SLOW enter/exit speeds.
+            if (machine.onSpeed(0.4f + (random.nextFloat() - 0.5f) * 0.3f, t)) {
+                transitions++;
+            }
+        }
+        assertTrue("transitions: " + transitions, transitions <= 2);
+    }
+
+    /**
+     * Parked 30 min, 25 min drive through town and onto a highway, parked 30 min. The adaptive
+     * schedule must request far fewer fixes than a fixed 1 Hz request while measuring the same
+     * distance.
+     */
+    @Test
+    public void simulatedTrace_fewerFixesSameDistance() {
+        Trace trace = Trace.commute(new Random(5));
+
+        double fixedDistance = 0;
+        for (int i = 1; i < trace.length; i++) {
+            fixedDistance += trace.distance(i - 1, i);
+        }
+        int fixedFixes = trace.length;
+
+        MotionStateMachine machine = new MotionStateMachine();
+        double adaptiveDistance = 0;
+        int adaptiveFixes = 0;
+        int transitions = 0;
+        int lastFix = -1;
+        long nextFixMillis = 0;
+        for (int i = 0; i < trace.length; i++) {
+            long now = i * 1000L;
+            // The accelerometer listener reports once a second regardless of GPS.
+            if (machine.onAccelerometerVariance(trace.variance[i], now)) {
+                transitions++;
+                nextFixMillis = Math.min(nextFixMillis, now + machine.getIntervalMillis(BASE_INTERVAL));
+            }
+            if (now < nextFixMillis) {
+                continue;
+            }
+            adaptiveFixes++;
+            if (lastFix >= 0) {
+                adaptiveDistance += trace.distance(lastFix, i);
+            }
+            lastFix = i;
+            if (machine.onSpeed(trace.speed[i], now)) {
+                transitions++;
+            }
+            nextFixMillis = now + machine.getIntervalMillis(BASE_INTERVAL);
+        }
+
+        assertTrue("fixes " + adaptiveFixes + " vs " + fixedFixes, adaptiveFixes < fixedFixes / 2);
+        assertEquals(fixedDistance, adaptiveDistance, fixedDistance * 0.01);
+        assertTrue("transitions: " + transitions, transitions <= 6);
+    }
+
+    @Test
+    public void speedlessFixesDrivingAway_wakeStillWithoutAnyVariance() {
+        MotionStateMachine machine = parked();
+        double metersPerDegree = Geodesy.MEAN_RADIUS_METERS * Math.PI / 180.0;
+        // Balanced-power fixes every 10 s, 60 m accurate, no speed and no accelerometer: first
+        // jitter in place, then a drive north at 15 m/s.
+        long t = 100_000L;
+        for (int i = 0; i < 10; i++, t += MotionStateMachine.STILL_INTERVAL_MILLIS) {
+            assertFalse(machine.onPosition(51.0 + (i % 2) * 40.0 / metersPerDegree, 0.0, 60f, t));
+        }
+        assertEquals(MotionState.STILL, machine.getState());
+        boolean woke = false;
+        for (int i = 1; i <= 10 && !woke; i++, t += MotionStateMachine.STILL_INTERVAL_MILLIS) {
+            woke = machine.onPosition(51.0 + i * 150.0 / metersPerDegree, 0.0, 60f, t);
+        }
+        assertTrue(woke);
+        assertEquals(MotionState.SLOW, machine.getState());
+        assertTrue(machine.isHighAccuracy());
+    }
+
+    @Test
+    public void positions_outsideStill_changeNothing() {
+        MotionStateMachine machine = new MotionStateMachine();
+        assertFalse(machine.onPosition(51.0, 0.0, 5f, 0L));
+        assertFalse(machine.onPosition(52.0, 0.0, 5f, 1000L));
+        assertEquals(MotionState.MOVING, machine.getState());
+    }
+
+    private static MotionStateMachine parked() {
+        MotionStateMachine machine = new MotionStateMachine();
+        for (long t = 0; t < 100_000L; t += 1000) {
+            machine.onSpeed(0f, t);
+        }
+        assertEquals(MotionState.STILL, machine.getState());
+        return machine;
+    }
+
+    /** 1 Hz ground truth in a local metric plane. */
+    private static final class Trace {
+        final int length;
+        final double[] x;
+        final double[] y;
+        final float[] speed;
+        final float[] variance;
+
+        private Trace(int length) {
+            this.length = length;
+            x = new double[length];
+            y = new double[length];
+            speed = new float[length];
+            variance = new float[length];
+        }
+
+        static Trace commute(Random random) {
+            int parked = 30 * 60;
+            int drive = 25 * 60;
+            Trace trace = new Trace(parked + drive + parked);
+            double px = 0;
+            double py = 0;
+            double heading = 0;
+            double v = 0;
+            for (int i = 0; i < trace.length; i++) {
+                boolean driving = i >= parked && i < parked + drive;
+                if (driving) {
+                    int t = i - parked;
+                    double cruise = t < 600 ? 12 : 28;
+                    boolean redLight = t < 600 && t % 120 >= 100;
+                    if (t > drive - 30 || redLight) {
+                        v = Math.max(0, v - 3);
+                    } else {
+                        v = Math.min(cruise, v + 2);
+                    }
+                    heading += random.nextGaussian() * 0.02;
+                } else {
+                    v = 0;
+                }
+                px += v * Math.cos(heading);
+                py += v * Math.sin(heading);
+                trace.x[i] = px;
+                trace.y[i] = py;
+                trace.speed[i] = (float) Math.max(0, v + (v > 0 ? random.nextGaussian() * 0.2 : 0));
+                trace.variance[i] = driving ? 0.3f + random.nextFloat() * 0.5f : random.nextFloat() * 0.01f;
+            }
+            return trace;
+        }
+
+        double distance(int a, int b) {
+            return Math.hypot(x[b] - x[a], y[b] - y[a]);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MotionVarianceTest {
+
+    @Test
+    public void restingDevice_hasNoVarianceWhateverItsOrientation() {
+        MotionVariance variance = new MotionVariance(10);
+        for (int i = 0; i < 10; i++) {
+            double angle = i * 0.3;
+            variance.add((float) (9.81 * Math.sin(angle)), 0f, (float) (9.81 * Math.cos(angle)));
+        }
+        assertEquals(0f, variance.getVariance(), 1e-6f);
+    }
+
+    @Test
+    public void vibration_raisesVariance() {
+        MotionVariance variance = new MotionVariance(10);
+        for (int i = 0; i < 10; i++) {
+            variance.add(0f, 0f, 9.81f + (i % 2 == 0 ? 0.5f : -0.5f));
+        }
+        assertEquals(0.25f, variance.getVariance(), 1e-4f);
+        assertTrue(variance.getVariance() > MotionStateMachine.ACTIVE_VARIANCE);
+    }
+
+    @Test
+    public void window_forgetsOldSamples() {
+        MotionVariance variance = new MotionVariance(4);
+        variance.add(0f, 0f, 20f);
+        for (int i = 0; i < 4; i++) {
+            variance.add(0f, 0f, 9.81f);
+        }
+        assertEquals(0f, variance.getVariance(), 0f);
+    }
+
+    @Test
+    public void clear_startsOver() {
+        MotionVariance variance = new MotionVariance(4);
+        variance.add(0f, 0f, 1f);
+        variance.add(0f, 0f, 5f);
+        variance.clear();
+        variance.add(0f, 0f, 3f);
+        assertEquals(0f, variance.getVariance(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWindowTooSmallForVariance() {
+        new MotionVariance(1);
+    }
+}
@@ -0,0 +1,123 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class MovingAverageTest {
+
+    @Test
+    public void getAverage_emptyWindow_returnsZero() {
+        assertEquals(0f, new MovingAverage(5).getAverage(), 0f);
+        assertEquals(0f, new MovingAverage.CircularMovingAverage(10).getAverage(), 0f);
+    }
+
+    @Test
+    public void getAverage_partialWindow_averagesSamplesSoFar() {
+        MovingAverage average = new MovingAverage(5);
+        average.add(10f);
+        average.add(20f);
+        assertEquals(15f, average.getAverage(), 1e-6f);
+    }
+
+    @Test
+    public void getAverage_fullWindow_dropsOldestSample() {
+        MovingAverage average = new MovingAverage(3);
+        for (float value : new float[]{1f, 2f, 3f, 4f, 5f}) {
+            average.add(value);
+        }
+        assertEquals(4f, average.getAverage(), 1e-6f);
+    }
+
+    @Test
+    public void circularAverage_wrapsAroundNorth() {
+        MovingAverage.CircularMovingAverage average = new MovingAverage.CircularMovingAverage(10);
+        average.add(350f);
+        average.add(10f);
+        assertEquals(0f, average.getAverage(), 1e-3f);
+    }
+
+    @Test
+    public void circularAverage_fullWindow_dropsOldestSample() {
+        MovingAverage.CircularMovingAverage average = new MovingAverage.CircularMovingAverage(2);
+        average.add(180f);
+        average.add(90f);
+        average.add(90f);
+        assertEquals(90f, average.getAverage(), 1e-3f);
+    }
+
+    @Test
+    public void longRun_matchesExactWindowAverage() {
+        int size = 5;
+        MovingAverage average = new MovingAverage(size);
+        float[] history = new float[size];
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            float value = random.nextFloat() * 200f;
+            history[i % size] = value;
+            average.add(value);
+            if (i % 997 == 0 && i >= size) {
+                double exact = 0;
+                for (float h : history) {
+                    exact += h;
+                }
+                assertEquals((float) (exact / size), average.getAverage(), 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void circularLongRun_matchesExactWindowAverage() {
+        int size = 10;
+        MovingAverage.CircularMovingAverage average = new MovingAverage.CircularMovingAverage(size);
+        float[] history = new float[size];
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000_000; i++) {
+            float value = random.nextFloat() * 90f;
+            history[i % size] = value;
+            average.add(value);
+            if (i % 997 == 0 && i >= size) {
+                double s = 0;
+                double c = 0;
+                for (float h : history) {
+                    s += Math.sin(Math.toRadians(h));
+                    c += Math.cos(Math.toRadians(h));
+                }
+                assertEquals((float) Math.toDegrees(Math.atan2(s, c)), average.getAverage(), 1e-2f);
+            }
+        }
+    }
+
+    @Test
+    public void add_doesNotAllocate() {
+        MovingAverage average = new MovingAverage(5);
+        MovingAverage.CircularMovingAverage circular = new MovingAverage.CircularMovingAverage(10);
+        for (int i = 0; i < 20_000; i++) {
+            average.add(i);
+            circular.add(i);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            average.add(i);
+            circular.add(i);
+        }
+        long allocated = allocatedBytes() - before;
+
+        assertTrue("add() allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(hotspotBean.isThreadAllocatedMemorySupported());
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
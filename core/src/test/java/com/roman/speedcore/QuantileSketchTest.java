@@ -0,0 +1,74 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    public void quantiles_areWithinRelativeAccuracyOfExact() {
+        Random random = new Random(11);
+        double[] quantiles = {0.0, 0.05, 0.5, 0.9, 0.95, 0.99, 1.0};
+        for (int distribution = 0; distribution < 3; distribution++) {
+            double[] samples = new double[20_000];
+            QuantileSketch sketch = new QuantileSketch(ACCURACY, 0.1, 150);
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = sample(random, distribution, i);
+                sketch.add(samples[i]);
+            }
+            Arrays.sort(samples);
+            for (double quantile : quantiles) {
+                double exact = samples[(int) (quantile * (samples.length - 1))];
+                double estimate = sketch.getQuantile(quantile);
+                if (exact < 0.1) {
+                    assertEquals(0.0, estimate, 0.0);
+                } else {
+                    assertEquals("distribution " + distribution + " q" + quantile,
+                            exact, estimate, exact * ACCURACY * (1 + 1e-9));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptySketch_isNaN() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 0.1, 150);
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        sketch.add(3);
+        sketch.clear();
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        assertEquals(0, sketch.getCount());
+    }
+
+    @Test
+    public void valuesAboveRange_areClamped() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 0.1, 150);
+        sketch.add(1_000);
+        assertEquals(150, sketch.getQuantile(0.5), 150 * 2 * ACCURACY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRange_isRejected() {
+        new QuantileSketch(ACCURACY, 10, 1);
+    }
+
+    /** Uniform, skewed (exponential) and a stop-and-go speed trace with shifting cruise speeds. */
+    private static double sample(Random random, int distribution, int i) {
+        switch (distribution) {
+            case 0:
+                return random.nextDouble() * 40;
+            case 1:
+                return -Math.log(1 - random.nextDouble()) * 8;
+            default:
+                return (i / 500) % 3 == 0 ? Math.abs(random.nextGaussian() * 0.3)
+                        : 15 + 10 * Math.sin(i / 700.0) + random.nextGaussian() * 2;
+        }
+    }
+}
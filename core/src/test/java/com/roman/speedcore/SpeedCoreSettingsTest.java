@@ -0,0 +1,42 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+public class SpeedCoreSettingsTest {
+
+    @Test
+    public void defaults_matchPreviousHardCodedBehaviour() {
+        SpeedCoreSettings defaults = SpeedCoreSettings.DEFAULTS;
+        assertEquals(1000L, defaults.getGpsIntervalMillis());
+        assertEquals(TripTracker.DEFAULT_MAX_ACCURACY_METERS, defaults.getMaxAccuracyMeters(), 0f);
+        assertEquals(TripTracker.DEFAULT_SMOOTHING_WINDOW, defaults.getSpeedSmoothingWindow());
+        assertFalse(defaults.isLowPowerMode());
+    }
+
+    @Test
+    public void constructor_clampsTunables() {
+        SpeedCoreSettings low = new SpeedCoreSettings(false, false, true, 1L, 0f, 0, false);
+        assertEquals(SpeedCoreSettings.MIN_GPS_INTERVAL_MILLIS, low.getGpsIntervalMillis());
+        assertEquals(SpeedCoreSettings.MIN_ACCURACY_METERS, low.getMaxAccuracyMeters(), 0f);
+        assertEquals(SpeedCoreSettings.MIN_SMOOTHING_WINDOW, low.getSpeedSmoothingWindow());
+
+        SpeedCoreSettings high = new SpeedCoreSettings(false, false, true, 60_000L, 500f, 99, false);
+        assertEquals(SpeedCoreSettings.MAX_GPS_INTERVAL_MILLIS, high.getGpsIntervalMillis());
+        assertEquals(SpeedCoreSettings.MAX_ACCURACY_METERS, high.getMaxAccuracyMeters(), 0f);
+        assertEquals(SpeedCoreSettings.MAX_SMOOTHING_WINDOW, high.getSpeedSmoothingWindow());
+    }
+
+    @Test
+    public void equals_comparesEveryField() {
+        SpeedCoreSettings a = new SpeedCoreSettings(true, false, true, 2000L, 15f, 3, false);
+        assertEquals(a, new SpeedCoreSettings(true, false, true, 2000L, 15f, 3, false));
+        assertEquals(a.hashCode(), new SpeedCoreSettings(true, false, true, 2000L, 15f, 3, false).hashCode());
+        assertNotEquals(a, new SpeedCoreSettings(true, false, true, 2000L, 15f, 4, false));
+        assertNotEquals(a, new SpeedCoreSettings(false, false, true, 2000L, 15f, 3, false));
+        assertNotEquals(a, new SpeedCoreSettings(true, false, true, 2000L, 15f, 3, true));
+    }
+}
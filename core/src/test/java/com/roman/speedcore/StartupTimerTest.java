@@ -0,0 +1,41 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupTimerTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void mark_countsEachMilestoneOnceFromTheOrigin() {
+        StartupTimer timer = new StartupTimer(1000 * MS, true);
+        assertEquals(-1L, timer.getMillis(StartupTimer.Milestone.FIRST_FRAME));
+
+        assertTrue(timer.mark(StartupTimer.Milestone.CREATED, 1150 * MS));
+        assertTrue(timer.mark(StartupTimer.Milestone.FIRST_FRAME, 1420 * MS));
+        assertFalse(timer.mark(StartupTimer.Milestone.FIRST_FRAME, 1500 * MS));
+
+        assertEquals(150L, timer.getMillis(StartupTimer.Milestone.CREATED));
+        assertEquals(420L, timer.getMillis(StartupTimer.Milestone.FIRST_FRAME));
+        assertTrue(timer.isReached(StartupTimer.Milestone.FIRST_FRAME));
+        assertFalse(timer.isReached(StartupTimer.Milestone.FIRST_FIX));
+        assertFalse(timer.isComplete());
+    }
+
+    @Test
+    public void report_listsMilestonesReachedSoFar() {
+        StartupTimer timer = new StartupTimer(0L, false);
+        timer.mark(StartupTimer.Milestone.CREATED, 12 * MS);
+        timer.mark(StartupTimer.Milestone.FIRST_FRAME, 80 * MS);
+        timer.mark(StartupTimer.Milestone.MEANINGFUL_DISPLAY, 80 * MS);
+        assertEquals("warm start created=12 first-frame=80 meaningful-display=80 ms\n", timer.report());
+
+        timer.mark(StartupTimer.Milestone.FIRST_FIX, 4200 * MS);
+        assertTrue(timer.isComplete());
+        assertTrue(timer.report().contains(" first-fix=4200 "));
+    }
+}
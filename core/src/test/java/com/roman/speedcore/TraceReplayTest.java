@@ -0,0 +1,159 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TraceReplayTest {
+
+    private static TripReplayTarget replay(GpsTrace trace) {
+        TripReplayTarget target = new TripReplayTarget();
+        new TraceReplay(trace, new VirtualClock(0L)).run(target, TraceReplay.UNPACED);
+        return target;
+    }
+
+    private static void assertTracksTruth(GpsTrace trace, TripReplayTarget target, double expectedDistance) {
+        TripTracker tracker = target.getTracker();
+        assertEquals(expectedDistance, tracker.getDistance(), expectedDistance * 0.01);
+        assertEquals(trace.getDoubleProperty("truth.maxSpeed"), tracker.getMaxSpeed(), 1.5);
+    }
+
+    @Test
+    public void highway_distanceAndMaxSpeedTrackTruth() throws IOException {
+        GpsTrace trace = GpsTrace.load("highway.csv");
+        TripReplayTarget target = replay(trace);
+        assertTracksTruth(trace, target, trace.getDoubleProperty("truth.distance"));
+        assertEquals(MotionState.MOVING, target.getMotion().getState());
+    }
+
+    @Test
+    public void city_stopAndGoWithOutliers_tracksTruth() throws IOException {
+        GpsTrace trace = GpsTrace.load("city.csv");
+        TripReplayTarget target = replay(trace);
+        assertTracksTruth(trace, target, trace.getDoubleProperty("truth.distance"));
+        TripStatistics statistics = target.getTracker().getStatistics();
+        assertTrue(statistics.getStoppedMillis() > 0);
+        assertTrue(statistics.getMovingMillis() > statistics.getStoppedMillis());
+    }
+
+    @Test
+    public void tunnel_skipsTheDropoutInsteadOfCuttingTheCorner() throws IOException {
+        GpsTrace trace = GpsTrace.load("tunnel.csv");
+        TripReplayTarget target = replay(trace);
+        // Nothing is known about the path inside, so it is left out rather than counted as a chord.
+        assertTracksTruth(trace, target,
+                trace.getDoubleProperty("truth.distance") - trace.getDoubleProperty("truth.tunnelDistance"));
+    }
+
+    @Test
+    public void tunnel_clearSkyAfterReacquisition_countsNoLessThanTheConfiguredGate() throws IOException {
+        // The bundled trace reacquires under a clear sky; without its satellite reports every fix
+        // is judged by the configured gate alone, which a clear sky must not tighten.
+        GpsTrace trace = GpsTrace.load("tunnel.csv");
+        StringBuilder withoutSky = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                GpsTrace.class.getResourceAsStream("/traces/tunnel.csv"), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                if (!line.startsWith("gnss,")) {
+                    withoutSky.append(line).append('\n');
+                }
+            }
+        }
+        double withSkyDistance = replay(trace).getTracker().getDistance();
+        double configuredDistance = replay(GpsTrace.readCsv(new StringReader(withoutSky.toString())))
+                .getTracker().getDistance();
+        assertTrue(withSkyDistance + " < " + configuredDistance, withSkyDistance >= configuredDistance);
+    }
+
+    @Test
+    public void parked_addsNoDistanceAndSettlesStill() throws IOException {
+        TripReplayTarget target = replay(GpsTrace.load("parked.csv"));
+        assertEquals(0.0, target.getTracker().getDistance(), 0.0);
+        assertEquals(MotionState.STILL, target.getMotion().getState());
+        assertEquals(1, target.getMotionTransitions());
+        // The wander never reads as driving away, though most of the fixes were checked for it.
+        assertTrue(String.valueOf(target.getStillPositions()), target.getStillPositions() > 100);
+    }
+
+    @Test
+    public void gpx_readsPointsSpeedsAndHdop() throws IOException {
+        GpsTrace gpx = GpsTrace.load("city-excerpt.gpx");
+        GpsTrace csv = GpsTrace.load("city.csv");
+        assertEquals(120, gpx.size());
+        int fix = -1;
+        for (int i = 0; i < gpx.size(); i++) {
+            do {
+                fix++;
+            } while (csv.getType(fix) != GpsTrace.FIX);
+            assertEquals(csv.getLatitude(fix), gpx.getLatitude(i), 1e-9);
+            assertEquals(csv.getLongitude(fix), gpx.getLongitude(i), 1e-9);
+            assertEquals(csv.getTimeMillis(fix) / 1000, gpx.getTimeMillis(i) / 1000);
+            assertEquals(csv.getTimeNanos(fix) - csv.getTimeNanos(0), gpx.getTimeNanos(i), 1_000_000_000L);
+            assertEquals(csv.getAccuracy(fix), gpx.getAccuracy(i), GpsTrace.GPX_METERS_PER_HDOP * 0.05f + 1e-4f);
+            if (i % 2 == 0) {
+                assertEquals(csv.getSpeed(fix), gpx.getSpeed(i), 1e-6f);
+            } else {
+                assertTrue(gpx.getSpeed(i) >= 0f);
+            }
+        }
+    }
+
+    @Test
+    public void csv_readsEveryEventTypeInTimeOrder() throws IOException {
+        GpsTrace trace = GpsTrace.readCsv(new StringReader(
+                "# scenario=test\n"
+                        + "# a plain comment = not a property\n"
+                        + "heading,2000,90.5\n"
+                        + "fix,1000,1700000000000,51.5,-0.12,3.5,,4.0,\n"
+                        + "gnss,1500,20,12\n"
+                        + "motion,2000,0.25\n"));
+        assertEquals("test", trace.getProperty("scenario"));
+        assertEquals(null, trace.getProperty("a plain comment "));
+        assertEquals(4, trace.size());
+        assertEquals(GpsTrace.FIX, trace.getType(0));
+        assertTrue(Float.isNaN(trace.getBearing(0)));
+        assertTrue(Float.isNaN(trace.getSpeedAccuracy(0)));
+        assertEquals(3.5f, trace.getSpeed(0), 0f);
+        assertEquals(GpsTrace.GNSS, trace.getType(1));
+        assertEquals(12, trace.getUsedInFix(1));
+        // Same-time events keep their file order.
+        assertEquals(GpsTrace.HEADING, trace.getType(2));
+        assertEquals(90.5f, trace.getSensorValue(2), 0f);
+        assertEquals(GpsTrace.MOTION, trace.getType(3));
+        assertEquals(1000L, trace.getDurationNanos());
+    }
+
+    @Test
+    public void replay_movesTheClockAndPacesToRealTime() throws IOException {
+        GpsTrace trace = GpsTrace.load("city-excerpt.gpx");
+        VirtualClock clock = new VirtualClock(0L);
+        long[] lastFixNanos = {-1L};
+        TraceReplay.Result result = new TraceReplay(trace, clock).run(
+                (latitude, longitude, speed, bearing, accuracy, speedAccuracy, elapsedNanos, timeMillis) -> {
+                    assertEquals(elapsedNanos, clock.elapsedRealtimeNanos());
+                    lastFixNanos[0] = elapsedNanos;
+                }, 1000);
+        assertEquals(trace.getTimeNanos(trace.size() - 1), lastFixNanos[0]);
+        assertEquals(120, result.getFixes());
+        assertTrue(result.toString(), result.getSpeedup() <= 1000 * 1.01);
+        assertTrue(result.toString(), result.getSpeedup() > 100);
+    }
+
+    @Test
+    public void replay_corePipelineDoesNotAllocatePerFix() throws IOException {
+        GpsTrace trace = GpsTrace.load("city.csv");
+        replay(trace);
+        TraceReplay.Result result = new TraceReplay(trace, new VirtualClock(0L))
+                .run(new TripReplayTarget(), TraceReplay.UNPACED);
+        assumeTrue(result.getAllocatedBytes() >= 0);
+        assertTrue(result.toString(), result.getAllocatedBytesPerFix() < 16);
+    }
+}
@@ -0,0 +1,285 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TrackExporterTest {
+
+    /** The fixes of a trace, as a cursor. */
+    private static final class TraceCursor implements TrackCursor {
+        private final GpsTrace trace;
+        private int event = -1;
+
+        TraceCursor(GpsTrace trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public boolean next() {
+            do {
+                event++;
+            } while (event < trace.size() && trace.getType(event) != GpsTrace.FIX);
+            return event < trace.size();
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return trace.getTimeMillis(event);
+        }
+
+        @Override
+        public double getLatitude() {
+            return trace.getLatitude(event);
+        }
+
+        @Override
+        public double getLongitude() {
+            return trace.getLongitude(event);
+        }
+
+        @Override
+        public float getSpeed() {
+            return trace.getSpeed(event);
+        }
+
+        @Override
+        public float getAccuracy() {
+            return trace.getAccuracy(event);
+        }
+    }
+
+    /** Points from arrays, for exact expectations. */
+    private static final class ArrayCursor implements TrackCursor {
+        private final long[] times;
+        private final double[] coordinates;
+        private final float[] speeds;
+        private final float[] accuracies;
+        private int index = -1;
+
+        ArrayCursor(long[] times, double[] coordinates, float[] speeds, float[] accuracies) {
+            this.times = times;
+            this.coordinates = coordinates;
+            this.speeds = speeds;
+            this.accuracies = accuracies;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < times.length;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return times[index];
+        }
+
+        @Override
+        public double getLatitude() {
+            return coordinates[2 * index];
+        }
+
+        @Override
+        public double getLongitude() {
+            return coordinates[2 * index + 1];
+        }
+
+        @Override
+        public float getSpeed() {
+            return speeds[index];
+        }
+
+        @Override
+        public float getAccuracy() {
+            return accuracies[index];
+        }
+    }
+
+    /** An endless 1 Hz drive north-east, computed per point so it holds no memory. */
+    private static final class DriveCursor implements TrackCursor {
+        private final long count;
+        private long index = -1;
+
+        DriveCursor(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < count;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return 1_700_000_000_000L + index * 1000;
+        }
+
+        @Override
+        public double getLatitude() {
+            return 51.5 + index * 1.3e-6;
+        }
+
+        @Override
+        public double getLongitude() {
+            return -0.12 + index * 2.1e-6;
+        }
+
+        @Override
+        public float getSpeed() {
+            return 13.4f + (index % 7) * 0.25f;
+        }
+
+        @Override
+        public float getAccuracy() {
+            return 3.5f + (index % 5);
+        }
+    }
+
+    /** Counts and discards what is written. */
+    private static final class CountingChannel implements WritableByteChannel {
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            bytes += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static byte[] export(TrackExporter.Format format, String name, TrackCursor points) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TrackExporter(format).export(name, points, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void gpx_ofARecordedTrace_validatesAgainstTheSchema() throws Exception {
+        GpsTrace city = GpsTrace.load("city.csv");
+        byte[] gpx = export(TrackExporter.Format.GPX, "Commute <A&B> \u00e0 \u6771\u4eac", new TraceCursor(city));
+
+        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        Schema schema = factory.newSchema(new StreamSource(getClass().getResourceAsStream("/gpx/gpx-1.1.xsd")));
+        schema.newValidator().validate(new StreamSource(new ByteArrayInputStream(gpx)));
+
+        String text = new String(gpx, StandardCharsets.UTF_8);
+        assertTrue(text.contains("<name>Commute &lt;A&amp;B&gt; \u00e0 \u6771\u4eac</name>"));
+        GpsTrace exported = GpsTrace.readGpx(new ByteArrayInputStream(gpx));
+        assertEquals(city.getFixCount(), exported.size());
+        for (int event = 0, fix = 0; event < city.size(); event++) {
+            if (city.getType(event) != GpsTrace.FIX) {
+                continue;
+            }
+            assertEquals(city.getTimeMillis(event), exported.getTimeMillis(fix));
+            assertEquals(city.getLatitude(event), exported.getLatitude(fix), 0.6e-7);
+            assertEquals(city.getLongitude(event), exported.getLongitude(fix), 0.6e-7);
+            assertEquals(city.getSpeed(event), exported.getSpeed(fix), 0.006f);
+            fix++;
+        }
+    }
+
+    @Test
+    public void csv_writesOneRowPerPointWithEmptyFieldsForUnknowns() throws IOException {
+        ArrayCursor points = new ArrayCursor(
+                new long[]{1_709_280_930_250L, 1_709_280_931_000L, -1L},
+                new double[]{51.50073509, -0.12758640, -33.8567844, 151.2152967, 0.00000004, -0.00000004},
+                new float[]{13.456f, Float.NaN, 0f},
+                new float[]{4.25f, 3f, Float.NaN});
+        String csv = new String(export(TrackExporter.Format.CSV, "ignored", points), StandardCharsets.US_ASCII);
+        assertEquals("time,latitude,longitude,speed_mps,accuracy_m\n"
+                + "2024-03-01T08:15:30.250Z,51.5007351,-0.1275864,13.46,4.3\n"
+                + "2024-03-01T08:15:31.000Z,-33.8567844,151.2152967,,3.0\n"
+                + "1969-12-31T23:59:59.999Z,0.0000000,0.0000000,0.00,\n", csv);
+    }
+
+    @Test
+    public void gpx_leavesOutTheSpeedExtensionWhenSpeedIsUnknown() throws IOException {
+        ArrayCursor points = new ArrayCursor(new long[]{0L}, new double[]{1.0, 2.0}, new float[]{Float.NaN},
+                new float[]{5f});
+        String gpx = new String(export(TrackExporter.Format.GPX, "", points), StandardCharsets.US_ASCII);
+        assertTrue(gpx, gpx.contains("<trkpt lat=\"1.0000000\" lon=\"2.0000000\"><time>1970-01-01T00:00:00.000Z</time></trkpt>\n"));
+    }
+
+    @Test
+    public void times_matchIsoInstantsAcrossTheCalendar() throws IOException {
+        Random random = new Random(42);
+        int count = 20_000;
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            // 1900 to 2200, so leap centuries and both sides of the epoch are covered.
+            times[i] = -2_208_988_800_000L + (long) (random.nextDouble() * 9_467_280_000_000L);
+        }
+        String csv = new String(export(TrackExporter.Format.CSV, "", new ArrayCursor(times, new double[2 * count],
+                new float[count], new float[count])), StandardCharsets.US_ASCII);
+        String[] rows = csv.split("\n");
+        assertEquals(count + 1, rows.length);
+        for (int i = 0; i < count; i++) {
+            String time = rows[i + 1].substring(0, rows[i + 1].indexOf(','));
+            assertEquals(times[i], Instant.parse(time).toEpochMilli());
+            assertEquals(24, time.length());
+        }
+    }
+
+    @Test
+    public void aMillionPoints_exportInConstantMemory() throws IOException {
+        TrackExporter gpx = new TrackExporter(TrackExporter.Format.GPX);
+        TrackExporter csv = new TrackExporter(TrackExporter.Format.CSV);
+        CountingChannel channel = new CountingChannel();
+        DriveCursor warmUp = new DriveCursor(10_000);
+        gpx.export("Drive", warmUp, channel);
+        warmUp = new DriveCursor(10_000);
+        csv.export("Drive", warmUp, channel);
+
+        DriveCursor gpxPoints = new DriveCursor(1_000_000);
+        DriveCursor csvPoints = new DriveCursor(1_000_000);
+        channel.bytes = 0;
+        long before = allocatedBytes();
+        long gpxCount = gpx.export("Drive", gpxPoints, channel);
+        long gpxBytes = channel.bytes;
+        long csvCount = csv.export("Drive", csvPoints, channel);
+        long allocated = allocatedBytes() - before;
+
+        assertEquals(1_000_000, gpxCount);
+        assertEquals(1_000_000, csvCount);
+        assertTrue("gpx bytes " + gpxBytes, gpxBytes > 150L * gpxCount);
+        assertTrue("csv bytes " + (channel.bytes - gpxBytes), channel.bytes - gpxBytes > 50L * csvCount);
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(hotspotBean.isThreadAllocatedMemorySupported());
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,263 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TrackKalmanFilterTest {
+
+    private static final double LAT0 = 52.52;
+    private static final double LON0 = 13.405;
+    private static final double METERS_PER_DEGREE = Math.toRadians(TrackKalmanFilter.EARTH_RADIUS_METERS);
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void firstFix_isTakenAsIs() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        assertTrue(filter.update(LAT0, LON0, 12f, 90f, 5f, Float.NaN, SECOND));
+        assertEquals(12f, filter.getSpeed(), 0f);
+        assertEquals(LAT0, filter.getLatitude(), 1e-12);
+        assertEquals(LON0, filter.getLongitude(), 1e-12);
+        assertEquals(0.0, filter.getStepMeters(), 0.0);
+    }
+
+    @Test
+    public void outOfOrderFix_isIgnored() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        filter.update(LAT0, LON0, 10f, 0f, 5f, Float.NaN, 2 * SECOND);
+        assertFalse(filter.update(LAT0, LON0, 30f, 0f, 5f, Float.NaN, SECOND));
+        assertEquals(10f, filter.getSpeed(), 0f);
+    }
+
+    @Test
+    public void speedLagsAccelerationLessThanMovingAverage() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        MovingAverage average = new MovingAverage(TripTracker.DEFAULT_SMOOTHING_WINDOW);
+        Random random = new Random(1);
+        double filterLag = 0;
+        double averageLag = 0;
+        int samples = 0;
+        // Ten seconds at rest, then 2.5 m/s^2 from 0 to 25 m/s.
+        for (int i = 0; i <= 20; i++) {
+            float truth = i < 10 ? 0f : 2.5f * (i - 10);
+            float measured = Math.max(0f, truth + (float) random.nextGaussian() * 0.3f);
+            filter.update(LAT0, LON0, measured, Float.NaN, 5f, Float.NaN, i * SECOND);
+            average.add(measured);
+            if (i >= 14) {
+                filterLag += (truth - filter.getSpeed()) / 2.5;
+                averageLag += (truth - average.getAverage()) / 2.5;
+                samples++;
+            }
+        }
+        filterLag /= samples;
+        averageLag /= samples;
+        assertTrue("moving average lag " + averageLag, averageLag > 1.8);
+        assertTrue("filter lag " + filterLag, filterLag < 0.6);
+    }
+
+    @Test
+    public void noisyDrive_speedAndDistanceTrackTruth() {
+        Drive drive = Drive.simulate(new Random(7), 900);
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        MovingAverage average = new MovingAverage(TripTracker.DEFAULT_SMOOTHING_WINDOW);
+        double speedSquaredError = 0;
+        double averageSquaredError = 0;
+        double rawSpeedSquaredError = 0;
+        double filteredDistance = 0;
+        double rawDistance = 0;
+        for (int i = 0; i < drive.length; i++) {
+            filter.update(drive.latitude[i], drive.longitude[i], drive.speed[i], drive.bearing[i],
+                    drive.accuracy[i], Float.NaN, i * SECOND);
+            average.add(drive.speed[i]);
+            if (i > 0) {
+                filteredDistance += filter.getStepMeters();
+                rawDistance += drive.rawStep(i);
+            }
+            speedSquaredError += square(filter.getSpeed() - drive.trueSpeed[i]);
+            averageSquaredError += square(average.getAverage() - drive.trueSpeed[i]);
+            rawSpeedSquaredError += square(drive.speed[i] - drive.trueSpeed[i]);
+        }
+        double speedRms = Math.sqrt(speedSquaredError / drive.length);
+        double averageRms = Math.sqrt(averageSquaredError / drive.length);
+        double rawSpeedRms = Math.sqrt(rawSpeedSquaredError / drive.length);
+        assertTrue("speed rms " + speedRms + " raw " + rawSpeedRms, speedRms < rawSpeedRms * 0.9);
+        // The moving average's error is dominated by lag whenever the car accelerates or brakes.
+        assertTrue("speed rms " + speedRms + " moving average " + averageRms, speedRms < averageRms / 2);
+
+        double truth = drive.trueDistance;
+        assertEquals("raw " + rawDistance, truth, filteredDistance, truth * 0.025);
+        assertTrue("raw distance should be inflated by jitter", rawDistance > truth * 1.05);
+    }
+
+    @Test
+    public void multipathJump_isDownWeighted() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        for (int i = 0; i < 30; i++) {
+            filter.update(LAT0, LON0, 0f, Float.NaN, 5f, Float.NaN, i * SECOND);
+        }
+        // 200 m north, still claiming 5 m accuracy.
+        filter.update(LAT0 + 200 / METERS_PER_DEGREE, LON0, 0f, Float.NaN, 5f, Float.NaN, 30 * SECOND);
+        double movedMeters = (filter.getLatitude() - LAT0) * METERS_PER_DEGREE;
+        assertTrue("moved " + movedMeters, movedMeters < 30);
+    }
+
+    @Test
+    public void inaccurateFix_barelyMovesAnAccurateEstimate() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        for (int i = 0; i < 30; i++) {
+            filter.update(LAT0, LON0, 0f, Float.NaN, 4f, Float.NaN, i * SECOND);
+        }
+        filter.update(LAT0 + 40 / METERS_PER_DEGREE, LON0, 0f, Float.NaN, 60f, Float.NaN, 30 * SECOND);
+        double movedMeters = (filter.getLatitude() - LAT0) * METERS_PER_DEGREE;
+        assertTrue("moved " + movedMeters, movedMeters < 2);
+    }
+
+    @Test
+    public void longGap_restartsFromNextFix() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        filter.update(LAT0, LON0, 20f, 0f, 5f, Float.NaN, 0L);
+        filter.update(LAT0 + 20 / METERS_PER_DEGREE, LON0, 20f, 0f, 5f, Float.NaN, SECOND);
+        filter.update(LAT0 + 1000 / METERS_PER_DEGREE, LON0, 3f, 0f, 5f, Float.NaN, 61 * SECOND);
+        assertEquals(3f, filter.getSpeed(), 0f);
+        assertEquals(LAT0 + 1000 / METERS_PER_DEGREE, filter.getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void clockRestart_startsOverInsteadOfRejectingEveryFix() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        filter.update(LAT0, LON0, 20f, 0f, 5f, Float.NaN, 3600 * SECOND);
+        assertTrue(filter.update(LAT0, LON0, 5f, 0f, 5f, Float.NaN, 30 * SECOND));
+        assertEquals(5f, filter.getSpeed(), 0f);
+    }
+
+    @Test
+    public void longDrive_reanchoringKeepsPositionContinuous() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        double distance = 0;
+        for (int i = 0; i <= 600; i++) {
+            double lat = LAT0 + i * 30 / METERS_PER_DEGREE;
+            filter.update(lat, LON0, 30f, 0f, 3f, Float.NaN, i * SECOND);
+            if (i > 0) {
+                distance += filter.getStepMeters();
+            }
+        }
+        assertEquals(LAT0 + 18_000 / METERS_PER_DEGREE, filter.getLatitude(), 1 / METERS_PER_DEGREE);
+        assertEquals(18_000, distance, 18_000 * 0.001);
+    }
+
+    @Test
+    public void update_doesNotAllocate() {
+        Drive drive = Drive.simulate(new Random(3), 2000);
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        for (int i = 0; i < drive.length; i++) {
+            filter.update(drive.latitude[i], drive.longitude[i], drive.speed[i], drive.bearing[i],
+                    drive.accuracy[i], Float.NaN, i * SECOND);
+        }
+        filter.reset();
+        long before = allocatedBytes();
+        for (int i = 0; i < drive.length; i++) {
+            filter.update(drive.latitude[i], drive.longitude[i], drive.speed[i], drive.bearing[i],
+                    drive.accuracy[i], Float.NaN, i * SECOND);
+        }
+        long allocated = allocatedBytes() - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(hotspotBean.isThreadAllocatedMemorySupported());
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** 1 Hz fixes of a stop-and-go drive with receiver-like position, speed and bearing noise. */
+    static final class Drive {
+        final int length;
+        final double[] latitude;
+        final double[] longitude;
+        final double[] trueEast;
+        final double[] trueNorth;
+        final float[] trueSpeed;
+        final float[] speed;
+        final float[] bearing;
+        final float[] accuracy;
+        double trueDistance;
+
+        private Drive(int length) {
+            this.length = length;
+            latitude = new double[length];
+            longitude = new double[length];
+            trueEast = new double[length];
+            trueNorth = new double[length];
+            trueSpeed = new float[length];
+            speed = new float[length];
+            bearing = new float[length];
+            accuracy = new float[length];
+        }
+
+        static Drive simulate(Random random, int length) {
+            Drive drive = new Drive(length);
+            double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT0));
+            double east = 0;
+            double north = 0;
+            double heading = 0;
+            double v = 0;
+            double a = 0;
+            for (int i = 0; i < length; i++) {
+                // Stop, accelerate, cruise, brake; acceleration changes at a comfortable 1 m/s^3.
+                int phase = (i / 60) % 4;
+                double targetAcceleration;
+                if (phase == 0) {
+                    targetAcceleration = v > 0 ? -2 : 0;
+                } else if (phase == 1) {
+                    targetAcceleration = v < 25 ? 2 : 0;
+                } else if (phase == 2) {
+                    targetAcceleration = 0;
+                } else {
+                    targetAcceleration = v > 0 ? -1 : 0;
+                }
+                a += Math.max(-1, Math.min(1, targetAcceleration - a));
+                v = Math.max(0, Math.min(25, v + a));
+                if (v == 0) {
+                    a = 0;
+                }
+                heading += v > 0 ? random.nextGaussian() * 0.05 : 0;
+                double stepEast = v * Math.sin(heading);
+                double stepNorth = v * Math.cos(heading);
+                east += stepEast;
+                north += stepNorth;
+                drive.trueDistance += Math.hypot(stepEast, stepNorth);
+
+                float accuracy = 4f + random.nextFloat() * 8f;
+                double sigma = accuracy / Math.sqrt(2);
+                drive.trueEast[i] = east;
+                drive.trueNorth[i] = north;
+                drive.latitude[i] = LAT0 + (north + random.nextGaussian() * sigma) / METERS_PER_DEGREE;
+                drive.longitude[i] = LON0 + (east + random.nextGaussian() * sigma) / metersPerDegreeLon;
+                drive.trueSpeed[i] = (float) v;
+                drive.speed[i] = (float) Math.max(0, v + random.nextGaussian() * 0.5);
+                drive.bearing[i] = v > 1 ? (float) Math.toDegrees(heading + random.nextGaussian() * 0.05) : Float.NaN;
+                drive.accuracy[i] = accuracy;
+            }
+            return drive;
+        }
+
+        double rawStep(int i) {
+            double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT0));
+            return Math.hypot((latitude[i] - latitude[i - 1]) * METERS_PER_DEGREE,
+                    (longitude[i] - longitude[i - 1]) * metersPerDegreeLon);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackReaderTest {
+
+    @Test
+    public void seek_skipsToFirstFixAtOrAfterTime() throws IOException {
+        TrackWriterTest.Drive drive = TrackWriterTest.Drive.simulate(new Random(2), 2000);
+        byte[] track = TrackWriterTest.write(drive);
+
+        for (int target : new int[]{0, 1, 255, 256, 700, 1999}) {
+            try (TrackReader reader = reader(track)) {
+                assertTrue(reader.seek(drive.time[target]));
+                assertTrue(reader.next());
+                assertEquals(drive.time[target], reader.getTimeMillis());
+                assertEquals(drive.latitude[target], reader.getLatitude(), 1e-7);
+                assertTrue(target == 1999 || reader.next());
+                if (target < 1999) {
+                    assertEquals(drive.time[target + 1], reader.getTimeMillis());
+                }
+            }
+        }
+        try (TrackReader reader = reader(track)) {
+            assertFalse(reader.seek(drive.time[1999] + 1));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void tornBlock_endsTrackAtLastIntactBlock() throws IOException {
+        TrackWriterTest.Drive drive = TrackWriterTest.Drive.simulate(new Random(3), 600);
+        byte[] track = TrackWriterTest.write(drive);
+        byte[] torn = Arrays.copyOf(track, track.length - 5);
+
+        try (TrackReader reader = reader(torn)) {
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            assertEquals(2 * TrackWriter.BLOCK_FIXES, count);
+        }
+    }
+
+    @Test
+    public void corruptBlock_failsCrcAndEndsTrack() throws IOException {
+        TrackWriterTest.Drive drive = TrackWriterTest.Drive.simulate(new Random(4), 600);
+        byte[] track = TrackWriterTest.write(drive);
+        track[TrackWriter.FILE_HEADER_BYTES + TrackWriter.BLOCK_HEADER_BYTES + 10] ^= 0x40;
+
+        try (TrackReader reader = reader(track)) {
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void intactLength_allowsResumingAfterCrash() throws IOException {
+        TrackWriterTest.Drive drive = TrackWriterTest.Drive.simulate(new Random(5), 700);
+        byte[] track = TrackWriterTest.write(drive);
+        byte[] torn = Arrays.copyOf(track, track.length - 3);
+
+        long intact = TrackReader.intactLength(new ByteArrayInputStream(torn));
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        resumed.write(torn, 0, (int) intact);
+        try (TrackWriter writer = TrackWriter.append(resumed)) {
+            writer.append(1.5, 2.5, 10f, 90f, 4f, drive.time[699] + 1000);
+        }
+
+        try (TrackReader reader = reader(resumed.toByteArray())) {
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            assertEquals(2 * TrackWriter.BLOCK_FIXES + 1, count);
+            assertEquals(1.5, reader.getLatitude(), 1e-9);
+        }
+    }
+
+    @Test
+    public void skipToEnd_reportsLastIntactFixTime() throws IOException {
+        TrackWriterTest.Drive drive = TrackWriterTest.Drive.simulate(new Random(6), 600);
+        byte[] track = TrackWriterTest.write(drive);
+        byte[] torn = Arrays.copyOf(track, track.length - 3);
+
+        try (TrackReader reader = reader(torn)) {
+            assertTrue(reader.next());
+            long intact = reader.skipToEnd();
+            assertEquals(2 * TrackWriter.BLOCK_FIXES - 1, lastIndexBefore(intact, torn));
+            assertEquals(drive.time[2 * TrackWriter.BLOCK_FIXES - 1], reader.getTimeMillis());
+            assertFalse(reader.next());
+        }
+    }
+
+    /** Index of the last fix contained in the first {@code length} bytes of {@code track}. */
+    private static int lastIndexBefore(long length, byte[] track) throws IOException {
+        try (TrackReader reader = reader(Arrays.copyOf(track, (int) length))) {
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            return count - 1;
+        }
+    }
+
+    @Test
+    public void intactLength_ofGarbageIsZero() throws IOException {
+        assertEquals(0, TrackReader.intactLength(new ByteArrayInputStream(new byte[]{1, 2, 3})));
+        assertEquals(0, TrackReader.intactLength(new ByteArrayInputStream(new byte[64])));
+    }
+
+    @Test(expected = IOException.class)
+    public void notATrack_isRejected() throws IOException {
+        reader(new byte[64]);
+    }
+
+    private static TrackReader reader(byte[] track) throws IOException {
+        return new TrackReader(new ByteArrayInputStream(track));
+    }
+}
@@ -0,0 +1,135 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackSimplifierTest {
+
+    private static final double TOLERANCE_METERS = TrackSimplifier.DEFAULT_TOLERANCE_METERS;
+
+    /** Every point as the tracker's filter placed it, and the ones the simplifier kept. */
+    private static final class Simplified implements TrackSimplifier.Sink {
+        final List<double[]> track = new ArrayList<>();
+        final List<double[]> retained = new ArrayList<>();
+        final List<Long> retainedTimes = new ArrayList<>();
+
+        @Override
+        public void onPoint(double latitude, double longitude, float speedMetersPerSecond, float accuracyMeters,
+                            long timeMillis) {
+            retained.add(new double[]{latitude, longitude});
+            retainedTimes.add(timeMillis);
+        }
+
+        double compressionRatio() {
+            return (double) track.size() / retained.size();
+        }
+
+        /** Largest distance from a point of the track to the retained segment spanning it. */
+        double maxDeviationMeters() {
+            double max = 0.0;
+            int segment = 0;
+            for (int i = 0, next = 0; i < track.size(); i++) {
+                double[] point = track.get(i);
+                if (next < retained.size() && point == retained.get(next)) {
+                    segment = next++;
+                    continue;
+                }
+                double[] from = retained.get(segment);
+                double[] to = retained.get(segment + 1);
+                max = Math.max(max, deviationMeters(point, from, to));
+            }
+            return max;
+        }
+    }
+
+    private static double deviationMeters(double[] point, double[] from, double[] to) {
+        double metersPerDegree = Geodesy.MEAN_RADIUS_METERS * Math.PI / 180.0;
+        double metersPerDegreeLongitude = metersPerDegree * Math.cos(Math.toRadians(from[0]));
+        double qx = (point[1] - from[1]) * metersPerDegreeLongitude;
+        double qy = (point[0] - from[0]) * metersPerDegree;
+        double px = (to[1] - from[1]) * metersPerDegreeLongitude;
+        double py = (to[0] - from[0]) * metersPerDegree;
+        return Math.sqrt(TrackSimplifier.segmentDistanceSquared(qx, qy, px, py, px * px + py * py));
+    }
+
+    /** Replays {@code name} through a tracker and simplifies the filtered track, as the history does. */
+    private static Simplified simplify(String name, int window) throws IOException {
+        GpsTrace trace = GpsTrace.load(name);
+        TripTracker tracker = new TripTracker();
+        Simplified result = new Simplified();
+        // Each point's track index stands in for its time, so retained points map back to the track.
+        TrackSimplifier simplifier = new TrackSimplifier(TOLERANCE_METERS, window, new TrackSimplifier.Sink() {
+            @Override
+            public void onPoint(double latitude, double longitude, float speedMetersPerSecond, float accuracyMeters,
+                                long timeMillis) {
+                int index = (int) timeMillis;
+                result.retained.add(result.track.get(index));
+                result.retainedTimes.add(timeMillis);
+            }
+        });
+        for (int i = 0; i < trace.size(); i++) {
+            if (trace.getType(i) != GpsTrace.FIX || tracker.onFix(trace.getLatitude(i), trace.getLongitude(i),
+                    trace.getSpeed(i), trace.getBearing(i), trace.getAccuracy(i), trace.getSpeedAccuracy(i),
+                    trace.getTimeNanos(i), trace.getTimeMillis(i)) == 0) {
+                continue;
+            }
+            result.track.add(new double[]{tracker.getLatitude(), tracker.getLongitude()});
+            simplifier.add(tracker.getLatitude(), tracker.getLongitude(), tracker.getSmoothedSpeed(),
+                    trace.getAccuracy(i), result.track.size() - 1);
+        }
+        simplifier.flush();
+        assertEquals(result.track.size(), simplifier.getInputCount());
+        assertEquals(result.retained.size(), simplifier.getRetainedCount());
+        System.out.printf(Locale.ROOT, "%s: %d -> %d points (%.1fx), max deviation %.2f m%n", name,
+                result.track.size(), result.retained.size(), result.compressionRatio(), result.maxDeviationMeters());
+        return result;
+    }
+
+    @Test
+    public void highway_compressesManyFoldWithinTolerance() throws IOException {
+        Simplified highway = simplify("highway.csv", TrackSimplifier.DEFAULT_WINDOW);
+        assertTrue("deviation " + highway.maxDeviationMeters(), highway.maxDeviationMeters() <= TOLERANCE_METERS);
+        assertTrue("ratio " + highway.compressionRatio(), highway.compressionRatio() >= 5.0);
+    }
+
+    @Test
+    public void city_keepsEveryTurnWithinTolerance() throws IOException {
+        Simplified city = simplify("city.csv", TrackSimplifier.DEFAULT_WINDOW);
+        assertTrue("deviation " + city.maxDeviationMeters(), city.maxDeviationMeters() <= TOLERANCE_METERS);
+        assertTrue("ratio " + city.compressionRatio(), city.compressionRatio() >= 10.0);
+    }
+
+    @Test
+    public void window_boundsHowLongAPointIsHeld() throws IOException {
+        Simplified highway = simplify("highway.csv", 30);
+        List<Long> indices = highway.retainedTimes;
+        for (int i = 1; i < indices.size(); i++) {
+            assertTrue(indices.get(i) - indices.get(i - 1) <= 30);
+        }
+        assertTrue(highway.maxDeviationMeters() <= TOLERANCE_METERS);
+    }
+
+    @Test
+    public void aStraightLine_keepsItsEndsAndAUTurnKeepsItsApex() {
+        Simplified line = new Simplified();
+        TrackSimplifier simplifier = new TrackSimplifier(TOLERANCE_METERS, 1000, line);
+        double metersPerDegree = Geodesy.MEAN_RADIUS_METERS * Math.PI / 180.0;
+        for (int i = 0; i <= 100; i++) {
+            simplifier.add(51.0 + i * 20.0 / metersPerDegree, 0.0, 20f, 5f, i);
+        }
+        for (int i = 1; i <= 100; i++) {
+            simplifier.add(51.0 + (100 - i) * 20.0 / metersPerDegree, 0.0, 20f, 5f, 100 + i);
+        }
+        // The whole way back lies on the segment from the apex.
+        assertEquals(100, simplifier.getHeldCount());
+        simplifier.flush();
+        assertEquals(List.of(0L, 100L, 200L), line.retainedTimes);
+    }
+}
@@ -0,0 +1,149 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackWriterTest {
+
+    /** double latitude, double longitude, float speed, float bearing, float accuracy, long time. */
+    static final int FIXED_WIDTH_BYTES = 8 + 8 + 4 + 4 + 4 + 8;
+
+    @Test
+    public void roundTrip_preservesFixesToQuantization() throws IOException {
+        Drive drive = Drive.simulate(new Random(1), 1000);
+        byte[] track = write(drive);
+
+        try (TrackReader reader = new TrackReader(new ByteArrayInputStream(track))) {
+            for (int i = 0; i < drive.length; i++) {
+                assertTrue(reader.next());
+                assertEquals(drive.time[i], reader.getTimeMillis());
+                assertEquals(drive.latitude[i], reader.getLatitude(), 0.6e-7);
+                assertEquals(drive.longitude[i], reader.getLongitude(), 0.6e-7);
+                assertEquals(drive.speed[i], reader.getSpeed(), 0.006f);
+                assertEquals(drive.bearing[i], reader.getBearing(), 0.006f);
+                assertEquals(drive.accuracy[i], reader.getAccuracy(), 0.06f);
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void missingValues_roundTripAsNaN() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TrackWriter writer = new TrackWriter(out)) {
+            writer.append(-33.8688, 151.2093, 0f, Float.NaN, Float.NaN, 1_000L);
+            writer.append(-33.8688, 151.2093, 4.2f, 359.99f, 7.5f, 2_000L);
+            writer.append(-33.8689, 151.2094, 3f, Float.NaN, Float.NaN, 1_500L);
+        }
+        try (TrackReader reader = new TrackReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertTrue(reader.next());
+            assertTrue(Float.isNaN(reader.getBearing()));
+            assertTrue(Float.isNaN(reader.getAccuracy()));
+            assertEquals(-33.8688, reader.getLatitude(), 1e-9);
+            assertTrue(reader.next());
+            assertEquals(359.99f, reader.getBearing(), 1e-4f);
+            assertEquals(7.5f, reader.getAccuracy(), 1e-4f);
+            assertTrue(reader.next());
+            assertTrue(Float.isNaN(reader.getBearing()));
+            // Time may step backwards; the delta is signed.
+            assertEquals(1_500L, reader.getTimeMillis());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void multiHourDrive_isFarSmallerThanFixedWidthRecords() throws IOException {
+        for (int hours : new int[]{1, 3, 8}) {
+            Drive drive = Drive.simulate(new Random(hours), hours * 3600);
+            int encoded = write(drive).length;
+            int fixedWidth = drive.length * FIXED_WIDTH_BYTES;
+            double bytesPerFix = (double) encoded / drive.length;
+            assertTrue(hours + " h: " + bytesPerFix + " bytes per fix", encoded * 3 < fixedWidth);
+        }
+    }
+
+    @Test
+    public void flush_writesShortBlockThatReadsBack() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackWriter writer = new TrackWriter(out);
+        writer.append(1.0, 2.0, 3f, 4f, 5f, 6L);
+        writer.flush();
+        writer.flush();
+        // Varints: time 1, latitude 4, longitude 4, speed 2, bearing 2, accuracy 1. The second
+        // flush has nothing to write.
+        assertEquals(TrackWriter.FILE_HEADER_BYTES + TrackWriter.BLOCK_HEADER_BYTES + 14, out.size());
+        try (TrackReader reader = new TrackReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertTrue(reader.next());
+            assertEquals(6L, reader.getTimeMillis());
+            assertFalse(reader.next());
+        }
+    }
+
+    static byte[] write(Drive drive) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TrackWriter writer = new TrackWriter(out)) {
+            for (int i = 0; i < drive.length; i++) {
+                writer.append(drive.latitude[i], drive.longitude[i], drive.speed[i], drive.bearing[i],
+                        drive.accuracy[i], drive.time[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** A 1 Hz drive with realistic speed, heading and accuracy wander. */
+    static final class Drive {
+        final int length;
+        final double[] latitude;
+        final double[] longitude;
+        final float[] speed;
+        final float[] bearing;
+        final float[] accuracy;
+        final long[] time;
+
+        private Drive(int length) {
+            this.length = length;
+            latitude = new double[length];
+            longitude = new double[length];
+            speed = new float[length];
+            bearing = new float[length];
+            accuracy = new float[length];
+            time = new long[length];
+        }
+
+        static Drive simulate(Random random, int length) {
+            Drive drive = new Drive(length);
+            double lat = 48.8566;
+            double lon = 2.3522;
+            double heading = random.nextDouble() * 360;
+            double v = 0;
+            float acc = 5f;
+            long t = 1_700_000_000_000L;
+            for (int i = 0; i < length; i++) {
+                int phase = (i / 90) % 4;
+                v = phase == 0 ? Math.max(0, v - 3) : phase == 3 ? Math.max(0, v - 1) : Math.min(33, v + 1.5);
+                v = Math.max(0, v + random.nextGaussian() * 0.3);
+                heading = (heading + random.nextGaussian() * 3 + 360) % 360;
+                lat += v * Math.cos(Math.toRadians(heading)) / 111_320.0;
+                lon += v * Math.sin(Math.toRadians(heading)) / (111_320.0 * Math.cos(Math.toRadians(lat)));
+                acc = Math.max(2f, Math.min(30f, acc + (float) random.nextGaussian() * 0.5f));
+                drive.latitude[i] = lat;
+                drive.longitude[i] = lon;
+                drive.speed[i] = (float) v;
+                drive.bearing[i] = (float) heading;
+                drive.accuracy[i] = acc;
+                // Receivers jitter the fix time by a few milliseconds.
+                t += 1000 + random.nextInt(5) - 2;
+                drive.time[i] = t;
+            }
+            return drive;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.roman.speedcore;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TripFormatterTest {
+
+    private static final Locale[] LOCALES = {
+            Locale.US,
+            Locale.GERMANY,
+            Locale.FRANCE,
+            new Locale("ar", "EG"),
+            Locale.forLanguageTag("fa-IR"),
+            Locale.forLanguageTag("hi-IN-u-nu-deva"),
+    };
+
+    private static final Pattern LEGACY_NUMBER = Pattern.compile("(-?\\d+(?:[.,]\\d+)?+)");
+
+    private final Locale originalLocale = Locale.getDefault();
+    private final TripFormatter formatter = new TripFormatter();
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(originalLocale);
+    }
+
+    @Test
+    public void formatNumber_matchesStringFormat() {
+        Random random = new Random(11);
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (int i = 0; i < 20_000; i++) {
+                double value = randomValue(random);
+                assertEquals(locale + " " + value, referenceNumber(value), formatter.formatNumber(value));
+            }
+        }
+    }
+
+    @Test
+    public void formatNumber_edgeCases_matchStringFormat() {
+        double[] values = {
+                0, -0.0, 0.05, 0.15, 0.25, 0.35, 0.45, 1.45, 2.25, -0.04, -0.05, -1.25, 0.95, 9.95, 99.96,
+                1e-10, 0.9999999999, 399.5, 400.4, 12345678.9, -98765432.15,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MAX_VALUE,
+                Math.nextDown(2.25), Math.nextUp(2.25),
+        };
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (double value : values) {
+                assertEquals(locale + " " + value, referenceNumber(value), formatter.formatNumber(value));
+            }
+        }
+    }
+
+    @Test
+    public void formatReadouts_matchStringConcatenation() {
+        Random random = new Random(12);
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (int i = 0; i < 5_000; i++) {
+                double value = randomValue(random);
+                boolean isMetric = random.nextBoolean();
+                String unit = isMetric ? " km/h" : " mph";
+                assertEquals("Max: " + referenceNumber(value) + unit, formatter.formatMaxSpeed(value, isMetric));
+                assertEquals("Avg: " + referenceNumber(value) + unit, formatter.formatAverageSpeed(value, isMetric));
+                assertEquals("Dist: " + referenceNumber(value) + (isMetric ? " km" : " mi"),
+                        formatter.formatDistance(value, isMetric));
+            }
+        }
+    }
+
+    @Test
+    public void formatSpeed_matchesStringValueOf() {
+        for (float value = -20f; value < 600f; value += 0.37f) {
+            assertEquals(String.valueOf(Math.round(value)), formatter.formatSpeed(value));
+        }
+    }
+
+    @Test
+    public void formatTime_matchesStringFormat() {
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (long millis = 0; millis < 5L * 3600 * 1000; millis += 997) {
+                assertEquals(locale + " " + millis, referenceTime(millis), formatter.formatTime(millis));
+            }
+            long[] edges = {-1500L, 99L * 3600 * 1000 + 59_999, 100L * 3600 * 1000, 1234L * 3600 * 1000 + 5_000};
+            for (long millis : edges) {
+                assertEquals(locale + " " + millis, referenceTime(millis), formatter.formatTime(millis));
+            }
+        }
+    }
+
+    @Test
+    public void commonValues_returnSharedInstances() {
+        Locale.setDefault(Locale.US);
+        assertSame(formatter.formatSpeed(42.2f), formatter.formatSpeed(41.9f));
+        assertSame(formatter.formatNumber(400), formatter.formatNumber(400.0000000001));
+        assertSame(formatter.formatMaxSpeed(61.3, false), formatter.formatMaxSpeed(61.26, false));
+        assertSame(formatter.formatTime(61_000), formatter.formatTime(61_900));
+    }
+
+    @Test
+    public void parseLabeledNumber_examples() {
+        assertEquals(12.5, formatter.parseLabeledNumber("Max: 12.5 mph"), 0);
+        assertEquals(48.3, formatter.parseLabeledNumber("Avg: 48,3 km/h"), 0);
+        assertEquals(-3, formatter.parseLabeledNumber("Max: -3 mph"), 0);
+        assertEquals(7, formatter.parseLabeledNumber("Dist: 7. mi"), 0);
+        assertEquals(4, formatter.parseLabeledNumber("a- 4"), 0);
+        assertEquals(0, formatter.parseLabeledNumber("Satellites: none"), 0);
+        assertEquals(0, formatter.parseLabeledNumber(""), 0);
+    }
+
+    @Test
+    public void parseLabeledNumber_matchesRegexOnGeneratedCorpus() {
+        Random random = new Random(13);
+        for (int i = 0; i < 200_000; i++) {
+            String label = randomLabel(random);
+            assertEquals(label, Double.doubleToLongBits(referenceParse(label)),
+                    Double.doubleToLongBits(formatter.parseLabeledNumber(label)));
+        }
+    }
+
+    @Test
+    public void parseLabeledNumber_matchesRegexOnFormattedReadouts() {
+        Random random = new Random(14);
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (int i = 0; i < 20_000; i++) {
+                String label = formatter.formatMaxSpeed(randomValue(random), random.nextBoolean());
+                assertEquals(label, Double.doubleToLongBits(referenceParse(label)),
+                        Double.doubleToLongBits(formatter.parseLabeledNumber(label)));
+            }
+        }
+    }
+
+    private static String randomLabel(Random random) {
+        String[] prefixes = {"", "Max: ", "Dist: ", "Avg: ", "-", "--", "x-", " - ", "v1.", "\u0663 "};
+        String[] suffixes = {"", " mph", " km/h", " km", " mi", ".", ",", "-", ".5", ",,7", " 12"};
+        StringBuilder sb = new StringBuilder(prefixes[random.nextInt(prefixes.length)]);
+        int parts = random.nextInt(3);
+        for (int p = 0; p <= parts; p++) {
+            if (random.nextInt(4) == 0) {
+                sb.append('-');
+            }
+            appendDigits(sb, random, 1 + random.nextInt(random.nextInt(8) == 0 ? 30 : 6));
+            int separator = random.nextInt(5);
+            if (separator == 0) {
+                sb.append('.');
+            } else if (separator == 1) {
+                sb.append(',');
+            }
+            if (separator <= 1 && random.nextBoolean()) {
+                appendDigits(sb, random, 1 + random.nextInt(random.nextInt(8) == 0 ? 30 : 4));
+            }
+            if (random.nextBoolean()) {
+                sb.append(" :/-.,a\u0660".charAt(random.nextInt(8)));
+            }
+        }
+        sb.append(suffixes[random.nextInt(suffixes.length)]);
+        return sb.toString();
+    }
+
+    private static void appendDigits(StringBuilder sb, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+    }
+
+    private static double referenceParse(String labeled) {
+        Matcher m = LEGACY_NUMBER.matcher(labeled);
+        if (m.find()) {
+            try {
+                return Double.parseDouble(m.group(1).replace(',', '.'));
+            } catch (NumberFormatException ignored) { }
+        }
+        return 0.0;
+    }
+
+    private static double randomValue(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return Math.round(random.nextDouble() * 200);
+            case 1:
+                return random.nextDouble() * 200;
+            case 2:
+                return Math.round(random.nextDouble() * 20_000) / 100.0;
+            default:
+                return (random.nextDouble() - 0.5) * 2e6;
+        }
+    }
+
+    private static String referenceNumber(double value) {
+        if (Math.abs(value - Math.round(value)) < 1e-9) {
+            return String.valueOf(Math.round(value));
+        }
+        return String.format(Locale.getDefault(), "%.1f", value);
+    }
+
+    private static String referenceTime(long milliseconds) {
+        long seconds = (milliseconds / 1000) % 60;
+        long minutes = (milliseconds / (1000 * 60)) % 60;
+        long hours = (milliseconds / (1000 * 60 * 60));
+        return String.format(Locale.getDefault(), "%02d:%02d:%02d", hours, minutes, seconds);
+    }
+}
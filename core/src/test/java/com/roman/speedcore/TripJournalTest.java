@@ -0,0 +1,312 @@
+package com.roman.speedcore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TripJournalTest {
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(TrackKalmanFilter.EARTH_RADIUS_METERS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void newJournal_hasNothingToRestore() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("trip.journal");
+        try (TripJournal journal = new TripJournal(path)) {
+            assertFalse(journal.restore(new TripTracker()));
+            assertEquals(TripJournal.HEADER_BYTES, journal.size());
+        }
+    }
+
+    @Test
+    public void restore_rebuildsTripExactly() throws IOException {
+        Path path = journalPath();
+        TripTracker original = record(path, 150);
+
+        TripTracker restored = new TripTracker();
+        try (TripJournal journal = new TripJournal(path)) {
+            assertTrue(journal.restore(restored));
+        }
+        assertSameTrip(original, restored);
+    }
+
+    @Test
+    public void restore_replaysOnlyRecordsAfterLastCheckpoint() throws IOException {
+        Path path = journalPath();
+        TripTracker original = record(path, 150);
+
+        // Scribble over the first fix; a restore that starts from the checkpoint never reads it.
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(TripJournal.HEADER_BYTES + 16);
+            file.writeLong(0xDEADBEEFL);
+        }
+        TripTracker restored = new TripTracker();
+        try (TripJournal journal = new TripJournal(path)) {
+            assertTrue(journal.restore(restored));
+        }
+        assertSameTrip(original, restored);
+    }
+
+    @Test
+    public void tornFinalRecord_isTruncatedAndAppendingContinues() throws IOException {
+        Path path = journalPath();
+        record(path, 100);
+        long intact;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            intact = file.length() - TripJournal.FIX_BYTES;
+            file.setLength(file.length() - 20);
+        }
+
+        TripTracker expected = new TripTracker();
+        Fixes fixes = new Fixes(new Random(1));
+        for (int i = 0; i < 99; i++) {
+            fixes.next();
+            fixes.apply(expected);
+        }
+
+        TripTracker restored = new TripTracker();
+        try (TripJournal journal = new TripJournal(path)) {
+            assertTrue(journal.restore(restored));
+            assertEquals(intact, journal.size());
+            assertSameTrip(expected, restored);
+
+            // The trip carries on from the restored state.
+            fixes.next();
+            fixes.apply(expected);
+            fixes.apply(restored);
+            fixes.stage(journal);
+            journal.flush();
+        }
+        TripTracker again = new TripTracker();
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.restore(again);
+        }
+        assertSameTrip(expected, again);
+    }
+
+    @Test
+    public void garbageAfterLastRecord_isDiscarded() throws IOException {
+        Path path = journalPath();
+        TripTracker original = record(path, 70);
+        long length;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            length = file.length();
+            // Some file systems extend the file before the data lands, leaving zeros.
+            file.setLength(length + 3 * TripJournal.SLOT_BYTES);
+        }
+        TripTracker restored = new TripTracker();
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.restore(restored);
+            assertEquals(length, journal.size());
+        }
+        assertSameTrip(original, restored);
+    }
+
+    @Test
+    public void tornCheckpoint_fallsBackToPreviousOne() throws IOException {
+        Path path = journalPath();
+        // 120 fixes: checkpoints after fixes 60 and 120, the second of which is the tail.
+        record(path, 120);
+        TripTracker expected = new TripTracker();
+        Fixes fixes = new Fixes(new Random(1));
+        for (int i = 0; i < 120; i++) {
+            fixes.next();
+            fixes.apply(expected);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+        TripTracker restored = new TripTracker();
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.restore(restored);
+        }
+        assertSameTrip(expected, restored);
+    }
+
+    @Test
+    public void stageReset_forgetsTrip() throws IOException {
+        Path path = journalPath();
+        record(path, 80);
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.restore(new TripTracker());
+            journal.stageReset();
+            journal.flush();
+        }
+        try (TripJournal journal = new TripJournal(path)) {
+            assertFalse(journal.restore(new TripTracker()));
+        }
+    }
+
+    @Test
+    public void foreignFile_isReplaced() throws IOException {
+        Path path = journalPath();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeBytes("not a journal, but long enough to hold a header of sixty-four bytes...");
+        }
+        try (TripJournal journal = new TripJournal(path)) {
+            assertFalse(journal.restore(new TripTracker()));
+            assertEquals(TripJournal.HEADER_BYTES, journal.size());
+        }
+    }
+
+    @Test
+    public void checkpointIsDue_everyInterval() throws IOException {
+        try (TripJournal journal = new TripJournal(journalPath())) {
+            journal.restore(new TripTracker());
+            Fixes fixes = new Fixes(new Random(2));
+            for (int i = 1; i < TripJournal.CHECKPOINT_INTERVAL; i++) {
+                fixes.next();
+                assertFalse(fixes.stage(journal));
+            }
+            fixes.next();
+            assertTrue(fixes.stage(journal));
+        }
+    }
+
+    @Test
+    public void listener_seesFlushedAndReplayedFixes() throws IOException {
+        Path path = journalPath();
+        Mirror written = new Mirror();
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.setListener(written);
+            journal.restore(new TripTracker());
+            Fixes fixes = new Fixes(new Random(3));
+            for (int i = 0; i < 90; i++) {
+                fixes.next();
+                if (fixes.stage(journal)) {
+                    journal.stageCheckpoint(new TripTracker());
+                }
+                if (i % 5 == 0) {
+                    journal.flush();
+                }
+            }
+            assertEquals(1, written.checkpoints);
+        }
+        assertEquals(90, written.fixes);
+        assertEquals(1_700_000_000_000L + 90 * 1000L, written.lastTimeMillis);
+
+        Mirror replayed = new Mirror();
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.setListener(replayed);
+            journal.restore(new TripTracker());
+            journal.stageReset();
+            journal.flush();
+        }
+        assertEquals(90 - TripJournal.CHECKPOINT_INTERVAL, replayed.fixes);
+        assertEquals(written.lastTimeMillis, replayed.lastTimeMillis);
+        assertEquals(1, replayed.resets);
+    }
+
+    private Path journalPath() {
+        return folder.getRoot().toPath().resolve("trip.journal");
+    }
+
+    /** Drives a tracker through {@code count} fixes, journalling them the way the app does. */
+    private static TripTracker record(Path path, int count) throws IOException {
+        TripTracker tracker = new TripTracker();
+        Fixes fixes = new Fixes(new Random(1));
+        try (TripJournal journal = new TripJournal(path)) {
+            journal.restore(new TripTracker());
+            for (int i = 0; i < count; i++) {
+                fixes.next();
+                if (fixes.apply(tracker) != 0 && fixes.stage(journal)) {
+                    journal.stageCheckpoint(tracker);
+                }
+                if (i % 7 == 0) {
+                    journal.flush();
+                }
+            }
+        }
+        return tracker;
+    }
+
+    private static void assertSameTrip(TripTracker expected, TripTracker actual) {
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getDistance(), actual.getDistance(), 0f);
+        assertEquals(expected.getMaxSpeed(), actual.getMaxSpeed(), 0f);
+        assertEquals(expected.getSmoothedSpeed(), actual.getSmoothedSpeed(), 0f);
+        assertEquals(expected.getAverageSpeed(), actual.getAverageSpeed(), 0f);
+        assertEquals(expected.getLatitude(), actual.getLatitude(), 0.0);
+        assertEquals(expected.getLongitude(), actual.getLongitude(), 0.0);
+        TripStatistics expectedStatistics = expected.getStatistics();
+        TripStatistics actualStatistics = actual.getStatistics();
+        assertEquals(expectedStatistics.getMedianSpeed(), actualStatistics.getMedianSpeed(), 0f);
+        assertEquals(expectedStatistics.getP95Speed(), actualStatistics.getP95Speed(), 0f);
+        assertEquals(expectedStatistics.getMovingMillis(), actualStatistics.getMovingMillis());
+        assertEquals(expectedStatistics.getTimeAboveMillis(0), actualStatistics.getTimeAboveMillis(0));
+    }
+
+    private static final class Mirror implements TripJournal.Listener {
+        int fixes;
+        int checkpoints;
+        int resets;
+        long lastTimeMillis;
+
+        @Override
+        public void onFix(double latitude, double longitude, float speedMetersPerSecond, float bearingDegrees,
+                          float accuracyMeters, long timeMillis) {
+            fixes++;
+            lastTimeMillis = timeMillis;
+        }
+
+        @Override
+        public void onCheckpoint() {
+            checkpoints++;
+        }
+
+        @Override
+        public void onReset() {
+            resets++;
+        }
+    }
+
+    /** A deterministic northbound drive at 1 Hz. */
+    private static final class Fixes {
+        private final Random random;
+        private int index;
+        private double north;
+        double latitude;
+        double longitude = 13.4;
+        float speed;
+        float accuracy;
+
+        Fixes(Random random) {
+            this.random = random;
+        }
+
+        void next() {
+            speed = 10f + (float) random.nextGaussian();
+            north += speed;
+            latitude = 52.5 + (north + random.nextGaussian() * 3) / METERS_PER_DEGREE;
+            accuracy = 3f + random.nextFloat() * 10f;
+            index++;
+        }
+
+        int apply(TripTracker tracker) {
+            return tracker.onFix(latitude, longitude, speed, 0f, accuracy, Float.NaN, timeNanos(), timeMillis());
+        }
+
+        boolean stage(TripJournal journal) {
+            return journal.stageFix(latitude, longitude, speed, 0f, accuracy, Float.NaN, timeNanos(), timeMillis());
+        }
+
+        private long timeNanos() {
+            return index * 1_000_000_000L;
+        }
+
+        private long timeMillis() {
+            return 1_700_000_000_000L + index * 1000L;
+        }
+    }
+}
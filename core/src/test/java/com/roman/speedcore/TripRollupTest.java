@@ -0,0 +1,78 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TripRollupTest {
+
+    private static final long T0 = 1_700_000_020_000L; // 40 s into a minute
+
+    @Test
+    public void onFix_splitsTheTripIntoWallClockMinutes() {
+        TripRollup rollup = new TripRollup();
+        rollup.start(T0);
+        rollup.onFix(T0, 10f, 0.0, 10f, 10f);
+        rollup.onFix(T0 + 10_000L, 20f, 150.0, 20f, 15f);
+        assertFalse(rollup.startsNewMinute(T0 + 19_999L));
+        assertTrue(rollup.startsNewMinute(T0 + 20_000L));
+        assertEquals(T0 - 40_000L, rollup.getMinuteMillis());
+        assertEquals(150.0, rollup.getMinuteDistanceMeters(), 1e-9);
+        assertEquals(20f, rollup.getMinuteMaxSpeed(), 0f);
+        assertEquals(15f, rollup.getMinuteAverageSpeed(), 1e-6f);
+
+        rollup.onFix(T0 + 20_000L, 12f, 350.0, 20f, 14f);
+        assertEquals(T0 + 20_000L, rollup.getMinuteMillis());
+        assertEquals(200.0, rollup.getMinuteDistanceMeters(), 1e-9);
+        assertEquals(12f, rollup.getMinuteMaxSpeed(), 0f);
+        assertEquals(1, rollup.getMinuteFixCount());
+
+        assertEquals(T0, rollup.getStartMillis());
+        assertEquals(T0 + 20_000L, rollup.getEndMillis());
+        assertEquals(350.0, rollup.getDistanceMeters(), 1e-9);
+        assertEquals(20f, rollup.getMaxSpeed(), 0f);
+        assertEquals(14f, rollup.getAverageSpeed(), 0f);
+        assertEquals(3, rollup.getFixCount());
+    }
+
+    @Test
+    public void aFixFromBeforeTheCurrentMinute_staysInIt() {
+        TripRollup rollup = new TripRollup();
+        rollup.start(T0);
+        rollup.onFix(T0 + 30_000L, 5f, 40.0, 5f, 5f);
+        assertFalse(rollup.startsNewMinute(T0));
+        rollup.onFix(T0, 7f, 60.0, 7f, 6f);
+        assertEquals(T0 + 20_000L, rollup.getMinuteMillis());
+        assertEquals(2, rollup.getMinuteFixCount());
+        assertEquals(60.0, rollup.getMinuteDistanceMeters(), 1e-9);
+        assertEquals(T0 + 30_000L, rollup.getEndMillis());
+    }
+
+    @Test
+    public void resume_continuesTheStoredMinute() {
+        TripRollup rollup = new TripRollup();
+        rollup.start(T0);
+        rollup.onFix(T0, 10f, 100.0, 10f, 10f);
+        rollup.onFix(T0 + 25_000L, 14f, 300.0, 14f, 12f);
+        rollup.onFix(T0 + 26_000L, 16f, 320.0, 16f, 12.5f);
+
+        TripRollup resumed = new TripRollup();
+        resumed.resume(new TripSummary(7L, rollup.getStartMillis(), rollup.getEndMillis(), rollup.getDistanceMeters(),
+                        rollup.getMaxSpeed(), rollup.getAverageSpeed(), rollup.getFixCount()),
+                rollup.getMinuteMillis(), rollup.getMinuteDistanceMeters(), rollup.getMinuteMaxSpeed(),
+                rollup.getMinuteAverageSpeed(), rollup.getMinuteFixCount());
+        rollup.onFix(T0 + 27_000L, 12f, 330.0, 16f, 12.4f);
+        resumed.onFix(T0 + 27_000L, 12f, 330.0, 16f, 12.4f);
+
+        assertTrue(resumed.isActive());
+        assertEquals(rollup.getMinuteMillis(), resumed.getMinuteMillis());
+        assertEquals(rollup.getMinuteDistanceMeters(), resumed.getMinuteDistanceMeters(), 1e-9);
+        assertEquals(rollup.getMinuteMaxSpeed(), resumed.getMinuteMaxSpeed(), 0f);
+        assertEquals(rollup.getMinuteAverageSpeed(), resumed.getMinuteAverageSpeed(), 1e-5f);
+        assertEquals(rollup.getMinuteFixCount(), resumed.getMinuteFixCount());
+        assertEquals(rollup.getFixCount(), resumed.getFixCount());
+        assertEquals(rollup.getEndMillis(), resumed.getEndMillis());
+    }
+}
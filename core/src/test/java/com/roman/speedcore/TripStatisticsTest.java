@@ -0,0 +1,219 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TripStatisticsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void timeTotals_matchOfflineComputation() {
+        Trace trace = Trace.simulate(new Random(1), 20_000);
+        TripStatistics statistics = new TripStatistics();
+        for (int i = 0; i < trace.length; i++) {
+            statistics.onSpeed(trace.speed[i], trace.timeNanos[i]);
+        }
+
+        long moving = 0;
+        long stopped = 0;
+        long[] above = new long[TripStatistics.DEFAULT_SPEED_BANDS.length];
+        for (int i = 1; i < trace.length; i++) {
+            long dt = trace.creditedNanos(i);
+            if (trace.speed[i] < TripStatistics.STOPPED_SPEED_MPS) {
+                stopped += dt;
+            } else {
+                moving += dt;
+            }
+            for (int band = 0; band < above.length; band++) {
+                if (trace.speed[i] >= TripStatistics.DEFAULT_SPEED_BANDS[band]) {
+                    above[band] += dt;
+                }
+            }
+        }
+        assertEquals(moving / 1_000_000, statistics.getMovingMillis());
+        assertEquals(stopped / 1_000_000, statistics.getStoppedMillis());
+        assertTrue(statistics.getStoppedMillis() > 0);
+        for (int band = 0; band < above.length; band++) {
+            assertEquals(above[band] / 1_000_000, statistics.getTimeAboveMillis(band));
+        }
+        assertTrue(statistics.getTimeAboveMillis(2) > 0);
+    }
+
+    @Test
+    public void rollingAverages_matchOfflineWindowsAtEveryFix() {
+        Trace trace = Trace.simulate(new Random(2), 5_000);
+        TripStatistics statistics = new TripStatistics();
+        for (int i = 0; i < trace.length; i++) {
+            statistics.onSpeed(trace.speed[i], trace.timeNanos[i]);
+            assertEquals(trace.windowAverage(i, TripStatistics.SHORT_WINDOW_SECONDS),
+                    statistics.getOneMinuteAverage(), 1e-4);
+            assertEquals(trace.windowAverage(i, TripStatistics.LONG_WINDOW_SECONDS),
+                    statistics.getFiveMinuteAverage(), 1e-4);
+        }
+    }
+
+    @Test
+    public void percentiles_matchExactOrderStatistics() {
+        Trace trace = Trace.simulate(new Random(3), 20_000);
+        TripStatistics statistics = new TripStatistics();
+        for (int i = 0; i < trace.length; i++) {
+            statistics.onSpeed(trace.speed[i], trace.timeNanos[i]);
+        }
+        float[] sorted = trace.speed.clone();
+        Arrays.sort(sorted);
+        assertWithinAccuracy(sorted[(int) (0.5 * (sorted.length - 1))], statistics.getMedianSpeed());
+        assertWithinAccuracy(sorted[(int) (0.95 * (sorted.length - 1))], statistics.getP95Speed());
+    }
+
+    @Test
+    public void customBands_andSnapshot() {
+        TripStatistics statistics = new TripStatistics(new float[]{5f, 10f});
+        long t = 0;
+        for (float speed : new float[]{0f, 4f, 6f, 6f, 12f, 0.2f}) {
+            statistics.onSpeed(speed, t);
+            t += SECOND;
+        }
+        TripStatistics.Snapshot snapshot = statistics.snapshot();
+        assertEquals(2, snapshot.getSpeedBandCount());
+        assertEquals(3000, snapshot.getTimeAboveMillis(0));
+        assertEquals(1000, snapshot.getTimeAboveMillis(1));
+        assertEquals(4000, snapshot.getMovingMillis());
+        assertEquals(1000, snapshot.getStoppedMillis());
+        assertEquals(statistics.getMedianSpeed(), snapshot.getMedianSpeed(), 0f);
+    }
+
+    @Test
+    public void longGaps_areNotCredited() {
+        TripStatistics statistics = new TripStatistics();
+        statistics.onSpeed(20f, 0);
+        statistics.onSpeed(20f, SECOND);
+        statistics.onSpeed(20f, SECOND + TripStatistics.MAX_GAP_NANOS + 1);
+        statistics.onSpeed(20f, 2 * SECOND + TripStatistics.MAX_GAP_NANOS + 1);
+        assertEquals(2000, statistics.getMovingMillis());
+    }
+
+    @Test
+    public void stateRoundTrip_keepsTotalsAndPercentiles() {
+        Trace trace = Trace.simulate(new Random(4), 3_000);
+        TripStatistics original = new TripStatistics(new float[]{3f, 20f});
+        for (int i = 0; i < trace.length; i++) {
+            original.onSpeed(trace.speed[i], trace.timeNanos[i]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(TripStatistics.STATE_BYTES);
+        original.writeState(buffer);
+        assertEquals(TripStatistics.STATE_BYTES, buffer.position());
+        buffer.flip();
+        TripStatistics restored = new TripStatistics();
+        restored.readState(buffer);
+
+        assertEquals(2, restored.getSpeedBandCount());
+        assertEquals(original.getTimeAboveMillis(1), restored.getTimeAboveMillis(1));
+        assertEquals(original.getMovingMillis(), restored.getMovingMillis());
+        assertEquals(original.getStoppedMillis(), restored.getStoppedMillis());
+        assertEquals(original.getP95Speed(), restored.getP95Speed(), 0f);
+        for (int i = 0; i < 100; i++) {
+            long time = trace.timeNanos[trace.length - 1] + (i + 1) * SECOND;
+            original.onSpeed(9f, time);
+            restored.onSpeed(9f, time);
+        }
+        assertEquals(original.getMedianSpeed(), restored.getMedianSpeed(), 0f);
+        assertEquals(original.getMovingMillis(), restored.getMovingMillis());
+    }
+
+    @Test
+    public void onSpeed_doesNotAllocate() {
+        Trace trace = Trace.simulate(new Random(5), 5_000);
+        TripStatistics statistics = new TripStatistics();
+        for (int i = 0; i < trace.length; i++) {
+            statistics.onSpeed(trace.speed[i], trace.timeNanos[i]);
+        }
+        statistics.reset();
+        long before = allocatedBytes();
+        for (int i = 0; i < trace.length; i++) {
+            statistics.onSpeed(trace.speed[i], trace.timeNanos[i]);
+        }
+        long allocated = allocatedBytes() - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void assertWithinAccuracy(float exact, float estimate) {
+        assertEquals(exact, estimate, exact * TripStatistics.QUANTILE_ACCURACY + 1e-5);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(hotspotBean.isThreadAllocatedMemorySupported());
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Stop-and-go speeds at irregular intervals, as adaptive sampling produces: sub-second to a
+     * few seconds between fixes, ten seconds while stopped, and the occasional signal loss.
+     */
+    private static final class Trace {
+        final int length;
+        final float[] speed;
+        final long[] timeNanos;
+
+        private Trace(int length) {
+            this.length = length;
+            speed = new float[length];
+            timeNanos = new long[length];
+        }
+
+        static Trace simulate(Random random, int length) {
+            Trace trace = new Trace(length);
+            long time = 5 * SECOND + 123_456_789L;
+            double cruise = 15;
+            for (int i = 0; i < length; i++) {
+                boolean stopped = (i / 300) % 4 == 3;
+                if (i % 300 == 0) {
+                    cruise = 5 + random.nextDouble() * 35;
+                }
+                trace.speed[i] = stopped ? (float) Math.abs(random.nextGaussian() * 0.2)
+                        : (float) Math.max(0, cruise + random.nextGaussian() * 3);
+                trace.timeNanos[i] = time;
+                if (random.nextInt(400) == 0) {
+                    time += 2 * TripStatistics.MAX_GAP_NANOS;
+                } else if (stopped) {
+                    time += 10 * SECOND;
+                } else {
+                    time += (long) ((0.3 + random.nextDouble() * 2.7) * SECOND);
+                }
+            }
+            return trace;
+        }
+
+        long creditedNanos(int i) {
+            long dt = timeNanos[i] - timeNanos[i - 1];
+            return dt > TripStatistics.MAX_GAP_NANOS ? 0 : dt;
+        }
+
+        /** Brute-force time-weighted average over the whole seconds of the window ending at fix {@code end}. */
+        float windowAverage(int end, int windowSeconds) {
+            long endSecond = timeNanos[end] / SECOND;
+            double weighted = 0;
+            long duration = 0;
+            for (int i = 1; i <= end; i++) {
+                if (timeNanos[i] / SECOND > endSecond - windowSeconds) {
+                    long dt = creditedNanos(i);
+                    weighted += (double) speed[i] * dt;
+                    duration += dt;
+                }
+            }
+            return duration > 0 ? (float) (weighted / duration) : 0f;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TripTrackerTest {
+
+    private static final double LAT0 = 40.7128;
+    private static final double LON0 = -74.0060;
+    private static final double METERS_PER_DEGREE = Math.toRadians(TrackKalmanFilter.EARTH_RADIUS_METERS);
+
+    /** A fix {@code northMeters} due north of the origin, heading north, at {@code second} seconds. */
+    private static int fix(TripTracker tracker, double northMeters, float speed, float accuracy, int second) {
+        return tracker.onFix(LAT0 + northMeters / METERS_PER_DEGREE, LON0, speed, 0f, accuracy, Float.NaN,
+                second * 1_000_000_000L, 1000L * second);
+    }
+
+    @Test
+    public void onFix_outOfOrderFix_isRejected() {
+        TripTracker tracker = new TripTracker();
+        fix(tracker, 0, 10f, 5f, 2);
+        assertEquals(0, fix(tracker, 10, 10f, 5f, 1));
+    }
+
+    @Test
+    public void onFix_firstFix_startsTripWithoutDistance() {
+        TripTracker tracker = new TripTracker();
+        int changed = fix(tracker, 0, 10f, 5f, 1);
+        assertTrue(tracker.isStarted());
+        assertEquals(TripTracker.CHANGED_SPEED | TripTracker.CHANGED_MAX_SPEED, changed);
+        assertEquals(0.0, tracker.getDistance(), 0.0);
+    }
+
+    @Test
+    public void onFix_accumulatesDistanceAndAverage() {
+        TripTracker tracker = new TripTracker();
+        fix(tracker, 0, 10f, 5f, 1);
+        int changed = fix(tracker, 10, 10f, 5f, 2);
+        assertEquals(TripTracker.CHANGED_SPEED | TripTracker.CHANGED_DISTANCE | TripTracker.CHANGED_AVERAGE_SPEED, changed);
+        double expected = Geodesy.distanceMeters(LAT0, LON0, LAT0 + 10 / METERS_PER_DEGREE, LON0);
+        assertEquals(expected, tracker.getDistance(), 1e-3);
+        assertEquals(10f, tracker.getMaxSpeed(), 1e-3f);
+        assertEquals(10f, tracker.getSmoothedSpeed(), 1e-3f);
+        assertEquals(expected, tracker.getAverageSpeed(), 1e-3f);
+        assertEquals(LAT0 + 10 / METERS_PER_DEGREE, tracker.getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void elapsedMillis_followsMonotonicClockNotWallClock() {
+        TripTracker tracker = new TripTracker();
+        assertEquals(0L, tracker.getElapsedMillis(5_000_000_000L, 5000L));
+        tracker.onFix(LAT0, LON0, 10f, 0f, 5f, Float.NaN, 2_000_000_000L, 1_000_000L);
+        // The wall clock jumped back an hour; the trip is still 3.5 s old.
+        assertEquals(3500L, tracker.getElapsedMillis(5_500_000_000L, 1_000_000L - 3_600_000L));
+        // A monotonic clock behind the start, as after a reboot, falls back to the wall clock.
+        assertEquals(7000L, tracker.getElapsedMillis(1_000_000_000L, 1_007_000L));
+    }
+
+    @Test
+    public void onFix_speedSpike_isSmoothedOutOfMaxSpeed() {
+        TripTracker tracker = new TripTracker();
+        double north = 0;
+        for (int i = 0; i < 20; i++, north += 10) {
+            fix(tracker, north, 10f, 5f, i);
+        }
+        fix(tracker, north, 40f, 5f, 20);
+        assertTrue("max " + tracker.getMaxSpeed(), tracker.getMaxSpeed() < 15f);
+    }
+
+    @Test
+    public void configure_accuracyGateStopsDistanceButNotSpeed() {
+        TripTracker tracker = new TripTracker();
+        tracker.configure(TripTracker.DEFAULT_SMOOTHING_WINDOW, 10f);
+        fix(tracker, 0, 10f, 40f, 1);
+        int changed = fix(tracker, 10, 12f, 40f, 2);
+        assertEquals(0, changed & TripTracker.CHANGED_DISTANCE);
+        assertEquals(0.0, tracker.getDistance(), 0.0);
+        assertTrue(tracker.getSmoothedSpeed() > 10f);
+    }
+
+    /** 30 s at 20 m/s, a 40 s dropout, then 10 s more; returns the distance counted. */
+    private static double driveThroughDropout(float firstAccuracyAfterGap) {
+        TripTracker tracker = new TripTracker();
+        for (int second = 0; second <= 30; second++) {
+            fix(tracker, 20.0 * second, 20f, 5f, second);
+        }
+        double beforeGap = tracker.getDistance();
+        assertEquals(600.0, beforeGap, 5.0);
+        fix(tracker, 20.0 * 70, 20f, firstAccuracyAfterGap, 70);
+        assertEquals(beforeGap, tracker.getDistance(), 1e-9);
+        for (int second = 71; second <= 80; second++) {
+            fix(tracker, 20.0 * second, 20f, 5f, second);
+        }
+        return tracker.getDistance() - beforeGap;
+    }
+
+    @Test
+    public void dropout_accurateFirstFixAfterIt_skipsTheGap() {
+        assertEquals(200.0, driveThroughDropout(5f), 10.0);
+    }
+
+    @Test
+    public void dropout_inaccurateFirstFixAfterIt_skipsTheGap() {
+        assertEquals(200.0, driveThroughDropout(60f), 10.0);
+    }
+
+    @Test
+    public void parkedJitter_addsNoDistance() {
+        for (double noise : new double[]{2, 4, 8}) {
+            TripTracker tracker = new TripTracker();
+            Random random = new Random(3);
+            for (int i = 0; i < 3600; i++) {
+                double north = random.nextGaussian() * noise;
+                double east = random.nextGaussian() * noise;
+                tracker.onFix(LAT0 + north / METERS_PER_DEGREE,
+                        LON0 + east / METERS_PER_DEGREE / Math.cos(Math.toRadians(LAT0)),
+                        (float) Math.abs(random.nextGaussian() * 0.3), Float.NaN, (float) (noise * 1.5), Float.NaN,
+                        i * 1_000_000_000L, 1000L * i);
+            }
+            assertEquals("noise " + noise, 0.0, tracker.getDistance(), 0.0);
+        }
+    }
+
+    @Test
+    public void slowWalk_stillCountsOnceItLeavesTheJitterRadius() {
+        TripTracker tracker = new TripTracker();
+        for (int i = 0; i <= 600; i++) {
+            fix(tracker, i * 0.4, 0.4f, 3f, i);
+        }
+        double walked = Geodesy.distanceMeters(LAT0, LON0, LAT0 + 240 / METERS_PER_DEGREE, LON0);
+        assertEquals(walked, tracker.getDistance(), 2 * TripTracker.MIN_JITTER_RADIUS_METERS + 1);
+    }
+
+    @Test
+    public void noisyStopAndGoDrive_distanceTracksTruth() {
+        // The raw filter track overcounts by about 2% here, mostly while stopped.
+        TrackKalmanFilterTest.Drive drive = TrackKalmanFilterTest.Drive.simulate(new Random(7), 3600);
+        TripTracker tracker = new TripTracker();
+        for (int i = 0; i < drive.length; i++) {
+            tracker.onFix(drive.latitude[i], drive.longitude[i], drive.speed[i], drive.bearing[i],
+                    drive.accuracy[i], Float.NaN, i * 1_000_000_000L, 1000L * i);
+        }
+        assertEquals(drive.trueDistance, tracker.getDistance(), drive.trueDistance * 0.005);
+    }
+
+    @Test
+    public void longRoute_sumsHopsWithoutLosingPrecision() {
+        TripTracker tracker = new TripTracker();
+        // 2000 km due north in 10 m hops: a float total would lose centimetres on every hop.
+        int hops = 200_000;
+        double expected = 0;
+        double previousLatitude = LAT0;
+        for (int i = 0; i <= hops; i++) {
+            double latitude = LAT0 + i * 10 / METERS_PER_DEGREE;
+            tracker.onFix(latitude, LON0, 10f, 0f, 3f, Float.NaN, i * 1_000_000_000L, 1000L * i);
+            if (i > 0) {
+                expected += Geodesy.vincentyMeters(previousLatitude, LON0, latitude, LON0);
+            }
+            previousLatitude = latitude;
+        }
+        assertEquals(expected, tracker.getDistance(), 0.01);
+        assertEquals(Geodesy.vincentyMeters(LAT0, LON0, previousLatitude, LON0), tracker.getDistance(), 0.01);
+    }
+
+    @Test
+    public void configure_smallerWindowFollowsSpeedFaster() {
+        TripTracker responsive = new TripTracker();
+        TripTracker smooth = new TripTracker();
+        responsive.configure(1, TripTracker.DEFAULT_MAX_ACCURACY_METERS);
+        smooth.configure(10, TripTracker.DEFAULT_MAX_ACCURACY_METERS);
+        for (int i = 0; i < 10; i++) {
+            fix(responsive, 0, 0f, 5f, i);
+            fix(smooth, 0, 0f, 5f, i);
+        }
+        fix(responsive, 0, 5f, 5f, 10);
+        fix(smooth, 0, 5f, 5f, 10);
+        assertTrue(responsive.getSmoothedSpeed() > smooth.getSmoothedSpeed());
+    }
+
+    @Test
+    public void reset_clearsTrip() {
+        TripTracker tracker = new TripTracker();
+        fix(tracker, 0, 10f, 5f, 1);
+        fix(tracker, 10, 10f, 5f, 2);
+        tracker.reset();
+        assertFalse(tracker.isStarted());
+        assertEquals(0.0, tracker.getDistance(), 0.0);
+        assertEquals(0f, tracker.getMaxSpeed(), 0f);
+        assertEquals(0f, tracker.getSmoothedSpeed(), 0f);
+        assertTrue(fix(tracker, 0, 5f, 5f, 0) != 0);
+    }
+
+    @Test
+    public void toDisplayUnits_convertsFromSi() {
+        assertEquals(36f, TripTracker.toDisplaySpeed(10f, true), 1e-4f);
+        assertEquals(22.3694f, TripTracker.toDisplaySpeed(10f, false), 1e-4f);
+        assertEquals(1.0, TripTracker.toDisplayDistance(1609.34f, false), 1e-6);
+    }
+}
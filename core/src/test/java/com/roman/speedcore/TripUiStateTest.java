@@ -0,0 +1,59 @@
+package com.roman.speedcore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TripUiStateTest {
+
+    @Test
+    public void build_firstSnapshot_marksOnlyFieldsThatWereSet() {
+        TripUiState state = new TripUiState.Builder().setSpeed("12").setUnit("mph").build(null);
+        assertEquals(TripUiState.SPEED | TripUiState.UNIT, state.getChangedFields());
+    }
+
+    @Test
+    public void build_unchangedValues_returnsNull() {
+        TripUiState.Builder builder = new TripUiState.Builder().setSpeed("12").setCompassHeading(90f);
+        TripUiState first = builder.build(null);
+        assertNull(builder.setSpeed(new String("12")).setCompassHeading(90f).build(first));
+    }
+
+    @Test
+    public void build_marksOnlyDifferingFields() {
+        TripUiState.Builder builder = new TripUiState.Builder().setSpeed("12").setMaxSpeed("Max: 12 mph");
+        TripUiState first = builder.build(null);
+        TripUiState second = builder.setSpeed("13").setMaxSpeed("Max: 12 mph").build(first);
+        assertEquals(TripUiState.SPEED, second.getChangedFields());
+        assertEquals("Max: 12 mph", second.getMaxSpeed());
+    }
+
+    @Test
+    public void changedSince_skippedSnapshots_diffsAgainstRenderedState() {
+        TripUiState.Builder builder = new TripUiState.Builder().setSpeed("1").setTripTime("00:00:01");
+        TripUiState rendered = builder.build(null);
+        TripUiState missed = builder.setSpeed("2").build(rendered);
+        TripUiState latest = builder.setTripTime("00:00:02").build(missed);
+
+        assertEquals(TripUiState.TRIP_TIME, latest.getChangedFields());
+        assertEquals(TripUiState.SPEED | TripUiState.TRIP_TIME, latest.changedSince(rendered));
+        assertEquals(TripUiState.TRIP_TIME, latest.changedSince(missed));
+        assertEquals(0, latest.changedSince(latest));
+        assertEquals(TripUiState.SPEED | TripUiState.TRIP_TIME, latest.changedSince(null));
+    }
+
+    @Test
+    public void speedProvisional_isItsOwnField() {
+        TripUiState.Builder builder = new TripUiState.Builder().setSpeed("42").setSpeedProvisional(true);
+        TripUiState cached = builder.build(null);
+        assertEquals(TripUiState.SPEED | TripUiState.SPEED_PROVISIONAL, cached.getChangedFields());
+        assertTrue(cached.isSpeedProvisional());
+
+        TripUiState live = builder.setSpeedProvisional(false).build(cached);
+        assertEquals(TripUiState.SPEED_PROVISIONAL, live.getChangedFields());
+        assertFalse(live.isSpeedProvisional());
+    }
+}
@@ -0,0 +1,393 @@
+package com.roman.speedcore;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * A recorded or synthetic drive: location fixes, GNSS status and sensor readings in time order,
+ * loaded up front into primitive arrays so that replaying it measures only the code it drives.
+ *
+ * <p>The CSV form has one event per line, times in nanoseconds on the elapsed-realtime clock and
+ * an empty field for an absent value:
+ * <pre>
+ * fix,elapsedNanos,timeMillis,latitude,longitude,speed,bearing,accuracy,speedAccuracy
+ * gnss,elapsedNanos,satellites,usedInFix
+ * motion,elapsedNanos,variance
+ * heading,elapsedNanos,degrees
+ * </pre>
+ * Lines starting with {@code #} are comments, except {@code # key=value}, which sets a property,
+ * e.g. the true distance of a synthetic drive. A GPX track supplies fixes only.
+ */
+public final class GpsTrace {
+
+    public static final byte FIX = 0;
+    public static final byte GNSS = 1;
+    public static final byte MOTION = 2;
+    public static final byte HEADING = 3;
+
+    /** Accuracy given to GPX points that carry no HDOP. */
+    static final float DEFAULT_GPX_ACCURACY_METERS = 5f;
+    /** Metres of horizontal accuracy per unit of HDOP for GPX points. */
+    static final float GPX_METERS_PER_HDOP = 5f;
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    private int size;
+    private byte[] type = new byte[64];
+    private long[] timeNanos = new long[64];
+    /** Index of each event into the arrays of its type. */
+    private int[] index = new int[64];
+
+    private int fixCount;
+    private double[] latitude = new double[64];
+    private double[] longitude = new double[64];
+    private float[] speed = new float[64];
+    private float[] bearing = new float[64];
+    private float[] accuracy = new float[64];
+    private float[] speedAccuracy = new float[64];
+    private long[] timeMillis = new long[64];
+
+    private int gnssCount;
+    private int[] satellites = new int[16];
+    private int[] usedInFix = new int[16];
+
+    private int sensorCount;
+    private float[] sensorValue = new float[64];
+
+    private GpsTrace() {
+    }
+
+    /** Loads a bundled corpus trace such as {@code "highway.csv"} from {@code /traces}. */
+    public static GpsTrace load(String name) throws IOException {
+        InputStream in = GpsTrace.class.getResourceAsStream("/traces/" + name);
+        if (in == null) {
+            throw new IOException("no trace " + name);
+        }
+        try (InputStream stream = in) {
+            return name.endsWith(".gpx") ? readGpx(stream) : readCsv(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        }
+    }
+
+    public static GpsTrace readCsv(Reader in) throws IOException {
+        GpsTrace trace = new GpsTrace();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("#")) {
+                trace.readProperty(line.substring(1).trim());
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            try {
+                trace.readEvent(fields);
+            } catch (RuntimeException e) {
+                throw new IOException("bad trace line " + lineNumber + ": " + line, e);
+            }
+        }
+        trace.sortByTime();
+        return trace;
+    }
+
+    /**
+     * Reads the track points of a GPX file as fixes. Speed and course come from {@code speed} and
+     * {@code course} elements, in the point itself or its extensions, or else from the step from the
+     * previous point, with the first point taken as stopped; accuracy comes from {@code hdop}.
+     */
+    public static GpsTrace readGpx(InputStream in) throws IOException {
+        GpsTrace trace = new GpsTrace();
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.newSAXParser().parse(in, trace.new GpxHandler());
+        } catch (ParserConfigurationException | SAXException | DateTimeParseException e) {
+            throw new IOException("bad GPX", e);
+        }
+        trace.sortByTime();
+        return trace;
+    }
+
+    private void readProperty(String comment) {
+        int equals = comment.indexOf('=');
+        if (equals > 0 && comment.indexOf(' ') < 0) {
+            properties.put(comment.substring(0, equals), comment.substring(equals + 1));
+        }
+    }
+
+    private void readEvent(String[] fields) {
+        long nanos = Long.parseLong(fields[1]);
+        switch (fields[0]) {
+            case "fix":
+                addFix(nanos, Long.parseLong(fields[2]), Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+                        parseFloat(fields[5]), parseFloat(fields[6]), parseFloat(fields[7]), parseFloat(fields[8]));
+                break;
+            case "gnss":
+                ensureGnss();
+                satellites[gnssCount] = Integer.parseInt(fields[2]);
+                usedInFix[gnssCount] = Integer.parseInt(fields[3]);
+                addEvent(GNSS, nanos, gnssCount++);
+                break;
+            case "motion":
+            case "heading":
+                ensureSensor();
+                sensorValue[sensorCount] = parseFloat(fields[2]);
+                addEvent(fields[0].equals("motion") ? MOTION : HEADING, nanos, sensorCount++);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown event " + fields[0]);
+        }
+    }
+
+    private static float parseFloat(String field) {
+        return field.isEmpty() ? Float.NaN : Float.parseFloat(field);
+    }
+
+    private void addFix(long nanos, long millis, double lat, double lon, float fixSpeed, float fixBearing,
+                        float fixAccuracy, float fixSpeedAccuracy) {
+        if (fixCount == latitude.length) {
+            int capacity = fixCount * 2;
+            latitude = Arrays.copyOf(latitude, capacity);
+            longitude = Arrays.copyOf(longitude, capacity);
+            speed = Arrays.copyOf(speed, capacity);
+            bearing = Arrays.copyOf(bearing, capacity);
+            accuracy = Arrays.copyOf(accuracy, capacity);
+            speedAccuracy = Arrays.copyOf(speedAccuracy, capacity);
+            timeMillis = Arrays.copyOf(timeMillis, capacity);
+        }
+        latitude[fixCount] = lat;
+        longitude[fixCount] = lon;
+        speed[fixCount] = fixSpeed;
+        bearing[fixCount] = fixBearing;
+        accuracy[fixCount] = fixAccuracy;
+        speedAccuracy[fixCount] = fixSpeedAccuracy;
+        timeMillis[fixCount] = millis;
+        addEvent(FIX, nanos, fixCount++);
+    }
+
+    private void ensureGnss() {
+        if (gnssCount == satellites.length) {
+            satellites = Arrays.copyOf(satellites, gnssCount * 2);
+            usedInFix = Arrays.copyOf(usedInFix, gnssCount * 2);
+        }
+    }
+
+    private void ensureSensor() {
+        if (sensorCount == sensorValue.length) {
+            sensorValue = Arrays.copyOf(sensorValue, sensorCount * 2);
+        }
+    }
+
+    private void addEvent(byte eventType, long nanos, int eventIndex) {
+        if (size == type.length) {
+            type = Arrays.copyOf(type, size * 2);
+            timeNanos = Arrays.copyOf(timeNanos, size * 2);
+            index = Arrays.copyOf(index, size * 2);
+        }
+        type[size] = eventType;
+        timeNanos[size] = nanos;
+        index[size] = eventIndex;
+        size++;
+    }
+
+    /** Stable insertion sort; traces are recorded in order, so this is normally a single pass. */
+    private void sortByTime() {
+        for (int i = 1; i < size; i++) {
+            byte t = type[i];
+            long nanos = timeNanos[i];
+            int at = index[i];
+            int j = i - 1;
+            while (j >= 0 && timeNanos[j] > nanos) {
+                type[j + 1] = type[j];
+                timeNanos[j + 1] = timeNanos[j];
+                index[j + 1] = index[j];
+                j--;
+            }
+            type[j + 1] = t;
+            timeNanos[j + 1] = nanos;
+            index[j + 1] = at;
+        }
+    }
+
+    /** A property set by a {@code # key=value} line, or {@code null}. */
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    public double getDoubleProperty(String key) {
+        String value = properties.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("trace has no " + key);
+        }
+        return Double.parseDouble(value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFixCount() {
+        return fixCount;
+    }
+
+    public byte getType(int event) {
+        return type[event];
+    }
+
+    public long getTimeNanos(int event) {
+        return timeNanos[event];
+    }
+
+    /** Duration from the first to the last event. */
+    public long getDurationNanos() {
+        return size == 0 ? 0L : timeNanos[size - 1] - timeNanos[0];
+    }
+
+    public double getLatitude(int event) {
+        return latitude[index[event]];
+    }
+
+    public double getLongitude(int event) {
+        return longitude[index[event]];
+    }
+
+    public float getSpeed(int event) {
+        return speed[index[event]];
+    }
+
+    /** Course of a fix, or {@code NaN} if it has none. */
+    public float getBearing(int event) {
+        return bearing[index[event]];
+    }
+
+    public float getAccuracy(int event) {
+        return accuracy[index[event]];
+    }
+
+    /** Speed accuracy of a fix, or {@code NaN} if unknown. */
+    public float getSpeedAccuracy(int event) {
+        return speedAccuracy[index[event]];
+    }
+
+    /** Wall-clock time of a fix. */
+    public long getTimeMillis(int event) {
+        return timeMillis[index[event]];
+    }
+
+    public int getSatellites(int event) {
+        return satellites[index[event]];
+    }
+
+    public int getUsedInFix(int event) {
+        return usedInFix[index[event]];
+    }
+
+    /** Accelerometer variance of a {@link #MOTION} event or degrees of a {@link #HEADING} event. */
+    public float getSensorValue(int event) {
+        return sensorValue[index[event]];
+    }
+
+    private final class GpxHandler extends DefaultHandler {
+
+        private final StringBuilder text = new StringBuilder();
+        private boolean inPoint;
+        private double pointLatitude;
+        private double pointLongitude;
+        private long pointMillis;
+        private float pointSpeed;
+        private float pointCourse;
+        private float pointHdop;
+        private long firstMillis = Long.MIN_VALUE;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            text.setLength(0);
+            if (localName.equals("trkpt")) {
+                inPoint = true;
+                pointLatitude = Double.parseDouble(attributes.getValue("lat"));
+                pointLongitude = Double.parseDouble(attributes.getValue("lon"));
+                pointMillis = Long.MIN_VALUE;
+                pointSpeed = Float.NaN;
+                pointCourse = Float.NaN;
+                pointHdop = Float.NaN;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (!inPoint) {
+                return;
+            }
+            String value = text.toString().trim();
+            switch (localName) {
+                case "time":
+                    pointMillis = Instant.parse(value).toEpochMilli();
+                    break;
+                case "speed":
+                    pointSpeed = Float.parseFloat(value);
+                    break;
+                case "course":
+                    pointCourse = Float.parseFloat(value);
+                    break;
+                case "hdop":
+                    pointHdop = Float.parseFloat(value);
+                    break;
+                case "trkpt":
+                    inPoint = false;
+                    endPoint();
+                    break;
+                default:
+                    break;
+            }
+            text.setLength(0);
+        }
+
+        private void endPoint() throws SAXException {
+            if (pointMillis == Long.MIN_VALUE) {
+                throw new SAXException("track point without a time");
+            }
+            if (firstMillis == Long.MIN_VALUE) {
+                firstMillis = pointMillis;
+            }
+            if (Float.isNaN(pointSpeed) && fixCount > 0) {
+                int previous = fixCount - 1;
+                long dt = pointMillis - timeMillis[previous];
+                if (dt > 0) {
+                    pointSpeed = (float) (Geodesy.distanceMeters(latitude[previous], longitude[previous],
+                            pointLatitude, pointLongitude) * 1000.0 / dt);
+                }
+            }
+            if (Float.isNaN(pointSpeed)) {
+                pointSpeed = 0f;
+            }
+            float pointAccuracy = Float.isNaN(pointHdop) ? DEFAULT_GPX_ACCURACY_METERS : pointHdop * GPX_METERS_PER_HDOP;
+            addFix((pointMillis - firstMillis) * 1_000_000L, pointMillis, pointLatitude, pointLongitude,
+                    pointSpeed, pointCourse, pointAccuracy, Float.NaN);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.roman.speedcore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link GpsTrace} into a {@link Target} on a {@link VirtualClock}. Before each event the
+ * clock is moved to the event's time, so anything timed off that clock sees the trace's own
+ * timeline. Replay runs flat out, or paced at a multiple of real time to watch a drive go by.
+ * The {@link Result} reports throughput and the bytes allocated on the replaying thread; the
+ * target reports the trip aggregates it ended with.
+ */
+public final class TraceReplay {
+
+    /** Replays as fast as the target can take events. */
+    public static final double UNPACED = Double.POSITIVE_INFINITY;
+
+    /** What a trace is replayed into. Only fixes are required; other events are ignored unless overridden. */
+    public interface Target {
+        /** Called before each event with the time it happens at; the clock has already moved there. */
+        default void advanceTo(long nowNanos) {
+        }
+
+        void onFix(double latitude, double longitude, float speed, float bearing, float accuracy,
+                   float speedAccuracy, long elapsedNanos, long timeMillis);
+
+        default void onGnssStatus(int satellites, int usedInFix) {
+        }
+
+        default void onMotionVariance(float variance) {
+        }
+
+        default void onHeading(float degrees) {
+        }
+    }
+
+    private final GpsTrace trace;
+    private final VirtualClock clock;
+
+    public TraceReplay(GpsTrace trace, VirtualClock clock) {
+        this.trace = trace;
+        this.clock = clock;
+    }
+
+    /**
+     * Replays every event into {@code target}. A {@code speedFactor} of 1000 plays an hour's drive
+     * in 3.6 s; {@link #UNPACED} plays it as fast as possible.
+     */
+    public Result run(Target target, double speedFactor) {
+        long allocatedBefore = allocatedBytes();
+        long startNanos = System.nanoTime();
+        long traceStartNanos = trace.size() == 0 ? 0L : trace.getTimeNanos(0);
+        boolean paced = speedFactor > 0 && !Double.isInfinite(speedFactor);
+        for (int i = 0, n = trace.size(); i < n; i++) {
+            long nanos = trace.getTimeNanos(i);
+            if (paced) {
+                long due = startNanos + (long) ((nanos - traceStartNanos) / speedFactor);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            clock.advanceTo(nanos);
+            target.advanceTo(nanos);
+            switch (trace.getType(i)) {
+                case GpsTrace.FIX:
+                    target.onFix(trace.getLatitude(i), trace.getLongitude(i), trace.getSpeed(i), trace.getBearing(i),
+                            trace.getAccuracy(i), trace.getSpeedAccuracy(i), nanos, trace.getTimeMillis(i));
+                    break;
+                case GpsTrace.GNSS:
+                    target.onGnssStatus(trace.getSatellites(i), trace.getUsedInFix(i));
+                    break;
+                case GpsTrace.MOTION:
+                    target.onMotionVariance(trace.getSensorValue(i));
+                    break;
+                default:
+                    target.onHeading(trace.getSensorValue(i));
+                    break;
+            }
+        }
+        long wallNanos = System.nanoTime() - startNanos;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1L : allocatedAfter - allocatedBefore;
+        return new Result(trace.size(), trace.getFixCount(), trace.getDurationNanos(), wallNanos, allocated);
+    }
+
+    /** Bytes allocated so far by the current thread, or -1 if the JVM cannot tell. */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1L;
+        }
+        com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) bean;
+        if (!hotspotBean.isThreadAllocatedMemorySupported()) {
+            return -1L;
+        }
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static final class Result {
+        private final int events;
+        private final int fixes;
+        private final long traceNanos;
+        private final long wallNanos;
+        private final long allocatedBytes;
+
+        Result(int events, int fixes, long traceNanos, long wallNanos, long allocatedBytes) {
+            this.events = events;
+            this.fixes = fixes;
+            this.traceNanos = traceNanos;
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getEvents() {
+            return events;
+        }
+
+        public int getFixes() {
+            return fixes;
+        }
+
+        public double getFixesPerSecond() {
+            return wallNanos == 0 ? Double.POSITIVE_INFINITY : fixes * 1e9 / wallNanos;
+        }
+
+        /** How many times faster than real time the trace was played. */
+        public double getSpeedup() {
+            return wallNanos == 0 ? Double.POSITIVE_INFINITY : (double) traceNanos / wallNanos;
+        }
+
+        /** Bytes allocated on the replaying thread, or -1 if the JVM cannot measure it. */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public double getAllocatedBytesPerFix() {
+            return allocatedBytes < 0 || fixes == 0 ? Double.NaN : (double) allocatedBytes / fixes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d events, %d fixes: %.0f fixes/s, %.0fx real time, %.1f B/fix",
+                    events, fixes, getFixesPerSecond(), getSpeedup(), getAllocatedBytesPerFix());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.roman.speedcore;
+
+/**
+ * The Android-free part of the fix path as {@code MainViewModel} runs it: every fix's position
+ * into a {@link MotionStateMachine}, then into a {@link TripTracker} behind the accuracy gate a
+ * {@link GnssQuality} derives from the satellite reports, and the filtered speed and the
+ * accelerometer variance into the motion state, timed off the replay clock.
+ */
+public final class TripReplayTarget implements TraceReplay.Target {
+
+    private final TripTracker tracker = new TripTracker();
+    private final MotionStateMachine motion = new MotionStateMachine();
+    private final GnssQuality gnss = new GnssQuality();
+    private long nowNanos;
+    private long nowMillis;
+    private int motionTransitions;
+    private int stillPositions;
+
+    @Override
+    public void advanceTo(long nowNanos) {
+        this.nowNanos = nowNanos;
+        nowMillis = nowNanos / 1_000_000L;
+    }
+
+    @Override
+    public void onFix(double latitude, double longitude, float speed, float bearing, float accuracy,
+                      float speedAccuracy, long elapsedNanos, long timeMillis) {
+        if (motion.getState() == MotionState.STILL) {
+            stillPositions++;
+        }
+        if (motion.onPosition(latitude, longitude, accuracy, nowMillis)) {
+            motionTransitions++;
+        }
+        tracker.setMaxAccuracyMeters(gnss.getAccuracyGateMeters(TripTracker.DEFAULT_MAX_ACCURACY_METERS, elapsedNanos));
+        if (tracker.onFix(latitude, longitude, speed, bearing, accuracy, speedAccuracy, elapsedNanos, timeMillis) != 0
+                && motion.onSpeed(tracker.getSmoothedSpeed(), nowMillis)) {
+            motionTransitions++;
+        }
+    }
+
+    @Override
+    public void onGnssStatus(int satellites, int usedInFix) {
+        describeSky(gnss, satellites, usedInFix);
+        gnss.update(nowNanos);
+    }
+
+    /**
+     * Fills {@code quality} with a report the trace's counts stand for: satellites spread over
+     * GPS, Galileo and GLONASS, the first {@code usedInFix} of them in the fix at 30 to 39 dB-Hz
+     * and the rest at 18 dB-Hz. Anything replaying a trace through real status reports should
+     * build them from {@link #skyConstellation} and {@link #skyCn0DbHz} to match.
+     */
+    public static void describeSky(GnssQuality quality, int satellites, int usedInFix) {
+        quality.setSatelliteCount(satellites);
+        for (int i = 0; i < satellites; i++) {
+            quality.setSatellite(i, skyConstellation(i), skyCn0DbHz(i, usedInFix), i < usedInFix);
+        }
+    }
+
+    public static int skyConstellation(int index) {
+        return SKY_CONSTELLATIONS[index % SKY_CONSTELLATIONS.length];
+    }
+
+    public static float skyCn0DbHz(int index, int usedInFix) {
+        return index < usedInFix ? 30f + 3f * (index % 4) : 18f;
+    }
+
+    private static final int[] SKY_CONSTELLATIONS = {
+            GnssQuality.CONSTELLATION_GPS, GnssQuality.CONSTELLATION_GALILEO, GnssQuality.CONSTELLATION_GLONASS};
+
+    @Override
+    public void onMotionVariance(float variance) {
+        if (motion.onAccelerometerVariance(variance, nowMillis)) {
+            motionTransitions++;
+        }
+    }
+
+    public TripTracker getTracker() {
+        return tracker;
+    }
+
+    public GnssQuality getGnss() {
+        return gnss;
+    }
+
+    public MotionStateMachine getMotion() {
+        return motion;
+    }
+
+    /** How often the motion state changed, i.e. how often the location request would be rebuilt. */
+    public int getMotionTransitions() {
+        return motionTransitions;
+    }
+
+    /** How many fix positions arrived while STILL, each a chance for the state to wake on displacement. */
+    public int getStillPositions() {
+        return stillPositions;
+    }
+}
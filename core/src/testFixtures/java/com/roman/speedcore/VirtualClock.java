@@ -0,0 +1,23 @@
+package com.roman.speedcore;
+
+/** A {@link MonotonicClock} that only moves when told to. */
+public final class VirtualClock implements MonotonicClock {
+
+    private long nowNanos;
+
+    public VirtualClock(long nowNanos) {
+        this.nowNanos = nowNanos;
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return nowNanos;
+    }
+
+    /** Moves the clock to {@code nanos}; it never runs backwards. */
+    public void advanceTo(long nanos) {
+        if (nanos > nowNanos) {
+            nowNanos = nanos;
+        }
+    }
+}